@@ -2,214 +2,204 @@ package pl.pw.edu.keygen;
 
 import java.io.File;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import pl.pw.edu.keygen.AKS.AKS;
 import java.io.IOException;
 import java.nio.file.*;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.EllipticCurve;
+import pl.pw.edu.pkry.FixedBase;
+import pl.pw.edu.pkry.KeyGenerator;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.OwnerKeys;
 
 /**
  * Klasa uruchamiająca aplikację
  * Keygen - służy do generacji kluczy (prywatnego i publicznego) dla właściciela.
+ * Obliczenia wykonuje KeyGenerator (pkryCore); klasa zapisuje wynik do plików lub magazynu kluczy.
  */
 public final class Main {
     
     /**
-     * Duża liczba pierwsza - fragment klucza publicznego
+     * Wygenerowane klucze właściciela
      */
-    private final BigInteger p;
+    private final OwnerKeys keys;
 
     /**
-     * Największy czynnik pierwszy liczby (p - 1) - fragment klucza publicznego
+     * Długość bitowa generowanej liczby p
      */
-    private BigInteger q;
+    private static final int P_LENGTH = KeyGenerator.DEFAULT_LENGTH;
 
-    /**
-     * Element grupy cyklicznej Z*p rzędu q (q jak najmniejsza i dodatnia) - fragment klucza publicznego
-     */
-    private final BigInteger g;
+    public Main(boolean debug)  {
+        this(debug, false);
+    }
 
     /**
-     * Liczba losowa z przedziału od 1 do p - klucz prywatny
+     * @param debug czy wypisywać wartości pośrednie
+     * @param binary czy zapisać klucze w postaci binarnej (BinaryFormat)
      */
-    private final BigInteger x;
+    public Main(boolean debug, boolean binary) {
+        this(debug, binary, null);
+    }
 
     /**
-     * g^x mod p - fragment klucza publicznego
+     * @param debug czy wypisywać wartości pośrednie
+     * @param binary czy zapisać klucze w postaci binarnej (BinaryFormat)
+     * @param keyStore magazyn kluczy, do którego dopisywane są klucze zamiast zapisu plików
+     * (certyfikat i tablica potęg nie są wtedy tworzone) lub null
      */
-    private final BigInteger y;
-    
-    static Map<BigInteger, List<BigInteger>> factors = new HashMap<>();
-    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
-
-    public Main(boolean debug)  {
-
-        p = genP(20);
-        q = genQ(p);
-        g = genG(p, q);
-        //q = genQbyG(p, g, q);
-        x = genX(p);
-        y = genY(g, x, p);
+    public Main(boolean debug, boolean binary, Path keyStore) {
+        keys = new KeyGenerator(P_LENGTH).generate();
+        BigInteger p = keys.getP(), g = keys.getG();
         
         if(debug) {
             System.out.println("p = " + p);
-            System.out.println("q = " + q);
+            System.out.println("q = " + keys.getQ());
             System.out.println("g = " + g);
-            System.out.println("x = " + x);
-            System.out.println("y = " + y + "\n");
+            System.out.println("x = " + keys.getX());
+            System.out.println("y = " + keys.getY() + "\n");
+        }
+
+        if (keyStore != null) {
+            store(keyStore);
+            return;
         }
         
-        StringBuilder publicKey = new StringBuilder();
-        publicKey.append(p.toString(16)).append("#").append(g.toString(16)).append("#").append(q.toString(16)).append("#").append(y.toString(16));
         try {
-            createFile(publicKey.toString(), "public.key");
+            writeKey("public.key", keys.publicKey(binary));
             System.out.println("Public key file has been generated successfully! Name of a file: public.key");
         } catch (IOException ex) {
             System.out.println("Public key has NOT been saved to file! Try again!");
         }
+
+        try {
+            createFile(keys.certificate(), "public.cert");
+            System.out.println("Primality certificate file has been generated successfully! Name of a file: public.cert");
+        } catch (IOException ex) {
+            System.out.println("Primality certificate has NOT been saved to file! Try again!");
+        }
         
         try {
-            createFile(x.toString(16), "private.key");
+            long start = Metrics.start();
+            FixedBase.forBase(g, p, p.bitLength()).save(Paths.get("public.table"));
+            Metrics.record(Metrics.WRITE, start);
+            System.out.println("Fixed-base table file has been generated successfully! Name of a file: public.table");
+        } catch (IOException ex) {
+            System.out.println("Fixed-base table has NOT been saved to file! Try again!");
+        }
+
+        try {
+            writeKey("private.key", keys.privateKey(binary));
             System.out.println("Private key file has been generated successfully! Name of a file: private.key");
         } catch (IOException ex) {
             System.out.println("Private key has NOT been saved to file! Try again!");
         }
     }
-              
+
     /**
-     * Metoda zapisująca zawartość tekstową do pliku o określonej ścieżce
-     * @param data zawartość
-     * @param fileName ścieżka pliku
-     * @throws IOException 
+     * Generacja kluczy wariantu EC: x losowe z przedziału (1, n-1), Y = x * G.
+     * Pliki kluczy oznaczone są wersją i nazwą krzywej (ec1#P-256#...); certyfikat pierwszości
+     * i tablica potęg nie są potrzebne - parametry krzywej są ustalone.
+     * @param debug czy wypisywać wartości pośrednie
+     * @param curve krzywa eliptyczna
      */
-    public void createFile(String data, String fileName) throws IOException {
-        File file = new File(fileName);
-        Files.write(file.toPath(), data.getBytes());
+    public Main(boolean debug, EllipticCurve curve) {
+        this(debug, curve, false);
     }
-    
+
     /**
-     * Generacja Y (część klucza publicznego)
-     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
-     * @param x fragment klucza prywatnego
-     * @param p duża liczba pierwsza
-     * @return BigInteger y
+     * Generacja kluczy wariantu EC
+     * @param debug czy wypisywać wartości pośrednie
+     * @param curve krzywa eliptyczna
+     * @param binary czy zapisać klucze w postaci binarnej (BinaryFormat)
      */
-    public BigInteger genY(BigInteger g, BigInteger x, BigInteger p) {
-        return g.modPow(x, p);
+    public Main(boolean debug, EllipticCurve curve, boolean binary) {
+        this(debug, curve, binary, null);
     }
-    
+
     /**
-     * Generacja X (klucz prywatny)
-     * @param n liczpa pierwsza
-     * @return losowa liczba z przedziału (1,n)
+     * Generacja kluczy wariantu EC
+     * @param debug czy wypisywać wartości pośrednie
+     * @param curve krzywa eliptyczna
+     * @param binary czy zapisać klucze w postaci binarnej (BinaryFormat)
+     * @param keyStore magazyn kluczy, do którego dopisywane są klucze zamiast zapisu plików, lub null
      */
-    public BigInteger genX(BigInteger n) {
-        Random rand = new Random();
-        BigInteger result = new BigInteger(n.bitLength(), rand);
-        while (result.compareTo(n.subtract(BigInteger.ONE)) == 1 || result.compareTo(TWO) == -1) {
-                result = new BigInteger(n.bitLength(), rand);
+    public Main(boolean debug, EllipticCurve curve, boolean binary, Path keyStore) {
+        keys = new KeyGenerator(curve).generate();
+
+        if(debug) {
+            System.out.println("curve = " + curve.getName());
+            System.out.println("n = " + keys.getQ());
+            System.out.println("G = " + keys.getG().toString(16));
+            System.out.println("x = " + keys.getX());
+            System.out.println("Y = " + keys.getY().toString(16) + "\n");
         }
-        return result;
-    }
 
-    /**
-     * Generacja G (fragment klucza publicznego)
-     * @param p duża liczba pierwsza
-     * @param q największy czynnik pierwszy (p-1)
-     * @return element Z*p rzędu q
-     */
-    public BigInteger genG(BigInteger p, BigInteger q) {
-        BigInteger num = BigInteger.ONE;
-        boolean tmp = false;
-        BigInteger pmin1 = p.subtract(BigInteger.ONE);
-        while (!tmp || num.equals(pmin1)) {
-            num = num.add(BigInteger.ONE);
-            BigInteger math = num.modPow(q, p);
-            if (math.equals(BigInteger.ONE)) {
-                if(genAlowerQ(p, num, q).equals(q)) {
-                    tmp = true;
-                }
-            }
+        if (keyStore != null) {
+            store(keyStore);
+            return;
+        }
+
+        try {
+            writeKey("public.key", keys.publicKey(binary));
+            System.out.println("Public key file has been generated successfully! Name of a file: public.key");
+        } catch (IOException ex) {
+            System.out.println("Public key has NOT been saved to file! Try again!");
+        }
+
+        try {
+            writeKey("private.key", keys.privateKey(binary));
+            System.out.println("Private key file has been generated successfully! Name of a file: private.key");
+        } catch (IOException ex) {
+            System.out.println("Private key has NOT been saved to file! Try again!");
         }
-        return num;
     }
-    
+
     /**
-     * Weryfikacja generacji parametru q względem znalezionego g (czy najmniejszy możliwy)
-     * @param p duża liczba pierwsza
-     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
-     * @param q największy czynnik pierwszy (p-1)
-     * @return BigInteger q
+     * Metoda zapisująca zawartość tekstową do pliku o określonej ścieżce
+     * @param data zawartość
+     * @param fileName ścieżka pliku
+     * @throws IOException 
      */
-    public BigInteger genAlowerQ(BigInteger p, BigInteger g, BigInteger q) {
-        BigInteger a = BigInteger.ONE;
-        while(a.compareTo(q) == -1) {
-            if(g.modPow(a, p).equals(BigInteger.ONE)) {
-                return a; 
-            }
-            a = a.add(BigInteger.ONE);
-        }
-        return q;
+    public void createFile(String data, String fileName) throws IOException {
+        long start = Metrics.start();
+        File file = new File(fileName);
+        Files.write(file.toPath(), data.getBytes());
+        Metrics.record(Metrics.WRITE, start);
     }
 
     /**
-     * Generacja Q (część klucza publicznego)
-     * @param p duża liczba pierwsza
-     * @return największy czynnik pierwszy liczby (p-1)
+     * Zapis pliku klucza
+     * @param fileName ścieżka pliku
+     * @param content zakodowany klucz
+     * @throws IOException
      */
-    public BigInteger genQ(BigInteger p) {
-        List<BigInteger> primeFactors = factors(p.subtract(new BigInteger("1")), false);
-        return primeFactors.get(primeFactors.size() - 1); // wybieramy ostatnią  - najwiękzy czynnik (MOŻNA ZMIENIĆ!)
+    private static void writeKey(String fileName, byte[] content) throws IOException {
+        long start = Metrics.start();
+        Files.write(Paths.get(fileName), content);
+        Metrics.record(Metrics.WRITE, start);
     }
 
     /**
-     * Generacja P (część klucza publicznego)
-     * @param length ilość bitów jaką ma mieć generowana liczba
-     * @return liczba pierwsza o zadanej wielkości bitowej
+     * Dopisanie klucza publicznego i prywatnego do magazynu kluczy (oba pod ID klucza publicznego)
+     * @param keyStore ścieżka magazynu
      */
-    public BigInteger genP(int length) {
-        BigInteger rand = null;
-        boolean isPrime = false;
-
-        while (!isPrime) {
-            rand = new BigInteger(length, 100, new Random());
-            AKS primeTest = new AKS(rand);
-            isPrime = primeTest.isPrime();
+    private void store(Path keyStore) {
+        long id = keys.getId();
+        try {
+            KeyStore.open(keyStore).add(new KeyStore.Entry(BinaryFormat.PUBLIC_KEY, id, id, keys.publicKey(true)),
+                    new KeyStore.Entry(BinaryFormat.PRIVATE_KEY, id, id, keys.privateKey(true)));
+            System.out.println("Keys have been added to keystore " + keyStore + "! Key ID: " + KeyStore.format(id));
+        } catch (IOException ex) {
+            System.out.println("Keys have NOT been saved to keystore " + keyStore + "! Try again!");
+            System.exit(1);
         }
-        return rand;
     }
 
     /**
-     * Rozkład liczby na czynniki pierwsze
-     * @param n liczba rozkładana
-     * @param duplicates czy mają być zwracane duplikaty
-     * @return listę BigInteger'ów będących liczbami pierwszymi z rozkładu liczby n
+     * @return wygenerowane klucze właściciela
      */
-    public static List<BigInteger> factors(BigInteger n, boolean duplicates) {
-        List<BigInteger> f = factors.get(n);
-        if (f == null) {
-            f = new ArrayList<>();
-            BigInteger last = BigInteger.ZERO;
-            for (BigInteger i = TWO; i.compareTo(n.divide(i)) <= 0; i = i.add(BigInteger.ONE)) {
-                while (n.mod(i).equals(BigInteger.ZERO)) {
-                    if (duplicates || !i.equals(last)) {
-                        f.add(i);
-                        last = i;
-                    }
-                    n = n.divide(i);
-                }
-            }
-            if (n.compareTo(BigInteger.ONE) > 0) {
-                if (duplicates || n != last) {
-                    f.add(n);
-                }
-            }
-            factors.put(n, f);
-        }
-        return f;
+    public OwnerKeys getKeys() {
+        return keys;
     }
 
     /**
@@ -217,8 +207,30 @@ public final class Main {
      * @param args
      */
     public static void main(String[] args) {
-        boolean statement = (args.length != 0 && args[0].length() != 0 && args[0].equals("-d"));
+        boolean statement = false;
+        boolean ec = false;
+        boolean binary = false;
+        Path keyStore = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d")) {
+                statement = true;
+            } else if (args[i].equals("-e")) {
+                ec = true;
+            } else if (args[i].equals("-x")) {
+                binary = true;
+            } else if (args[i].equals("-k") && i + 1 < args.length) {
+                keyStore = Paths.get(args[++i]);
+            } else if (args[i].equals("--stats")) {
+                Metrics.printAtExit(System.err);
+            } else {
+                System.out.println("Correct syntax: java -jar keygen.jar [-d] [-e] [-x | -k keystore] [--stats]");
+                System.out.println("   -x: write the key files in the compact binary format");
+                System.out.println("   -k: add the keys to a keystore file instead of writing key files");
+                System.out.println("   --stats: print a JSON summary of stage timings and counters to standard error at exit");
+                System.exit(-1);
+            }
+        }
         System.out.println("Optional parameter [-d] was " + ((statement) ? "" : "not ") + "used.");
-        Main main = new Main(statement);
+        Main main = ec ? new Main(statement, EllipticCurve.P256, binary, keyStore) : new Main(statement, binary, keyStore);
     }
 }
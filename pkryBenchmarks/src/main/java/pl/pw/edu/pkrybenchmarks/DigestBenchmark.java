@@ -0,0 +1,62 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.pw.edu.pkry.DigestAlgorithms;
+
+/**
+ * Skrót treści dokumentu w pamięci (bez odczytu pliku - zob. FileDigestBenchmark) dla funkcji
+ * skrótu obsługiwanych w podpisie; dokument większy od bufora podawany jest kolejnymi
+ * fragmentami bufora, tak jak przy czytaniu pliku
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestBenchmark {
+
+    /**
+     * Rozmiar bufora, którym podawana jest treść
+     */
+    private static final int BUFFER = 1 << 20;
+
+    /**
+     * Rozmiar dokumentu w bajtach: 1 KB, 1 MB, 64 MB, 1 GB
+     */
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    @Param({DigestAlgorithms.SHA256, DigestAlgorithms.SHA512_256, DigestAlgorithms.BLAKE2B_256})
+    public String algorithm;
+
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        buffer = new byte[(int) Math.min(size, BUFFER)];
+        new Random(4).nextBytes(buffer);
+    }
+
+    @Benchmark
+    public byte[] digest() {
+        MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+        for (long left = size; left > 0; left -= buffer.length) {
+            md.update(buffer, 0, (int) Math.min(left, buffer.length));
+        }
+        return md.digest();
+    }
+}
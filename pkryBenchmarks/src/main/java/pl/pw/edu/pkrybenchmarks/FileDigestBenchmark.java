@@ -0,0 +1,77 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.FileDigest;
+import pl.pw.edu.pkry.MerkleTree;
+
+/**
+ * Skrót podpisywanego pliku tak, jak liczą go proxySigner i proxyVerifier: cała treść (FileDigest)
+ * albo korzeń drzewa Merkle z fragmentów liczonych równolegle (opcje -m i -k). Plik tworzony jest
+ * raz w katalogu tymczasowym (java.io.tmpdir), więc kolejne odczyty trafiają zwykle do pamięci
+ * podręcznej systemu plików; stan skrótu nie jest zapamiętywany (bez DigestCache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class FileDigestBenchmark {
+
+    /**
+     * Rozmiar pliku w bajtach: 1 KB, 1 MB, 64 MB, 1 GB
+     */
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("pkry-bench", ".bin");
+        byte[] buffer = new byte[1 << 20];
+        Random rand = new Random(5);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long left = size; left > 0; left -= buffer.length) {
+                rand.nextBytes(buffer);
+                out.write(buffer, 0, (int) Math.min(left, buffer.length));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] whole() throws IOException {
+        return FileDigest.update(file, DigestAlgorithms.newDigest(DigestAlgorithms.DEFAULT)).digest();
+    }
+
+    @Benchmark
+    public byte[] merkle() throws IOException {
+        MessageDigest md = DigestAlgorithms.newDigest(DigestAlgorithms.DEFAULT);
+        byte[] root = MerkleTree.root(MerkleTree.leaves(file, MerkleTree.DEFAULT_CHUNK), DigestAlgorithms.DEFAULT);
+        return MerkleTree.message(root, MerkleTree.DEFAULT_CHUNK, md).digest();
+    }
+}
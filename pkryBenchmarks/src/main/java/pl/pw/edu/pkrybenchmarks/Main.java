@@ -0,0 +1,40 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Klasa uruchamiająca pomiary
+ * pkryBenchmarks - bez argumentów wykonuje wszystkie pomiary jednym wątkiem i tyloma wątkami, ile
+ * jest procesorów, z przepustowością, percentylami czasu (SampleTime) i alokacją na operację
+ * (profiler gc); wyniki zapisywane są w plikach jmh-threads-N.json. Z argumentami działa jak
+ * org.openjdk.jmh.Main (np. -p length=2048 -t 4 -prof gc SignBenchmark).
+ */
+public final class Main {
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        for (int i = 0; i < threads.length && (i == 0 || threads[i] != threads[0]); i++) {
+            Options options = new OptionsBuilder()
+                    .include(Main.class.getPackage().getName() + "\\..*Benchmark")
+                    .threads(threads[i])
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-threads-" + threads[i] + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.pw.edu.pkry.FixedBase;
+import pl.pw.edu.pkry.KeyGenerator;
+import pl.pw.edu.pkry.ProxyKeyIssuer;
+
+/**
+ * Generacja klucza proxy (proxyKeygen): r = g^k mod p i s = x + k * r mod q, bez odczytu
+ * i zapisu plików kluczy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyKeygenBenchmark {
+
+    /**
+     * Długość p w bitach
+     */
+    @Param({"1024", "2048", "3072"})
+    public int length;
+
+    private SchnorrGroup group;
+
+    private BigInteger x, k, r;
+
+    @Setup
+    public void setup() {
+        group = SchnorrGroup.get(length);
+        Random rand = new Random(1);
+        x = group.exponent(rand);
+        k = group.exponent(rand);
+        FixedBase.forBase(group.g, group.p, group.p.bitLength());
+        r = ProxyKeyIssuer.genR(group.g, k, group.p);
+    }
+
+    @Benchmark
+    public BigInteger genR() {
+        return ProxyKeyIssuer.genR(group.g, ProxyKeyIssuer.genK(group.q), group.p);
+    }
+
+    @Benchmark
+    public BigInteger genS() {
+        return ProxyKeyIssuer.genS(x, k, r, group.q);
+    }
+
+    /**
+     * Klucz proxy (r, s) z nową liczbą losową k
+     */
+    @Benchmark
+    public BigInteger[] proxyKey() {
+        BigInteger k = ProxyKeyIssuer.genK(group.q);
+        BigInteger r = ProxyKeyIssuer.genR(group.g, k, group.p);
+        return new BigInteger[]{r, ProxyKeyIssuer.genS(x, k, r, group.q)};
+    }
+
+    /**
+     * Dla porównania: y = g^x mod p (keygen) - ta sama tablica potęg g co genR
+     */
+    @Benchmark
+    public BigInteger genY() {
+        return KeyGenerator.genY(group.g, x, group.p);
+    }
+}
@@ -0,0 +1,70 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parametry schematu (p, q, g) zadanej długości dla pomiarów.
+ * keygen wyznacza p testem AKS, co dla 1024-3072 bitów trwa zbyt długo, dlatego p = k * q + 1
+ * wyszukiwane jest testem probabilistycznym dla 256-bitowej liczby pierwszej q (jak w grupach DSA).
+ * Ziarno zależy od długości, więc kolejne uruchomienia mierzą te same parametry.
+ */
+final class SchnorrGroup {
+
+    /**
+     * Długość rzędu podgrupy q w bitach
+     */
+    static final int Q_LENGTH = 256;
+
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    private static final Map<Integer, SchnorrGroup> GROUPS = new ConcurrentHashMap<>();
+
+    /**
+     * Duża liczba pierwsza, rząd podgrupy i jej generator
+     */
+    final BigInteger p, q, g;
+
+    private SchnorrGroup(BigInteger p, BigInteger q, BigInteger g) {
+        this.p = p;
+        this.q = q;
+        this.g = g;
+    }
+
+    /**
+     * @param length długość p w bitach
+     * @return parametry (wyznaczane raz dla danej długości)
+     */
+    static SchnorrGroup get(int length) {
+        return GROUPS.computeIfAbsent(length, SchnorrGroup::generate);
+    }
+
+    private static SchnorrGroup generate(int length) {
+        Random rand = new Random(length);
+        BigInteger q = BigInteger.probablePrime(Q_LENGTH, rand);
+        BigInteger p;
+        do {
+            BigInteger k = new BigInteger(length - Q_LENGTH, rand).setBit(length - Q_LENGTH - 1).clearBit(0);
+            p = k.multiply(q).add(BigInteger.ONE);
+        } while (p.bitLength() != length || !p.isProbablePrime(64));
+        BigInteger cofactor = p.subtract(BigInteger.ONE).divide(q);
+        BigInteger g = BigInteger.ONE;
+        for (BigInteger h = TWO; g.equals(BigInteger.ONE); h = h.add(BigInteger.ONE)) {
+            g = h.modPow(cofactor, p);
+        }
+        return new SchnorrGroup(p, q, g);
+    }
+
+    /**
+     * @return losowy wykładnik z przedziału (1, q)
+     */
+    BigInteger exponent(Random rand) {
+        BigInteger result;
+        do {
+            result = new BigInteger(Q_LENGTH, rand);
+        } while (result.compareTo(TWO) < 0 || result.compareTo(q) >= 0);
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.FixedBase;
+import pl.pw.edu.pkry.ProxyKeyIssuer;
+import pl.pw.edu.pkry.Signer;
+
+/**
+ * Podpis pełnomocnika (proxySigner) dla gotowego skrótu dokumentu: r_p = g^l mod p,
+ * e = H(m || r_p) i s_p = s * e + l mod q - bez liczenia skrótu pliku (zob. DigestBenchmark)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignBenchmark {
+
+    /**
+     * Długość p w bitach
+     */
+    @Param({"1024", "2048", "3072"})
+    public int length;
+
+    private SchnorrGroup group;
+
+    private BigInteger s, l, rp, e;
+
+    /**
+     * Podpisywana wiadomość - skrót dokumentu
+     */
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        group = SchnorrGroup.get(length);
+        Random rand = new Random(2);
+        BigInteger x = group.exponent(rand);
+        BigInteger k = group.exponent(rand);
+        FixedBase.forBase(group.g, group.p, group.p.bitLength());
+        s = ProxyKeyIssuer.genS(x, k, ProxyKeyIssuer.genR(group.g, k, group.p), group.q);
+        l = group.exponent(rand);
+        rp = Signer.genRP(group.g, l, group.p);
+        message = new byte[32];
+        rand.nextBytes(message);
+        e = Signer.genE(digest(), rp);
+    }
+
+    private MessageDigest digest() {
+        MessageDigest md = DigestAlgorithms.newDigest(DigestAlgorithms.DEFAULT);
+        md.update(message);
+        return md;
+    }
+
+    @Benchmark
+    public BigInteger genRP() {
+        return Signer.genRP(group.g, Signer.genL(group.q), group.p);
+    }
+
+    @Benchmark
+    public BigInteger genE() {
+        return Signer.genE(digest(), rp);
+    }
+
+    @Benchmark
+    public BigInteger genSP() {
+        return Signer.genSP(s, e, l, group.q);
+    }
+
+    /**
+     * Pełny podpis (e, s_p) z nową liczbą losową l
+     */
+    @Benchmark
+    public BigInteger[] sign() {
+        BigInteger l = Signer.genL(group.q);
+        BigInteger e = Signer.genE(digest(), Signer.genRP(group.g, l, group.p));
+        return new BigInteger[]{e, Signer.genSP(s, e, l, group.q)};
+    }
+}
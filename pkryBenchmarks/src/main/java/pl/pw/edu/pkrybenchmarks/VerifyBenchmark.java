@@ -0,0 +1,97 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.FixedBase;
+import pl.pw.edu.pkry.KeyGenerator;
+import pl.pw.edu.pkry.ProxyKeyIssuer;
+import pl.pw.edu.pkry.Signer;
+import pl.pw.edu.pkry.Verifier;
+
+/**
+ * Weryfikacja podpisu (proxyVerifier) dla gotowego skrótu dokumentu: wartość pomocnicza
+ * g^sp * (y * r^r)^(-e) mod p i e' = H(m || wartość). Wartość publiczna pełnomocnika y * r^r
+ * liczona jest raz (ProxyBaseCache), więc pomiar odpowiada kolejnym podpisom tego samego pełnomocnika.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyBenchmark {
+
+    /**
+     * Długość p w bitach
+     */
+    @Param({"1024", "2048", "3072"})
+    public int length;
+
+    private SchnorrGroup group;
+
+    private BigInteger y, r, sp, e, value;
+
+    /**
+     * Podpisana wiadomość - skrót dokumentu
+     */
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        group = SchnorrGroup.get(length);
+        Random rand = new Random(3);
+        BigInteger x = group.exponent(rand);
+        BigInteger k = group.exponent(rand);
+        BigInteger l = group.exponent(rand);
+        FixedBase.forBase(group.g, group.p, group.p.bitLength());
+        y = KeyGenerator.genY(group.g, x, group.p);
+        r = ProxyKeyIssuer.genR(group.g, k, group.p);
+        BigInteger s = ProxyKeyIssuer.genS(x, k, r, group.q);
+        message = new byte[32];
+        rand.nextBytes(message);
+        e = Signer.genE(digest(), Signer.genRP(group.g, l, group.p));
+        sp = Signer.genSP(s, e, l, group.q);
+        value = Verifier.genValue(group.g, sp, y, r, e, group.p, group.q);
+        if (!e.equals(Verifier.genEprim(digest(), value))) {
+            throw new IllegalStateException("Benchmark signature does not verify");
+        }
+    }
+
+    private MessageDigest digest() {
+        MessageDigest md = DigestAlgorithms.newDigest(DigestAlgorithms.DEFAULT);
+        md.update(message);
+        return md;
+    }
+
+    @Benchmark
+    public BigInteger genValue() {
+        return Verifier.genValue(group.g, sp, y, r, e, group.p, group.q);
+    }
+
+    @Benchmark
+    public BigInteger genEprim() {
+        return Verifier.genEprim(digest(), value);
+    }
+
+    /**
+     * Pełna weryfikacja e == e'
+     */
+    @Benchmark
+    public boolean verify() {
+        return e.equals(Verifier.genEprim(digest(), Verifier.genValue(group.g, sp, y, r, e, group.p, group.q)));
+    }
+}
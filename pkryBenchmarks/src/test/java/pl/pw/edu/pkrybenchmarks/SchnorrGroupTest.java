@@ -0,0 +1,41 @@
+package pl.pw.edu.pkrybenchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parametry grup używanych w pomiarach: p zadanej długości, q | p - 1, g rzędu q
+ */
+class SchnorrGroupTest {
+
+    @Test
+    void groupHasRequestedShape() {
+        for (int length : new int[]{512, 1024}) {
+            SchnorrGroup group = SchnorrGroup.get(length);
+            assertEquals(length, group.p.bitLength());
+            assertEquals(SchnorrGroup.Q_LENGTH, group.q.bitLength());
+            assertTrue(group.p.isProbablePrime(50));
+            assertTrue(group.q.isProbablePrime(50));
+            assertEquals(BigInteger.ZERO, group.p.subtract(BigInteger.ONE).mod(group.q));
+            assertNotEquals(BigInteger.ONE, group.g);
+            assertEquals(BigInteger.ONE, group.g.modPow(group.q, group.p));
+            assertSame(group, SchnorrGroup.get(length));
+        }
+    }
+
+    @Test
+    void exponentsLieInRange() {
+        SchnorrGroup group = SchnorrGroup.get(512);
+        Random rand = new Random(49);
+        for (int i = 0; i < 100; i++) {
+            BigInteger exponent = group.exponent(rand);
+            assertTrue(exponent.compareTo(BigInteger.ONE) > 0 && exponent.compareTo(group.q) < 0);
+        }
+    }
+}
@@ -1,4 +1,4 @@
-package pl.pw.edu.keygen.AKS;
+package pl.pw.edu.pkry.AKS;
 
 import java.math.BigInteger;
 
@@ -1,4 +1,4 @@
-package pl.pw.edu.keygen.AKS;
+package pl.pw.edu.pkry.AKS;
 
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -124,6 +124,15 @@ public class Poly {
         return true;
     }
 
+    @Override
+    public int hashCode() {
+        int hash = degree;
+        for (int i = 0; i <= degree; i++) {
+            hash = 31 * hash + monos[i].hashCode();
+        }
+        return hash;
+    }
+
     /**
      *
      * @param p
@@ -0,0 +1,89 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wsadowa weryfikacja kluczy proxy (r_i, s_i) wydanych z jednego klucza mocodawcy.
+ * Zamiast sprawdzać osobno g^s_i = y * r_i^r_i (mod p) dla każdego klucza (2N potęgowań),
+ * test z małymi losowymi wykładnikami c_i sprawdza jedną równość
+ * g^(suma c_i*s_i) = y^(suma c_i) * iloczyn r_i^(c_i*r_i) (mod p),
+ * liczoną jednym potęgowaniem tablicowym i jednym potęgowaniem łącznym (MultiExp).
+ * Wykładniki redukowane są modulo (p - 1), co jest poprawne dla dowolnych elementów Z*p.
+ * Dopiero gdy test wsadowy nie przechodzi, zbiór dzielony jest na połowy aż do wskazania złych kluczy.
+ */
+public final class BatchVerifier {
+
+    /**
+     * Długość bitowa losowych wykładników c_i (prawdopodobieństwo przeoczenia błędu ok. 2^-64)
+     */
+    private static final int SMALL_EXPONENT_BITS = 64;
+
+    private final BigInteger p, g, y;
+
+    /**
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param y klucz publiczny mocodawcy
+     */
+    public BatchVerifier(BigInteger p, BigInteger g, BigInteger y) {
+        this.p = p;
+        this.g = g;
+        this.y = y;
+    }
+
+    /**
+     * Wyszukanie niepoprawnych kluczy proxy
+     * @param r wartości r_i kluczy proxy
+     * @param s wartości s_i kluczy proxy
+     * @return indeksy kluczy, które nie przeszły weryfikacji (pusta lista, gdy wszystkie są poprawne)
+     */
+    public List<Integer> findInvalid(BigInteger[] r, BigInteger[] s) {
+        List<Integer> invalid = new ArrayList<>();
+        bisect(r, s, 0, r.length, invalid);
+        return invalid;
+    }
+
+    private void bisect(BigInteger[] r, BigInteger[] s, int from, int to, List<Integer> invalid) {
+        if (from >= to || check(r, s, from, to)) {
+            return;
+        }
+        if (to - from == 1) {
+            invalid.add(from);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        bisect(r, s, from, mid, invalid);
+        bisect(r, s, mid, to, invalid);
+    }
+
+    /**
+     * Test wsadowy dla kluczy o indeksach z przedziału [from, to)
+     */
+    private boolean check(BigInteger[] r, BigInteger[] s, int from, int to) {
+        if (to - from == 1) {
+            BigInteger L = FixedBase.forBase(g, p, p.bitLength()).pow(s[from]);
+            Montgomery ctx = Montgomery.forModulus(p);
+            BigInteger R = ctx.multiply(y, ctx.modPow(r[from], r[from]));
+            return L.equals(R);
+        }
+        int n = to - from;
+        BigInteger order = p.subtract(BigInteger.ONE);
+        BigInteger[] bases = new BigInteger[n + 1];
+        BigInteger[] exps = new BigInteger[n + 1];
+        BigInteger sumC = BigInteger.ZERO;
+        BigInteger sumCS = BigInteger.ZERO;
+        for (int i = 0; i < n; i++) {
+            BigInteger c = new BigInteger(SMALL_EXPONENT_BITS, Randomness.SOURCE).setBit(0);
+            sumC = sumC.add(c);
+            sumCS = sumCS.add(c.multiply(s[from + i]));
+            bases[i] = r[from + i];
+            exps[i] = c.multiply(r[from + i]).mod(order);
+        }
+        bases[n] = y;
+        exps[n] = sumC.mod(order);
+        BigInteger L = FixedBase.forBase(g, p, p.bitLength()).pow(sumCS.mod(order));
+        return L.equals(MultiExp.pow(bases, exps, p));
+    }
+}
@@ -0,0 +1,277 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zwarty, binarny zapis kluczy i podpisów (wersja 1) oraz odczyt dotychczasowego formatu tekstowego.
+ * Układ: znacznik "PKRY", wersja (1 bajt), rodzaj pliku (1 bajt), liczba pól (1 bajt), a następnie
+ * pola poprzedzone długością (2 bajty, big-endian). Pole 0 to tekst UTF-8 - nazwa krzywej dla kluczy
+ * wariantu EC (pusty dla schematu nad Z*p) lub opcje podpisu (klucz=wartość rozdzielone średnikiem);
+ * kolejne pola to liczby w kodzie uzupełnieniowym do dwóch (BigInteger.toByteArray), w kolejności
+ * wartości formatu tekstowego (p, g, q, y; x; r, s; sp, e, r).
+ * Parser czyta pola z bufora (także odwzorowanego w pamięć) bez pośredniej postaci tekstowej i bez
+ * kopiowania całego bufora do tablicy; bajty każdego pola są jednak kopiowane (String i BigInteger
+ * budowane są z tablicy). Pliki tekstowe (wartości szesnastkowe rozdzielone #) rozpoznawane są po
+ * braku znacznika.
+ */
+public final class BinaryFormat {
+
+    /**
+     * Rodzaje plików
+     */
+    public static final byte PUBLIC_KEY = 1, PRIVATE_KEY = 2, PROXY_KEY = 3, SIGNATURE = 4;
+
+    /**
+     * Wersja formatu binarnego
+     */
+    public static final byte VERSION = 1;
+
+    private static final byte[] MAGIC = {'P', 'K', 'R', 'Y'};
+
+    private static final int HEADER = MAGIC.length + 3;
+
+    /**
+     * Największa długość pola
+     */
+    private static final int MAX_FIELD = 0xffff;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * @param content treść pliku
+     * @return czy treść jest zapisana w formacie binarnym
+     */
+    public static boolean isBinary(byte[] content) {
+        return isBinary(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * @param buffer bufor ustawiony na początku rekordu (pozycja nie jest zmieniana)
+     * @return czy rekord jest zapisany w formacie binarnym
+     */
+    public static boolean isBinary(ByteBuffer buffer) {
+        if (buffer.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Zapis binarny
+     * @param type rodzaj pliku
+     * @param label pole tekstowe (nazwa krzywej, opcje podpisu lub pusty tekst)
+     * @param values wartości
+     * @return treść pliku
+     * @throws IllegalArgumentException gdy pole jest zbyt długie
+     */
+    public static byte[] encode(byte type, String label, BigInteger... values) {
+        byte[][] fields = new byte[values.length + 1][];
+        fields[0] = label.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER;
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                fields[i] = values[i - 1].toByteArray();
+            }
+            if (fields[i].length > MAX_FIELD) {
+                throw new IllegalArgumentException("Field " + i + " is too long");
+            }
+            size += 2 + fields[i].length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(MAGIC).put(VERSION).put(type).put((byte) fields.length);
+        for (byte[] field : fields) {
+            out.putShort((short) field.length).put(field);
+        }
+        return out.array();
+    }
+
+    /**
+     * Zapis tekstowy: wartości szesnastkowe rozdzielone #, dla kluczy wariantu EC poprzedzone wersją
+     * i nazwą krzywej (ec1#krzywa#...)
+     * @param label nazwa krzywej lub pusty tekst
+     * @param values wartości
+     * @return treść pliku
+     */
+    public static String format(String label, BigInteger... values) {
+        StringBuilder sb = new StringBuilder();
+        if (!label.isEmpty()) {
+            sb.append(EllipticCurve.KEY_VERSION).append('#').append(label);
+        }
+        for (BigInteger value : values) {
+            if (sb.length() > 0) {
+                sb.append('#');
+            }
+            sb.append(value.toString(16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Zapis klucza w postaci binarnej lub tekstowej
+     * @param type rodzaj klucza
+     * @param label nazwa krzywej lub pusty tekst
+     * @param binary czy zapisać klucz w postaci binarnej
+     * @param values wartości
+     * @return treść pliku
+     */
+    public static byte[] write(byte type, String label, boolean binary, BigInteger... values) {
+        return binary ? encode(type, label, values) : format(label, values).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Odczyt rekordu binarnego od bieżącej pozycji bufora (pozycja nie jest zmieniana); bajty każdego
+     * pola kopiowane są do tablicy pomocniczej, z której powstaje String lub BigInteger
+     * @param buffer bufor
+     * @param type oczekiwany rodzaj pliku
+     * @return rekord
+     * @throws IllegalArgumentException gdy rekord jest niepoprawny, w nieobsługiwanej wersji lub innego rodzaju
+     */
+    public static Record decode(ByteBuffer buffer, byte type) {
+        int position = buffer.position(), limit = buffer.limit();
+        if (!isBinary(buffer) || limit - position < HEADER) {
+            throw new IllegalArgumentException("Not a binary key or signature");
+        }
+        if (buffer.get(position + MAGIC.length) != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary format version " + buffer.get(position + MAGIC.length));
+        }
+        if (buffer.get(position + MAGIC.length + 1) != type) {
+            throw new IllegalArgumentException("Unexpected file type " + buffer.get(position + MAGIC.length + 1));
+        }
+        int count = buffer.get(position + MAGIC.length + 2) & 0xff;
+        if (count == 0) {
+            throw new IllegalArgumentException("Binary record has no fields");
+        }
+        int offset = position + HEADER;
+        String label = null;
+        BigInteger values[] = new BigInteger[count - 1];
+        byte[] scratch = null;
+        ByteBuffer view = buffer.duplicate();
+        for (int i = 0; i < count; i++) {
+            if (limit - offset < 2) {
+                throw new IllegalArgumentException("Binary record is truncated");
+            }
+            int length = buffer.getShort(offset) & 0xffff;
+            offset += 2;
+            if (limit - offset < length || (i > 0 && length == 0)) {
+                throw new IllegalArgumentException("Binary record is truncated");
+            }
+            if (scratch == null || scratch.length != length) {
+                scratch = new byte[length];
+            }
+            view.position(offset);
+            view.get(scratch);
+            if (i == 0) {
+                label = new String(scratch, StandardCharsets.UTF_8);
+            } else {
+                values[i - 1] = new BigInteger(scratch);
+            }
+            offset += length;
+        }
+        return new Record(label, values, offset - position);
+    }
+
+    /**
+     * Odczyt pliku w formacie binarnym lub tekstowym (rozpoznawanym automatycznie)
+     * @param content treść pliku
+     * @param type rodzaj pliku (PUBLIC_KEY, PRIVATE_KEY lub PROXY_KEY)
+     * @return rekord
+     * @throws IllegalArgumentException gdy format jest niepoprawny
+     */
+    public static Record read(byte[] content, byte type) {
+        if (isBinary(content)) {
+            return decode(ByteBuffer.wrap(content), type);
+        }
+        String tmp[] = new String(content, StandardCharsets.UTF_8).trim().split("#");
+        String label = "";
+        int offset = 0;
+        if (tmp.length > 2 && tmp[0].equals(EllipticCurve.KEY_VERSION)) {
+            label = tmp[1];
+            offset = 2;
+        }
+        BigInteger values[] = new BigInteger[tmp.length - offset];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new BigInteger(tmp[offset + i], 16);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Key values are badly formatted", ex);
+        }
+        return new Record(label, values, content.length);
+    }
+
+    /**
+     * Odczyt klucza w formacie binarnym lub tekstowym
+     * @param content treść pliku klucza
+     * @param type rodzaj klucza (PUBLIC_KEY, PRIVATE_KEY lub PROXY_KEY)
+     * @return rekord
+     * @throws MalformedKeyException gdy format jest niepoprawny
+     */
+    public static Record readKey(byte[] content, byte type) throws MalformedKeyException {
+        if (content == null) {
+            throw new MalformedKeyException(type);
+        }
+        long start = Metrics.start();
+        try {
+            return read(content, type);
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedKeyException(type);
+        } finally {
+            Metrics.record(Metrics.PARSE, start);
+        }
+    }
+
+    /**
+     * Odczytany rekord
+     */
+    public static final class Record {
+
+        private final String label;
+
+        private final BigInteger values[];
+
+        private final int length;
+
+        Record(String label, BigInteger values[], int length) {
+            this.label = label;
+            this.values = values;
+            this.length = length;
+        }
+
+        /**
+         * @return pole tekstowe (nazwa krzywej, opcje podpisu lub pusty tekst)
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return liczba wartości
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * @param index numer wartości
+         * @return wartość
+         */
+        public BigInteger get(int index) {
+            return values[index];
+        }
+
+        /**
+         * @return długość rekordu w bajtach
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+}
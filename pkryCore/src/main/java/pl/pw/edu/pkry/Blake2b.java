@@ -0,0 +1,231 @@
+package pl.pw.edu.pkry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * Implementacja BLAKE2b (RFC 7693) bez klucza, z wynikiem 256-bitowym (BLAKE2b-256).
+ * Kompresja na słowach 64-bitowych wykonuje 12 rund samych dodawań, rotacji i XOR, bez rozszerzania
+ * wiadomości, dzięki czemu na procesorach 64-bitowych bez rozkazów SHA jest szybsza od SHA-256.
+ * Ostatni blok przetwarzany jest dopiero w digest() (z flagą bloku końcowego), więc pełny bufor
+ * kompresowany jest dopiero wtedy, gdy nadchodzą kolejne dane.
+ */
+public final class Blake2b extends MessageDigest implements Cloneable {
+
+    private static final long[] IV = {
+        0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+        0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+
+    private static final byte[][] SIGMA = {
+        {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+        {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3},
+        {11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4},
+        {7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8},
+        {9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13},
+        {2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9},
+        {12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11},
+        {13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10},
+        {6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5},
+        {10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0},
+        {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+        {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3}
+    };
+
+    /**
+     * Długość wyniku w bajtach
+     */
+    private static final int LENGTH = 32;
+
+    private long[] h = new long[8];
+
+    private long[] m = new long[16];
+
+    private byte[] buffer = new byte[128];
+
+    /**
+     * Liczba bajtów w buforze
+     */
+    private int fill;
+
+    /**
+     * Liczba bajtów przekazanych do kompresji (licznik t)
+     */
+    private long count;
+
+    public Blake2b() {
+        super(DigestAlgorithms.BLAKE2B_256);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        if (fill == 128) {
+            count += 128;
+            compress(buffer, 0, false);
+            fill = 0;
+        }
+        buffer[fill++] = input;
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        if (len <= 0) {
+            return;
+        }
+        if (fill > 0) {
+            int n = Math.min(128 - fill, len);
+            System.arraycopy(input, offset, buffer, fill, n);
+            fill += n;
+            offset += n;
+            len -= n;
+            if (len == 0) {
+                return;
+            }
+            count += 128;
+            compress(buffer, 0, false);
+            fill = 0;
+        }
+        while (len > 128) {
+            count += 128;
+            compress(input, offset, false);
+            offset += 128;
+            len -= 128;
+        }
+        System.arraycopy(input, offset, buffer, 0, len);
+        fill = len;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        count += fill;
+        for (int i = fill; i < 128; i++) {
+            buffer[i] = 0;
+        }
+        compress(buffer, 0, true);
+        byte[] out = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            out[i] = (byte) (h[i >> 3] >>> (8 * (i & 7)));
+        }
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        System.arraycopy(IV, 0, h, 0, 8);
+        h[0] ^= 0x01010000L ^ LENGTH;
+        fill = 0;
+        count = 0;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Blake2b copy = (Blake2b) super.clone();
+        copy.h = h.clone();
+        copy.m = new long[16];
+        copy.buffer = buffer.clone();
+        return copy;
+    }
+
+    /**
+     * Funkcja kompresji F; stan roboczy v0..v15 trzymany jest w zmiennych lokalnych (rejestrach)
+     */
+    private void compress(byte[] block, int offset, boolean last) {
+        ByteBuffer words = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 16; i++) {
+            m[i] = words.getLong(offset + i * 8);
+        }
+        long v0 = h[0], v1 = h[1], v2 = h[2], v3 = h[3], v4 = h[4], v5 = h[5], v6 = h[6], v7 = h[7];
+        long v8 = IV[0], v9 = IV[1], v10 = IV[2], v11 = IV[3], v12 = IV[4] ^ count, v13 = IV[5], v14 = last ? ~IV[6] : IV[6], v15 = IV[7];
+        for (int r = 0; r < 12; r++) {
+            byte[] s = SIGMA[r];
+            // G(v0, v4, v8, v12)
+            v0 += v4 + m[s[0]];
+            v12 = Long.rotateRight(v12 ^ v0, 32);
+            v8 += v12;
+            v4 = Long.rotateRight(v4 ^ v8, 24);
+            v0 += v4 + m[s[1]];
+            v12 = Long.rotateRight(v12 ^ v0, 16);
+            v8 += v12;
+            v4 = Long.rotateRight(v4 ^ v8, 63);
+            // G(v1, v5, v9, v13)
+            v1 += v5 + m[s[2]];
+            v13 = Long.rotateRight(v13 ^ v1, 32);
+            v9 += v13;
+            v5 = Long.rotateRight(v5 ^ v9, 24);
+            v1 += v5 + m[s[3]];
+            v13 = Long.rotateRight(v13 ^ v1, 16);
+            v9 += v13;
+            v5 = Long.rotateRight(v5 ^ v9, 63);
+            // G(v2, v6, v10, v14)
+            v2 += v6 + m[s[4]];
+            v14 = Long.rotateRight(v14 ^ v2, 32);
+            v10 += v14;
+            v6 = Long.rotateRight(v6 ^ v10, 24);
+            v2 += v6 + m[s[5]];
+            v14 = Long.rotateRight(v14 ^ v2, 16);
+            v10 += v14;
+            v6 = Long.rotateRight(v6 ^ v10, 63);
+            // G(v3, v7, v11, v15)
+            v3 += v7 + m[s[6]];
+            v15 = Long.rotateRight(v15 ^ v3, 32);
+            v11 += v15;
+            v7 = Long.rotateRight(v7 ^ v11, 24);
+            v3 += v7 + m[s[7]];
+            v15 = Long.rotateRight(v15 ^ v3, 16);
+            v11 += v15;
+            v7 = Long.rotateRight(v7 ^ v11, 63);
+            // G(v0, v5, v10, v15)
+            v0 += v5 + m[s[8]];
+            v15 = Long.rotateRight(v15 ^ v0, 32);
+            v10 += v15;
+            v5 = Long.rotateRight(v5 ^ v10, 24);
+            v0 += v5 + m[s[9]];
+            v15 = Long.rotateRight(v15 ^ v0, 16);
+            v10 += v15;
+            v5 = Long.rotateRight(v5 ^ v10, 63);
+            // G(v1, v6, v11, v12)
+            v1 += v6 + m[s[10]];
+            v12 = Long.rotateRight(v12 ^ v1, 32);
+            v11 += v12;
+            v6 = Long.rotateRight(v6 ^ v11, 24);
+            v1 += v6 + m[s[11]];
+            v12 = Long.rotateRight(v12 ^ v1, 16);
+            v11 += v12;
+            v6 = Long.rotateRight(v6 ^ v11, 63);
+            // G(v2, v7, v8, v13)
+            v2 += v7 + m[s[12]];
+            v13 = Long.rotateRight(v13 ^ v2, 32);
+            v8 += v13;
+            v7 = Long.rotateRight(v7 ^ v8, 24);
+            v2 += v7 + m[s[13]];
+            v13 = Long.rotateRight(v13 ^ v2, 16);
+            v8 += v13;
+            v7 = Long.rotateRight(v7 ^ v8, 63);
+            // G(v3, v4, v9, v14)
+            v3 += v4 + m[s[14]];
+            v14 = Long.rotateRight(v14 ^ v3, 32);
+            v9 += v14;
+            v4 = Long.rotateRight(v4 ^ v9, 24);
+            v3 += v4 + m[s[15]];
+            v14 = Long.rotateRight(v14 ^ v3, 16);
+            v9 += v14;
+            v4 = Long.rotateRight(v4 ^ v9, 63);
+        }
+        h[0] ^= v0 ^ v8;
+        h[1] ^= v1 ^ v9;
+        h[2] ^= v2 ^ v10;
+        h[3] ^= v3 ^ v11;
+        h[4] ^= v4 ^ v12;
+        h[5] ^= v5 ^ v13;
+        h[6] ^= v6 ^ v14;
+        h[7] ^= v7 ^ v15;
+    }
+}
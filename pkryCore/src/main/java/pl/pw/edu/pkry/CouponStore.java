@@ -0,0 +1,234 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Magazyn kuponów (l, r_p = g^l mod p) przygotowanych zawczasu (faza offline).
+ * Przy podpisie (faza online) pozostaje wtedy jedynie skrót i wyznaczenie s_p.
+ * Plik kuponów (proxy.coupons, obok klucza proxy) ma nagłówek z parametrami p, g i r klucza proxy oraz
+ * rekordy stałej długości, dopisywane wyłącznie na końcu. Zawiera tajne wartości l - znajomość l i podpisu
+ * złożonego z jego użyciem ujawnia klucz proxy s = (s_p - l) * e^(-1) mod q - dlatego plik tworzony jest
+ * z prawami tylko dla właściciela (rw-------) i należy go chronić tak jak proxy.key.
+ * Zużycie kuponu zapisywane jest w osobnym pliku (proxy.coupons.used) przez dopisanie jednego bajtu
+ * i wymuszenie zapisu na dysk PRZED użyciem kuponu - po awarii kupon może przepaść, ale nigdy nie zostanie
+ * użyty dwukrotnie (ponowne użycie l ujawniłoby klucz proxy s). Zużyty rekord jest następnie zamazywany
+ * w pliku kuponów, zanim l trafi do podpisu, więc plik nie przechowuje l żadnego złożonego podpisu.
+ */
+public final class CouponStore {
+
+    private static final String MAGIC = "pkry-coupons";
+
+    /**
+     * Monitory magazynów według rzeczywistej ścieżki pliku. Blokada pliku chroni przed innymi procesami,
+     * ale w obrębie jednej JVM druga blokada tego samego pliku kończy się OverlappingFileLockException,
+     * dlatego wątki wszystkich instancji magazynu danego pliku najpierw czekają na wspólny monitor.
+     */
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final Path file, used;
+
+    /**
+     * Długość nagłówka i pojedynczego rekordu w bajtach
+     */
+    private final int headerLength, recordLength;
+
+    private CouponStore(Path file, BigInteger p, BigInteger g, BigInteger r) {
+        this.file = file;
+        this.used = Paths.get(file.toString() + ".used");
+        this.headerLength = header(p, g, r).length;
+        this.recordLength = 2 * p.toString(16).length() + 2;
+    }
+
+    /**
+     * Ścieżka magazynu kuponów odpowiadającego kluczowi proxy (proxy.key - proxy.coupons); każdy
+     * klucz proxy ma własny magazyn
+     * @param proxyKeyPath ścieżka klucza proxy lub odwołanie do klucza w magazynie kluczy
+     * @return ścieżka magazynu kuponów
+     */
+    public static Path storePath(String proxyKeyPath) {
+        String base = proxyKeyPath.endsWith(".key") ? proxyKeyPath.substring(0, proxyKeyPath.length() - 4) : proxyKeyPath;
+        return Paths.get(base + ".coupons");
+    }
+
+    /**
+     * Otwarcie magazynu kuponów
+     * @param file ścieżka magazynu
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param r część klucza proxy, do którego należy magazyn
+     * @return magazyn lub null, gdy plik nie istnieje albo dotyczy innego klucza publicznego lub klucza proxy
+     */
+    public static CouponStore open(Path file, BigInteger p, BigInteger g, BigInteger r) {
+        if (!file.toFile().exists()) {
+            return null;
+        }
+        CouponStore store = new CouponStore(file, p, g, r);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(store.headerLength);
+            channel.read(header, 0);
+            if (!header.hasRemaining() && Arrays.equals(header.array(), header(p, g, r))) {
+                return store;
+            }
+        } catch (IOException ex) {
+            // nieczytelny magazyn traktujemy jak brak kuponów
+        }
+        return null;
+    }
+
+    /**
+     * Dopisanie kuponów na końcu magazynu (tworzonego z prawami tylko dla właściciela, gdy nie istnieje)
+     * @param file ścieżka magazynu
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param r część klucza proxy, do którego należy magazyn
+     * @param coupons pary {l, r_p}
+     * @throws IOException także gdy magazyn należy do innego klucza
+     */
+    public static void append(Path file, BigInteger p, BigInteger g, BigInteger r, List<BigInteger[]> coupons) throws IOException {
+        CouponStore store = new CouponStore(file, p, g, r);
+        ownerOnly(file);
+        synchronized (monitor(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+                channel.lock(); // zwalniana przy zamknięciu kanału
+                store.append(channel, coupons, header(p, g, r));
+            }
+        }
+    }
+
+    private void append(FileChannel channel, List<BigInteger[]> coupons, byte[] header) throws IOException {
+        long size = channel.size();
+        if (size < headerLength) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(header), 0);
+            size = headerLength;
+        } else {
+            ByteBuffer existing = ByteBuffer.allocate(headerLength);
+            channel.read(existing, 0);
+            if (!Arrays.equals(existing.array(), header)) {
+                throw new IOException("Coupon file " + file + " belongs to another key");
+            }
+        }
+        // niepełny rekord pozostały po awarii jest odrzucany
+        long end = size - (size - headerLength) % recordLength;
+        channel.truncate(end);
+        ByteBuffer buffer = ByteBuffer.allocate(coupons.size() * recordLength);
+        for (BigInteger[] coupon : coupons) {
+            buffer.put(record(coupon[0], coupon[1]));
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            end += channel.write(buffer, end);
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Pobranie kolejnego kuponu: trwałe oznaczenie go jako zużytego, a po odczycie - zamazanie rekordu
+     * w pliku kuponów (również trwałe)
+     * @return para {l, r_p} lub null, gdy kupony się wyczerpały
+     * @throws IOException
+     */
+    public BigInteger[] take() throws IOException {
+        synchronized (monitor(file)) {
+            try (FileChannel log = FileChannel.open(used, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+                    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                log.lock(); // zwalniana przy zamknięciu kanału
+                long index = log.size();
+                long available = (channel.size() - headerLength) / recordLength;
+                if (index >= available) {
+                    return null;
+                }
+                log.write(ByteBuffer.wrap(new byte[]{'x'}), index);
+                log.force(true);
+                ByteBuffer record = ByteBuffer.allocate(recordLength);
+                long position = headerLength + index * recordLength;
+                while (record.hasRemaining() && channel.read(record, position + record.position()) > 0) {
+                    // odczyt do zapełnienia rekordu
+                }
+                String tmp[] = new String(record.array(), StandardCharsets.US_ASCII).trim().split("#");
+                BigInteger[] coupon = {new BigInteger(tmp[0], 16), new BigInteger(tmp[1], 16)};
+                // po awarii przed zamazaniem w pliku zostaje jedynie l kuponu, który nie trafił do podpisu
+                ByteBuffer wiped = ByteBuffer.wrap(wiped());
+                while (wiped.hasRemaining()) {
+                    channel.write(wiped, position + wiped.position());
+                }
+                channel.force(false);
+                return coupon;
+            }
+        }
+    }
+
+    /**
+     * @return liczba kuponów pozostałych do użycia
+     * @throws IOException
+     */
+    public long remaining() throws IOException {
+        long consumed = used.toFile().exists() ? used.toFile().length() : 0;
+        return Math.max(0, (file.toFile().length() - headerLength) / recordLength - consumed);
+    }
+
+    /**
+     * Utworzenie pliku z prawami rw------- lub odebranie tych praw innym użytkownikom, gdy plik
+     * już istnieje (na systemach bez uprawnień POSIX plik tworzony jest zwyczajnie)
+     */
+    private static void ownerOnly(Path file) throws IOException {
+        try {
+            if (file.toFile().exists()) {
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+            } else {
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+        } catch (UnsupportedOperationException ex) {
+            if (!file.toFile().exists()) {
+                Files.createFile(file);
+            }
+        }
+    }
+
+    /**
+     * Monitor magazynu wspólny dla wszystkich instancji danego pliku w procesie
+     */
+    private static Object monitor(Path file) throws IOException {
+        return MONITORS.computeIfAbsent(file.toRealPath(), path -> new Object());
+    }
+
+    /**
+     * Rekord zamazanego kuponu (nie zawiera cyfr, więc nie da się go wziąć za kupon)
+     */
+    private byte[] wiped() {
+        byte[] record = new byte[recordLength];
+        Arrays.fill(record, (byte) '-');
+        record[recordLength - 1] = '\n';
+        return record;
+    }
+
+    private byte[] record(BigInteger l, BigInteger rp) {
+        int width = (recordLength - 2) / 2;
+        return (pad(l.toString(16), width) + "#" + pad(rp.toString(16), width) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String pad(String hex, int width) {
+        StringBuilder sb = new StringBuilder(width);
+        for (int i = hex.length(); i < width; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    private static byte[] header(BigInteger p, BigInteger g, BigInteger r) {
+        return (MAGIC + "#" + p.toString(16) + "#" + g.toString(16) + "#" + r.toString(16) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,329 @@
+package pl.pw.edu.pkry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Długotrwały proces (demon) obsługujący żądania cienkiego klienta.
+ * Wczytane klucze, tablice FixedBase, stany skrótów dokumentów i kod skompilowany przez JIT pozostają
+ * w pamięci między żądaniami, więc pojedyncza operacja nie płaci kosztu startu JVM.
+ * Demon nasłuchuje wyłącznie na interfejsie pętli zwrotnej, a każde połączenie obsługiwane jest
+ * w osobnym wątku z puli o stałym rozmiarze (nadmiarowe połączenia są odrzucane). Dostęp chroni
+ * losowy żeton zapisany w katalogu ~/.pkry w pliku czytelnym tylko dla właściciela. Protokół: jedna linia żądania (pola rozdzielone tabulatorem, pierwsze to żeton)
+ * i jedna linia odpowiedzi: OK, TAB, wynik albo ERR, TAB, komunikat błędu.
+ */
+public final class Daemon {
+
+    private static final String OK = "OK";
+
+    private static final String ERR = "ERR";
+
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Limit czasu oczekiwania na żądanie lub odpowiedź (ms)
+     */
+    private static final int TIMEOUT = 60000;
+
+    /**
+     * Liczba wątków obsługujących połączenia i długość kolejki połączeń czekających na wolny wątek;
+     * kolejne połączenia odrzucane są od razu odpowiedzią ERR zamiast tworzyć następne wątki
+     */
+    static final int WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors()), QUEUE = 64;
+
+    private final ServerSocket server;
+
+    private final Path tokenFile;
+
+    private final String token;
+
+    private final Handler handler;
+
+    private final ExecutorService pool = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE), task -> {
+        Thread t = new Thread(task, "daemon-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Uruchomienie nasłuchu i zapis żetonu dostępu
+     * @param name nazwa usługi (część nazwy pliku żetonu)
+     * @param port numer portu na interfejsie pętli zwrotnej
+     * @param handler obsługa pojedynczego żądania
+     * @throws IOException
+     */
+    public Daemon(String name, int port, Handler handler) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.handler = handler;
+        this.token = new BigInteger(256, Randomness.SOURCE).toString(16);
+        this.tokenFile = tokenPath(name, server.getLocalPort());
+        writeToken(tokenFile, token);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> tokenFile.toFile().delete()));
+    }
+
+    /**
+     * @return numer portu, na którym nasłuchuje demon
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Przyjmowanie połączeń (do zakończenia procesu)
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket = server.accept();
+            try {
+                pool.execute(() -> handle(socket));
+            } catch (RejectedExecutionException ex) {
+                reject(socket);
+            }
+        }
+    }
+
+    /**
+     * Wysłanie żądania do demona (strona klienta)
+     * @param name nazwa usługi
+     * @param port numer portu demona
+     * @param fields pola żądania
+     * @return wynik zwrócony przez demona
+     * @throws IOException gdy demon nie działa albo zwrócił błąd (komunikat błędu w wyjątku)
+     */
+    public static String request(String name, int port, String... fields) throws IOException {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(tokenPath(name, port)), StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new IOException("Daemon is not running on port " + port + "! Try again!");
+        }
+        StringBuilder sb = new StringBuilder(token);
+        for (String field : fields) {
+            if (field.contains(SEPARATOR) || field.contains("\n") || field.contains("\r")) {
+                throw new IOException("Request field " + field + " contains unsupported characters!");
+            }
+            sb.append(SEPARATOR).append(field);
+        }
+        String response;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(TIMEOUT);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(sb.append("\n").toString());
+            out.flush();
+            response = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+        } catch (IOException ex) {
+            throw new IOException("Daemon is not running on port " + port + "! Try again!");
+        }
+        if (response == null) {
+            throw new IOException("Daemon closed the connection! Try again!");
+        }
+        String tmp[] = response.split(SEPARATOR, 2);
+        if (!tmp[0].equals(OK)) {
+            throw new IOException(tmp.length > 1 ? tmp[1] : response);
+        }
+        return tmp.length > 1 ? tmp[1] : "";
+    }
+
+    /**
+     * Ścieżka przekazywana w żądaniu - bezwzględna, bo demon działa w innym katalogu roboczym niż klient
+     * @param path ścieżka względem katalogu roboczego klienta
+     * @return ścieżka bezwzględna
+     */
+    public static String absolute(String path) {
+        return Paths.get(path).toAbsolutePath().normalize().toString();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(TIMEOUT);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+            String response;
+            try {
+                response = OK + SEPARATOR + execute(in.readLine());
+            } catch (IOException | RuntimeException ex) {
+                String message = ex.getMessage() == null ? ex.toString() : ex.getMessage();
+                response = ERR + SEPARATOR + message.replace('\n', ' ').replace('\r', ' ');
+            }
+            out.write(response + "\n");
+            out.flush();
+        } catch (IOException ex) {
+            // klient rozłączył się przed odebraniem odpowiedzi
+        }
+    }
+
+    /**
+     * Odpowiedź na połączenie, dla którego zabrakło miejsca w puli (bez czytania żądania)
+     */
+    private static void reject(Socket socket) {
+        try (Socket s = socket) {
+            Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(ERR + SEPARATOR + "Daemon is busy! Try again!\n");
+            out.flush();
+        } catch (IOException ex) {
+            // klient rozłączył się przed odebraniem odpowiedzi
+        }
+    }
+
+    private String execute(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("Empty request!");
+        }
+        String fields[] = line.split(SEPARATOR, -1);
+        if (!MessageDigest.isEqual(fields[0].getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            throw new IOException("Access denied!");
+        }
+        String request[] = new String[fields.length - 1];
+        System.arraycopy(fields, 1, request, 0, request.length);
+        return handler.handle(request);
+    }
+
+    private static Path tokenPath(String name, int port) {
+        return new File(KeyValidator.home(), name + "-" + port + ".token").toPath();
+    }
+
+    /**
+     * Zapis żetonu do pliku dostępnego tylko dla właściciela (o ile system plików obsługuje uprawnienia POSIX)
+     */
+    private static void writeToken(Path file, String token) throws IOException {
+        File dir = file.getParent().toFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException ex) {
+            Files.createFile(tmp);
+        }
+        Files.write(tmp, token.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Obiekty wczytywane z plików (np. klucze) przechowywane w pamięci demona między żądaniami (LRU);
+     * obiekt wczytywany jest ponownie, gdy któryś z jego plików zmienił rozmiar lub czas modyfikacji
+     * @param <T> rodzaj obiektu
+     */
+    public static final class Loaded<T> {
+
+        private static final int CAPACITY = 16;
+
+        private final Map<String, T> loaded = new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+
+        /**
+         * Blokady wczytywania według klucza - obiekt wczytywany jest raz, nawet gdy prosi o niego
+         * jednocześnie kilka wątków, a wczytywanie innych obiektów nie musi czekać
+         */
+        private final Map<String, Object> loading = new ConcurrentHashMap<>();
+
+        private final Loader<T> loader;
+
+        /**
+         * @param loader wczytanie obiektu z plików
+         */
+        public Loaded(Loader<T> loader) {
+            this.loader = loader;
+        }
+
+        /**
+         * @param paths ścieżki plików, z których wczytywany jest obiekt
+         * @return obiekt z pamięci lub wczytany ponownie
+         * @throws IOException gdy obiektu nie da się wczytać (komunikat wyjątku PkryException)
+         */
+        public T get(String... paths) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (String path : paths) {
+                File file = new File(path);
+                sb.append(path).append('|').append(file.length()).append('|').append(file.lastModified()).append('|');
+            }
+            String key = sb.toString();
+            T value = cached(key);
+            if (value != null) {
+                return value;
+            }
+            Object lock = loading.computeIfAbsent(key, k -> new Object());
+            synchronized (lock) {
+                try {
+                    // obiekt mógł wczytać wątek, który wcześniej trzymał blokadę
+                    value = cached(key);
+                    if (value == null) {
+                        value = loader.load(paths);
+                        synchronized (loaded) {
+                            loaded.put(key, value);
+                        }
+                    }
+                    return value;
+                } catch (PkryException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                } finally {
+                    loading.remove(key, lock);
+                }
+            }
+        }
+
+        private T cached(String key) {
+            synchronized (loaded) {
+                return loaded.get(key);
+            }
+        }
+    }
+
+    /**
+     * Wczytanie obiektu z plików (Loaded)
+     * @param <T> rodzaj obiektu
+     */
+    public interface Loader<T> {
+
+        /**
+         * @param paths ścieżki plików
+         * @return wczytany obiekt
+         * @throws PkryException gdy plików nie da się odczytać lub mają błędną treść
+         */
+        T load(String... paths) throws PkryException;
+    }
+
+    /**
+     * Obsługa pojedynczego żądania; wywoływana współbieżnie z wielu wątków
+     */
+    public interface Handler {
+
+        /**
+         * @param request pola żądania (bez żetonu)
+         * @return wynik przekazywany klientowi (bez znaków nowej linii)
+         * @throws IOException komunikat wyjątku przekazywany jest klientowi
+         */
+        String handle(String[] request) throws IOException;
+    }
+}
@@ -0,0 +1,66 @@
+package pl.pw.edu.pkry;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Funkcje skrótu dostępne przy podpisie. Nazwa funkcji zapisywana jest w podpisie (opcja alg),
+ * więc weryfikacja korzysta automatycznie z tej samej funkcji; podpis bez opcji oznacza SHA-256.
+ * Wszystkie funkcje dają 256-bitowy wynik, więc e oraz liście drzewa Merkle mają stałą długość.
+ * SHA-512/256 i BLAKE2b-256 są szybsze od SHA-256 na procesorach 64-bitowych bez rozkazów SHA.
+ */
+public final class DigestAlgorithms {
+
+    public static final String SHA256 = "SHA-256";
+
+    public static final String SHA512_256 = "SHA-512/256";
+
+    public static final String BLAKE2B_256 = "BLAKE2b-256";
+
+    /**
+     * Funkcja używana, gdy podpis nie zawiera opcji alg
+     */
+    public static final String DEFAULT = SHA256;
+
+    private DigestAlgorithms() {
+    }
+
+    /**
+     * Sprawdzenie nazwy funkcji skrótu
+     * @param name nazwa funkcji
+     * @return name
+     * @throws IllegalArgumentException gdy funkcja nie jest obsługiwana
+     */
+    public static String check(String name) {
+        if (SHA256.equals(name) || SHA512_256.equals(name) || BLAKE2B_256.equals(name)) {
+            return name;
+        }
+        throw new IllegalArgumentException("Unsupported digest algorithm " + name);
+    }
+
+    /**
+     * Utworzenie obiektu liczącego skrót; SHA-512/256 pochodzi od dostawcy JDK (Java 9+),
+     * a gdy go brak - z implementacji Sha512t256
+     * @param name nazwa funkcji
+     * @return MessageDigest
+     * @throws IllegalArgumentException gdy funkcja nie jest obsługiwana
+     */
+    public static MessageDigest newDigest(String name) {
+        switch (check(name)) {
+            case BLAKE2B_256:
+                return new Blake2b();
+            case SHA512_256:
+                try {
+                    return MessageDigest.getInstance(SHA512_256);
+                } catch (NoSuchAlgorithmException ex) {
+                    return new Sha512t256();
+                }
+            default:
+                try {
+                    return MessageDigest.getInstance(SHA256);
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new IllegalStateException("Algorithm SHA-256 was not found!", ex);
+                }
+        }
+    }
+}
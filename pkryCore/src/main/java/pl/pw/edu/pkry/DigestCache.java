@@ -0,0 +1,171 @@
+package pl.pw.edu.pkry;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pamięć podręczna stanów pośrednich skrótu dokumentu.
+ * Ponieważ e = SHA-256(m || r_p), kosztowna część (skrót treści m) nie zależy od podpisu.
+ * Stan skrótu po przetworzeniu pliku przechowywany jest w pamięci (LRU) oraz opcjonalnie na dysku
+ * (katalog digests w ~/.pkry lub wskazanym przez właściwość pkry.home), pod kluczem złożonym ze
+ * ścieżki, rozmiaru i czasu modyfikacji pliku. Kolejny podpis lub weryfikacja tego samego pliku
+ * dopisuje jedynie kilka bajtów do kopii zapamiętanego stanu.
+ * Na dysku zapisywany jest wyłącznie stan SHA-256; stany pozostałych funkcji skrótu pamiętane są
+ * tylko w procesie (np. w demonie).
+ */
+public final class DigestCache {
+
+    private static final String DIRECTORY = "digests";
+
+    /**
+     * Maksymalna liczba stanów pamiętanych w procesie
+     */
+    private static final int CAPACITY = 64;
+
+    private static final Map<String, MessageDigest> CACHE = new LinkedHashMap<String, MessageDigest>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MessageDigest> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private DigestCache() {
+    }
+
+    /**
+     * Skrót SHA-256 z dopisaną treścią pliku (kopia zapamiętanego stanu lub stan liczony od nowa)
+     * @param file ścieżka pliku
+     * @param persistent czy stan ma być odczytywany i zapisywany również na dysku
+     * @return skrót, do którego można dopisać dalsze bajty
+     * @throws IOException
+     */
+    public static MessageDigest get(Path file, boolean persistent) throws IOException {
+        return get(file, DigestAlgorithms.DEFAULT, persistent);
+    }
+
+    /**
+     * Skrót wskazaną funkcją z dopisaną treścią pliku (kopia zapamiętanego stanu lub stan liczony od nowa)
+     * @param file ścieżka pliku
+     * @param algorithm nazwa funkcji skrótu
+     * @param persistent czy stan ma być odczytywany i zapisywany również na dysku (tylko SHA-256)
+     * @return skrót, do którego można dopisać dalsze bajty
+     * @throws IOException
+     */
+    public static MessageDigest get(Path file, String algorithm, boolean persistent) throws IOException {
+        boolean sha256 = DigestAlgorithms.check(algorithm).equals(DigestAlgorithms.SHA256);
+        persistent = persistent && sha256;
+        String key = sha256 ? key(file) : algorithm + "|" + key(file);
+        MessageDigest md;
+        synchronized (CACHE) {
+            md = CACHE.get(key);
+        }
+        if (md == null && persistent) {
+            md = load(key);
+        }
+        Metrics.count(md == null ? Metrics.DIGEST_CACHE_MISSES : Metrics.DIGEST_CACHE_HITS);
+        if (md == null) {
+            md = FileDigest.update(file, persistent ? new Sha256() : DigestAlgorithms.newDigest(algorithm));
+            if (persistent) {
+                store(key, (Sha256) md);
+            }
+        }
+        synchronized (CACHE) {
+            CACHE.put(key, md);
+        }
+        try {
+            return (MessageDigest) md.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String key(Path file) throws IOException {
+        File f = file.toFile();
+        if (!f.isFile()) {
+            throw new IOException("File " + file + " does not exist");
+        }
+        return f.getCanonicalPath() + "|" + f.length() + "|" + f.lastModified();
+    }
+
+    private static File entry(String key) {
+        byte[] hash = newDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+        return new File(new File(KeyValidator.home(), DIRECTORY), new BigInteger(1, hash).toString(16));
+    }
+
+    /**
+     * Odczyt stanu z dysku (format: klucz, liczba bajtów, słowa h, niepełny blok - po jednym w linii)
+     */
+    private static MessageDigest load(String key) {
+        File file = entry(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).equals(key)) {
+                return null;
+            }
+            long count = Long.parseLong(lines.get(1), 16);
+            String words[] = lines.get(2).split(",");
+            int[] h = new int[words.length];
+            for (int i = 0; i < words.length; i++) {
+                h[i] = (int) Long.parseLong(words[i], 16);
+            }
+            String tail = lines.size() > 3 ? lines.get(3) : "";
+            byte[] tailBytes = new byte[tail.length() / 2];
+            for (int i = 0; i < tailBytes.length; i++) {
+                tailBytes[i] = (byte) Integer.parseInt(tail.substring(2 * i, 2 * i + 2), 16);
+            }
+            return Sha256.importState(new Sha256.State(h, count, tailBytes));
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static void store(String key, Sha256 md) {
+        Sha256.State state = md.exportState();
+        StringBuilder sb = new StringBuilder();
+        sb.append(key).append("\n").append(Long.toHexString(state.getCount())).append("\n");
+        for (int i = 0; i < state.getH().length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(Integer.toHexString(state.getH()[i]));
+        }
+        sb.append("\n");
+        for (byte b : state.getTail()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        sb.append("\n");
+        File file = entry(key);
+        try {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                return;
+            }
+            File tmp = new File(dir, file.getName() + ".tmp");
+            Files.write(tmp.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            // brak zapisu oznacza jedynie ponowne liczenie skrótu przy kolejnym uruchomieniu
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Algorithm SHA-256 was not found!", ex);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+
+/**
+ * Krzywa eliptyczna y^2 = x^3 - 3x + b nad ciałem F_p rzędu pierwszego n (wariant EC schematu
+ * delegowanego podpisu: punkt G zamiast g, n zamiast q, dodawanie punktów zamiast mnożenia mod p).
+ * Obsługiwana jest krzywa P-256 (NIST FIPS 186-4, secp256r1) o kofaktorze 1 - każdy punkt krzywej
+ * różny od punktu w nieskończoności należy do grupy rzędu n.
+ * Arytmetyka ciała wykonywana jest w postaci Montgomery'ego, punkty w trakcie obliczeń przechowywane są
+ * we współrzędnych Jacobiego (bez odwracania elementów), a tablice punktów - we współrzędnych afinicznych.
+ * Na zewnątrz punkty reprezentowane są liczbą odpowiadającą postaci skompresowanej SEC1
+ * (bajt 02 lub 03 i 32 bajty współrzędnej x), co pozwala zapisywać je tak jak wartości schematu nad Z*p.
+ */
+public final class EllipticCurve {
+
+    /**
+     * Nazwa krzywej P-256
+     */
+    public static final String P256_NAME = "P-256";
+
+    /**
+     * Znacznik wersji plików kluczy wariantu EC (ec1#krzywa#wartości)
+     */
+    public static final String KEY_VERSION = "ec1";
+
+    /**
+     * Szerokość okna w mnożeniu punktu przez skalar
+     */
+    private static final int WINDOW = 4;
+
+    /**
+     * Liczba roboczych elementów ciała (9 pomocniczych i 3 współrzędne akumulatora)
+     */
+    private static final int TEMPS = 12;
+
+    public static final EllipticCurve P256 = new EllipticCurve(P256_NAME,
+            new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16),
+            new BigInteger("5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b", 16),
+            new BigInteger("ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551", 16),
+            new BigInteger("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296", 16),
+            new BigInteger("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5", 16));
+
+    private final String name;
+
+    /**
+     * Moduł ciała, współczynnik b, rząd grupy oraz zakodowany punkt bazowy G
+     */
+    private final BigInteger p, b, n, generator;
+
+    /**
+     * Liczba bajtów współrzędnej
+     */
+    private final int length;
+
+    /**
+     * (p + 1) / 4 - wykładnik pierwiastka kwadratowego (p = 3 mod 4)
+     */
+    private final BigInteger sqrtExponent;
+
+    private final Montgomery field;
+
+    private final BigInteger[] g;
+
+    /**
+     * Tablica wielokrotności G: base[i][d] = d * 2^(WINDOW * i) * G (budowana przy pierwszym użyciu)
+     */
+    private volatile PointTable[] base = null;
+
+    /**
+     * Elementy robocze wątku
+     */
+    private final ThreadLocal<int[][]> scratch;
+
+    private EllipticCurve(String name, BigInteger p, BigInteger b, BigInteger n, BigInteger gx, BigInteger gy) {
+        this.name = name;
+        this.p = p;
+        this.b = b;
+        this.n = n;
+        this.length = (p.bitLength() + 7) / 8;
+        this.sqrtExponent = p.add(BigInteger.ONE).shiftRight(2);
+        this.field = Montgomery.forModulus(p);
+        this.g = new BigInteger[]{gx, gy};
+        this.generator = encode(gx, gy);
+        this.scratch = new ThreadLocal<int[][]>() {
+            @Override
+            protected int[][] initialValue() {
+                int[][] temps = new int[TEMPS][];
+                for (int i = 0; i < TEMPS; i++) {
+                    temps[i] = field.element();
+                }
+                return temps;
+            }
+        };
+    }
+
+    /**
+     * Krzywa o podanej nazwie
+     * @param name nazwa krzywej (P-256)
+     * @return krzywa
+     * @throws IllegalArgumentException gdy krzywa nie jest obsługiwana
+     */
+    public static EllipticCurve forName(String name) {
+        if (P256_NAME.equals(name)) {
+            return P256;
+        }
+        throw new IllegalArgumentException("Unsupported elliptic curve " + name);
+    }
+
+    /**
+     * @return nazwa krzywej
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return moduł ciała p
+     */
+    public BigInteger getPrime() {
+        return p;
+    }
+
+    /**
+     * @return rząd n grupy punktów (odpowiednik q)
+     */
+    public BigInteger getOrder() {
+        return n;
+    }
+
+    /**
+     * @return zakodowany punkt bazowy G
+     */
+    public BigInteger getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Sprawdzenie, czy liczba koduje punkt krzywej różny od punktu w nieskończoności
+     * @param point zakodowany punkt
+     * @return true, gdy punkt jest poprawny
+     */
+    public boolean isPoint(BigInteger point) {
+        try {
+            decode(point);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * k * G z użyciem tablicy wielokrotności punktu bazowego (bez podwajania)
+     * @param k skalar (redukowany modulo n)
+     * @return zakodowany punkt k * G (0 dla punktu w nieskończoności)
+     */
+    public BigInteger multiplyBase(BigInteger k) {
+        PointTable[] table = baseTable();
+        int[][] w = scratch.get();
+        int[][] acc = accumulator(w);
+        setInfinity(acc);
+        addBase(table, k.mod(n), acc, w, field.buffer());
+        return encode(acc);
+    }
+
+    /**
+     * k * P
+     * @param point zakodowany punkt P
+     * @param k skalar (redukowany modulo n)
+     * @return zakodowany punkt k * P (0 dla punktu w nieskończoności)
+     * @throws IllegalArgumentException gdy point nie jest punktem krzywej
+     */
+    public BigInteger multiply(BigInteger point, BigInteger k) {
+        return multiplyAdd(BigInteger.ZERO, k, table(point));
+    }
+
+    /**
+     * P + Q
+     * @param a zakodowany punkt P
+     * @param b zakodowany punkt Q
+     * @return zakodowany punkt P + Q (0 dla punktu w nieskończoności)
+     * @throws IllegalArgumentException gdy a lub b nie jest punktem krzywej
+     */
+    public BigInteger add(BigInteger a, BigInteger b) {
+        int[][] pa = affine(decode(a)), pb = affine(decode(b));
+        int[][] w = scratch.get();
+        int[][] acc = accumulator(w);
+        System.arraycopy(pa[0], 0, acc[0], 0, pa[0].length);
+        System.arraycopy(pa[1], 0, acc[1], 0, pa[1].length);
+        field.setOne(acc[2]);
+        addAffine(acc, pb[0], pb[1], acc, w, field.buffer());
+        return encode(acc);
+    }
+
+    /**
+     * Tablica wielokrotności 1..15 punktu (dla wielokrotnych mnożeń tego samego punktu)
+     * @param point zakodowany punkt
+     * @return tablica punktu
+     * @throws IllegalArgumentException gdy point nie jest punktem krzywej
+     */
+    public PointTable table(BigInteger point) {
+        BigInteger[] xy = decode(point);
+        return multiples(xy[0], xy[1]);
+    }
+
+    /**
+     * a * G + b * P, gdzie P zadany jest tablicą wielokrotności - jedno przejście okna dla P
+     * (podwojenia) z dodawaniem punktów z tablicy G
+     * @param a skalar dla G (redukowany modulo n)
+     * @param b skalar dla P (redukowany modulo n)
+     * @param table tablica punktu P
+     * @return zakodowany punkt (0 dla punktu w nieskończoności)
+     */
+    public BigInteger multiplyAdd(BigInteger a, BigInteger b, PointTable table) {
+        PointTable[] gTable = baseTable();
+        int[][] w = scratch.get();
+        int[] t = field.buffer();
+        int[][] acc = accumulator(w);
+        setInfinity(acc);
+        BigInteger e = b.mod(n);
+        for (int i = (e.bitLength() + WINDOW - 1) / WINDOW - 1; i >= 0; i--) {
+            for (int k = 0; k < WINDOW; k++) {
+                twice(acc, acc, w, t);
+            }
+            int d = digit(e, i);
+            if (d != 0) {
+                addAffine(acc, table.x[d], table.y[d], acc, w, t);
+            }
+        }
+        addBase(gTable, a.mod(n), acc, w, t);
+        return encode(acc);
+    }
+
+    /**
+     * Postać skompresowana punktu (x, y)
+     * @param x współrzędna x
+     * @param y współrzędna y
+     * @return (2 + y mod 2) * 2^(8 * długość) + x
+     */
+    public BigInteger encode(BigInteger x, BigInteger y) {
+        return BigInteger.valueOf(y.testBit(0) ? 3 : 2).shiftLeft(8 * length).or(x);
+    }
+
+    /**
+     * Odtworzenie współrzędnych punktu z postaci skompresowanej (z pełnym sprawdzeniem)
+     * @param point zakodowany punkt
+     * @return {x, y}
+     * @throws IllegalArgumentException gdy liczba nie koduje punktu krzywej
+     */
+    public BigInteger[] decode(BigInteger point) {
+        if (point.signum() <= 0 || point.bitLength() > 8 * length + 2) {
+            throw new IllegalArgumentException("Elliptic curve point is badly formatted");
+        }
+        int prefix = point.shiftRight(8 * length).intValue();
+        BigInteger x = point.subtract(BigInteger.valueOf(prefix).shiftLeft(8 * length));
+        if ((prefix != 2 && prefix != 3) || x.compareTo(p) >= 0) {
+            throw new IllegalArgumentException("Elliptic curve point is badly formatted");
+        }
+        BigInteger rhs = x.multiply(x).subtract(BigInteger.valueOf(3)).multiply(x).add(b).mod(p);
+        BigInteger y = rhs.modPow(sqrtExponent, p);
+        if (!y.multiply(y).mod(p).equals(rhs)) {
+            throw new IllegalArgumentException("Elliptic curve point is not on the curve " + name);
+        }
+        if (y.testBit(0) != (prefix == 3)) {
+            y = p.subtract(y);
+        }
+        return new BigInteger[]{x, y};
+    }
+
+    /**
+     * Wielokrotności punktu we współrzędnych afinicznych (postać Montgomery'ego)
+     */
+    public static final class PointTable {
+
+        final int[][] x, y;
+
+        PointTable(int size) {
+            this.x = new int[size][];
+            this.y = new int[size][];
+        }
+    }
+
+    private PointTable[] baseTable() {
+        PointTable[] table = base;
+        if (table == null) {
+            synchronized (this) {
+                table = base;
+                if (table == null) {
+                    int windows = (n.bitLength() + WINDOW - 1) / WINDOW;
+                    table = new PointTable[windows];
+                    BigInteger[] point = g;
+                    for (int i = 0; i < windows; i++) {
+                        table[i] = multiples(point[0], point[1]);
+                        point = next(table[i], i == windows - 1);
+                    }
+                    base = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 2^WINDOW * P na podstawie tablicy wielokrotności P
+     */
+    private BigInteger[] next(PointTable table, boolean last) {
+        if (last) {
+            return null;
+        }
+        int[][] w = scratch.get();
+        int[][] acc = accumulator(w);
+        int top = (1 << WINDOW) - 1;
+        System.arraycopy(table.x[top], 0, acc[0], 0, acc[0].length);
+        System.arraycopy(table.y[top], 0, acc[1], 0, acc[1].length);
+        field.setOne(acc[2]);
+        addAffine(acc, table.x[1], table.y[1], acc, w, field.buffer());
+        return toAffine(acc);
+    }
+
+    /**
+     * Tablica d * P dla d = 1..15 (indeks 0 nieużywany)
+     */
+    private PointTable multiples(BigInteger x, BigInteger y) {
+        PointTable table = new PointTable(1 << WINDOW);
+        int[][] point = affine(new BigInteger[]{x, y});
+        table.x[1] = point[0];
+        table.y[1] = point[1];
+        int[][] w = scratch.get();
+        int[] t = field.buffer();
+        int[][] acc = accumulator(w);
+        System.arraycopy(point[0], 0, acc[0], 0, point[0].length);
+        System.arraycopy(point[1], 0, acc[1], 0, point[1].length);
+        field.setOne(acc[2]);
+        for (int d = 2; d < (1 << WINDOW); d++) {
+            addAffine(acc, point[0], point[1], acc, w, t);
+            int[][] next = affine(toAffine(acc));
+            table.x[d] = next[0];
+            table.y[d] = next[1];
+        }
+        return table;
+    }
+
+    /**
+     * acc = acc + k * G (jedno dodawanie na okno skalara)
+     */
+    private void addBase(PointTable[] table, BigInteger k, int[][] acc, int[][] w, int[] t) {
+        int windows = Math.min(table.length, (k.bitLength() + WINDOW - 1) / WINDOW);
+        for (int i = 0; i < windows; i++) {
+            int d = digit(k, i);
+            if (d != 0) {
+                addAffine(acc, table[i].x[d], table[i].y[d], acc, w, t);
+            }
+        }
+    }
+
+    private static int digit(BigInteger k, int window) {
+        int d = 0;
+        for (int j = WINDOW - 1; j >= 0; j--) {
+            d <<= 1;
+            if (k.testBit(window * WINDOW + j)) {
+                d |= 1;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Podwojenie punktu (współrzędne Jacobiego, a = -3); out może być tożsame z q
+     */
+    private void twice(int[][] q, int[][] out, int[][] w, int[] t) {
+        if (isZero(q[2])) {
+            setInfinity(out);
+            return;
+        }
+        int[] delta = w[0], gamma = w[1], beta = w[2], alpha = w[3], u = w[4];
+        field.multiply(q[2], q[2], delta, t);
+        field.multiply(q[1], q[1], gamma, t);
+        field.multiply(q[0], gamma, beta, t);
+        // alpha = 3 * (X - delta) * (X + delta)
+        field.subtract(q[0], delta, u);
+        field.add(q[0], delta, alpha);
+        field.multiply(u, alpha, alpha, t);
+        field.add(alpha, alpha, u);
+        field.add(u, alpha, alpha);
+        // Z3 = (Y + Z)^2 - gamma - delta
+        field.add(q[1], q[2], u);
+        field.multiply(u, u, u, t);
+        field.subtract(u, gamma, u);
+        field.subtract(u, delta, out[2]);
+        // X3 = alpha^2 - 8 * beta
+        field.add(beta, beta, beta);
+        field.add(beta, beta, beta);
+        field.multiply(alpha, alpha, u, t);
+        field.subtract(u, beta, u);
+        field.subtract(u, beta, out[0]);
+        // Y3 = alpha * (4 * beta - X3) - 8 * gamma^2
+        field.subtract(beta, out[0], beta);
+        field.multiply(alpha, beta, beta, t);
+        field.multiply(gamma, gamma, gamma, t);
+        field.add(gamma, gamma, gamma);
+        field.add(gamma, gamma, gamma);
+        field.add(gamma, gamma, gamma);
+        field.subtract(beta, gamma, out[1]);
+    }
+
+    /**
+     * Dodanie punktu afinicznego (x2, y2) do punktu q we współrzędnych Jacobiego; out może być tożsame z q
+     */
+    private void addAffine(int[][] q, int[] x2, int[] y2, int[][] out, int[][] w, int[] t) {
+        if (isZero(q[2])) {
+            System.arraycopy(x2, 0, out[0], 0, x2.length);
+            System.arraycopy(y2, 0, out[1], 0, y2.length);
+            field.setOne(out[2]);
+            return;
+        }
+        int[] z1z1 = w[0], u2 = w[1], s2 = w[2], h = w[3], hh = w[4], i = w[5], j = w[6], r = w[7], v = w[8];
+        field.multiply(q[2], q[2], z1z1, t);
+        field.multiply(x2, z1z1, u2, t);
+        field.multiply(y2, q[2], s2, t);
+        field.multiply(s2, z1z1, s2, t);
+        field.subtract(u2, q[0], h);
+        field.subtract(s2, q[1], r);
+        if (isZero(h)) {
+            if (isZero(r)) {
+                System.arraycopy(x2, 0, out[0], 0, x2.length);
+                System.arraycopy(y2, 0, out[1], 0, y2.length);
+                field.setOne(out[2]);
+                twice(out, out, w, t);
+            } else {
+                setInfinity(out);
+            }
+            return;
+        }
+        field.add(r, r, r);
+        field.multiply(h, h, hh, t);
+        field.add(hh, hh, i);
+        field.add(i, i, i);
+        field.multiply(h, i, j, t);
+        field.multiply(q[0], i, v, t);
+        // Z3 = (Z1 + H)^2 - Z1Z1 - HH
+        field.add(q[2], h, u2);
+        field.multiply(u2, u2, u2, t);
+        field.subtract(u2, z1z1, u2);
+        field.subtract(u2, hh, out[2]);
+        field.multiply(q[1], j, s2, t);
+        // X3 = r^2 - J - 2 * V
+        field.multiply(r, r, u2, t);
+        field.subtract(u2, j, u2);
+        field.subtract(u2, v, u2);
+        field.subtract(u2, v, out[0]);
+        // Y3 = r * (V - X3) - 2 * Y1 * J
+        field.subtract(v, out[0], v);
+        field.multiply(r, v, v, t);
+        field.add(s2, s2, s2);
+        field.subtract(v, s2, out[1]);
+    }
+
+    private int[][] accumulator(int[][] w) {
+        return new int[][]{w[TEMPS - 3], w[TEMPS - 2], w[TEMPS - 1]};
+    }
+
+    private static boolean isZero(int[] a) {
+        for (int word : a) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setInfinity(int[][] q) {
+        for (int[] c : q) {
+            for (int i = 0; i < c.length; i++) {
+                c[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Współrzędne afiniczne {x, y} punktu Jacobiego lub null dla punktu w nieskończoności
+     */
+    private BigInteger[] toAffine(int[][] q) {
+        if (isZero(q[2])) {
+            return null;
+        }
+        BigInteger z = field.fromMontgomery(q[2]).modInverse(p);
+        BigInteger z2 = z.multiply(z).mod(p);
+        BigInteger x = field.fromMontgomery(q[0]).multiply(z2).mod(p);
+        BigInteger y = field.fromMontgomery(q[1]).multiply(z2).multiply(z).mod(p);
+        return new BigInteger[]{x, y};
+    }
+
+    /**
+     * Współrzędne afiniczne w postaci Montgomery'ego
+     */
+    private int[][] affine(BigInteger[] xy) {
+        int[][] point = new int[][]{field.element(), field.element()};
+        field.toMontgomery(xy[0], point[0]);
+        field.toMontgomery(xy[1], point[1]);
+        return point;
+    }
+
+    private BigInteger encode(int[][] q) {
+        BigInteger[] xy = toAffine(q);
+        return xy == null ? BigInteger.ZERO : encode(xy[0], xy[1]);
+    }
+}
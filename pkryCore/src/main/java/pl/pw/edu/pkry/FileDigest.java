@@ -0,0 +1,119 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Strumieniowe liczenie skrótu zawartości pliku przy stałym zużyciu pamięci.
+ * Małe i średnie pliki czytane są przez FileChannel do bufora bezpośredniego (jednego na wątek,
+ * używanego ponownie), duże - odwzorowywane w pamięć kolejnymi fragmentami. Plik nigdy nie jest
+ * w całości kopiowany do tablicy bajtów na stercie. Treść ze strumienia (np. dokument przekazany
+ * do biblioteki) czytana jest fragmentami do bufora wątku.
+ */
+public final class FileDigest {
+
+    /**
+     * Rozmiar bufora odczytu
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Rozmiar pliku, od którego używane jest odwzorowanie w pamięć
+     */
+    private static final long MAP_THRESHOLD = 64L << 20;
+
+    /**
+     * Rozmiar pojedynczego odwzorowanego fragmentu
+     */
+    private static final long MAP_REGION = 256L << 20;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    private static final ThreadLocal<byte[]> ARRAY = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private FileDigest() {
+    }
+
+    /**
+     * Uzupełnienie skrótu o treść strumienia (strumień nie jest zamykany)
+     * @param in strumień
+     * @param md skrót, do którego dopisywana jest treść
+     * @return md (z dopisaną treścią strumienia)
+     * @throws IOException
+     */
+    public static MessageDigest update(InputStream in, MessageDigest md) throws IOException {
+        byte[] buffer = ARRAY.get();
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            md.update(buffer, 0, read);
+            total += read;
+        }
+        Metrics.add(Metrics.BYTES_HASHED, total);
+        return md;
+    }
+
+    /**
+     * Skrót podpisywanej wiadomości ze strumienia: cała treść albo - dla chunk &gt; 0 - korzeń drzewa
+     * Merkle z fragmentów treści (MerkleTree.message)
+     * @param in strumień (nie jest zamykany)
+     * @param chunk rozmiar fragmentu lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @return skrót, do którego można dopisać r_p lub wartość pomocniczą weryfikacji
+     * @throws IOException
+     */
+    public static MessageDigest message(InputStream in, int chunk, String algorithm) throws IOException {
+        long start = Metrics.start();
+        try {
+            if (chunk > 0) {
+                return MerkleTree.message(MerkleTree.root(MerkleTree.leaves(in, chunk, algorithm), algorithm), chunk, DigestAlgorithms.newDigest(algorithm));
+            }
+            return update(in, DigestAlgorithms.newDigest(algorithm));
+        } finally {
+            Metrics.record(Metrics.HASH, start);
+        }
+    }
+
+    /**
+     * Uzupełnienie skrótu o zawartość pliku
+     * @param file ścieżka pliku
+     * @param md skrót, do którego dopisywana jest zawartość
+     * @return md (z dopisaną zawartością pliku)
+     * @throws IOException
+     */
+    public static MessageDigest update(Path file, MessageDigest md) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_REGION) {
+                    md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_REGION, size - position)));
+                }
+            } else {
+                ByteBuffer buffer = BUFFER.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    md.update(buffer);
+                    buffer.clear();
+                }
+            }
+            Metrics.add(Metrics.BYTES_HASHED, size);
+        }
+        return md;
+    }
+}
@@ -0,0 +1,301 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Potęgowanie o stałej podstawie metodą grzebieniową (Lim-Lee).
+ * Wykładnik o długości bits dzielony jest na h wierszy po a = ceil(bits/h) bitów, a tablica
+ * zawiera iloczyny g^(2^(j*a)) dla wszystkich podzbiorów wierszy. Potęga g^e wymaga wtedy
+ * a kwadratów i co najwyżej a mnożeń zamiast ok. bits kwadratów i bits/2 mnożeń w modPow.
+ * Elementy tablicy przechowywane są w postaci Montgomery'ego, a akumulator jest buforem wątku,
+ * więc potęgowanie nie tworzy obiektów pośrednich (zob. Montgomery).
+ * Tablice budowane są raz dla danej pary (g, p) i przechowywane w pamięci; mogą być też
+ * zapisane do pliku obok klucza publicznego (public.table). Plik nie jest uwierzytelniony, więc
+ * wczytana tablica jest w całości sprawdzana względem podstaw wierszy liczonych od nowa z g.
+ */
+public final class FixedBase {
+
+    /**
+     * Maksymalna liczba wierszy grzebienia (tablica ma 2^h elementów)
+     */
+    private static final int MAX_ROWS = 8;
+
+    /**
+     * Tablice zbudowane w tym procesie, indeksowane parą (p, g)
+     */
+    private static final Map<String, FixedBase> CACHE = new ConcurrentHashMap<>();
+
+    private final BigInteger g, p;
+
+    private final Montgomery ctx;
+
+    /**
+     * Obsługiwana długość bitowa wykładnika
+     */
+    private final int bits;
+
+    /**
+     * Liczba wierszy (h) i kolumn (a) grzebienia
+     */
+    private final int rows, cols;
+
+    /**
+     * table[i] = iloczyn g^(2^(j*a)) po bitach j ustawionych w i (w postaci Montgomery'ego)
+     */
+    private final int[][] table;
+
+    /**
+     * Akumulator potęgowania (jeden na wątek)
+     */
+    private final ThreadLocal<int[]> acc;
+
+    private FixedBase(BigInteger g, BigInteger p, int bits, Montgomery ctx, int[][] table) {
+        this.g = g;
+        this.p = p;
+        this.bits = bits;
+        this.rows = Integer.numberOfTrailingZeros(table.length);
+        this.cols = (bits + rows - 1) / rows;
+        this.ctx = ctx;
+        this.table = table;
+        this.acc = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return ctx.element();
+            }
+        };
+    }
+
+    /**
+     * Tablica dla podstawy g modulo p (z pamięci podręcznej procesu lub budowana od nowa)
+     * @param g stała podstawa
+     * @param p moduł
+     * @param bits maksymalna długość bitowa wykładnika
+     * @return silnik potęgowania o stałej podstawie
+     */
+    public static FixedBase forBase(BigInteger g, BigInteger p, int bits) {
+        String key = key(g, p);
+        FixedBase fb = CACHE.get(key);
+        if (fb == null || fb.bits < bits) {
+            fb = build(g, p, bits);
+            CACHE.put(key, fb);
+        }
+        return fb;
+    }
+
+    /**
+     * Tablica dla podstawy g modulo p wczytana z pliku, a gdy go brak (lub nie pasuje) - zbudowana
+     * @param g stała podstawa
+     * @param p moduł
+     * @param bits maksymalna długość bitowa wykładnika
+     * @param file plik z zapisaną tablicą
+     * @return silnik potęgowania o stałej podstawie
+     */
+    public static FixedBase forBase(BigInteger g, BigInteger p, int bits, Path file) {
+        String key = key(g, p);
+        FixedBase fb = CACHE.get(key);
+        if (fb == null || fb.bits < bits) {
+            fb = load(file, g, p);
+            if (fb == null || fb.bits < bits) {
+                fb = build(g, p, bits);
+            }
+            CACHE.put(key, fb);
+        }
+        return fb;
+    }
+
+    /**
+     * Tablica dla podstawy g modulo p budowana z pominięciem pamięci podręcznej procesu
+     * (dla podstaw zmiennych, przechowywanych przez wywołującego)
+     * @param g stała podstawa
+     * @param p moduł
+     * @param bits maksymalna długość bitowa wykładnika
+     * @return silnik potęgowania o stałej podstawie
+     */
+    public static FixedBase create(BigInteger g, BigInteger p, int bits) {
+        return build(g, p, bits);
+    }
+
+    /**
+     * Ścieżka pliku tablicy odpowiadającego plikowi klucza publicznego (public.key - public.table)
+     * @param publicKeyPath ścieżka klucza publicznego
+     * @return ścieżka pliku tablicy
+     */
+    public static Path tablePath(String publicKeyPath) {
+        String base = publicKeyPath.endsWith(".key") ? publicKeyPath.substring(0, publicKeyPath.length() - 4) : publicKeyPath;
+        return Paths.get(base + ".table");
+    }
+
+    /**
+     * Obliczenie g^e mod p
+     * @param e wykładnik
+     * @return g^e mod p
+     */
+    public BigInteger pow(BigInteger e) {
+        if (e.signum() < 0) {
+            return g.modPow(e, p);
+        }
+        int[] result = acc.get();
+        pow(e, result);
+        return ctx.fromMontgomery(result);
+    }
+
+    /**
+     * Obliczenie g^e mod p w postaci Montgomery'ego (bez tworzenia obiektów)
+     * @param e nieujemny wykładnik
+     * @param out element wynikowy kontekstu getContext()
+     */
+    public void pow(BigInteger e, int[] out) {
+        if (e.bitLength() > bits) {
+            ctx.pow(table[1], e, out);
+            return;
+        }
+        int[] t = ctx.buffer();
+        ctx.setOne(out);
+        for (int col = cols - 1; col >= 0; col--) {
+            ctx.multiply(out, out, out, t);
+            int idx = 0;
+            for (int row = rows - 1; row >= 0; row--) {
+                idx <<= 1;
+                if (e.testBit(row * cols + col)) {
+                    idx |= 1;
+                }
+            }
+            if (idx != 0) {
+                ctx.multiply(out, table[idx], out, t);
+            }
+        }
+    }
+
+    /**
+     * @return kontekst arytmetyki modulo p, w którym liczone są potęgi
+     */
+    public Montgomery getContext() {
+        return ctx;
+    }
+
+    /**
+     * Zapis tablicy do pliku tekstowego (nagłówek bits#h#p#g, następnie elementy tablicy)
+     * @param file ścieżka pliku
+     * @throws IOException
+     */
+    public void save(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Integer.toString(bits, 16)).append("#").append(Integer.toString(rows, 16)).append("#")
+                .append(p.toString(16)).append("#").append(g.toString(16)).append("\n");
+        for (int[] t : table) {
+            sb.append(ctx.fromMontgomery(t).toString(16)).append("\n");
+        }
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Wczytanie tablicy z pliku. Każdy element jest sprawdzany: podstawy wierszy g^(2^(j*a)) liczone
+     * są od nowa z g, a pozostałe elementy muszą być iloczynami odpowiednich podstaw - zmieniony plik
+     * nie może więc wpłynąć na wynik potęgowania (zostanie odrzucony, a tablica zbudowana od nowa).
+     * @param file ścieżka pliku
+     * @param g oczekiwana podstawa
+     * @param p oczekiwany moduł
+     * @return tablica lub null, gdy plik nie istnieje, jest uszkodzony, niespójny lub dotyczy innej podstawy
+     */
+    public static FixedBase load(Path file, BigInteger g, BigInteger p) {
+        if (file == null || !file.toFile().exists()) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            String header[] = lines.get(0).split("#");
+            int bits = Integer.parseInt(header[0], 16);
+            int rows = Integer.parseInt(header[1], 16);
+            if (bits < 1 || bits > p.bitLength() || rows < 1 || rows > Math.min(MAX_ROWS, bits)
+                    || !p.equals(new BigInteger(header[2], 16)) || !g.equals(new BigInteger(header[3], 16))) {
+                return null;
+            }
+            Montgomery ctx = Montgomery.forModulus(p);
+            int[][] table = new int[1 << rows][];
+            for (int i = 0; i < table.length; i++) {
+                BigInteger t = new BigInteger(lines.get(i + 1).trim(), 16);
+                if (t.signum() < 0 || t.compareTo(p) >= 0) {
+                    return null;
+                }
+                table[i] = ctx.element();
+                ctx.toMontgomery(t, table[i]);
+            }
+            return consistent(ctx, g, bits, table) ? new FixedBase(g, p, bits, ctx, table) : null;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Sprawdzenie wczytanej tablicy: table[0] = 1, table[2^j] = g^(2^(j*a)), a dla pozostałych i
+     * table[i] = table[i bez najwyższego bitu] * table[najwyższy bit i]
+     */
+    private static boolean consistent(Montgomery ctx, BigInteger g, int bits, int[][] table) {
+        int rows = Integer.numberOfTrailingZeros(table.length);
+        int cols = (bits + rows - 1) / rows;
+        int[] expected = ctx.element();
+        ctx.setOne(expected);
+        if (!Arrays.equals(expected, table[0])) {
+            return false;
+        }
+        ctx.toMontgomery(g, expected);
+        for (int j = 0; j < rows; j++) {
+            if (j > 0) {
+                for (int i = 0; i < cols; i++) {
+                    ctx.multiply(expected, expected, expected);
+                }
+            }
+            if (!Arrays.equals(expected, table[1 << j])) {
+                return false;
+            }
+        }
+        for (int i = 3; i < table.length; i++) {
+            int high = 31 - Integer.numberOfLeadingZeros(i);
+            if (i != 1 << high) {
+                ctx.multiply(table[i ^ (1 << high)], table[1 << high], expected);
+                if (!Arrays.equals(expected, table[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static FixedBase build(BigInteger g, BigInteger p, int bits) {
+        bits = Math.max(bits, 1);
+        int rows = Math.min(MAX_ROWS, bits);
+        int cols = (bits + rows - 1) / rows;
+        Montgomery ctx = Montgomery.forModulus(p);
+        int[][] base = new int[rows][];
+        base[0] = ctx.element();
+        ctx.toMontgomery(g, base[0]);
+        for (int j = 1; j < rows; j++) {
+            base[j] = base[j - 1].clone();
+            for (int i = 0; i < cols; i++) {
+                ctx.multiply(base[j], base[j], base[j]);
+            }
+        }
+        int[][] table = new int[1 << rows][];
+        table[0] = ctx.element();
+        ctx.setOne(table[0]);
+        for (int i = 1; i < table.length; i++) {
+            int high = 31 - Integer.numberOfLeadingZeros(i);
+            table[i] = ctx.element();
+            ctx.multiply(table[i ^ (1 << high)], base[high], table[i]);
+        }
+        return new FixedBase(g, p, bits, ctx, table);
+    }
+
+    private static String key(BigInteger g, BigInteger p) {
+        return p.toString(16) + "#" + g.toString(16);
+    }
+}
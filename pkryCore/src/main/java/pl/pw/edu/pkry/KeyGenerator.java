@@ -0,0 +1,233 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import pl.pw.edu.pkry.AKS.AKS;
+
+/**
+ * Generacja kluczy właściciela (mocodawcy): klucza publicznego (p, g, q, y) i prywatnego x,
+ * a w wariancie EC - punktu Y = x * G i skalara x.
+ * Obiekt nie ma stanu zmiennego, więc może być używany współbieżnie.
+ */
+public final class KeyGenerator {
+
+    /**
+     * Domyślna długość bitowa generowanej liczby p
+     */
+    public static final int DEFAULT_LENGTH = 20;
+
+    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+
+    /**
+     * Rozkłady na czynniki pierwsze policzone w tym procesie (klucz: liczba i parametr duplicates)
+     */
+    private static final Map<Map.Entry<BigInteger, Boolean>, List<BigInteger>> FACTORS = new ConcurrentHashMap<>();
+
+    /**
+     * Długość bitowa p (schemat nad Z*p)
+     */
+    private final int length;
+
+    /**
+     * Krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    private final EllipticCurve curve;
+
+    public KeyGenerator() {
+        this(DEFAULT_LENGTH);
+    }
+
+    /**
+     * Generator kluczy schematu nad Z*p
+     * @param length długość bitowa p
+     */
+    public KeyGenerator(int length) {
+        if (length < 3) {
+            throw new IllegalArgumentException("Key length must be at least 3 bits");
+        }
+        this.length = length;
+        this.curve = null;
+    }
+
+    /**
+     * Generator kluczy wariantu EC
+     * @param curve krzywa eliptyczna
+     */
+    public KeyGenerator(EllipticCurve curve) {
+        this.length = curve.getPrime().bitLength();
+        this.curve = curve;
+    }
+
+    /**
+     * Wygenerowanie nowej pary kluczy; dla p mieszczącego się w słowie maszynowym parametry liczone
+     * są wariantem long (LongKeygen)
+     * @return klucze właściciela
+     */
+    public OwnerKeys generate() {
+        Metrics.count(Metrics.KEYS_GENERATED);
+        if (curve != null) {
+            BigInteger x = genX(curve.getOrder());
+            long start = Metrics.start();
+            BigInteger y = curve.multiplyBase(x);
+            Metrics.record(Metrics.EXPONENTIATE, start);
+            return new OwnerKeys(curve, curve.getPrime(), curve.getGenerator(), curve.getOrder(), y, x);
+        }
+        if (LongKeygen.fits(length)) {
+            long start = Metrics.start();
+            long lp = LongKeygen.genP(length, Randomness.SOURCE);
+            long lq = LongKeygen.genQ(lp);
+            long lg = LongKeygen.genG(lp, lq);
+            Metrics.record(Metrics.PRIMES, start);
+            long lx = LongKeygen.genX(lp, Randomness.SOURCE);
+            start = Metrics.start();
+            long ly = LongKeygen.genY(lg, lx, lp);
+            Metrics.record(Metrics.EXPONENTIATE, start);
+            return new OwnerKeys(null, BigInteger.valueOf(lp), BigInteger.valueOf(lg), BigInteger.valueOf(lq), BigInteger.valueOf(ly), BigInteger.valueOf(lx));
+        }
+        long start = Metrics.start();
+        BigInteger p = genP(length);
+        BigInteger q = genQ(p);
+        BigInteger g = genG(p, q);
+        Metrics.record(Metrics.PRIMES, start);
+        BigInteger x = genX(p);
+        start = Metrics.start();
+        BigInteger y = genY(g, x, p);
+        Metrics.record(Metrics.EXPONENTIATE, start);
+        return new OwnerKeys(null, p, g, q, y, x);
+    }
+
+    /**
+     * @return krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    /**
+     * Generacja Y (część klucza publicznego)
+     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
+     * @param x fragment klucza prywatnego
+     * @param p duża liczba pierwsza
+     * @return BigInteger y
+     */
+    public static BigInteger genY(BigInteger g, BigInteger x, BigInteger p) {
+        return FixedBase.forBase(g, p, p.bitLength()).pow(x);
+    }
+
+    /**
+     * Generacja X (klucz prywatny)
+     * @param n liczpa pierwsza
+     * @return losowa liczba z przedziału (1,n)
+     */
+    public static BigInteger genX(BigInteger n) {
+        BigInteger result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        while (result.compareTo(n.subtract(BigInteger.ONE)) == 1 || result.compareTo(TWO) == -1) {
+                result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        }
+        return result;
+    }
+
+    /**
+     * Generacja G (fragment klucza publicznego)
+     * @param p duża liczba pierwsza
+     * @param q największy czynnik pierwszy (p-1)
+     * @return element Z*p rzędu q
+     */
+    public static BigInteger genG(BigInteger p, BigInteger q) {
+        BigInteger num = BigInteger.ONE;
+        boolean tmp = false;
+        BigInteger pmin1 = p.subtract(BigInteger.ONE);
+        while (!tmp || num.equals(pmin1)) {
+            num = num.add(BigInteger.ONE);
+            BigInteger math = num.modPow(q, p);
+            if (math.equals(BigInteger.ONE)) {
+                if(genAlowerQ(p, num, q).equals(q)) {
+                    tmp = true;
+                }
+            }
+        }
+        return num;
+    }
+
+    /**
+     * Weryfikacja generacji parametru q względem znalezionego g (czy najmniejszy możliwy)
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
+     * @param q największy czynnik pierwszy (p-1)
+     * @return BigInteger q
+     */
+    public static BigInteger genAlowerQ(BigInteger p, BigInteger g, BigInteger q) {
+        BigInteger a = BigInteger.ONE;
+        while(a.compareTo(q) == -1) {
+            if(g.modPow(a, p).equals(BigInteger.ONE)) {
+                return a; 
+            }
+            a = a.add(BigInteger.ONE);
+        }
+        return q;
+    }
+
+    /**
+     * Generacja Q (część klucza publicznego)
+     * @param p duża liczba pierwsza
+     * @return największy czynnik pierwszy liczby (p-1)
+     */
+    public static BigInteger genQ(BigInteger p) {
+        List<BigInteger> primeFactors = factors(p.subtract(new BigInteger("1")), false);
+        return primeFactors.get(primeFactors.size() - 1); // wybieramy ostatnią  - najwiękzy czynnik (MOŻNA ZMIENIĆ!)
+    }
+
+    /**
+     * Generacja P (część klucza publicznego)
+     * @param length ilość bitów jaką ma mieć generowana liczba
+     * @return liczba pierwsza o zadanej wielkości bitowej
+     */
+    public static BigInteger genP(int length) {
+        BigInteger rand = null;
+        boolean isPrime = false;
+
+        while (!isPrime) {
+            rand = new BigInteger(length, 100, Randomness.SOURCE);
+            AKS primeTest = new AKS(rand);
+            isPrime = primeTest.isPrime();
+        }
+        return rand;
+    }
+
+    /**
+     * Rozkład liczby na czynniki pierwsze
+     * @param n liczba rozkładana
+     * @param duplicates czy mają być zwracane duplikaty
+     * @return listę BigInteger'ów będących liczbami pierwszymi z rozkładu liczby n (niemodyfikowalną)
+     */
+    public static List<BigInteger> factors(BigInteger n, boolean duplicates) {
+        Map.Entry<BigInteger, Boolean> key = new AbstractMap.SimpleImmutableEntry<>(n, duplicates);
+        List<BigInteger> f = FACTORS.get(key);
+        if (f == null) {
+            f = new ArrayList<>();
+            BigInteger last = BigInteger.ZERO;
+            for (BigInteger i = TWO; i.compareTo(n.divide(i)) <= 0; i = i.add(BigInteger.ONE)) {
+                while (n.mod(i).equals(BigInteger.ZERO)) {
+                    if (duplicates || !i.equals(last)) {
+                        f.add(i);
+                        last = i;
+                    }
+                    n = n.divide(i);
+                }
+            }
+            if (n.compareTo(BigInteger.ONE) > 0) {
+                if (duplicates || !n.equals(last)) {
+                    f.add(n);
+                }
+            }
+            f = Collections.unmodifiableList(f);
+            FACTORS.put(key, f);
+        }
+        return f;
+    }
+}
@@ -0,0 +1,486 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Magazyn wielu kluczy właścicieli i pełnomocników w jednym pliku.
+ * Klucze identyfikowane są 64-bitowym odciskiem (ID): pierwsze 8 bajtów SHA-256 binarnej postaci
+ * klucza publicznego (dla klucza proxy - jego części publicznej r); klucz prywatny właściciela
+ * zapisywany jest pod ID klucza publicznego.
+ * Układ pliku: nagłówek (64 bajty: "PKKS", wersja, położenie i rozmiar bieżącego indeksu, koniec
+ * danych, liczba kluczy), a dalej wyłącznie dopisywane indeksy i rekordy. Rekord: długość (4 bajty),
+ * rodzaj klucza, ID, ID właściciela (po 8 bajtów) i klucz w postaci binarnej (BinaryFormat). Indeks to
+ * tablica mieszająca z adresowaniem otwartym (pozycje: ID i położenie rekordu); po przekroczeniu 3/4
+ * zajętości na końcu pliku zapisywany jest indeks dwukrotnie większy, a nagłówek wskazuje nowy.
+ * Odczyt odbywa się bez blokad z pliku odwzorowanego w pamięć: wyszukanie klucza dekoduje tylko
+ * znaleziony rekord, a nieudane wyszukanie odświeża odwzorowanie, gdy plik urósł. Zapis (także z wielu
+ * procesów - keygen, proxyKeygen) chroniony jest blokadą pliku; nowy klucz staje się widoczny po
+ * przesunięciu końca danych w nagłówku.
+ * Klucz z magazynu wskazuje się w miejscu ścieżki pliku klucza odwołaniem magazyn#ID.
+ */
+public final class KeyStore {
+
+    /**
+     * Separator ścieżki magazynu i ID w odwołaniu do klucza
+     */
+    public static final char REFERENCE = '#';
+
+    private static final byte[] MAGIC = {'P', 'K', 'K', 'S'};
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 64;
+
+    /**
+     * Położenia pól nagłówka: indeks (położenie << 8 | log2 liczby pozycji), koniec danych, liczba kluczy
+     */
+    private static final int INDEX = 8, DATA_END = 16, COUNT = 24;
+
+    private static final int SLOT = 16;
+
+    private static final int RECORD_HEADER = 4 + 1 + 8 + 8;
+
+    private static final int INITIAL_SLOTS_LOG = 12;
+
+    /**
+     * Blokada zapisu w obrębie procesu (blokada pliku chroni jedynie przed innymi procesami)
+     */
+    private static final Object LOCK = new Object();
+
+    private static final Map<Path, KeyStore> OPEN = new ConcurrentHashMap<>();
+
+    private final Path path;
+
+    /**
+     * Bieżące odwzorowanie pliku do odczytu
+     */
+    private volatile View view;
+
+    private KeyStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Otwarcie magazynu (wspólne dla całego procesu); nieistniejący plik to pusty magazyn
+     * @param path ścieżka pliku magazynu
+     * @return magazyn
+     * @throws IOException gdy pliku nie da się odczytać lub ma błędny format
+     */
+    public static KeyStore open(Path path) throws IOException {
+        Path normalized = path.toAbsolutePath().normalize();
+        KeyStore store = OPEN.get(normalized);
+        if (store == null) {
+            store = new KeyStore(normalized);
+            store.view = store.map();
+            KeyStore previous = OPEN.putIfAbsent(normalized, store);
+            if (previous != null) {
+                store = previous;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * ID klucza: pierwsze 8 bajtów SHA-256 binarnej postaci jego części publicznej
+     * @param type rodzaj klucza (BinaryFormat.PUBLIC_KEY lub PROXY_KEY)
+     * @param label nazwa krzywej lub pusty tekst
+     * @param values wartości publiczne (p, g, q, y lub Y dla klucza publicznego; r dla klucza proxy)
+     * @return ID
+     */
+    public static long id(byte type, String label, BigInteger... values) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(BinaryFormat.encode(type, label, values));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Algorithm SHA-256 was not found!", ex);
+        }
+    }
+
+    /**
+     * @param id ID klucza
+     * @return postać szesnastkowa ID (16 znaków)
+     */
+    public static String format(long id) {
+        String hex = Long.toHexString(id);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * @param text postać szesnastkowa ID
+     * @return ID
+     * @throws IllegalArgumentException gdy tekst nie jest poprawnym ID
+     */
+    public static long parseId(String text) {
+        if (text.length() != 16) {
+            throw new IllegalArgumentException("Key ID " + text + " is badly formatted");
+        }
+        try {
+            return Long.parseUnsignedLong(text, 16);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Key ID " + text + " is badly formatted", ex);
+        }
+    }
+
+    /**
+     * Odczyt klucza wskazanego ścieżką pliku (w postaci tekstowej lub binarnej) albo odwołaniem magazyn#ID
+     * @param reference ścieżka pliku klucza lub odwołanie do klucza w magazynie
+     * @param type rodzaj klucza
+     * @return klucz lub null, gdy plik lub klucz nie istnieje
+     * @throws IOException gdy pliku nie da się odczytać
+     * @throws IllegalArgumentException gdy klucz ma błędny format
+     */
+    public static BinaryFormat.Record read(String reference, byte type) throws IOException {
+        long start = Metrics.start();
+        try {
+            Path file = Paths.get(reference);
+            if (Files.isRegularFile(file)) {
+                return BinaryFormat.read(Files.readAllBytes(file), type);
+            }
+            int separator = reference.lastIndexOf(REFERENCE);
+            Path store = separator > 0 ? Paths.get(reference.substring(0, separator)) : null;
+            if (store == null || !Files.isRegularFile(store)) {
+                return null;
+            }
+            Entry entry = open(store).get(type, parseId(reference.substring(separator + 1)));
+            return entry == null ? null : entry.getKey();
+        } finally {
+            Metrics.record(Metrics.PARSE, start);
+        }
+    }
+
+    /**
+     * Odczyt klucza jak w read, z błędem zgłaszanym wyjątkiem wskazującym rodzaj klucza
+     * @param reference ścieżka pliku klucza lub odwołanie do klucza w magazynie
+     * @param type rodzaj klucza
+     * @return klucz
+     * @throws MalformedKeyException gdy klucza nie ma, nie da się go odczytać lub ma błędny format
+     */
+    public static BinaryFormat.Record readKey(String reference, byte type) throws MalformedKeyException {
+        BinaryFormat.Record key;
+        try {
+            key = read(reference, type);
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new MalformedKeyException(type);
+        }
+        if (key == null) {
+            throw new MalformedKeyException(type);
+        }
+        return key;
+    }
+
+    /**
+     * @param store ścieżka magazynu
+     * @param id ID klucza
+     * @return odwołanie do klucza w magazynie (magazyn#ID)
+     */
+    public static String reference(Path store, long id) {
+        return store.toString() + REFERENCE + format(id);
+    }
+
+    /**
+     * Wyszukanie klucza (bez blokad; może być wołane współbieżnie)
+     * @param type rodzaj klucza
+     * @param id ID klucza
+     * @return wpis lub null, gdy klucza nie ma w magazynie
+     * @throws IOException gdy pliku nie da się odczytać lub ma błędny format
+     */
+    public Entry get(byte type, long id) throws IOException {
+        View current = view;
+        Entry entry = current.find(type, id);
+        if (entry == null && current.isStale(path)) {
+            entry = refresh(current).find(type, id);
+        }
+        return entry;
+    }
+
+    /**
+     * @return liczba kluczy w magazynie
+     * @throws IOException
+     */
+    public long size() throws IOException {
+        View current = view;
+        return current.isStale(path) ? refresh(current).count : current.count;
+    }
+
+    /**
+     * Ponowne odwzorowanie pliku (o ile inny wątek nie zrobił tego już po ostatnim dopisaniu)
+     */
+    private synchronized View refresh(View stale) throws IOException {
+        if (view == stale || view.isStale(path)) {
+            view = map();
+        }
+        return view;
+    }
+
+    /**
+     * Dopisanie kluczy (pominięte zostają klucze już obecne w magazynie); tworzy plik, gdy nie istnieje
+     * @param entries wpisy
+     * @return liczba dopisanych kluczy
+     * @throws IOException
+     */
+    public int add(Entry... entries) throws IOException {
+        int added = 0;
+        synchronized (LOCK) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock(); // zwalniana przy zamknięciu kanału
+                if (channel.size() < HEADER) {
+                    initialize(channel);
+                }
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+                checkHeader(header);
+                long index = header.getLong(INDEX);
+                long end = header.getLong(DATA_END);
+                long count = header.getLong(COUNT);
+                MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE, index >>> 8, SLOT << (index & 0xff));
+                for (Entry entry : entries) {
+                    if (contains(channel, slots, entry.type, entry.id)) {
+                        continue;
+                    }
+                    if ((count + 1) * 4 > (slots.capacity() / SLOT) * 3L) {
+                        index = end << 8 | ((index & 0xff) + 1);
+                        slots = grow(channel, slots, end, (int) (index & 0xff));
+                        end += slots.capacity();
+                        header.putLong(DATA_END, end);
+                        header.putLong(INDEX, index);
+                    }
+                    ByteBuffer record = entry.encode();
+                    if (end + record.remaining() > Integer.MAX_VALUE) {
+                        throw new IOException("Keystore " + path + " is full");
+                    }
+                    long offset = end;
+                    while (record.hasRemaining()) {
+                        end += channel.write(record, end);
+                    }
+                    insert(slots, entry.id, offset);
+                    header.putLong(COUNT, ++count);
+                    header.putLong(DATA_END, end);
+                    added++;
+                }
+                channel.force(false);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Odwzorowanie pliku do odczytu
+     */
+    private View map() throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return View.EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                return View.EMPTY;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            checkHeader(header);
+            long end = header.getLong(DATA_END);
+            long index = header.getLong(INDEX);
+            long slots = SLOT << (index & 0xff);
+            if (end > channel.size() || end > Integer.MAX_VALUE || (index >>> 8) + slots > end) {
+                throw new IOException("Keystore " + path + " is badly formatted");
+            }
+            return new View(channel.map(FileChannel.MapMode.READ_ONLY, 0, end), index, end, header.getLong(COUNT));
+        }
+    }
+
+    private void checkHeader(ByteBuffer header) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                throw new IOException("File " + path + " is not a keystore");
+            }
+        }
+        if (header.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported keystore version " + header.getInt(MAGIC.length));
+        }
+    }
+
+    private static void initialize(FileChannel channel) throws IOException {
+        int slots = 1 << INITIAL_SLOTS_LOG;
+        ByteBuffer data = ByteBuffer.allocate(HEADER + slots * SLOT);
+        data.put(MAGIC).putInt(VERSION);
+        data.putLong(INDEX, (long) HEADER << 8 | INITIAL_SLOTS_LOG);
+        data.putLong(DATA_END, data.capacity());
+        data.putLong(COUNT, 0);
+        data.clear();
+        while (data.hasRemaining()) {
+            channel.write(data, data.position());
+        }
+    }
+
+    /**
+     * Zapis indeksu o pojemności 2^log pozycji od położenia offset z pozycjami indeksu slots
+     */
+    private static MappedByteBuffer grow(FileChannel channel, MappedByteBuffer slots, long offset, int log) throws IOException {
+        MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) SLOT << log);
+        for (int i = 0; i < slots.capacity(); i += SLOT) {
+            long record = slots.getLong(i + 8);
+            if (record != 0) {
+                insert(grown, slots.getLong(i), record);
+            }
+        }
+        return grown;
+    }
+
+    private static void insert(ByteBuffer slots, long id, long offset) {
+        int mask = slots.capacity() / SLOT - 1;
+        int i = hash(id) & mask;
+        while (slots.getLong(i * SLOT + 8) != 0) {
+            i = (i + 1) & mask;
+        }
+        slots.putLong(i * SLOT, id);
+        slots.putLong(i * SLOT + 8, offset);
+    }
+
+    /**
+     * Sprawdzenie obecności klucza pod blokadą zapisu (rekordy czytane przez kanał)
+     */
+    private static boolean contains(FileChannel channel, ByteBuffer slots, byte type, long id) throws IOException {
+        int mask = slots.capacity() / SLOT - 1;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER);
+        for (int n = 0, i = hash(id) & mask; n <= mask; n++, i = (i + 1) & mask) {
+            long offset = slots.getLong(i * SLOT + 8);
+            if (offset == 0) {
+                return false;
+            }
+            if (slots.getLong(i * SLOT) == id) {
+                record.clear();
+                channel.read(record, offset);
+                if (record.get(4) == type) {
+                    return true;
+                }
+            }
+        }
+        throw new IOException("Keystore index is full");
+    }
+
+    private static int hash(long id) {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    /**
+     * Klucz w magazynie
+     */
+    public static final class Entry {
+
+        private final byte type;
+
+        private final long id, owner;
+
+        private final ByteBuffer content;
+
+        /**
+         * @param type rodzaj klucza (BinaryFormat)
+         * @param id ID klucza
+         * @param owner ID klucza publicznego właściciela (dla kluczy właściciela - id)
+         * @param content klucz w postaci binarnej (BinaryFormat.encode)
+         */
+        public Entry(byte type, long id, long owner, byte[] content) {
+            this(type, id, owner, ByteBuffer.wrap(content));
+        }
+
+        private Entry(byte type, long id, long owner, ByteBuffer content) {
+            this.type = type;
+            this.id = id;
+            this.owner = owner;
+            this.content = content;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return ID klucza publicznego właściciela
+         */
+        public long getOwner() {
+            return owner;
+        }
+
+        /**
+         * @return odczytany klucz (dekodowany bezpośrednio z odwzorowanego pliku)
+         * @throws IllegalArgumentException gdy rekord ma błędny format
+         */
+        public BinaryFormat.Record getKey() {
+            return BinaryFormat.decode(content, type);
+        }
+
+        private ByteBuffer encode() {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + content.remaining());
+            record.putInt(record.capacity()).put(type).putLong(id).putLong(owner).put(content.duplicate());
+            record.flip();
+            return record;
+        }
+    }
+
+    /**
+     * Odwzorowanie pliku z położeniem indeksu i końcem danych z chwili odwzorowania
+     */
+    private static final class View {
+
+        static final View EMPTY = new View(null, 0, 0, 0);
+
+        final MappedByteBuffer buffer;
+
+        final long index, end, count;
+
+        View(MappedByteBuffer buffer, long index, long end, long count) {
+            this.buffer = buffer;
+            this.index = index;
+            this.end = end;
+            this.count = count;
+        }
+
+        Entry find(byte type, long id) {
+            if (buffer == null) {
+                return null;
+            }
+            int base = (int) (index >>> 8);
+            int mask = (1 << (index & 0xff)) - 1;
+            for (int n = 0, i = hash(id) & mask; n <= mask; n++, i = (i + 1) & mask) {
+                long offset = buffer.getLong(base + i * SLOT + 8);
+                if (offset == 0) {
+                    return null;
+                }
+                if (buffer.getLong(base + i * SLOT) != id || offset + RECORD_HEADER > end) {
+                    continue;
+                }
+                int position = (int) offset;
+                int length = buffer.getInt(position);
+                if (buffer.get(position + 4) == type && buffer.getLong(position + 5) == id && length >= RECORD_HEADER && offset + length <= end) {
+                    ByteBuffer content = buffer.duplicate();
+                    content.limit(position + length).position(position + RECORD_HEADER);
+                    return new Entry(type, id, buffer.getLong(position + 13), content.slice());
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Czy plik zmienił się od chwili odwzorowania (dopisane klucze lub nowy indeks)
+         */
+        boolean isStale(Path path) {
+            if (buffer == null) {
+                return Files.isRegularFile(path);
+            }
+            return buffer.getLong(DATA_END) != end || buffer.getLong(INDEX) != index;
+        }
+    }
+}
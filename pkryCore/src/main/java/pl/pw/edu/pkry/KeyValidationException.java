@@ -0,0 +1,18 @@
+package pl.pw.edu.pkry;
+
+/**
+ * Klucz ma poprawny format, ale nie przechodzi sprawdzenia: niepoprawne parametry klucza publicznego,
+ * certyfikat pierwszości niepotwierdzający p i q, klucz proxy niewydany dla klucza publicznego
+ * lub wygenerowany klucz proxy niespełniający równości weryfikacyjnej
+ */
+public class KeyValidationException extends PkryException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message komunikat błędu
+     */
+    public KeyValidationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,174 @@
+package pl.pw.edu.pkry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Klasa sprawdzająca poprawność parametrów klucza publicznego (p, g, q, y):
+ * pierwszość p i q, podzielność (p - 1) przez q oraz przynależność g i y do podgrupy rzędu q.
+ * Wynik pozytywnej walidacji zapisywany jest w trwałej pamięci podręcznej (plik validated.keys
+ * w katalogu ~/.pkry lub wskazanym przez właściwość pkry.home), indeksowanej skrótem klucza,
+ * dzięki czemu kolejne użycia tego samego klucza nie powtarzają kosztownych sprawdzeń.
+ */
+public final class KeyValidator {
+
+    private static final String CACHE_FILE = "validated.keys";
+
+    /**
+     * Skróty kluczy, które przeszły walidację (wczytywane leniwie z pliku)
+     */
+    private static Set<String> validated = null;
+
+    private KeyValidator() {
+    }
+
+    /**
+     * Walidacja klucza publicznego z użyciem pamięci podręcznej
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q czynnik pierwszy (p-1)
+     * @param y klucz publiczny właściciela
+     * @return true, gdy klucz jest poprawny
+     */
+    public static boolean validate(BigInteger p, BigInteger g, BigInteger q, BigInteger y) {
+        return validate(p, g, q, y, false);
+    }
+
+    /**
+     * Walidacja klucza publicznego z użyciem pamięci podręcznej
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q czynnik pierwszy (p-1)
+     * @param y klucz publiczny właściciela
+     * @param primesProven czy pierwszość p i q została już udowodniona (zweryfikowany certyfikat Pratta) -
+     * wtedy testy Millera-Rabina są pomijane
+     * @return true, gdy klucz jest poprawny
+     */
+    public static synchronized boolean validate(BigInteger p, BigInteger g, BigInteger q, BigInteger y, boolean primesProven) {
+        String fingerprint = fingerprint(p, g, q, y);
+        if (cache().contains(fingerprint)) {
+            return true;
+        }
+        if (!check(p, g, q, y, primesProven)) {
+            return false;
+        }
+        validated.add(fingerprint);
+        try {
+            store(fingerprint);
+        } catch (IOException ex) {
+            // brak zapisu oznacza jedynie ponowną walidację przy kolejnym uruchomieniu
+        }
+        return true;
+    }
+
+    /**
+     * Pełne sprawdzenie parametrów klucza publicznego (bez pamięci podręcznej)
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q czynnik pierwszy (p-1)
+     * @param y klucz publiczny właściciela
+     * @return true, gdy klucz jest poprawny
+     */
+    public static boolean check(BigInteger p, BigInteger g, BigInteger q, BigInteger y) {
+        return check(p, g, q, y, false);
+    }
+
+    /**
+     * Pełne sprawdzenie parametrów klucza publicznego (bez pamięci podręcznej)
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q czynnik pierwszy (p-1)
+     * @param y klucz publiczny właściciela
+     * @param primesProven czy pierwszość p i q została już udowodniona (zweryfikowany certyfikat Pratta)
+     * @return true, gdy klucz jest poprawny
+     */
+    public static boolean check(BigInteger p, BigInteger g, BigInteger q, BigInteger y, boolean primesProven) {
+        if (p.signum() <= 0 || q.signum() <= 0) {
+            return false;
+        }
+        if (!primesProven && (!p.isProbablePrime(100) || !q.isProbablePrime(100))) {
+            return false;
+        }
+        if (!p.subtract(BigInteger.ONE).mod(q).equals(BigInteger.ZERO)) {
+            return false;
+        }
+        return inSubgroup(g, q, p) && inSubgroup(y, q, p);
+    }
+
+    /**
+     * Sprawdzenie, czy a jest elementem Z*p rzędu q (dla q pierwszego: a != 1 oraz a^q = 1)
+     * @param a badany element
+     * @param q rząd podgrupy
+     * @param p duża liczba pierwsza
+     * @return true, gdy a należy do podgrupy rzędu q
+     */
+    private static boolean inSubgroup(BigInteger a, BigInteger q, BigInteger p) {
+        return a.compareTo(BigInteger.ONE) > 0 && a.compareTo(p) < 0 && p.testBit(0) && Montgomery.forModulus(p).modPow(a, q).equals(BigInteger.ONE);
+    }
+
+    /**
+     * Odcisk klucza publicznego - SHA-256 kanonicznej postaci p#g#q#y
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q czynnik pierwszy (p-1)
+     * @param y klucz publiczny właściciela
+     * @return odcisk zapisany szesnastkowo
+     */
+    public static String fingerprint(BigInteger p, BigInteger g, BigInteger q, BigInteger y) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(p.toString(16)).append("#").append(g.toString(16)).append("#").append(q.toString(16)).append("#").append(y.toString(16));
+        MessageDigest mda;
+        try {
+            mda = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Algorithm SHA-256 was not found!", ex);
+        }
+        return new BigInteger(1, mda.digest(sb.toString().getBytes(StandardCharsets.UTF_8))).toString(16);
+    }
+
+    /**
+     * Katalog roboczy narzędzi PKRY (pamięci podręczne)
+     * @return katalog ~/.pkry lub wskazany właściwością pkry.home
+     */
+    public static File home() {
+        return new File(System.getProperty("pkry.home", System.getProperty("user.home") + File.separator + ".pkry"));
+    }
+
+    private static Set<String> cache() {
+        if (validated == null) {
+            validated = new HashSet<>();
+            File file = new File(home(), CACHE_FILE);
+            if (file.exists()) {
+                try {
+                    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                        if (!line.trim().isEmpty()) {
+                            validated.add(line.trim());
+                        }
+                    }
+                } catch (IOException ex) {
+                    // uszkodzona pamięć podręczna - walidujemy od nowa
+                }
+            }
+        }
+        return validated;
+    }
+
+    private static void store(String fingerprint) throws IOException {
+        File dir = home();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        try (OutputStream out = new FileOutputStream(new File(dir, CACHE_FILE), true)) {
+            out.write((fingerprint + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
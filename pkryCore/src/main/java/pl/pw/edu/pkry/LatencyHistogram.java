@@ -0,0 +1,118 @@
+package pl.pw.edu.pkry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram czasów (w nanosekundach) o przedziałach logarytmiczno-liniowych.
+ * Każda potęga dwójki dzielona jest na SUB_BUCKETS równych przedziałów, więc percentyl wyznaczany
+ * jest z błędem względnym poniżej 1/SUB_BUCKETS przy stałej pamięci (kilka KB) dla czasów od
+ * nanosekund do lat. Zapis to kilka operacji bitowych i atomowe zwiększenie licznika - bez blokad
+ * i bez alokacji, więc histogram może być współdzielony przez wątki.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Liczba przedziałów na potęgę dwójki (potęga dwójki)
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * Wartości mniejsze od 2 * SUB_BUCKETS mają własne przedziały
+     */
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Zapis pomiaru
+     * @param nanos czas w nanosekundach (ujemny traktowany jest jak 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return liczba pomiarów
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return średni czas w nanosekundach (0, gdy nie ma pomiarów)
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * @return najdłuższy czas w nanosekundach
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Percentyl czasu - górna granica przedziału, w którym się znajduje (nie większa od maksimum)
+     * @param percentile percentyl z przedziału (0, 100]
+     * @return czas w nanosekundach (0, gdy nie ma pomiarów)
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upper(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return największa wartość przedziału
+     */
+    private static long upper(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        long sub = (index - LINEAR) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
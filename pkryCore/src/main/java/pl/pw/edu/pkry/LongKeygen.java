@@ -0,0 +1,246 @@
+package pl.pw.edu.pkry;
+
+import java.util.Random;
+
+/**
+ * Wariant generacji parametrów klucza na typie prostym long.
+ * Używany automatycznie, gdy długość p mieści się w słowie maszynowym (do MAX_BITS bitów) -
+ * wtedy wszystkie wartości (p, q, g, x, y) oraz rozkład (p - 1) na czynniki obliczane są
+ * bez tworzenia obiektów BigInteger. Metody odpowiadają metodom genP/genQ/genG/genX/genY klasy
+ * KeyGenerator; jedynie genG może wybrać inny element rzędu q (zob. genG).
+ */
+public final class LongKeygen {
+
+    /**
+     * Maksymalna długość bitowa p obsługiwana przez wariant long
+     */
+    public static final int MAX_BITS = 62;
+
+    /**
+     * Podstawy testu Millera-Rabina deterministyczne dla liczb mniejszych od 2^64
+     */
+    private static final long[] MR_BASES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    /**
+     * Zakres sita liczb pierwszych używanych przy rozkładzie na czynniki
+     */
+    private static final int SIEVE_LIMIT = 1 << 16;
+
+    /**
+     * Liczby pierwsze mniejsze od SIEVE_LIMIT (sito Eratostenesa)
+     */
+    private static final int[] PRIMES = sieve(SIEVE_LIMIT);
+
+    private LongKeygen() {
+    }
+
+    /**
+     * Czy liczba o zadanej długości bitowej może być obsłużona wariantem long
+     * @param length ilość bitów p
+     * @return true, gdy length nie przekracza MAX_BITS
+     */
+    public static boolean fits(int length) {
+        return length > 1 && length <= MAX_BITS;
+    }
+
+    /**
+     * Generacja P
+     * @param length ilość bitów jaką ma mieć generowana liczba
+     * @param rand źródło losowości
+     * @return liczba pierwsza o zadanej wielkości bitowej
+     */
+    public static long genP(int length, Random rand) {
+        long high = 1L << (length - 1);
+        while (true) {
+            long candidate = high | (rand.nextLong() & (high - 1));
+            if (isPrime(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Generacja Q
+     * @param p liczba pierwsza
+     * @return największy czynnik pierwszy liczby (p-1)
+     */
+    public static long genQ(long p) {
+        long n = p - 1;
+        long largest = 1;
+        for (int i = 0; i < PRIMES.length; i++) {
+            long f = PRIMES[i];
+            if (f > n / f) {
+                break;
+            }
+            if (n % f == 0) {
+                largest = f;
+                do {
+                    n /= f;
+                } while (n % f == 0);
+            }
+        }
+        // poza zakresem sita: dzielniki postaci 6k +- 1
+        for (long f = 6 * (SIEVE_LIMIT / 6) - 1; f <= n / f; f += 6) {
+            for (long d = f; d <= f + 2; d += 2) {
+                while (n % d == 0) {
+                    largest = d;
+                    n /= d;
+                }
+            }
+        }
+        return n > 1 ? n : largest;
+    }
+
+    /**
+     * Generacja G - element Z*p rzędu q otrzymany jako h^((p-1)/q) dla kolejnych h = 2, 3, ...
+     * (dla q pierwszego każdy taki wynik różny od 1 ma rząd q, więc nie trzeba przeszukiwać Z*p).
+     * W odróżnieniu od KeyGenerator.genG wynik nie musi być najmniejszym elementem rzędu q: tamta
+     * metoda sprawdza kolejne liczby, czyli średnio (p-1)/q potęgowań, co dla p bliskiego 2^62 i q
+     * znacznie mniejszego od p jest zbyt wolne. Klucz pozostaje poprawny - KeyValidator wymaga jedynie,
+     * aby g należał do podgrupy rzędu q - ale dla tego samego p obie ścieżki mogą dać różne g.
+     * @param p liczba pierwsza
+     * @param q największy czynnik pierwszy (p-1)
+     * @return element Z*p rzędu q
+     */
+    public static long genG(long p, long q) {
+        long cofactor = (p - 1) / q;
+        for (long h = 2; h < p; h++) {
+            long num = modPow(h, cofactor, p);
+            if (num != 1) {
+                return num;
+            }
+        }
+        throw new IllegalArgumentException("No element of order " + q + " in Z*" + p);
+    }
+
+    /**
+     * Generacja X (klucz prywatny)
+     * @param n liczba pierwsza
+     * @param rand źródło losowości
+     * @return losowa liczba z przedziału [2, n-1]
+     */
+    public static long genX(long n, Random rand) {
+        long mask = Long.highestOneBit(n) * 2 - 1;
+        long result = rand.nextLong() & mask;
+        while (result > n - 1 || result < 2) {
+            result = rand.nextLong() & mask;
+        }
+        return result;
+    }
+
+    /**
+     * Generacja Y
+     * @param g element Z*p rzędu q
+     * @param x klucz prywatny
+     * @param p liczba pierwsza
+     * @return g^x mod p
+     */
+    public static long genY(long g, long x, long p) {
+        return modPow(g, x, p);
+    }
+
+    /**
+     * Potęgowanie modularne na 64 bitach (metoda kwadratów i mnożeń)
+     * @param base podstawa
+     * @param exp nieujemny wykładnik
+     * @param m moduł (mniejszy od 2^62)
+     * @return base^exp mod m
+     */
+    public static long modPow(long base, long exp, long m) {
+        long result = 1 % m;
+        base %= m;
+        while (exp > 0) {
+            if ((exp & 1) != 0) {
+                result = mulMod(result, base, m);
+            }
+            base = mulMod(base, base, m);
+            exp >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Mnożenie modularne bez przepełnienia
+     * @param a czynnik mniejszy od m
+     * @param b czynnik mniejszy od m
+     * @param m moduł (mniejszy od 2^62)
+     * @return a*b mod m
+     */
+    public static long mulMod(long a, long b, long m) {
+        if (((a | b) >>> 31) == 0) {
+            return a * b % m;
+        }
+        long result = 0;
+        while (b > 0) {
+            if ((b & 1) != 0) {
+                result += a;
+                if (result >= m) {
+                    result -= m;
+                }
+            }
+            a <<= 1;
+            if (a >= m) {
+                a -= m;
+            }
+            b >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Deterministyczny test Millera-Rabina dla liczb 64-bitowych
+     * @param n badana liczba
+     * @return true, gdy n jest liczbą pierwszą
+     */
+    public static boolean isPrime(long n) {
+        if (n < 2) {
+            return false;
+        }
+        for (long b : MR_BASES) {
+            if (n % b == 0) {
+                return n == b;
+            }
+        }
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        for (long b : MR_BASES) {
+            long x = modPow(b, d, n);
+            if (x == 1 || x == n - 1) {
+                continue;
+            }
+            boolean composite = true;
+            for (int i = 1; i < s; i++) {
+                x = mulMod(x, x, n);
+                if (x == n - 1) {
+                    composite = false;
+                    break;
+                }
+            }
+            if (composite) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] sieve(int limit) {
+        boolean[] composite = new boolean[limit];
+        int count = 0;
+        for (int i = 2; i < limit; i++) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j < limit; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        for (int i = 2, k = 0; i < limit; i++) {
+            if (!composite[i]) {
+                primes[k++] = i;
+            }
+        }
+        return primes;
+    }
+}
@@ -0,0 +1,51 @@
+package pl.pw.edu.pkry;
+
+/**
+ * Klucz ma niepoprawny format (nie da się go odczytać, jest innego rodzaju lub innego wariantu schematu)
+ */
+public class MalformedKeyException extends PkryException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Rodzaj klucza (BinaryFormat)
+     */
+    private final byte type;
+
+    /**
+     * @param type rodzaj klucza (BinaryFormat.PUBLIC_KEY, PRIVATE_KEY lub PROXY_KEY)
+     * @param message komunikat błędu
+     */
+    public MalformedKeyException(byte type, String message) {
+        super(message);
+        this.type = type;
+    }
+
+    /**
+     * Wyjątek z komunikatem wskazującym rodzaj klucza
+     * @param type rodzaj klucza (BinaryFormat)
+     */
+    public MalformedKeyException(byte type) {
+        this(type, describe(type) + " file is wrong! Try again!");
+    }
+
+    /**
+     * @return rodzaj klucza (BinaryFormat)
+     */
+    public byte getType() {
+        return type;
+    }
+
+    private static String describe(byte type) {
+        switch (type) {
+            case BinaryFormat.PUBLIC_KEY:
+                return "Public key";
+            case BinaryFormat.PRIVATE_KEY:
+                return "Private key";
+            case BinaryFormat.PROXY_KEY:
+                return "Proxy key";
+            default:
+                return "Key";
+        }
+    }
+}
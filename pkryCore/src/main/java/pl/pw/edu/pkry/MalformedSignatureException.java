@@ -0,0 +1,20 @@
+package pl.pw.edu.pkry;
+
+/**
+ * Podpis ma niepoprawny format lub nieobsługiwane opcje
+ */
+public class MalformedSignatureException extends PkryException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MalformedSignatureException() {
+        super("File signature is badly formatted! Try again!");
+    }
+
+    /**
+     * @param cause przyczyna
+     */
+    public MalformedSignatureException(Throwable cause) {
+        super("File signature is badly formatted! Try again!", cause);
+    }
+}
@@ -0,0 +1,284 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Skrót dokumentu w postaci drzewa Merkle (format podpisu w wersji 2).
+ * Plik dzielony jest na fragmenty stałej długości, których skróty (liście) liczone są równolegle;
+ * podpisywany jest korzeń drzewa zamiast całej treści m, więc duży plik haszowany jest na wszystkich
+ * rdzeniach. Liście zapisywane są obok podpisu (plik .leaves), co pozwala sprawdzić pojedynczy
+ * fragment bez czytania całego pliku.
+ * Liść: H(0x00 || fragment), węzeł: H(0x01 || lewy || prawy), gdzie H to funkcja skrótu podpisu
+ * (domyślnie SHA-256); węzeł bez pary przechodzi na wyższy poziom bez zmian. Pusty plik ma jeden
+ * (pusty) fragment.
+ */
+public final class MerkleTree {
+
+    /**
+     * Domyślny rozmiar fragmentu
+     */
+    public static final int DEFAULT_CHUNK = 1 << 20;
+
+    /**
+     * Najmniejszy dopuszczalny rozmiar fragmentu
+     */
+    public static final int MIN_CHUNK = 1 << 12;
+
+    /**
+     * Rozszerzenie pliku liści (dopisywane do nazwy pliku podpisu)
+     */
+    public static final String LEAVES_EXTENSION = ".leaves";
+
+    private static final int HASH_LENGTH = 32;
+
+    /**
+     * Rozmiar bufora odczytu fragmentu
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte LEAF = 0, NODE = 1;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    private MerkleTree() {
+    }
+
+    /**
+     * Sprawdzenie rozmiaru fragmentu
+     * @param chunk rozmiar fragmentu w bajtach
+     * @return chunk
+     * @throws IllegalArgumentException gdy rozmiar jest mniejszy niż MIN_CHUNK
+     */
+    public static int checkChunk(int chunk) {
+        if (chunk < MIN_CHUNK) {
+            throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK + " bytes");
+        }
+        return chunk;
+    }
+
+    /**
+     * Równoległe wyznaczenie skrótów wszystkich fragmentów pliku
+     * @param file ścieżka pliku
+     * @param chunk rozmiar fragmentu
+     * @return skróty fragmentów (liście drzewa)
+     * @throws IOException
+     */
+    public static byte[][] leaves(Path file, int chunk) throws IOException {
+        return leaves(file, chunk, DigestAlgorithms.DEFAULT);
+    }
+
+    /**
+     * Równoległe wyznaczenie skrótów wszystkich fragmentów pliku wskazaną funkcją skrótu
+     * @param file ścieżka pliku
+     * @param chunk rozmiar fragmentu
+     * @param algorithm nazwa funkcji skrótu
+     * @return skróty fragmentów (liście drzewa)
+     * @throws IOException
+     */
+    public static byte[][] leaves(Path file, int chunk, String algorithm) throws IOException {
+        checkChunk(chunk);
+        DigestAlgorithms.check(algorithm);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = count(channel.size(), chunk);
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("File " + file + " has too many chunks");
+            }
+            return IntStream.range(0, (int) count).parallel().mapToObj(i -> {
+                try {
+                    return leaf(channel, chunk, i, algorithm);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).toArray(byte[][]::new);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Skróty fragmentów treści strumienia (liczone kolejno, w miarę odczytu)
+     * @param in strumień (nie jest zamykany)
+     * @param chunk rozmiar fragmentu
+     * @param algorithm nazwa funkcji skrótu
+     * @return skróty fragmentów (liście drzewa)
+     * @throws IOException
+     */
+    public static byte[][] leaves(InputStream in, int chunk, String algorithm) throws IOException {
+        checkChunk(chunk);
+        MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+        List<byte[]> leaves = new ArrayList<>();
+        byte[] buffer = new byte[Math.min(chunk, BUFFER_SIZE)];
+        long filled = 0;
+        md.update(LEAF);
+        int read;
+        while ((read = in.read(buffer, 0, (int) Math.min(buffer.length, chunk - filled))) != -1) {
+            md.update(buffer, 0, read);
+            filled += read;
+            if (filled == chunk) {
+                leaves.add(md.digest());
+                md.update(LEAF);
+                filled = 0;
+            }
+        }
+        if (filled > 0 || leaves.isEmpty()) {
+            leaves.add(md.digest());
+        }
+        Metrics.add(Metrics.BYTES_HASHED, (long) (leaves.size() - 1) * chunk + filled);
+        return leaves.toArray(new byte[0][]);
+    }
+
+    /**
+     * Skrót pojedynczego fragmentu pliku (bez czytania pozostałej treści)
+     * @param file ścieżka pliku
+     * @param chunk rozmiar fragmentu
+     * @param index numer fragmentu
+     * @return skrót fragmentu (liść drzewa)
+     * @throws IOException
+     */
+    public static byte[] leaf(Path file, int chunk, int index) throws IOException {
+        return leaf(file, chunk, index, DigestAlgorithms.DEFAULT);
+    }
+
+    /**
+     * Skrót pojedynczego fragmentu pliku wskazaną funkcją skrótu
+     * @param file ścieżka pliku
+     * @param chunk rozmiar fragmentu
+     * @param index numer fragmentu
+     * @param algorithm nazwa funkcji skrótu
+     * @return skrót fragmentu (liść drzewa)
+     * @throws IOException
+     */
+    public static byte[] leaf(Path file, int chunk, int index, String algorithm) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return leaf(channel, checkChunk(chunk), index, DigestAlgorithms.check(algorithm));
+        }
+    }
+
+    /**
+     * Liczba fragmentów pliku o danym rozmiarze
+     * @param size rozmiar pliku
+     * @param chunk rozmiar fragmentu
+     * @return liczba fragmentów (co najmniej 1)
+     */
+    public static long count(long size, int chunk) {
+        return Math.max(1, (size + chunk - 1) / chunk);
+    }
+
+    /**
+     * Korzeń drzewa
+     * @param leaves skróty fragmentów
+     * @return korzeń drzewa
+     */
+    public static byte[] root(byte[][] leaves) {
+        return root(leaves, DigestAlgorithms.DEFAULT);
+    }
+
+    /**
+     * Korzeń drzewa liczony wskazaną funkcją skrótu
+     * @param leaves skróty fragmentów
+     * @param algorithm nazwa funkcji skrótu
+     * @return korzeń drzewa
+     */
+    public static byte[] root(byte[][] leaves, String algorithm) {
+        MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+        byte[][] level = leaves;
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < next.length; i++) {
+                if (2 * i + 1 < level.length) {
+                    md.update(NODE);
+                    md.update(level[2 * i]);
+                    md.update(level[2 * i + 1]);
+                    next[i] = md.digest();
+                } else {
+                    next[i] = level[2 * i];
+                }
+            }
+            level = next;
+        }
+        return level[0];
+    }
+
+    /**
+     * Uzupełnienie skrótu o podpisywaną wiadomość wersji 2 (znacznik formatu, rozmiar fragmentu, korzeń)
+     * @param root korzeń drzewa
+     * @param chunk rozmiar fragmentu
+     * @param md skrót, do którego dopisywana jest wiadomość
+     * @return md
+     */
+    public static MessageDigest message(byte[] root, int chunk, MessageDigest md) {
+        md.update(("pkry-merkle#" + chunk + "#").getBytes(StandardCharsets.US_ASCII));
+        md.update(root);
+        return md;
+    }
+
+    /**
+     * Zapis liści do pliku (kolejne 32-bajtowe skróty - wszystkie funkcje skrótu dają 256 bitów)
+     * @param file ścieżka pliku
+     * @param leaves skróty fragmentów
+     * @throws IOException
+     */
+    public static void writeLeaves(Path file, byte[][] leaves) throws IOException {
+        byte[] data = new byte[leaves.length * HASH_LENGTH];
+        for (int i = 0; i < leaves.length; i++) {
+            System.arraycopy(leaves[i], 0, data, i * HASH_LENGTH, HASH_LENGTH);
+        }
+        Files.write(file, data);
+    }
+
+    /**
+     * Odczyt liści zapisanych metodą writeLeaves
+     * @param file ścieżka pliku
+     * @return skróty fragmentów
+     * @throws IOException
+     */
+    public static byte[][] readLeaves(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length == 0 || data.length % HASH_LENGTH != 0) {
+            throw new IOException("Leaves file " + file + " is badly formatted");
+        }
+        byte[][] leaves = new byte[data.length / HASH_LENGTH][HASH_LENGTH];
+        for (int i = 0; i < leaves.length; i++) {
+            System.arraycopy(data, i * HASH_LENGTH, leaves[i], 0, HASH_LENGTH);
+        }
+        return leaves;
+    }
+
+    private static byte[] leaf(FileChannel channel, int chunk, int index, String algorithm) throws IOException {
+        MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+        md.update(LEAF);
+        ByteBuffer buffer = BUFFER.get();
+        long position = (long) index * chunk;
+        long end = Math.min(channel.size(), position + chunk);
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+            buffer.flip();
+            md.update(buffer);
+        }
+        Metrics.add(Metrics.BYTES_HASHED, Math.max(0, end - (long) index * chunk));
+        return md.digest();
+    }
+}
@@ -0,0 +1,298 @@
+package pl.pw.edu.pkry;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metryki działania narzędzi: histogramy czasów etapów (LatencyHistogram) i liczniki zdarzeń.
+ * Pomiary są wyłączone, dopóki nie zostaną włączone (enable, printAtExit, registerMBean) - wtedy
+ * start() zwraca 0 bez odczytu zegara, a record() i count() kończą się na odczycie jednej flagi.
+ * Metryki udostępniane są przez JMX (pl.pw.edu.pkry:type=Metrics) oraz jako podsumowanie JSON.
+ */
+public final class Metrics {
+
+    /**
+     * Etapy: odczyt kluczy i podpisów, skrót dokumentu, potęgowanie (lub działania na krzywej),
+     * zapis plików wynikowych i wyszukiwanie liczb pierwszych (keygen)
+     */
+    public static final String PARSE = "parse", HASH = "hash", EXPONENTIATE = "exponentiate", WRITE = "write", PRIMES = "primes";
+
+    /**
+     * Liczniki wyników operacji
+     */
+    public static final String KEYS_GENERATED = "keys.generated", PROXY_KEYS_ISSUED = "proxyKeys.issued", PROXY_KEYS_REJECTED = "proxyKeys.rejected",
+            SIGNATURES_CREATED = "signatures.created", SIGN_FAILURES = "sign.failures",
+            VERIFY_VALID = "verify.valid", VERIFY_INVALID = "verify.invalid", VERIFY_ERRORS = "verify.errors";
+
+    /**
+     * Liczniki pamięci podręcznych i skracanych obliczeń
+     */
+    public static final String DIGEST_CACHE_HITS = "cache.digest.hits", DIGEST_CACHE_MISSES = "cache.digest.misses",
+            PROXY_BASE_HITS = "cache.proxyBase.hits", PROXY_BASE_MISSES = "cache.proxyBase.misses",
+            VERIFICATION_CACHE_HITS = "cache.verification.hits", COUPONS_USED = "coupons.used";
+
+    /**
+     * Liczba bajtów przetworzonych funkcją skrótu
+     */
+    public static final String BYTES_HASHED = "bytes.hashed";
+
+    /**
+     * Nazwa obiektu JMX
+     */
+    public static final String OBJECT_NAME = "pl.pw.edu.pkry:type=Metrics";
+
+    /**
+     * Percentyle w podsumowaniu i atrybutach JMX
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final Map<String, LatencyHistogram> STAGES = new ConcurrentHashMap<>();
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+
+    private static boolean registered, printing;
+
+    private Metrics() {
+    }
+
+    /**
+     * Włączenie pomiarów
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return czy pomiary są włączone
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Początek pomiaru etapu
+     * @return odczyt zegara (System.nanoTime) lub 0, gdy pomiary są wyłączone
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Koniec pomiaru etapu
+     * @param stage nazwa etapu
+     * @param start wynik start() (0 - pomiar pominięty)
+     */
+    public static void record(String stage, long start) {
+        if (enabled && start != 0) {
+            histogram(stage).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Zwiększenie licznika o 1
+     * @param counter nazwa licznika
+     */
+    public static void count(String counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Zwiększenie licznika
+     * @param counter nazwa licznika
+     * @param delta przyrost
+     */
+    public static void add(String counter, long delta) {
+        if (enabled) {
+            COUNTERS.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+        }
+    }
+
+    /**
+     * @param stage nazwa etapu
+     * @return histogram czasów etapu (tworzony przy pierwszym użyciu)
+     */
+    public static LatencyHistogram histogram(String stage) {
+        return STAGES.computeIfAbsent(stage, name -> new LatencyHistogram());
+    }
+
+    /**
+     * @return bieżące wartości liczników (posortowane po nazwie)
+     */
+    public static Map<String, Long> counters() {
+        Map<String, Long> result = new TreeMap<>();
+        COUNTERS.forEach((name, value) -> result.put(name, value.sum()));
+        return result;
+    }
+
+    /**
+     * @return histogramy etapów (posortowane po nazwie)
+     */
+    public static Map<String, LatencyHistogram> stages() {
+        return new TreeMap<>(STAGES);
+    }
+
+    /**
+     * Włączenie pomiarów i rejestracja obiektu JMX (wielokrotne wywołanie nie ma skutku)
+     * @throws IllegalStateException gdy obiektu nie da się zarejestrować
+     */
+    public static synchronized void registerMBean() {
+        enable();
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            throw new IllegalStateException(ex);
+        }
+        registered = true;
+    }
+
+    /**
+     * Włączenie pomiarów i wypisanie podsumowania JSON przy zakończeniu procesu (również przez System.exit)
+     * @param out strumień podsumowania
+     */
+    public static synchronized void printAtExit(PrintStream out) {
+        enable();
+        if (printing) {
+            return;
+        }
+        printing = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            out.println(toJson());
+            out.flush();
+        }, "pkry-metrics"));
+    }
+
+    /**
+     * Podsumowanie metryk w postaci JSON: liczniki oraz dla każdego etapu liczba pomiarów,
+     * średnia, percentyle i maksimum w mikrosekundach
+     * @return JSON (jedna linia)
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> counter : counters().entrySet()) {
+            sb.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue());
+            separator = ",";
+        }
+        sb.append("},\"stages\":{");
+        separator = "";
+        for (Map.Entry<String, LatencyHistogram> stage : stages().entrySet()) {
+            LatencyHistogram histogram = stage.getValue();
+            sb.append(separator).append('"').append(stage.getKey()).append("\":{\"count\":").append(histogram.getCount());
+            sb.append(",\"meanMicros\":").append(micros(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                sb.append(",\"").append(percentileName(percentile)).append("Micros\":").append(micros(histogram.getPercentile(percentile)));
+            }
+            sb.append(",\"maxMicros\":").append(micros(histogram.getMax())).append('}');
+            separator = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    private static String percentileName(double percentile) {
+        return "p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile).replace('.', '_'));
+    }
+
+    /**
+     * Obiekt JMX z atrybutami tylko do odczytu: &lt;licznik&gt; oraz &lt;etap&gt;.count, &lt;etap&gt;.meanMicros,
+     * &lt;etap&gt;.p50Micros ... &lt;etap&gt;.maxMicros - lista atrybutów odświeżana jest przy każdym odczycie opisu
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long counter = counters().get(attribute);
+            if (counter != null) {
+                return counter;
+            }
+            int dot = attribute.lastIndexOf('.');
+            LatencyHistogram histogram = dot < 0 ? null : STAGES.get(attribute.substring(0, dot));
+            if (histogram != null) {
+                String field = attribute.substring(dot + 1);
+                if (field.equals("count")) {
+                    return histogram.getCount();
+                } else if (field.equals("meanMicros")) {
+                    return micros(histogram.getMean());
+                } else if (field.equals("maxMicros")) {
+                    return micros(histogram.getMax());
+                }
+                for (double percentile : PERCENTILES) {
+                    if (field.equals(percentileName(percentile) + "Micros")) {
+                        return micros(histogram.getPercentile(percentile));
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ex) {
+                    // nieznany atrybut - pomijany, zgodnie z kontraktem DynamicMBean
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String counter : counters().keySet()) {
+                attributes.add(new MBeanAttributeInfo(counter, "long", "Counter " + counter, true, false, false));
+            }
+            for (String stage : stages().keySet()) {
+                attributes.add(new MBeanAttributeInfo(stage + ".count", "long", "Number of " + stage + " measurements", true, false, false));
+                attributes.add(new MBeanAttributeInfo(stage + ".meanMicros", "double", "Mean " + stage + " time (us)", true, false, false));
+                for (double percentile : PERCENTILES) {
+                    String name = percentileName(percentile);
+                    attributes.add(new MBeanAttributeInfo(stage + "." + name + "Micros", "double", name + " of " + stage + " time (us)", true, false, false));
+                }
+                attributes.add(new MBeanAttributeInfo(stage + ".maxMicros", "double", "Max " + stage + " time (us)", true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "PKRY operational metrics", attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Arytmetyka modularna w postaci Montgomery'ego dla ustalonego, nieparzystego modułu m.
+ * Elementy przechowywane są jako tablice int (32-bitowe słowa, od najmniej znaczącego) o długości
+ * odpowiadającej długości modułu, a mnożenie (CIOS) wykonywane jest w miejscu z użyciem bufora
+ * roboczego jednego na wątek - w pętlach potęgowania nie powstają żadne nowe obiekty i nie jest
+ * wykonywane dzielenie. BigInteger pojawia się wyłącznie przy konwersji na wejściu i wyjściu.
+ * Kontekst nie ma stanu zmiennego poza buforami wątków, więc może być współdzielony.
+ */
+public final class Montgomery {
+
+    private static final long MASK = 0xffffffffL;
+
+    /**
+     * Szerokość okna w potęgowaniu (tablica 2^WINDOW potęg podstawy)
+     */
+    private static final int WINDOW = 4;
+
+    /**
+     * Konteksty utworzone w tym procesie, indeksowane modułem
+     */
+    private static final Map<BigInteger, Montgomery> CACHE = new ConcurrentHashMap<>();
+
+    private final BigInteger modulus;
+
+    /**
+     * Liczba słów elementu
+     */
+    private final int n;
+
+    /**
+     * Słowa modułu
+     */
+    private final int[] m;
+
+    /**
+     * -m^(-1) mod 2^32
+     */
+    private final int inv;
+
+    /**
+     * R^2 mod m oraz R mod m (jedynka w postaci Montgomery'ego), gdzie R = 2^(32n)
+     */
+    private final int[] r2, one;
+
+    /**
+     * Bufory robocze wątku: [0] - iloczyn (n+2 słowa), [1] - wynik potęgowania, [2..] - tablica okna
+     */
+    private final ThreadLocal<int[][]> scratch;
+
+    private Montgomery(BigInteger modulus) {
+        this.modulus = modulus;
+        this.n = (modulus.bitLength() + 31) / 32;
+        this.m = limbs(modulus, new int[n]);
+        int x = m[0];
+        for (int i = 0; i < 4; i++) {
+            x *= 2 - m[0] * x;
+        }
+        this.inv = -x;
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * n);
+        this.r2 = limbs(r.multiply(r).mod(modulus), new int[n]);
+        this.one = limbs(r.mod(modulus), new int[n]);
+        this.scratch = new ThreadLocal<int[][]>() {
+            @Override
+            protected int[][] initialValue() {
+                int[][] buffers = new int[2 + (1 << WINDOW)][n];
+                buffers[0] = new int[n + 2];
+                return buffers;
+            }
+        };
+    }
+
+    /**
+     * Kontekst dla modułu m (z pamięci podręcznej procesu lub tworzony od nowa)
+     * @param modulus nieparzysty moduł większy od 1
+     * @return kontekst arytmetyki modulo m
+     * @throws IllegalArgumentException gdy moduł jest parzysty lub mniejszy od 3
+     */
+    public static Montgomery forModulus(BigInteger modulus) {
+        Montgomery ctx = CACHE.get(modulus);
+        if (ctx == null) {
+            if (!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+                throw new IllegalArgumentException("Montgomery modulus must be odd and greater than 1");
+            }
+            ctx = new Montgomery(modulus);
+            CACHE.put(modulus, ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * (a * b + c) mod m - także dla parzystego modułu (wtedy bezpośrednio na BigInteger)
+     * @param a czynnik
+     * @param b czynnik
+     * @param c składnik
+     * @param modulus moduł
+     * @return (a * b + c) mod m
+     */
+    public static BigInteger mulAdd(BigInteger a, BigInteger b, BigInteger c, BigInteger modulus) {
+        if (!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            return a.multiply(b).add(c).mod(modulus);
+        }
+        Montgomery ctx = forModulus(modulus);
+        int[] x = ctx.element(), y = ctx.element();
+        ctx.toMontgomery(a, x);
+        ctx.toMontgomery(b, y);
+        ctx.multiply(x, y, x);
+        ctx.toMontgomery(c, y);
+        ctx.add(x, y, x);
+        return ctx.fromMontgomery(x);
+    }
+
+    /**
+     * @return moduł
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * @return liczba słów elementu
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return nowy (zerowy) element
+     */
+    public int[] element() {
+        return new int[n];
+    }
+
+    /**
+     * Konwersja do postaci Montgomery'ego: out = x * R mod m
+     * @param x dowolna liczba całkowita (spoza [0, m) redukowana przez BigInteger.mod)
+     * @param out element wynikowy
+     */
+    public void toMontgomery(BigInteger x, int[] out) {
+        limbs(x.signum() < 0 || x.compareTo(modulus) >= 0 ? x.mod(modulus) : x, out);
+        multiply(out, r2, out);
+    }
+
+    /**
+     * Konwersja z postaci Montgomery'ego
+     * @param a element
+     * @return a * R^(-1) mod m
+     */
+    public BigInteger fromMontgomery(int[] a) {
+        int[] t = scratch.get()[0];
+        System.arraycopy(a, 0, t, 0, n);
+        t[n] = 0;
+        t[n + 1] = 0;
+        for (int i = 0; i < n; i++) {
+            reduceStep(t);
+        }
+        finish(t, t);
+        byte[] bytes = new byte[4 * n];
+        for (int i = 0; i < n; i++) {
+            int w = t[i];
+            int j = 4 * (n - 1 - i);
+            bytes[j] = (byte) (w >>> 24);
+            bytes[j + 1] = (byte) (w >>> 16);
+            bytes[j + 2] = (byte) (w >>> 8);
+            bytes[j + 3] = (byte) w;
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * @param out element, do którego wpisywana jest jedynka (R mod m)
+     */
+    public void setOne(int[] out) {
+        System.arraycopy(one, 0, out, 0, n);
+    }
+
+    /**
+     * Mnożenie Montgomery'ego: out = a * b * R^(-1) mod m (out może być tożsame z a lub b)
+     * @param a czynnik w postaci Montgomery'ego
+     * @param b czynnik w postaci Montgomery'ego
+     * @param out element wynikowy
+     */
+    public void multiply(int[] a, int[] b, int[] out) {
+        multiply(a, b, out, scratch.get()[0]);
+    }
+
+    /**
+     * Mnożenie Montgomery'ego z jawnie przekazanym buforem iloczynu (bez odczytu bufora wątku)
+     * @param t bufor n+2 słów zwrócony przez buffer()
+     */
+    void multiply(int[] a, int[] b, int[] out, int[] t) {
+        for (int i = 0; i < n + 2; i++) {
+            t[i] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < n; j++) {
+                long s = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+                t[j] = (int) s;
+                carry = s >>> 32;
+            }
+            long s = (t[n] & MASK) + carry;
+            t[n] = (int) s;
+            t[n + 1] = (int) (s >>> 32);
+            reduceStep(t);
+        }
+        finish(t, out);
+    }
+
+    /**
+     * @return bufor iloczynu bieżącego wątku (dla pętli wywołujących multiply wielokrotnie)
+     */
+    int[] buffer() {
+        return scratch.get()[0];
+    }
+
+    /**
+     * Dodawanie modularne: out = a + b mod m (out może być tożsame z a lub b)
+     * @param a składnik
+     * @param b składnik
+     * @param out element wynikowy
+     */
+    public void add(int[] a, int[] b, int[] out) {
+        int[] t = scratch.get()[0];
+        long carry = 0;
+        for (int i = 0; i < n; i++) {
+            long s = (a[i] & MASK) + (b[i] & MASK) + carry;
+            t[i] = (int) s;
+            carry = s >>> 32;
+        }
+        t[n] = (int) carry;
+        finish(t, out);
+    }
+
+    /**
+     * Odejmowanie modularne: out = a - b mod m (out może być tożsame z a lub b)
+     * @param a odjemna
+     * @param b odjemnik
+     * @param out element wynikowy
+     */
+    public void subtract(int[] a, int[] b, int[] out) {
+        long borrow = 0;
+        for (int i = 0; i < n; i++) {
+            long s = (a[i] & MASK) - (b[i] & MASK) - borrow;
+            out[i] = (int) s;
+            borrow = s >>> 63;
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int i = 0; i < n; i++) {
+                long s = (out[i] & MASK) + (m[i] & MASK) + carry;
+                out[i] = (int) s;
+                carry = s >>> 32;
+            }
+        }
+    }
+
+    /**
+     * Potęgowanie z oknem stałej szerokości: out = base^e (w postaci Montgomery'ego)
+     * @param base podstawa w postaci Montgomery'ego
+     * @param e nieujemny wykładnik
+     * @param out element wynikowy (może być tożsamy z base)
+     */
+    public void pow(int[] base, BigInteger e, int[] out) {
+        if (e.signum() < 0) {
+            throw new IllegalArgumentException("Negative exponent");
+        }
+        int[][] buffers = scratch.get();
+        int[] t = buffers[0];
+        int[] acc = buffers[1];
+        setOne(buffers[2]);
+        System.arraycopy(base, 0, buffers[3], 0, n);
+        for (int d = 2; d < (1 << WINDOW); d++) {
+            multiply(buffers[d + 1], buffers[3], buffers[d + 2], t);
+        }
+        setOne(acc);
+        int windows = (e.bitLength() + WINDOW - 1) / WINDOW;
+        for (int w = windows - 1; w >= 0; w--) {
+            if (w != windows - 1) {
+                for (int k = 0; k < WINDOW; k++) {
+                    multiply(acc, acc, acc, t);
+                }
+            }
+            int d = 0;
+            for (int k = WINDOW - 1; k >= 0; k--) {
+                d <<= 1;
+                if (e.testBit(w * WINDOW + k)) {
+                    d |= 1;
+                }
+            }
+            if (d != 0) {
+                multiply(acc, buffers[d + 2], acc, t);
+            }
+        }
+        System.arraycopy(acc, 0, out, 0, n);
+    }
+
+    /**
+     * base^e mod m
+     * @param base podstawa
+     * @param e nieujemny wykładnik
+     * @return base^e mod m
+     */
+    public BigInteger modPow(BigInteger base, BigInteger e) {
+        int[] x = element();
+        toMontgomery(base, x);
+        pow(x, e, x);
+        return fromMontgomery(x);
+    }
+
+    /**
+     * a * b mod m
+     * @param a czynnik
+     * @param b czynnik
+     * @return a * b mod m
+     */
+    public BigInteger multiply(BigInteger a, BigInteger b) {
+        int[] x = element(), y = element();
+        toMontgomery(a, x);
+        toMontgomery(b, y);
+        multiply(x, y, x);
+        return fromMontgomery(x);
+    }
+
+    /**
+     * Jeden krok redukcji: t = (t + q * m) / 2^32, gdzie q dobrane tak, by najniższe słowo się wyzerowało
+     */
+    private void reduceStep(int[] t) {
+        long q = (t[0] * inv) & MASK;
+        long s = (t[0] & MASK) + q * (m[0] & MASK);
+        long carry = s >>> 32;
+        for (int j = 1; j < n; j++) {
+            s = (t[j] & MASK) + q * (m[j] & MASK) + carry;
+            t[j - 1] = (int) s;
+            carry = s >>> 32;
+        }
+        s = (t[n] & MASK) + carry;
+        t[n - 1] = (int) s;
+        t[n] = t[n + 1] + (int) (s >>> 32);
+        t[n + 1] = 0;
+    }
+
+    /**
+     * Końcowe odjęcie modułu (t < 2m) i zapis n słów wyniku do out
+     */
+    private void finish(int[] t, int[] out) {
+        boolean subtract = t[n] != 0;
+        if (!subtract) {
+            subtract = true;
+            for (int i = n - 1; i >= 0; i--) {
+                if (t[i] != m[i]) {
+                    subtract = (t[i] & MASK) > (m[i] & MASK);
+                    break;
+                }
+            }
+        }
+        if (subtract) {
+            long borrow = 0;
+            for (int i = 0; i < n; i++) {
+                long s = (t[i] & MASK) - (m[i] & MASK) - borrow;
+                out[i] = (int) s;
+                borrow = (s >>> 63);
+            }
+        } else if (t != out) {
+            System.arraycopy(t, 0, out, 0, n);
+        }
+    }
+
+    /**
+     * Słowa liczby 0 &lt;= x &lt; 2^(32n)
+     */
+    private int[] limbs(BigInteger x, int[] out) {
+        byte[] bytes = x.toByteArray();
+        for (int i = 0; i < n; i++) {
+            int w = 0;
+            for (int k = 3; k >= 0; k--) {
+                int j = bytes.length - 1 - (4 * i + k);
+                w = (w << 8) | (j >= 0 ? bytes[j] & 0xff : 0);
+            }
+            out[i] = w;
+        }
+        return out;
+    }
+}
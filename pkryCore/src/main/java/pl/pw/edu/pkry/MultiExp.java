@@ -0,0 +1,91 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+
+/**
+ * Jednoczesne potęgowanie wielu podstaw (metoda Straussa z oknem stałej szerokości).
+ * Iloczyn b1^e1 * b2^e2 * ... mod p liczony jest przy wspólnym ciągu podnoszeń do kwadratu,
+ * więc koszt to jeden ciąg kwadratów długości max(|ei|) i ok. |ei|/WINDOW mnożeń na podstawę
+ * zamiast osobnego, pełnego potęgowania dla każdej z nich. Mnożenia wykonywane są w postaci
+ * Montgomery'ego (zob. Montgomery).
+ */
+public final class MultiExp {
+
+    /**
+     * Szerokość okna (tablica 2^WINDOW potęg na podstawę)
+     */
+    private static final int WINDOW = 4;
+
+    private MultiExp() {
+    }
+
+    /**
+     * Obliczenie iloczynu bases[i]^exps[i] mod p
+     * @param bases podstawy
+     * @param exps nieujemne wykładniki
+     * @param p moduł
+     * @return iloczyn potęg modulo p
+     */
+    public static BigInteger pow(BigInteger[] bases, BigInteger[] exps, BigInteger p) {
+        Montgomery ctx = Montgomery.forModulus(p);
+        int[] result = ctx.element();
+        pow(ctx, bases, exps, result);
+        return ctx.fromMontgomery(result);
+    }
+
+    /**
+     * Obliczenie iloczynu bases[i]^exps[i] w postaci Montgomery'ego
+     * @param ctx kontekst arytmetyki modulo p
+     * @param bases podstawy
+     * @param exps nieujemne wykładniki
+     * @param out element wynikowy
+     */
+    public static void pow(Montgomery ctx, BigInteger[] bases, BigInteger[] exps, int[] out) {
+        int maxBits = 0;
+        for (BigInteger e : exps) {
+            if (e.signum() < 0) {
+                throw new IllegalArgumentException("Negative exponent");
+            }
+            maxBits = Math.max(maxBits, e.bitLength());
+        }
+        int size = 1 << WINDOW;
+        int[][][] table = new int[bases.length][][];
+        for (int i = 0; i < bases.length; i++) {
+            if (exps[i].signum() == 0) {
+                continue;
+            }
+            table[i] = new int[size][];
+            table[i][1] = ctx.element();
+            ctx.toMontgomery(bases[i], table[i][1]);
+            for (int d = 2; d < size; d++) {
+                table[i][d] = ctx.element();
+                ctx.multiply(table[i][d - 1], table[i][1], table[i][d]);
+            }
+        }
+        int[] t = ctx.buffer();
+        ctx.setOne(out);
+        int windows = (maxBits + WINDOW - 1) / WINDOW;
+        for (int w = windows - 1; w >= 0; w--) {
+            if (w != windows - 1) {
+                for (int k = 0; k < WINDOW; k++) {
+                    ctx.multiply(out, out, out, t);
+                }
+            }
+            for (int i = 0; i < bases.length; i++) {
+                if (table[i] == null) {
+                    continue;
+                }
+                int d = 0;
+                for (int k = WINDOW - 1; k >= 0; k--) {
+                    d <<= 1;
+                    if (exps[i].testBit(w * WINDOW + k)) {
+                        d |= 1;
+                    }
+                }
+                if (d != 0) {
+                    ctx.multiply(out, table[i][d], out, t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+
+/**
+ * Klucze właściciela: klucz publiczny (p, g, q, y) i prywatny x, a w wariancie EC - krzywa,
+ * punkt Y i skalar x (p, g i q to wtedy parametry krzywej: moduł, zakodowany punkt G i rząd n).
+ */
+public final class OwnerKeys {
+
+    private final EllipticCurve curve;
+
+    private final BigInteger p, g, q, y, x;
+
+    /**
+     * @param curve krzywa eliptyczna lub null dla schematu nad Z*p
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q rząd podgrupy
+     * @param y g^x mod p lub zakodowany punkt x * G
+     * @param x klucz prywatny
+     */
+    public OwnerKeys(EllipticCurve curve, BigInteger p, BigInteger g, BigInteger q, BigInteger y, BigInteger x) {
+        this.curve = curve;
+        this.p = p;
+        this.g = g;
+        this.q = q;
+        this.y = y;
+        this.x = x;
+    }
+
+    /**
+     * @return nazwa krzywej lub pusty tekst dla schematu nad Z*p (pole tekstowe plików kluczy)
+     */
+    public String getLabel() {
+        return curve == null ? "" : curve.getName();
+    }
+
+    /**
+     * @return wartości klucza publicznego w kolejności zapisu (p, g, q, y lub Y)
+     */
+    public BigInteger[] getPublicValues() {
+        return curve == null ? new BigInteger[]{p, g, q, y} : new BigInteger[]{y};
+    }
+
+    /**
+     * @param binary czy w postaci binarnej (BinaryFormat)
+     * @return treść pliku klucza publicznego
+     */
+    public byte[] publicKey(boolean binary) {
+        return BinaryFormat.write(BinaryFormat.PUBLIC_KEY, getLabel(), binary, getPublicValues());
+    }
+
+    /**
+     * @param binary czy w postaci binarnej (BinaryFormat)
+     * @return treść pliku klucza prywatnego
+     */
+    public byte[] privateKey(boolean binary) {
+        return BinaryFormat.write(BinaryFormat.PRIVATE_KEY, getLabel(), binary, x);
+    }
+
+    /**
+     * @return certyfikat pierwszości p i q (PrattCertificate) lub null w wariancie EC
+     */
+    public String certificate() {
+        return curve == null ? PrattCertificate.build(p, q) : null;
+    }
+
+    /**
+     * @return ID klucza publicznego (KeyStore.id)
+     */
+    public long getId() {
+        return KeyStore.id(BinaryFormat.PUBLIC_KEY, getLabel(), getPublicValues());
+    }
+
+    /**
+     * @return krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public BigInteger getG() {
+        return g;
+    }
+
+    public BigInteger getQ() {
+        return q;
+    }
+
+    public BigInteger getY() {
+        return y;
+    }
+
+    public BigInteger getX() {
+        return x;
+    }
+}
@@ -0,0 +1,25 @@
+package pl.pw.edu.pkry;
+
+/**
+ * Błąd operacji biblioteki (klucz, podpis lub dokument nie nadaje się do użycia).
+ * Komunikat jest gotowy do pokazania użytkownikowi - aplikacje wypisują go bez zmian.
+ */
+public class PkryException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message komunikat błędu
+     */
+    public PkryException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message komunikat błędu
+     * @param cause przyczyna
+     */
+    public PkryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,89 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Klasa budująca certyfikat pierwszości Pratta dla parametrów klucza publicznego.
+ * Certyfikat składa się z linii postaci n#w#f1,f2,... (wartości szesnastkowe), gdzie
+ * w jest świadkiem pierwszości n, a f1, f2, ... to wszystkie czynniki pierwsze (n - 1).
+ * Linie ułożone są tak, że każdy czynnik (poza 2) jest certyfikowany wcześniej niż liczba,
+ * w której rozkładzie występuje - dzięki temu weryfikacja wymaga jednego przejścia.
+ */
+public final class PrattCertificate {
+
+    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+
+    private PrattCertificate() {
+    }
+
+    /**
+     * Budowa certyfikatu dla zadanych liczb pierwszych
+     * @param primes liczby pierwsze (np. p i q)
+     * @return treść certyfikatu
+     */
+    public static String build(BigInteger... primes) {
+        StringBuilder sb = new StringBuilder();
+        Set<BigInteger> done = new HashSet<>();
+        done.add(TWO);
+        for (BigInteger n : primes) {
+            certify(n, sb, done);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Rekurencyjne dopisanie linii certyfikatu dla liczby n i czynników (n - 1)
+     * @param n liczba pierwsza
+     * @param sb bufor certyfikatu
+     * @param done liczby już certyfikowane
+     */
+    private static void certify(BigInteger n, StringBuilder sb, Set<BigInteger> done) {
+        if (done.contains(n)) {
+            return;
+        }
+        BigInteger nmin1 = n.subtract(BigInteger.ONE);
+        List<BigInteger> primeFactors = KeyGenerator.factors(nmin1, false);
+        for (BigInteger f : primeFactors) {
+            certify(f, sb, done);
+        }
+        BigInteger w = findWitness(n, primeFactors);
+        sb.append(n.toString(16)).append("#").append(w.toString(16)).append("#");
+        for (int i = 0; i < primeFactors.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(primeFactors.get(i).toString(16));
+        }
+        sb.append("\n");
+        done.add(n);
+    }
+
+    /**
+     * Poszukiwanie świadka pierwszości - elementu Z*n rzędu (n - 1)
+     * @param n liczba pierwsza
+     * @param primeFactors czynniki pierwsze (n - 1)
+     * @return najmniejszy świadek w
+     */
+    private static BigInteger findWitness(BigInteger n, List<BigInteger> primeFactors) {
+        BigInteger nmin1 = n.subtract(BigInteger.ONE);
+        for (BigInteger w = TWO; w.compareTo(n) < 0; w = w.add(BigInteger.ONE)) {
+            if (!w.modPow(nmin1, n).equals(BigInteger.ONE)) {
+                continue;
+            }
+            boolean generator = true;
+            for (BigInteger f : primeFactors) {
+                if (w.modPow(nmin1.divide(f), n).equals(BigInteger.ONE)) {
+                    generator = false;
+                    break;
+                }
+            }
+            if (generator) {
+                return w;
+            }
+        }
+        throw new IllegalArgumentException(n + " is not a prime number");
+    }
+}
@@ -0,0 +1,130 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Klasa sprawdzająca certyfikat pierwszości Pratta wygenerowany przez keygen (public.cert).
+ * Każda linia n#w#f1,f2,... dowodzi pierwszości n: w^(n-1) = 1 (mod n),
+ * w^((n-1)/f) != 1 (mod n) dla każdego czynnika f, a czynniki f (wcześniej certyfikowane)
+ * rozkładają (n - 1) w całości. Weryfikacja to kilka potęgowań modularnych na linię.
+ */
+public final class PrattVerifier {
+
+    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+
+    private PrattVerifier() {
+    }
+
+    /**
+     * Ścieżka certyfikatu odpowiadającego plikowi klucza publicznego (public.key - public.cert)
+     * @param publicKeyPath ścieżka klucza publicznego
+     * @return ścieżka certyfikatu
+     */
+    public static Path certificatePath(String publicKeyPath) {
+        String base = publicKeyPath.endsWith(".key") ? publicKeyPath.substring(0, publicKeyPath.length() - 4) : publicKeyPath;
+        return Paths.get(base + ".cert");
+    }
+
+    /**
+     * Wczytanie certyfikatu z pliku
+     * @param certificate ścieżka certyfikatu
+     * @return treść certyfikatu lub null, gdy plik nie istnieje
+     * @throws IOException
+     */
+    public static String read(Path certificate) throws IOException {
+        if (!certificate.toFile().exists()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(certificate), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wczytanie certyfikatu leżącego obok klucza publicznego (certificatePath)
+     * @param publicKeyPath ścieżka klucza publicznego
+     * @return treść certyfikatu lub null, gdy go nie ma
+     * @throws MalformedKeyException gdy pliku certyfikatu nie da się odczytać
+     */
+    public static String readCertificate(String publicKeyPath) throws MalformedKeyException {
+        try {
+            return read(certificatePath(publicKeyPath));
+        } catch (IOException ex) {
+            throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY, "Primality certificate file is wrong! Try again!");
+        }
+    }
+
+    /**
+     * Weryfikacja certyfikatu
+     * @param certificate treść certyfikatu
+     * @param primes liczby, których pierwszość musi zostać udowodniona przez certyfikat
+     * @return true, gdy certyfikat jest poprawny i obejmuje wszystkie zadane liczby
+     */
+    public static boolean verify(String certificate, BigInteger... primes) {
+        Set<BigInteger> proven = new HashSet<>();
+        proven.add(TWO);
+        try {
+            for (String line : certificate.split("\n")) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String tmp[] = line.split("#");
+                if (tmp.length != 3) {
+                    return false;
+                }
+                BigInteger n = new BigInteger(tmp[0], 16);
+                BigInteger w = new BigInteger(tmp[1], 16);
+                if (!verifyLine(n, w, tmp[2].split(","), proven)) {
+                    return false;
+                }
+                proven.add(n);
+            }
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        for (BigInteger n : primes) {
+            if (!proven.contains(n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sprawdzenie pojedynczej linii certyfikatu
+     * @param n liczba, której pierwszości dowodzimy
+     * @param w świadek - element Z*n rzędu (n - 1)
+     * @param factors czynniki pierwsze (n - 1) zapisane szesnastkowo
+     * @param proven liczby już udowodnione jako pierwsze
+     * @return true, gdy linia dowodzi pierwszości n
+     */
+    private static boolean verifyLine(BigInteger n, BigInteger w, String[] factors, Set<BigInteger> proven) {
+        if (n.compareTo(TWO) <= 0 || w.compareTo(BigInteger.ONE) <= 0 || w.compareTo(n) >= 0) {
+            return false;
+        }
+        BigInteger nmin1 = n.subtract(BigInteger.ONE);
+        if (!w.modPow(nmin1, n).equals(BigInteger.ONE)) {
+            return false;
+        }
+        BigInteger rest = nmin1;
+        for (String factor : factors) {
+            BigInteger f = new BigInteger(factor, 16);
+            if (!proven.contains(f) || !rest.mod(f).equals(BigInteger.ZERO)) {
+                return false;
+            }
+            while (rest.mod(f).equals(BigInteger.ZERO)) {
+                rest = rest.divide(f);
+            }
+            if (w.modPow(nmin1.divide(f), n).equals(BigInteger.ONE)) {
+                return false;
+            }
+        }
+        return rest.equals(BigInteger.ONE);
+    }
+}
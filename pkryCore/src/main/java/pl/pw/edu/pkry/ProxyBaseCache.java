@@ -0,0 +1,166 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pamięć podręczna LRU wartości publicznych pełnomocników.
+ * Ponieważ y^(-e) * r^(-r*e) = (y * r^r)^(-e), dla danego klucza publicznego i klucza proxy r
+ * wystarczy raz wyznaczyć Y = y * r^r mod p (oraz sprawdzić, że r należy do podgrupy rzędu q).
+ * Przy kolejnych podpisach tego samego pełnomocnika dla Y budowana jest tablica potęgowania
+ * o stałej podstawie, więc weryfikacja wymaga dwóch potęgowań tablicowych: g^sp i Y^(-e).
+ * W wariancie EC odpowiednikiem jest punkt T = Y + r * R wraz z tablicą jego wielokrotności.
+ */
+public final class ProxyBaseCache {
+
+    /**
+     * Maksymalna liczba pamiętanych pełnomocników
+     */
+    private static final int CAPACITY = 256;
+
+    private static final Map<String, ProxyBase> CACHE = new LinkedHashMap<String, ProxyBase>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ProxyBase> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private static final Map<String, EllipticCurve.PointTable> CURVE_CACHE = new LinkedHashMap<String, EllipticCurve.PointTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EllipticCurve.PointTable> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private ProxyBaseCache() {
+    }
+
+    /**
+     * Tablica wielokrotności punktu T = Y + r * R pełnomocnika wariantu EC
+     * @param curve krzywa eliptyczna
+     * @param y zakodowany punkt Y klucza publicznego właściciela
+     * @param r zakodowany punkt R klucza proxy pełnomocnika
+     * @return tablica punktu T lub null, gdy R nie jest punktem krzywej albo T jest punktem w nieskończoności
+     */
+    public static EllipticCurve.PointTable get(EllipticCurve curve, BigInteger y, BigInteger r) {
+        String key = curve.getName() + "#" + y.toString(16) + "#" + r.toString(16);
+        synchronized (CURVE_CACHE) {
+            EllipticCurve.PointTable table = CURVE_CACHE.get(key);
+            if (table != null) {
+                Metrics.count(Metrics.PROXY_BASE_HITS);
+                return table;
+            }
+        }
+        Metrics.count(Metrics.PROXY_BASE_MISSES);
+        if (!curve.isPoint(r)) {
+            return null;
+        }
+        BigInteger t = curve.add(y, curve.multiply(r, r));
+        if (t.signum() == 0) {
+            return null;
+        }
+        EllipticCurve.PointTable table = curve.table(t);
+        synchronized (CURVE_CACHE) {
+            CURVE_CACHE.put(key, table);
+        }
+        return table;
+    }
+
+    /**
+     * Wartość publiczna pełnomocnika dla klucza publicznego (p, g, q, y) i klucza proxy r
+     * @param p duża liczba pierwsza
+     * @param g element Z*p rzędu q
+     * @param q rząd podgrupy
+     * @param y klucz publiczny właściciela
+     * @param r część klucza proxy pełnomocnika
+     * @return wartość publiczna lub null, gdy r nie należy do podgrupy rzędu q
+     */
+    public static ProxyBase get(BigInteger p, BigInteger g, BigInteger q, BigInteger y, BigInteger r) {
+        String key = KeyValidator.fingerprint(p, g, q, y) + "#" + r.toString(16);
+        synchronized (CACHE) {
+            ProxyBase base = CACHE.get(key);
+            if (base != null) {
+                Metrics.count(Metrics.PROXY_BASE_HITS);
+                return base;
+            }
+        }
+        Metrics.count(Metrics.PROXY_BASE_MISSES);
+        Montgomery ctx = Montgomery.forModulus(p);
+        if (r.compareTo(BigInteger.ONE) <= 0 || r.compareTo(p) >= 0 || !ctx.modPow(r, q).equals(BigInteger.ONE)) {
+            return null;
+        }
+        ProxyBase base = new ProxyBase(g, ctx.multiply(y, ctx.modPow(r, r.mod(q))), p, q);
+        synchronized (CACHE) {
+            CACHE.put(key, base);
+        }
+        return base;
+    }
+
+    /**
+     * Wartość publiczna pełnomocnika Y = y * r^r mod p wraz z leniwie budowaną tablicą potęg
+     */
+    public static final class ProxyBase {
+
+        private final BigInteger g, value, p, q;
+
+        /**
+         * Tablica potęg Y - budowana dopiero przy drugim użyciu, by pojedyncza weryfikacja
+         * nie płaciła kosztu jej utworzenia
+         */
+        private volatile FixedBase table = null;
+
+        private int uses = 0;
+
+        /**
+         * Bufory wyników częściowych (jedne na wątek)
+         */
+        private static final ThreadLocal<int[][]> PARTS = new ThreadLocal<>();
+
+        ProxyBase(BigInteger g, BigInteger value, BigInteger p, BigInteger q) {
+            this.g = g;
+            this.value = value;
+            this.p = p;
+            this.q = q;
+        }
+
+        /**
+         * @return Y = y * r^r mod p
+         */
+        public BigInteger getValue() {
+            return value;
+        }
+
+        /**
+         * Obliczenie g^sp * Y^eneg mod p
+         * @param sp część podpisu pełnomocnika
+         * @param eneg wykładnik (-e) zredukowany modulo q
+         * @return g^sp * Y^eneg mod p
+         */
+        public BigInteger pow(BigInteger sp, BigInteger eneg) {
+            FixedBase t = table;
+            if (t == null) {
+                boolean build;
+                synchronized (this) {
+                    build = ++uses > 1;
+                }
+                if (!build) {
+                    return MultiExp.pow(new BigInteger[]{g, value}, new BigInteger[]{sp, eneg}, p);
+                }
+                t = FixedBase.create(value, p, q.bitLength());
+                table = t;
+            }
+            FixedBase gTable = FixedBase.forBase(g, p, p.bitLength());
+            Montgomery ctx = gTable.getContext();
+            int[][] parts = PARTS.get();
+            if (parts == null || parts[0].length != ctx.size()) {
+                parts = new int[][]{ctx.element(), ctx.element()};
+                PARTS.set(parts);
+            }
+            gTable.pow(sp, parts[0]);
+            t.pow(eneg, parts[1]);
+            ctx.multiply(parts[0], parts[1], parts[0]);
+            return ctx.fromMontgomery(parts[0]);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+
+/**
+ * Klucz proxy pełnomocnika (r, s), a w wariancie EC - zakodowany punkt R i skalar s
+ */
+public final class ProxyKey {
+
+    /**
+     * Nazwa krzywej lub pusty tekst dla schematu nad Z*p
+     */
+    private final String label;
+
+    private final BigInteger r, s;
+
+    /**
+     * ID klucza publicznego właściciela (KeyStore.id)
+     */
+    private final long owner;
+
+    /**
+     * @param label nazwa krzywej lub pusty tekst
+     * @param r część klucza proxy
+     * @param s część klucza proxy
+     * @param owner ID klucza publicznego właściciela
+     */
+    public ProxyKey(String label, BigInteger r, BigInteger s, long owner) {
+        this.label = label;
+        this.r = r;
+        this.s = s;
+        this.owner = owner;
+    }
+
+    /**
+     * @param binary czy w postaci binarnej (BinaryFormat)
+     * @return treść pliku klucza proxy (r#s, dla wariantu EC ec1#krzywa#R#s)
+     */
+    public byte[] encode(boolean binary) {
+        return BinaryFormat.write(BinaryFormat.PROXY_KEY, label, binary, r, s);
+    }
+
+    /**
+     * @return wpis magazynu kluczy (ID klucza proxy, ID klucza publicznego właściciela)
+     */
+    public KeyStore.Entry entry() {
+        return new KeyStore.Entry(BinaryFormat.PROXY_KEY, getId(), owner, BinaryFormat.encode(BinaryFormat.PROXY_KEY, label, r, s));
+    }
+
+    /**
+     * @return ID klucza proxy (KeyStore.id)
+     */
+    public long getId() {
+        return KeyStore.id(BinaryFormat.PROXY_KEY, label, r);
+    }
+
+    /**
+     * @return ID klucza publicznego właściciela
+     */
+    public long getOwnerId() {
+        return owner;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public BigInteger getR() {
+        return r;
+    }
+
+    public BigInteger getS() {
+        return s;
+    }
+}
@@ -0,0 +1,236 @@
+package pl.pw.edu.pkry;
+
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Wydawanie kluczy proxy pełnomocnikom z kluczy właściciela: k losowe z przedziału (1, q),
+ * r = g^k mod p oraz s = (x + k * r) mod q, a w wariancie EC R = k * G (r - liczba odpowiadająca
+ * zakodowanemu punktowi R). Każdy wydany klucz sprawdzany jest równością g^s = y * r^r (mod p),
+ * a w wariancie EC s * G = Y + r * R.
+ * Obiekt nie ma stanu zmiennego, więc może być używany współbieżnie.
+ */
+public final class ProxyKeyIssuer {
+
+    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+
+    /**
+     * Krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    private final EllipticCurve curve;
+
+    private final BigInteger p, g, q, y, x;
+
+    /**
+     * ID klucza publicznego właściciela (KeyStore.id)
+     */
+    private final long owner;
+
+    /**
+     * @param privateKey treść pliku klucza prywatnego (w postaci tekstowej lub binarnej)
+     * @param publicKey treść pliku klucza publicznego (w postaci tekstowej lub binarnej)
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format lub klucze są różnych wariantów
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne
+     */
+    public ProxyKeyIssuer(byte[] privateKey, byte[] publicKey) throws MalformedKeyException, KeyValidationException {
+        this(BinaryFormat.readKey(privateKey, BinaryFormat.PRIVATE_KEY), BinaryFormat.readKey(publicKey, BinaryFormat.PUBLIC_KEY), null);
+    }
+
+    /**
+     * @param privateKey klucz prywatny właściciela
+     * @param publicKey klucz publiczny właściciela
+     * @param certificate certyfikat pierwszości p i q (PrattCertificate) lub null - bez sprawdzenia
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format lub klucze są różnych wariantów
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub certyfikat ich nie potwierdza
+     */
+    public ProxyKeyIssuer(BinaryFormat.Record privateKey, BinaryFormat.Record publicKey, String certificate) throws MalformedKeyException, KeyValidationException {
+        if (!publicKey.getLabel().isEmpty()) {
+            try {
+                if (publicKey.size() != 1) {
+                    throw new IllegalArgumentException();
+                }
+                curve = EllipticCurve.forName(publicKey.getLabel());
+            } catch (IllegalArgumentException ex) {
+                throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+            }
+            if (privateKey.size() != 1 || !privateKey.getLabel().equals(curve.getName())) {
+                throw new MalformedKeyException(BinaryFormat.PRIVATE_KEY, "Private key file does not match elliptic curve public key! Try again!");
+            }
+            y = publicKey.get(0);
+            x = privateKey.get(0);
+            p = curve.getPrime();
+            g = curve.getGenerator();
+            q = curve.getOrder();
+            if (!curve.isPoint(y)) {
+                throw new KeyValidationException("Public key parameters are invalid! Try again!");
+            }
+            owner = KeyStore.id(BinaryFormat.PUBLIC_KEY, curve.getName(), y);
+            return;
+        }
+        if (publicKey.size() != 4) {
+            throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+        }
+        if (privateKey.size() != 1 || !privateKey.getLabel().isEmpty()) {
+            throw new MalformedKeyException(BinaryFormat.PRIVATE_KEY);
+        }
+        curve = null;
+        x = privateKey.get(0);
+        p = publicKey.get(0);
+        g = publicKey.get(1);
+        q = publicKey.get(2);
+        y = publicKey.get(3);
+        if (certificate != null && !PrattVerifier.verify(certificate, p, q)) {
+            throw new KeyValidationException("Primality certificate verification failed! Public key is wrong!");
+        }
+        owner = KeyStore.id(BinaryFormat.PUBLIC_KEY, "", p, g, q, y);
+    }
+
+    /**
+     * Wczytanie tablicy potęg g zapisanej przez keygen (bez znaczenia w wariancie EC)
+     * @param table plik tablicy (FixedBase.tablePath)
+     */
+    public void loadTable(Path table) {
+        if (curve == null) {
+            FixedBase.forBase(g, p, p.bitLength(), table);
+        }
+    }
+
+    /**
+     * Wydanie jednego klucza proxy
+     * @return klucz proxy
+     * @throws KeyValidationException gdy wygenerowany klucz nie spełnia równości weryfikacyjnej
+     */
+    public ProxyKey issue() throws KeyValidationException {
+        long start = Metrics.start();
+        BigInteger k = genK(q);
+        BigInteger r = curve == null ? genR(g, k, p) : curve.multiplyBase(k);
+        BigInteger s = genS(x, k, r, q);
+        boolean valid = check(r, s);
+        Metrics.record(Metrics.EXPONENTIATE, start);
+        if (!valid) {
+            Metrics.count(Metrics.PROXY_KEYS_REJECTED);
+            throw new KeyValidationException("Generated proxy Key verification failed! Try again!");
+        }
+        Metrics.count(Metrics.PROXY_KEYS_ISSUED);
+        return new ProxyKey(getLabel(), r, s, owner);
+    }
+
+    /**
+     * Wsadowe wydanie kluczy proxy dla wielu pełnomocników. Klucze generowane są równolegle;
+     * w schemacie nad Z*p sprawdzane są wspólnie testem wsadowym (BatchVerifier).
+     * @param count liczba kluczy proxy
+     * @return klucze proxy - null w miejscu klucza, który nie przeszedł sprawdzenia
+     */
+    public ProxyKey[] issue(int count) {
+        long start = Metrics.start();
+        final BigInteger[] rs = new BigInteger[count];
+        final BigInteger[] ss = new BigInteger[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            BigInteger k = genK(q);
+            rs[i] = curve == null ? genR(g, k, p) : curve.multiplyBase(k);
+            ss[i] = genS(x, k, rs[i], q);
+        });
+        boolean[] invalid = new boolean[count];
+        if (curve == null) {
+            for (int i : new BatchVerifier(p, g, y).findInvalid(rs, ss)) {
+                invalid[i] = true;
+            }
+        } else {
+            IntStream.range(0, count).parallel().forEach(i -> invalid[i] = !check(rs[i], ss[i]));
+        }
+        Metrics.record(Metrics.EXPONENTIATE, start);
+        ProxyKey[] keys = new ProxyKey[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = invalid[i] ? null : new ProxyKey(getLabel(), rs[i], ss[i], owner);
+            Metrics.count(invalid[i] ? Metrics.PROXY_KEYS_REJECTED : Metrics.PROXY_KEYS_ISSUED);
+        }
+        return keys;
+    }
+
+    /**
+     * Sprawdzenie klucza proxy: g^s = y * r^r (mod p), a w wariancie EC s * G = Y + r * R
+     */
+    private boolean check(BigInteger r, BigInteger s) {
+        if (curve != null) {
+            return curve.multiplyBase(s).equals(curve.add(y, curve.multiply(r, r)));
+        }
+        Montgomery ctx = Montgomery.forModulus(p);
+        BigInteger L = FixedBase.forBase(g, p, p.bitLength()).pow(s);
+        BigInteger R = ctx.multiply(y, ctx.modPow(r, r));
+        return L.equals(R);
+    }
+
+    /**
+     * @return nazwa krzywej lub pusty tekst dla schematu nad Z*p
+     */
+    public String getLabel() {
+        return curve == null ? "" : curve.getName();
+    }
+
+    /**
+     * @return krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    /**
+     * @return ID klucza publicznego właściciela
+     */
+    public long getOwnerId() {
+        return owner;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public BigInteger getG() {
+        return g;
+    }
+
+    public BigInteger getQ() {
+        return q;
+    }
+
+    public BigInteger getY() {
+        return y;
+    }
+
+    /**
+     * Generacja r
+     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
+     * @param k tajna liczba losowa z przedziału (1,q)
+     * @param p duża losowa liczba pierwsza
+     * @return BigInteger r
+     */
+    public static BigInteger genR(BigInteger g, BigInteger k, BigInteger p) {
+        return FixedBase.forBase(g, p, p.bitLength()).pow(k);
+    }
+
+    /**
+     * Generacja s
+     * @param x klucz prywatny mocodawcy
+     * @param k tajna liczba losowa z przedziału (1,q)
+     * @param r g^k modp
+     * @param q czynnik pierwszy (p-1)
+     * @return BigInteger s
+     */
+    public static BigInteger genS(BigInteger x, BigInteger k, BigInteger r, BigInteger q) {
+        return Montgomery.mulAdd(k, r, x, q);
+    }
+
+    /**
+     * Generacja k
+     * @param n liczba domykająca przedział
+     * @return liczba losowa z przedziału (1,n)
+     */
+    public static BigInteger genK(BigInteger n) {
+        BigInteger result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        while (result.compareTo(n.subtract(BigInteger.ONE)) == 1 || result.compareTo(TWO) == -1) {
+                result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+package pl.pw.edu.pkry;
+
+import java.security.SecureRandom;
+
+/**
+ * Wspólne źródło losowości dla wartości tajnych: kluczy prywatnych x, wartości k kluczy proxy,
+ * jednorazowych l podpisów (również kuponów) i wykładników testu wsadowego. java.util.Random ma
+ * 48-bitowe ziarno, więc nie zapewnia poziomu bezpieczeństwa P-256 (128 bitów) ani dużych p.
+ * SecureRandom jest bezpieczny dla wątków, więc jeden obiekt obsługuje cały proces.
+ */
+final class Randomness {
+
+    static final SecureRandom SOURCE = new SecureRandom();
+
+    private Randomness() {
+    }
+}
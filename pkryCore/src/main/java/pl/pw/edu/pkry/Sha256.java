@@ -0,0 +1,206 @@
+package pl.pw.edu.pkry;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Implementacja SHA-256 (FIPS 180-4) z możliwością eksportu i importu stanu pośredniego.
+ * Wyniki są identyczne z MessageDigest.getInstance("SHA-256"); w odróżnieniu od dostawcy JDK
+ * stan po przetworzeniu dokumentu (midstate) można zapisać na dysk i odtworzyć w innym procesie.
+ */
+public final class Sha256 extends MessageDigest implements Cloneable {
+
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int[] IV = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private int[] h = new int[8];
+
+    private int[] w = new int[64];
+
+    private byte[] buffer = new byte[64];
+
+    /**
+     * Liczba przetworzonych bajtów
+     */
+    private long count;
+
+    public Sha256() {
+        super("SHA-256");
+        engineReset();
+    }
+
+    /**
+     * Eksport stanu pośredniego
+     * @return stan: 8 słów h, liczba bajtów i niepełny blok bufora
+     */
+    public State exportState() {
+        return new State(Arrays.copyOf(h, 8), count, Arrays.copyOf(buffer, (int) (count & 63)));
+    }
+
+    /**
+     * Odtworzenie skrótu ze stanu pośredniego
+     * @param state stan wyeksportowany metodą exportState
+     * @return skrót kontynuujący obliczenia od zapisanego stanu
+     */
+    public static Sha256 importState(State state) {
+        if (state.h.length != 8 || state.tail.length != (int) (state.count & 63)) {
+            throw new IllegalArgumentException("Corrupted SHA-256 state");
+        }
+        Sha256 md = new Sha256();
+        System.arraycopy(state.h, 0, md.h, 0, 8);
+        System.arraycopy(state.tail, 0, md.buffer, 0, state.tail.length);
+        md.count = state.count;
+        return md;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 32;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[(int) (count & 63)] = input;
+        count++;
+        if ((count & 63) == 0) {
+            compress(buffer, 0);
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        int fill = (int) (count & 63);
+        count += len;
+        if (fill > 0) {
+            int n = Math.min(64 - fill, len);
+            System.arraycopy(input, offset, buffer, fill, n);
+            offset += n;
+            len -= n;
+            if (fill + n < 64) {
+                return;
+            }
+            compress(buffer, 0);
+        }
+        while (len >= 64) {
+            compress(input, offset);
+            offset += 64;
+            len -= 64;
+        }
+        System.arraycopy(input, offset, buffer, 0, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long bits = count << 3;
+        engineUpdate((byte) 0x80);
+        while ((count & 63) != 56) {
+            engineUpdate((byte) 0);
+        }
+        for (int i = 7; i >= 0; i--) {
+            engineUpdate((byte) (bits >>> (i * 8)));
+        }
+        byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            out[i * 4] = (byte) (h[i] >>> 24);
+            out[i * 4 + 1] = (byte) (h[i] >>> 16);
+            out[i * 4 + 2] = (byte) (h[i] >>> 8);
+            out[i * 4 + 3] = (byte) h[i];
+        }
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        System.arraycopy(IV, 0, h, 0, 8);
+        count = 0;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Sha256 copy = (Sha256) super.clone();
+        copy.h = h.clone();
+        copy.w = new int[64];
+        copy.buffer = buffer.clone();
+        return copy;
+    }
+
+    private void compress(byte[] block, int offset) {
+        for (int i = 0; i < 16; i++) {
+            int j = offset + i * 4;
+            w[i] = (block[j] << 24) | ((block[j + 1] & 0xff) << 16) | ((block[j + 2] & 0xff) << 8) | (block[j + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+        for (int i = 0; i < 64; i++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = hh + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+
+    /**
+     * Stan pośredni SHA-256
+     */
+    public static final class State {
+
+        private final int[] h;
+
+        private final long count;
+
+        private final byte[] tail;
+
+        public State(int[] h, long count, byte[] tail) {
+            this.h = h;
+            this.count = count;
+            this.tail = tail;
+        }
+
+        public int[] getH() {
+            return h;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public byte[] getTail() {
+            return tail;
+        }
+    }
+}
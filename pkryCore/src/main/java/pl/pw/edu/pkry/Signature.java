@@ -0,0 +1,244 @@
+package pl.pw.edu.pkry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tekstowa i binarna postać podpisu.
+ * Wersja 1 (pierwotna): sp#e#r. Wersja 2: 2#opcje#sp#e#r, gdzie opcje to pary klucz=wartość
+ * rozdzielone średnikiem, opisujące sposób wyznaczenia podpisywanej wiadomości (np. chunk=rozmiar
+ * fragmentu drzewa Merkle, alg=funkcja skrótu), wariant schematu (curve=P-256 - r jest wtedy zakodowanym punktem krzywej)
+ * lub klucze podpisu (key=ID klucza publicznego właściciela, proxy=ID klucza proxy - zob. KeyStore.id).
+ * Podpis bez opcji zapisywany jest zawsze w wersji 1, więc pliki tworzone przez wcześniejsze wydania
+ * pozostają czytelne w obie strony. Postać binarna (BinaryFormat) zawiera
+ * te same opcje i wartości; odczyt rozpoznaje format pliku automatycznie.
+ */
+public final class Signature {
+
+    /**
+     * Wersja formatu z opcjami
+     */
+    public static final String VERSION = "2";
+
+    /**
+     * Opcja: rozmiar fragmentu drzewa Merkle (w bajtach)
+     */
+    public static final String CHUNK = "chunk";
+
+    /**
+     * Opcja: nazwa krzywej eliptycznej (podpis wariantu EC)
+     */
+    public static final String CURVE = "curve";
+
+    /**
+     * Opcja: funkcja skrótu (brak opcji - SHA-256)
+     */
+    public static final String ALGORITHM = "alg";
+
+    /**
+     * Opcja: ID klucza publicznego właściciela
+     */
+    public static final String KEY = "key";
+
+    /**
+     * Opcja: ID klucza proxy (odcisk r)
+     */
+    public static final String PROXY = "proxy";
+
+    private final Map<String, String> options;
+
+    private final BigInteger sp, e, r;
+
+    /**
+     * @param options opcje podpisu (pusta mapa - format pierwotny)
+     * @param sp s_p
+     * @param e e
+     * @param r część klucza proxy
+     */
+    public Signature(Map<String, String> options, BigInteger sp, BigInteger e, BigInteger r) {
+        this.options = Collections.unmodifiableMap(new LinkedHashMap<>(options));
+        this.sp = sp;
+        this.e = e;
+        this.r = r;
+    }
+
+    /**
+     * Odczyt pliku podpisu w postaci binarnej lub tekstowej (wersja 1 lub 2)
+     * @param content treść pliku podpisu
+     * @return podpis
+     * @throws IllegalArgumentException gdy format jest niepoprawny lub nieobsługiwany
+     */
+    public static Signature read(byte[] content) {
+        long start = Metrics.start();
+        try {
+            if (!BinaryFormat.isBinary(content)) {
+                return parse(new String(content, StandardCharsets.UTF_8));
+            }
+            BinaryFormat.Record record = BinaryFormat.read(content, BinaryFormat.SIGNATURE);
+            if (record.size() != 3) {
+                throw new IllegalArgumentException("Unsupported signature format");
+            }
+            return new Signature(options(record.getLabel()), record.get(0), record.get(1), record.get(2));
+        } finally {
+            Metrics.record(Metrics.PARSE, start);
+        }
+    }
+
+    /**
+     * Odczyt podpisu w wersji 1 lub 2
+     * @param text treść pliku podpisu
+     * @return podpis
+     * @throws IllegalArgumentException gdy format jest niepoprawny lub nieobsługiwany
+     */
+    public static Signature parse(String text) {
+        String tmp[] = text.trim().split("#", -1);
+        Map<String, String> options = new LinkedHashMap<>();
+        int offset = 0;
+        if (tmp.length == 5 && tmp[0].equals(VERSION)) {
+            options = options(tmp[1]);
+            offset = 2;
+        } else if (tmp.length != 3) {
+            throw new IllegalArgumentException("Unsupported signature format");
+        }
+        try {
+            return new Signature(options, new BigInteger(tmp[offset], 16), new BigInteger(tmp[offset + 1], 16), new BigInteger(tmp[offset + 2], 16));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Signature values are badly formatted", ex);
+        }
+    }
+
+    /**
+     * @return treść pliku podpisu
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        if (!options.isEmpty()) {
+            sb.append(VERSION).append("#").append(formatOptions()).append("#");
+        }
+        sb.append(sp.toString(16)).append("#").append(e.toString(16)).append("#").append(r.toString(16));
+        return sb.toString();
+    }
+
+    /**
+     * @return treść pliku podpisu w postaci binarnej
+     */
+    public byte[] encode() {
+        return BinaryFormat.encode(BinaryFormat.SIGNATURE, formatOptions(), sp, e, r);
+    }
+
+    /**
+     * Zapis pliku podpisu
+     * @param file ścieżka pliku
+     * @param binary czy zapisać podpis w postaci binarnej (false - tekstowej)
+     * @throws IOException
+     */
+    public void write(Path file, boolean binary) throws IOException {
+        long start = Metrics.start();
+        Files.write(file, binary ? encode() : format().getBytes(StandardCharsets.UTF_8));
+        Metrics.record(Metrics.WRITE, start);
+    }
+
+    /**
+     * Odczyt opcji (klucz=wartość rozdzielone średnikiem; pusty tekst - brak opcji)
+     */
+    private static Map<String, String> options(String text) {
+        Map<String, String> options = new LinkedHashMap<>();
+        if (text.isEmpty()) {
+            return options;
+        }
+        for (String option : text.split(";")) {
+            int eq = option.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Signature option " + option + " is badly formatted");
+            }
+            options.put(option.substring(0, eq), option.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private String formatOptions() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(";");
+            }
+            sb.append(option.getKey()).append("=").append(option.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return opcje podpisu (pusta mapa dla formatu pierwotnego)
+     */
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    /**
+     * @return rozmiar fragmentu drzewa Merkle lub 0, gdy podpisywana była cała treść pliku
+     * @throws IllegalArgumentException gdy opcja ma niepoprawną wartość
+     */
+    public int getChunk() {
+        String chunk = options.get(CHUNK);
+        if (chunk == null) {
+            return 0;
+        }
+        try {
+            return MerkleTree.checkChunk(Integer.parseInt(chunk));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Signature chunk size " + chunk + " is badly formatted", ex);
+        }
+    }
+
+    /**
+     * @return nazwa funkcji skrótu użytej przy podpisie
+     * @throws IllegalArgumentException gdy funkcja nie jest obsługiwana
+     */
+    public String getAlgorithm() {
+        String algorithm = options.get(ALGORITHM);
+        return algorithm == null ? DigestAlgorithms.DEFAULT : DigestAlgorithms.check(algorithm);
+    }
+
+    /**
+     * @return nazwa krzywej eliptycznej lub null dla podpisu nad Z*p
+     */
+    public String getCurve() {
+        return options.get(CURVE);
+    }
+
+    /**
+     * @return ID klucza publicznego właściciela lub null, gdy podpis go nie zawiera
+     * @throws IllegalArgumentException gdy opcja ma niepoprawną wartość
+     */
+    public Long getOwnerId() {
+        String id = options.get(KEY);
+        return id == null ? null : KeyStore.parseId(id);
+    }
+
+    /**
+     * @return ID klucza proxy lub null, gdy podpis go nie zawiera
+     * @throws IllegalArgumentException gdy opcja ma niepoprawną wartość
+     */
+    public Long getProxyId() {
+        String id = options.get(PROXY);
+        return id == null ? null : KeyStore.parseId(id);
+    }
+
+    public BigInteger getSp() {
+        return sp;
+    }
+
+    public BigInteger getE() {
+        return e;
+    }
+
+    public BigInteger getR() {
+        return r;
+    }
+}
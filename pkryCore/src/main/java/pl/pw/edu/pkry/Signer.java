@@ -0,0 +1,425 @@
+package pl.pw.edu.pkry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Podpisywanie dokumentów kluczem proxy: l losowe z przedziału (1, q-1), r_p = g^l mod p
+ * (w wariancie EC - zakodowany punkt l * G), e = H(m || r_p) oraz s_p = (s * e + l) mod q.
+ * Na życzenie podpis zawiera ID klucza publicznego właściciela i klucza proxy (opcje key i proxy,
+ * zob. options(chunk, algorithm, ids)); bez nich podpis Z*p bez innych opcji ma pierwotny format sp#e#r.
+ * Po utworzeniu obiekt może być używany współbieżnie; pary (l, r_p) mogą pochodzić z magazynu
+ * kuponów przygotowanych zawczasu (CouponStore).
+ */
+public final class Signer {
+
+    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+
+    /**
+     * Klucz publiczny
+     */
+    private final BigInteger q, p, g, y;
+
+    /**
+     * Parametry klucza proxy
+     */
+    private final BigInteger s, r;
+
+    /**
+     * ID klucza publicznego właściciela i klucza proxy zapisywane w podpisie (KeyStore.id)
+     */
+    private final String ownerId, proxyId;
+
+    /**
+     * Krzywa eliptyczna (wariant EC: g - zakodowany punkt G, q - rząd n, y i r - zakodowane punkty)
+     * lub null dla schematu nad Z*p
+     */
+    private final EllipticCurve curve;
+
+    /**
+     * Magazyn przygotowanych zawczasu par (l, r_p) lub null, gdy nie istnieje
+     */
+    private volatile CouponStore coupons;
+
+    /**
+     * @param proxyKey treść pliku klucza proxy (w postaci tekstowej lub binarnej)
+     * @param publicKey treść pliku klucza publicznego właściciela (w postaci tekstowej lub binarnej)
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub klucz proxy
+     * nie został wydany dla klucza publicznego
+     */
+    public Signer(byte[] proxyKey, byte[] publicKey) throws MalformedKeyException, KeyValidationException {
+        this(BinaryFormat.readKey(proxyKey, BinaryFormat.PROXY_KEY), BinaryFormat.readKey(publicKey, BinaryFormat.PUBLIC_KEY));
+    }
+
+    /**
+     * @param proxyKey klucz proxy
+     * @param publicKey klucz publiczny właściciela
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub klucz proxy
+     * nie został wydany dla klucza publicznego
+     */
+    public Signer(BinaryFormat.Record proxyKey, BinaryFormat.Record publicKey) throws MalformedKeyException, KeyValidationException {
+        if (!publicKey.getLabel().isEmpty()) {
+            try {
+                if (publicKey.size() != 1) {
+                    throw new IllegalArgumentException();
+                }
+                curve = EllipticCurve.forName(publicKey.getLabel());
+                y = publicKey.get(0);
+            } catch (RuntimeException ex) {
+                throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+            }
+            if (proxyKey.size() != 2 || !proxyKey.getLabel().equals(curve.getName())) {
+                throw new MalformedKeyException(BinaryFormat.PROXY_KEY);
+            }
+            r = proxyKey.get(0);
+            s = proxyKey.get(1);
+            p = curve.getPrime();
+            g = curve.getGenerator();
+            q = curve.getOrder();
+            if (!curve.isPoint(y)) {
+                throw new KeyValidationException("Public key parameters are invalid! Try again!");
+            }
+            if (!curve.isPoint(r) || !curve.multiplyBase(s).equals(curve.add(y, curve.multiply(r, r)))) {
+                throw new KeyValidationException("Proxy key does not match public key! Try again!");
+            }
+            ownerId = KeyStore.format(KeyStore.id(BinaryFormat.PUBLIC_KEY, curve.getName(), y));
+            proxyId = KeyStore.format(KeyStore.id(BinaryFormat.PROXY_KEY, curve.getName(), r));
+            return;
+        }
+
+        if (proxyKey.size() != 2 || !proxyKey.getLabel().isEmpty()) {
+            throw new MalformedKeyException(BinaryFormat.PROXY_KEY);
+        }
+        if (publicKey.size() != 4) {
+            throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+        }
+        curve = null;
+        r = proxyKey.get(0);
+        s = proxyKey.get(1);
+        p = publicKey.get(0);
+        g = publicKey.get(1);
+        q = publicKey.get(2);
+        y = publicKey.get(3);
+        if (!KeyValidator.validate(p, g, q, y)) {
+            throw new KeyValidationException("Public key parameters are invalid! Try again!");
+        }
+        // g^s = y * r^r (mod p) jak przy wydaniu klucza (ProxyKeyIssuer)
+        Montgomery ctx = Montgomery.forModulus(p);
+        if (r.signum() <= 0 || r.compareTo(p) >= 0 || !ctx.modPow(g, s).equals(ctx.multiply(y, ctx.modPow(r, r)))) {
+            throw new KeyValidationException("Proxy key does not match public key! Try again!");
+        }
+        ownerId = KeyStore.format(KeyStore.id(BinaryFormat.PUBLIC_KEY, "", p, g, q, y));
+        proxyId = KeyStore.format(KeyStore.id(BinaryFormat.PROXY_KEY, "", r));
+    }
+
+    /**
+     * Podpisujący dla kluczy wskazanych ścieżką pliku lub odwołaniem magazyn#ID, z tablicą potęg g
+     * leżącą obok klucza publicznego i magazynem kuponów leżącym obok klucza proxy
+     * @param proxyKey ścieżka klucza proxy lub odwołanie do klucza w magazynie
+     * @param publicKey ścieżka klucza publicznego właściciela lub odwołanie do klucza w magazynie
+     * @return podpisujący
+     * @throws MalformedKeyException gdy klucza nie da się odczytać lub ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub klucz proxy
+     * nie został wydany dla klucza publicznego
+     */
+    public static Signer open(String proxyKey, String publicKey) throws MalformedKeyException, KeyValidationException {
+        Signer signer = new Signer(KeyStore.readKey(proxyKey, BinaryFormat.PROXY_KEY), KeyStore.readKey(publicKey, BinaryFormat.PUBLIC_KEY));
+        signer.loadTable(FixedBase.tablePath(publicKey));
+        signer.openCoupons(CouponStore.storePath(proxyKey));
+        return signer;
+    }
+
+    /**
+     * Wczytanie tablicy potęg g zapisanej przez keygen (bez znaczenia w wariancie EC)
+     * @param table plik tablicy (FixedBase.tablePath)
+     */
+    public void loadTable(Path table) {
+        if (curve == null) {
+            FixedBase.forBase(g, p, p.bitLength(), table);
+        }
+    }
+
+    /**
+     * Otwarcie magazynu kuponów (o ile istnieje i pasuje do klucza publicznego i klucza proxy)
+     * @param store plik magazynu (CouponStore.storePath)
+     */
+    public void openCoupons(Path store) {
+        BigInteger[] header = couponHeader();
+        coupons = CouponStore.open(store, header[0], header[1], r);
+    }
+
+    /**
+     * @return magazyn kuponów lub null, gdy nie został otwarty
+     */
+    public CouponStore getCoupons() {
+        return coupons;
+    }
+
+    /**
+     * Podpis dokumentu (skrót całej treści funkcją SHA-256)
+     * @param document treść dokumentu
+     * @return podpis
+     */
+    public Signature sign(byte[] document) {
+        try {
+            return sign(new ByteArrayInputStream(document), 0, DigestAlgorithms.DEFAULT);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Podpis dokumentu czytanego ze strumienia
+     * @param document strumień z treścią dokumentu (nie jest zamykany)
+     * @param chunk rozmiar fragmentu drzewa Merkle lub 0 - skrót całej treści
+     * @param algorithm nazwa funkcji skrótu
+     * @return podpis
+     * @throws IOException gdy strumienia nie da się odczytać
+     */
+    public Signature sign(InputStream document, int chunk, String algorithm) throws IOException {
+        return sign(FileDigest.message(document, chunk, algorithm), options(chunk, algorithm));
+    }
+
+    /**
+     * Wygenerowanie podpisu dokumentu (do zapisu w postaci tekstowej lub binarnej)
+     * @param document skrót z dopisaną podpisywaną wiadomością; po wywołaniu zostaje wyzerowany
+     * @param options opcje podpisu (uzupełniane o krzywą w wariancie EC)
+     * @return podpis
+     */
+    public Signature sign(MessageDigest document, Map<String, String> options) {
+        long start = Metrics.start();
+        BigInteger[] lrp = genLRP();
+        BigInteger e_ = genE(document, lrp[1]);
+        BigInteger sp_ = genSP(s, e_, lrp[0], q);
+        Metrics.record(Metrics.EXPONENTIATE, start);
+        Metrics.count(Metrics.SIGNATURES_CREATED);
+        return newSignature(sp_, e_, options);
+    }
+
+    /**
+     * Skrót podpisywanej wiadomości z pliku: cała treść albo - dla chunk &gt; 0 - korzeń drzewa Merkle
+     * wyznaczony równolegle z fragmentów pliku (liście zapisywane są w pliku leaves); przy podpisie
+     * bez podziału na fragmenty plik leaves pozostały po wcześniejszym podpisie jest usuwany
+     * @param file podpisywany plik
+     * @param cache czy korzystać z zapamiętanego stanu skrótu (tylko dla skrótu całej treści)
+     * @param chunk rozmiar fragmentu lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param leaves ścieżka pliku liści lub null
+     * @return skrót, do którego można dopisać r_p
+     * @throws IOException
+     */
+    public static MessageDigest document(Path file, boolean cache, int chunk, String algorithm, Path leaves) throws IOException {
+        if (chunk <= 0 && leaves != null) {
+            Files.deleteIfExists(leaves);
+        }
+        if (chunk > 0) {
+            long start = Metrics.start();
+            byte[][] hashes = MerkleTree.leaves(file, chunk, algorithm);
+            Metrics.record(Metrics.HASH, start);
+            start = Metrics.start();
+            MerkleTree.writeLeaves(leaves, hashes);
+            Metrics.record(Metrics.WRITE, start);
+            return MerkleTree.message(MerkleTree.root(hashes, algorithm), chunk, DigestAlgorithms.newDigest(algorithm));
+        }
+        long start = Metrics.start();
+        try {
+            return cache ? DigestCache.get(file, algorithm, true) : FileDigest.update(file, DigestAlgorithms.newDigest(algorithm));
+        } finally {
+            Metrics.record(Metrics.HASH, start);
+        }
+    }
+
+    /**
+     * Opcje podpisu
+     * @param chunk rozmiar fragmentu drzewa Merkle lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @return opcje (pusta mapa - skrót całej treści funkcją SHA-256)
+     */
+    public static Map<String, String> options(int chunk, String algorithm) {
+        Map<String, String> options = new LinkedHashMap<>();
+        if (chunk > 0) {
+            options.put(Signature.CHUNK, String.valueOf(chunk));
+        }
+        if (!algorithm.equals(DigestAlgorithms.DEFAULT)) {
+            options.put(Signature.ALGORITHM, DigestAlgorithms.check(algorithm));
+        }
+        return options;
+    }
+
+    /**
+     * Opcje podpisu, opcjonalnie z ID kluczy (opcje key i proxy pozwalają weryfikującemu odnaleźć
+     * klucz publiczny w indeksie kluczy, ale wymuszają format w wersji 2)
+     * @param chunk rozmiar fragmentu drzewa Merkle lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param ids czy zapisać w podpisie ID klucza publicznego i klucza proxy
+     * @return opcje
+     */
+    public Map<String, String> options(int chunk, String algorithm, boolean ids) {
+        Map<String, String> options = options(chunk, algorithm);
+        if (ids) {
+            options.put(Signature.KEY, ownerId);
+            options.put(Signature.PROXY, proxyId);
+        }
+        return options;
+    }
+
+    /**
+     * Para (l, r_p) - z magazynu kuponów, a gdy go brak lub kupony się wyczerpały - wyznaczona na bieżąco
+     * @return tablica {l, r_p}
+     */
+    public BigInteger[] genLRP() {
+        CouponStore store = coupons;
+        if (store != null) {
+            try {
+                BigInteger[] coupon = store.take();
+                if (coupon != null) {
+                    Metrics.count(Metrics.COUPONS_USED);
+                    return coupon;
+                }
+            } catch (IOException ex) {
+                // magazyn niedostępny - kupon wyznaczany na bieżąco
+            }
+        }
+        BigInteger l_ = genL(q);
+        return new BigInteger[]{l_, rp(l_)};
+    }
+
+    /**
+     * Faza offline - dopisanie count par (l, r_p) do magazynu kuponów (i jego otwarcie)
+     * @param count liczba kuponów
+     * @param store plik magazynu (CouponStore.storePath)
+     * @throws IOException
+     */
+    public void precompute(int count, Path store) throws IOException {
+        List<BigInteger[]> generated = IntStream.range(0, count).parallel().mapToObj(i -> {
+            BigInteger l_ = genL(q);
+            return new BigInteger[]{l_, rp(l_)};
+        }).collect(Collectors.toList());
+        BigInteger[] header = couponHeader();
+        CouponStore.append(store, header[0], header[1], r, generated);
+        coupons = CouponStore.open(store, header[0], header[1], r);
+    }
+
+    /**
+     * Parametry nagłówka magazynu kuponów: p i g, a w wariancie EC - zakodowany punkt G i rząd n
+     * (zakodowany punkt jest najdłuższą wartością kuponu, więc wyznacza szerokość rekordu)
+     */
+    private BigInteger[] couponHeader() {
+        return curve == null ? new BigInteger[]{p, g} : new BigInteger[]{g, q};
+    }
+
+    /**
+     * r_p = g^l mod p, a w wariancie EC - zakodowany punkt l * G
+     */
+    private BigInteger rp(BigInteger l_) {
+        return curve == null ? genRP(g, l_, p) : curve.multiplyBase(l_);
+    }
+
+    /**
+     * Podpis z opcjami (wariant EC zawsze z opcją curve) uzupełnionymi o ID klucza publicznego
+     * właściciela i klucza proxy, po których weryfikator odnajduje klucz
+     */
+    private Signature newSignature(BigInteger sp, BigInteger e, Map<String, String> options) {
+        options = new LinkedHashMap<>(options);
+        if (curve != null) {
+            options.put(Signature.CURVE, curve.getName());
+        }
+        return new Signature(options, sp, e, r);
+    }
+
+    /**
+     * @return krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    /**
+     * @return ID klucza publicznego właściciela (KeyStore.format)
+     */
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * @return ID klucza proxy (KeyStore.format)
+     */
+    public String getProxyId() {
+        return proxyId;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public BigInteger getG() {
+        return g;
+    }
+
+    public BigInteger getQ() {
+        return q;
+    }
+
+    public BigInteger getR() {
+        return r;
+    }
+
+    /**
+     * Geneacja r_p
+     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
+     * @param l losowa liczba z przedziału (1, q-1)
+     * @param p duża losowa liczba pierwsza
+     * @return BigInteger r_p
+     */
+    public static BigInteger genRP(BigInteger g, BigInteger l, BigInteger p) {
+        return FixedBase.forBase(g, p, p.bitLength()).pow(l);
+    }
+
+    /**
+     * Generacja s_p
+     * @param s fragment klucza proxy
+     * @param e skrót dokumentu i konkatenacji z parametrem r_p
+     * @param l losowa liczba z przedziału (1, q-1)
+     * @param q element z*p rzędu q
+     * @return BigInteger s_p
+     */
+    public static BigInteger genSP(BigInteger s, BigInteger e, BigInteger l, BigInteger q) {
+        return Montgomery.mulAdd(s, e, l, q);
+    }
+
+    /**
+     * Generacja e na podstawie skrótu, do którego dopisano już treść pliku
+     * @param m skrót (funkcja skrótu podpisu) z dopisaną treścią pliku; po wywołaniu zostaje wyzerowany
+     * @param rp parametr r_p
+     * @return skrót konkatenacji m i rp
+     */
+    public static BigInteger genE(MessageDigest m, BigInteger rp) {
+        m.update(rp.toByteArray());
+        return new BigInteger(m.digest());
+    }
+
+    /**
+     * Generacja L
+     * @param n liczba będąca krańcem przedziału losowości
+     * @return liczba losowa z przedziału (1, n-1)
+     */
+    public static BigInteger genL(BigInteger n) {
+        BigInteger result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        while (result.compareTo(n.subtract(TWO)) == 1 || result.compareTo(TWO) == -1) {
+            result = new BigInteger(n.bitLength(), Randomness.SOURCE);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,377 @@
+package pl.pw.edu.pkry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * Weryfikacja podpisów kluczem publicznym właściciela: e' = H(m || g^sp * (y * r^r)^(-e) mod p),
+ * a w wariancie EC e' = H(m || sp * G - e * (Y + r * R)); podpis jest poprawny, gdy e' = e.
+ * Podpis z ID innego klucza (opcje key i proxy) odrzucany jest bez kosztownych obliczeń.
+ * Obiekt nie ma stanu zmiennego, więc może być używany współbieżnie.
+ */
+public final class Verifier {
+
+    /**
+     * Parametry klucza publicznego
+     */
+    private final BigInteger p, g, q, y;
+
+    /**
+     * Krzywa eliptyczna (wariant EC: g - zakodowany punkt G, q - rząd n, y - zakodowany punkt Y)
+     * lub null dla schematu nad Z*p
+     */
+    private final EllipticCurve curve;
+
+    /**
+     * ID klucza publicznego (KeyStore.id)
+     */
+    private final long id;
+
+    /**
+     * Czy pierwszość p i q potwierdził certyfikat Pratta
+     */
+    private final boolean certified;
+
+    /**
+     * @param publicKey treść pliku klucza publicznego (w postaci tekstowej lub binarnej)
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne
+     */
+    public Verifier(byte[] publicKey) throws MalformedKeyException, KeyValidationException {
+        this(BinaryFormat.readKey(publicKey, BinaryFormat.PUBLIC_KEY), null);
+    }
+
+    /**
+     * @param publicKey klucz publiczny
+     * @param certificate certyfikat pierwszości p i q (PrattCertificate) lub null - bez sprawdzenia
+     * @throws MalformedKeyException gdy klucz ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub certyfikat ich nie potwierdza
+     */
+    public Verifier(BinaryFormat.Record publicKey, String certificate) throws MalformedKeyException, KeyValidationException {
+        if (!publicKey.getLabel().isEmpty()) {
+            try {
+                if (publicKey.size() != 1) {
+                    throw new IllegalArgumentException();
+                }
+                curve = EllipticCurve.forName(publicKey.getLabel());
+                y = publicKey.get(0);
+            } catch (RuntimeException ex) {
+                throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+            }
+            p = curve.getPrime();
+            g = curve.getGenerator();
+            q = curve.getOrder();
+            if (!curve.isPoint(y)) {
+                throw new KeyValidationException("Public key parameters are invalid! Try again!");
+            }
+            id = KeyStore.id(BinaryFormat.PUBLIC_KEY, curve.getName(), y);
+            certified = false;
+            return;
+        }
+        if (publicKey.size() != 4) {
+            throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+        }
+        curve = null;
+        p = publicKey.get(0);
+        g = publicKey.get(1);
+        q = publicKey.get(2);
+        y = publicKey.get(3);
+        boolean proven = certificate != null;
+        if (proven && !PrattVerifier.verify(certificate, p, q)) {
+            throw new KeyValidationException("Primality certificate verification failed! Public key is wrong!");
+        }
+        if (!KeyValidator.validate(p, g, q, y, proven)) {
+            throw new KeyValidationException("Public key parameters are invalid! Try again!");
+        }
+        id = KeyStore.id(BinaryFormat.PUBLIC_KEY, "", p, g, q, y);
+        certified = proven;
+    }
+
+    /**
+     * Weryfikujący dla klucza publicznego wskazanego ścieżką pliku lub odwołaniem magazyn#ID,
+     * z certyfikatem pierwszości (PrattVerifier.certificatePath) i tablicą potęg g leżącymi obok klucza
+     * @param publicKey ścieżka klucza publicznego lub odwołanie do klucza w magazynie
+     * @return weryfikujący
+     * @throws MalformedKeyException gdy klucza lub certyfikatu nie da się odczytać albo klucz ma niepoprawny format
+     * @throws KeyValidationException gdy parametry klucza publicznego są niepoprawne lub certyfikat ich nie potwierdza
+     */
+    public static Verifier open(String publicKey) throws MalformedKeyException, KeyValidationException {
+        BinaryFormat.Record key = KeyStore.readKey(publicKey, BinaryFormat.PUBLIC_KEY);
+        Verifier verifier = new Verifier(key, key.getLabel().isEmpty() ? PrattVerifier.readCertificate(publicKey) : null);
+        verifier.loadTable(FixedBase.tablePath(publicKey));
+        return verifier;
+    }
+
+    /**
+     * Wczytanie tablicy potęg g zapisanej przez keygen (bez znaczenia w wariancie EC)
+     * @param table plik tablicy (FixedBase.tablePath)
+     */
+    public void loadTable(Path table) {
+        if (curve == null) {
+            FixedBase.forBase(g, p, p.bitLength(), table);
+        }
+    }
+
+    /**
+     * Weryfikacja podpisu dokumentu
+     * @param signature treść pliku podpisu (w postaci tekstowej lub binarnej)
+     * @param document treść dokumentu
+     * @return true, gdy podpis jest poprawny
+     * @throws MalformedSignatureException gdy podpis ma niepoprawny format
+     */
+    public boolean verify(byte[] signature, byte[] document) throws MalformedSignatureException {
+        try {
+            return verify(signature, new ByteArrayInputStream(document));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Weryfikacja podpisu dokumentu czytanego ze strumienia; podpis innego klucza odrzucany jest
+     * bez czytania strumienia
+     * @param signature treść pliku podpisu (w postaci tekstowej lub binarnej)
+     * @param document strumień z treścią dokumentu (nie jest zamykany)
+     * @return true, gdy podpis jest poprawny
+     * @throws MalformedSignatureException gdy podpis ma niepoprawny format
+     * @throws IOException gdy strumienia nie da się odczytać
+     */
+    public boolean verify(byte[] signature, InputStream document) throws MalformedSignatureException, IOException {
+        Signature parsed = parse(signature);
+        if (!matches(parsed)) {
+            Metrics.count(Metrics.VERIFY_INVALID);
+            return false;
+        }
+        return verify(parsed, FileDigest.message(document, parsed.getChunk(), parsed.getAlgorithm()));
+    }
+
+    /**
+     * Weryfikacja odczytanego podpisu
+     * @param signature podpis
+     * @param document skrót z dopisaną podpisywaną wiadomością (zob. document); po wywołaniu zostaje wyzerowany
+     * @return true, gdy podpis jest poprawny
+     */
+    public boolean verify(Signature signature, MessageDigest document) {
+        boolean valid = signature.getE().equals(eprim(signature, document));
+        Metrics.count(valid ? Metrics.VERIFY_VALID : Metrics.VERIFY_INVALID);
+        return valid;
+    }
+
+    /**
+     * Parametr e' wyznaczony dla podpisu - podpis jest poprawny, gdy e' = e
+     * @param signature podpis
+     * @param document skrót z dopisaną podpisywaną wiadomością (zob. document); po wywołaniu zostaje wyzerowany
+     * @return e' lub null, gdy podpis nie pasuje do klucza (zob. value)
+     */
+    public BigInteger eprim(Signature signature, MessageDigest document) {
+        return genEprim(document, value(signature));
+    }
+
+    /**
+     * Weryfikacja podpisu pliku; podpis innego klucza odrzucany jest bez czytania pliku
+     * @param signature podpis
+     * @param file podpisany plik
+     * @param cache czy korzystać z zapamiętanego stanu skrótu (tylko dla skrótu całej treści)
+     * @return true, gdy podpis jest poprawny
+     * @throws IOException gdy pliku nie da się odczytać
+     */
+    public boolean verify(Signature signature, Path file, boolean cache) throws IOException {
+        if (!matches(signature)) {
+            Metrics.count(Metrics.VERIFY_INVALID);
+            return false;
+        }
+        return verify(signature, document(signature, file, cache));
+    }
+
+    /**
+     * Weryfikacja podpisu w wersji 2 z fragmentami (chunk) względem zapisanych liści drzewa Merkle -
+     * bez czytania podpisanego pliku (zob. verifyChunk)
+     * @param signature podpis
+     * @param leaves liście drzewa Merkle (MerkleTree.readLeaves)
+     * @return true, gdy podpis obejmuje korzeń drzewa zbudowanego z liści
+     * @throws IllegalArgumentException gdy podpis nie obejmuje osobnych fragmentów
+     */
+    public boolean verify(Signature signature, byte[][] leaves) {
+        int chunk = signature.getChunk();
+        if (chunk == 0) {
+            throw new IllegalArgumentException("Signature does not cover separate chunks");
+        }
+        String algorithm = signature.getAlgorithm();
+        return verify(signature, MerkleTree.message(MerkleTree.root(leaves, algorithm), chunk, DigestAlgorithms.newDigest(algorithm)));
+    }
+
+    /**
+     * Sprawdzenie pojedynczego fragmentu pliku względem liści drzewa Merkle, których podpis
+     * sprawdzono wcześniej (verify(signature, leaves)); czytany jest wyłącznie wskazany fragment
+     * @param signature podpis (określa rozmiar fragmentu i funkcję skrótu)
+     * @param leaves liście drzewa Merkle
+     * @param file podpisany plik
+     * @param index numer fragmentu
+     * @return true, gdy liczba fragmentów pliku zgadza się z liczbą liści, a fragment - z liściem
+     * @throws IOException gdy pliku nie da się odczytać
+     */
+    public static boolean verifyChunk(Signature signature, byte[][] leaves, Path file, int index) throws IOException {
+        int chunk = signature.getChunk();
+        return MerkleTree.count(Files.size(file), chunk) == leaves.length && index < leaves.length
+                && MessageDigest.isEqual(leaves[index], MerkleTree.leaf(file, chunk, index, signature.getAlgorithm()));
+    }
+
+    /**
+     * Odczyt podpisu wraz ze sprawdzeniem jego opcji
+     * @param content treść pliku podpisu (w postaci tekstowej lub binarnej)
+     * @return podpis
+     * @throws MalformedSignatureException gdy podpis lub jego opcje mają niepoprawny format
+     */
+    public static Signature parse(byte[] content) throws MalformedSignatureException {
+        if (content == null) {
+            throw new MalformedSignatureException();
+        }
+        try {
+            Signature signature = Signature.read(content);
+            signature.getChunk();
+            signature.getAlgorithm();
+            signature.getOwnerId();
+            signature.getProxyId();
+            return signature;
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedSignatureException(ex);
+        }
+    }
+
+    /**
+     * Wartość pomocnicza dla podpisu: g^sp * (y * r^r)^(-e) mod p, a w wariancie EC zakodowany punkt
+     * sp * G - e * (Y + r * R)
+     * @param signature podpis
+     * @return wartość lub null, gdy podpis nie pasuje do klucza (inne ID klucza publicznego lub klucza
+     * proxy, inny wariant schematu lub krzywa, r spoza grupy) - bez kosztownych obliczeń
+     */
+    public BigInteger value(Signature signature) {
+        if (!matches(signature)) {
+            return null;
+        }
+        long start = Metrics.start();
+        try {
+            if (curve == null) {
+                return signature.getCurve() != null ? null : genValue(g, signature.getSp(), y, signature.getR(), signature.getE(), p, q);
+            }
+            if (!curve.getName().equals(signature.getCurve())) {
+                return null;
+            }
+            EllipticCurve.PointTable base = ProxyBaseCache.get(curve, y, signature.getR());
+            return base == null ? null : curve.multiplyAdd(signature.getSp(), signature.getE().negate(), base);
+        } finally {
+            Metrics.record(Metrics.EXPONENTIATE, start);
+        }
+    }
+
+    /**
+     * Sprawdzenie ID kluczy zapisanych w podpisie (podpis bez ID pasuje do każdego klucza) - podpis
+     * innego właściciela odrzucany jest bez liczenia skrótu dokumentu i potęgowania
+     * @param signature podpis
+     * @return czy podpis może należeć do klucza publicznego
+     * @throws IllegalArgumentException gdy ID w podpisie ma niepoprawny format
+     */
+    public boolean matches(Signature signature) {
+        Long owner = signature.getOwnerId(), proxy = signature.getProxyId();
+        if (owner != null && owner != id) {
+            return false;
+        }
+        String label = curve == null ? "" : curve.getName();
+        String signed = signature.getCurve() == null ? "" : signature.getCurve();
+        return proxy == null || (label.equals(signed) && proxy == KeyStore.id(BinaryFormat.PROXY_KEY, label, signature.getR()));
+    }
+
+    /**
+     * Skrót podpisywanej wiadomości z pliku zgodnie z formatem podpisu: cała treść pliku albo korzeń
+     * drzewa Merkle wyznaczony równolegle z fragmentów pliku
+     * @param signature podpis (określa rozmiar fragmentu i funkcję skrótu)
+     * @param file podpisany plik
+     * @param cache czy korzystać z zapamiętanego stanu skrótu (tylko dla skrótu całej treści)
+     * @return skrót, do którego można dopisać wartość pomocniczą
+     * @throws IOException
+     * @throws IllegalArgumentException gdy podpis ma niepoprawne opcje
+     */
+    public static MessageDigest document(Signature signature, Path file, boolean cache) throws IOException {
+        int chunk = signature.getChunk();
+        String algorithm = signature.getAlgorithm();
+        long start = Metrics.start();
+        try {
+            if (chunk > 0) {
+                return MerkleTree.message(MerkleTree.root(MerkleTree.leaves(file, chunk, algorithm), algorithm), chunk, DigestAlgorithms.newDigest(algorithm));
+            }
+            return cache ? DigestCache.get(file, algorithm, true) : FileDigest.update(file, DigestAlgorithms.newDigest(algorithm));
+        } finally {
+            Metrics.record(Metrics.HASH, start);
+        }
+    }
+
+    /**
+     * @return ID klucza publicznego (KeyStore.id)
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return odcisk klucza publicznego
+     */
+    public String fingerprint() {
+        return KeyValidator.fingerprint(p, g, q, y);
+    }
+
+    /**
+     * @return czy pierwszość p i q potwierdził certyfikat Pratta
+     */
+    public boolean isCertified() {
+        return certified;
+    }
+
+    /**
+     * @return krzywa eliptyczna lub null dla schematu nad Z*p
+     */
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    /**
+     * Metoda generująca wartość pomocniczą do utworzenia wartości e',
+     * która niezbędna jest do przeprowadzenia weryfikacji sygnatury.
+     * Korzysta z tożsamości g^sp * y^(-e) * r^(-r*e) = g^sp * (y * r^r)^(-e), gdzie y * r^r
+     * jest stałe dla pełnomocnika i przechowywane w ProxyBaseCache. Elementy należą do podgrupy
+     * rzędu q, więc ujemny wykładnik redukowany jest modulo q i nie wymaga odwracania elementów.
+     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
+     * @param sp część podpisu pełnomocnika
+     * @param y klucz publiczny właściciela
+     * @param r część klucza proxy pełnomocnika
+     * @param e skrót binarnej zawartości pliku i jego konkatenacji z parametrem rp
+     * @param p duża liczba pierwsza
+     * @param q rząd podgrupy generowanej przez g
+     * @return BigInteger value lub null, gdy r nie należy do podgrupy rzędu q
+     */
+    public static BigInteger genValue(BigInteger g, BigInteger sp, BigInteger y, BigInteger r, BigInteger e, BigInteger p, BigInteger q) {
+        ProxyBaseCache.ProxyBase base = ProxyBaseCache.get(p, g, q, y, r);
+        if (base == null) {
+            return null;
+        }
+        return base.pow(sp.mod(q), e.negate().mod(q));
+    }
+
+    /**
+     * Generator parametru e' na podstawie skrótu, do którego dopisano już treść pliku
+     * @param m skrót (funkcja skrótu podpisu) z dopisaną treścią pliku; po wywołaniu zostaje wyzerowany
+     * @param value pomocnicza wartość, którą dopisujemy przez konkatenacje do m.
+     * @return BigInteger e' lub null, gdy value jest null
+     */
+    public static BigInteger genEprim(MessageDigest m, BigInteger value) {
+        if (value == null) {
+            return null;
+        }
+        m.update(value.toByteArray());
+        return new BigInteger(m.digest());
+    }
+}
@@ -0,0 +1,90 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Wsadowa weryfikacja kluczy proxy: zbiór poprawny przechodzi w całości, a podział na połowy
+ * wskazuje dokładnie zepsute klucze
+ */
+class BatchVerifierTest {
+
+    private static final Random RANDOM = new Random(32);
+
+    /**
+     * Grupa: q pierwsze, p = k*q + 1 pierwsze, g rzędu q
+     */
+    private static final BigInteger Q = BigInteger.probablePrime(160, RANDOM);
+
+    private static final BigInteger P = prime();
+
+    private static final BigInteger G = generator();
+
+    private static final BigInteger X = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+
+    private static final BigInteger Y = G.modPow(X, P);
+
+    private static BigInteger prime() {
+        while (true) {
+            BigInteger k = new BigInteger(350, RANDOM).shiftLeft(1);
+            BigInteger p = k.multiply(Q).add(BigInteger.ONE);
+            if (p.isProbablePrime(40)) {
+                return p;
+            }
+        }
+    }
+
+    private static BigInteger generator() {
+        BigInteger cofactor = P.subtract(BigInteger.ONE).divide(Q);
+        while (true) {
+            BigInteger g = new BigInteger(P.bitLength() - 1, RANDOM).modPow(cofactor, P);
+            if (g.compareTo(BigInteger.ONE) > 0) {
+                return g;
+            }
+        }
+    }
+
+    /**
+     * Klucze proxy r = g^k, s = x + k*r mod q (g^s = y * r^r mod p)
+     */
+    private static BigInteger[][] keys(int count) {
+        BigInteger[] r = new BigInteger[count], s = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            BigInteger k = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+            r[i] = G.modPow(k, P);
+            s[i] = X.add(k.multiply(r[i])).mod(Q);
+        }
+        return new BigInteger[][]{r, s};
+    }
+
+    @Test
+    void validBatchHasNoInvalidKeys() {
+        BigInteger[][] keys = keys(16);
+        assertTrue(new BatchVerifier(P, G, Y).findInvalid(keys[0], keys[1]).isEmpty());
+    }
+
+    @Test
+    void bisectionFindsExactlyTheBrokenKeys() {
+        BigInteger[][] keys = keys(13);
+        int[] broken = {0, 5, 6, 12};
+        for (int i : broken) {
+            keys[1][i] = keys[1][i].add(BigInteger.ONE).mod(Q);
+        }
+        assertEquals(Arrays.asList(0, 5, 6, 12), new BatchVerifier(P, G, Y).findInvalid(keys[0], keys[1]));
+    }
+
+    @Test
+    void singleKeyAndEmptyBatch() {
+        BigInteger[][] keys = keys(1);
+        BatchVerifier verifier = new BatchVerifier(P, G, Y);
+        assertTrue(verifier.findInvalid(keys[0], keys[1]).isEmpty());
+        assertTrue(verifier.findInvalid(new BigInteger[0], new BigInteger[0]).isEmpty());
+        keys[0][0] = keys[0][0].multiply(G).mod(P);
+        assertEquals(Arrays.asList(0), verifier.findInvalid(keys[0], keys[1]));
+    }
+}
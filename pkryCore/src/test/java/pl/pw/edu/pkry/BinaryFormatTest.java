@@ -0,0 +1,130 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Zapis i odczyt kluczy oraz podpisów w postaci binarnej i tekstowej
+ */
+class BinaryFormatTest {
+
+    private final Random random = new Random(44);
+
+    private BigInteger[] values() {
+        return new BigInteger[]{new BigInteger(1024, random), BigInteger.ONE, new BigInteger(160, random).negate(),
+                BigInteger.valueOf(255)};
+    }
+
+    private static void assertRecord(String label, BigInteger[] values, BinaryFormat.Record record) {
+        assertEquals(label, record.getLabel());
+        assertEquals(values.length, record.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], record.get(i));
+        }
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        BigInteger[] values = values();
+        for (String label : new String[]{"", EllipticCurve.P256_NAME}) {
+            byte[] content = BinaryFormat.encode(BinaryFormat.PROXY_KEY, label, values);
+            assertTrue(BinaryFormat.isBinary(content));
+            BinaryFormat.Record record = BinaryFormat.read(content, BinaryFormat.PROXY_KEY);
+            assertRecord(label, values, record);
+            assertEquals(content.length, record.getLength());
+        }
+    }
+
+    @Test
+    void recordsAreReadFromBufferPosition() {
+        byte[] first = BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "", BigInteger.TEN);
+        byte[] second = BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "x", BigInteger.ONE, BigInteger.valueOf(2));
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        buffer.flip();
+        BinaryFormat.Record record = BinaryFormat.decode(buffer, BinaryFormat.PUBLIC_KEY);
+        assertEquals(0, buffer.position());
+        assertRecord("", new BigInteger[]{BigInteger.TEN}, record);
+        buffer.position(record.getLength());
+        assertRecord("x", new BigInteger[]{BigInteger.ONE, BigInteger.valueOf(2)}, BinaryFormat.decode(buffer, BinaryFormat.PUBLIC_KEY));
+    }
+
+    @Test
+    void textRoundTrip() {
+        BigInteger[] values = {new BigInteger(512, random), new BigInteger(256, random), BigInteger.ONE};
+        String plain = BinaryFormat.format("", values);
+        assertFalse(BinaryFormat.isBinary(plain.getBytes(StandardCharsets.UTF_8)));
+        assertRecord("", values, BinaryFormat.read(plain.getBytes(StandardCharsets.UTF_8), BinaryFormat.PRIVATE_KEY));
+        String ec = BinaryFormat.format(EllipticCurve.P256_NAME, values);
+        assertTrue(ec.startsWith(EllipticCurve.KEY_VERSION + "#" + EllipticCurve.P256_NAME + "#"));
+        assertRecord(EllipticCurve.P256_NAME, values,
+                BinaryFormat.read((ec + "\n").getBytes(StandardCharsets.UTF_8), BinaryFormat.PRIVATE_KEY));
+        assertArrayEquals(ec.getBytes(StandardCharsets.UTF_8),
+                BinaryFormat.write(BinaryFormat.PRIVATE_KEY, EllipticCurve.P256_NAME, false, values));
+    }
+
+    @Test
+    void malformedRecordsAreRejected() {
+        byte[] content = BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "", values());
+        assertThrows(IllegalArgumentException.class, () -> BinaryFormat.read(content, BinaryFormat.PRIVATE_KEY));
+        byte[] version = content.clone();
+        version[4] = BinaryFormat.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> BinaryFormat.read(version, BinaryFormat.PUBLIC_KEY));
+        for (int length : new int[]{4, 7, 10, content.length - 1}) {
+            byte[] truncated = Arrays.copyOf(content, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryFormat.read(truncated, BinaryFormat.PUBLIC_KEY));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryFormat.read("12#zz".getBytes(StandardCharsets.UTF_8), BinaryFormat.PUBLIC_KEY));
+        assertThrows(MalformedKeyException.class, () -> BinaryFormat.readKey(Arrays.copyOf(content, 9), BinaryFormat.PUBLIC_KEY));
+        assertThrows(MalformedKeyException.class, () -> BinaryFormat.readKey(null, BinaryFormat.PUBLIC_KEY));
+    }
+
+    @Test
+    void signatureRoundTrip() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put(Signature.CHUNK, String.valueOf(MerkleTree.DEFAULT_CHUNK));
+        options.put(Signature.ALGORITHM, DigestAlgorithms.BLAKE2B_256);
+        options.put(Signature.KEY, "00000000000000ab");
+        Signature signature = new Signature(options, new BigInteger(160, random), new BigInteger(256, random),
+                new BigInteger(1024, random));
+        for (Signature copy : new Signature[]{Signature.read(signature.encode()), Signature.parse(signature.format()),
+                Signature.read(signature.format().getBytes(StandardCharsets.UTF_8))}) {
+            assertEquals(options, copy.getOptions());
+            assertEquals(signature.getSp(), copy.getSp());
+            assertEquals(signature.getE(), copy.getE());
+            assertEquals(signature.getR(), copy.getR());
+            assertEquals(MerkleTree.DEFAULT_CHUNK, copy.getChunk());
+            assertEquals(DigestAlgorithms.BLAKE2B_256, copy.getAlgorithm());
+            assertEquals(Long.valueOf(0xab), copy.getOwnerId());
+            assertNull(copy.getProxyId());
+        }
+        assertTrue(signature.format().startsWith(Signature.VERSION + "#"));
+    }
+
+    @Test
+    void signatureWithoutOptionsKeepsVersionOneFormat() {
+        Signature signature = new Signature(new LinkedHashMap<String, String>(), BigInteger.ONE, BigInteger.TEN,
+                BigInteger.valueOf(255));
+        assertEquals("1#a#ff", signature.format());
+        Signature copy = Signature.read(signature.encode());
+        assertTrue(copy.getOptions().isEmpty());
+        assertEquals(0, copy.getChunk());
+        assertEquals(DigestAlgorithms.DEFAULT, copy.getAlgorithm());
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("1#a"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("2#chunk#1#a#ff"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("1#a#zz"));
+    }
+}
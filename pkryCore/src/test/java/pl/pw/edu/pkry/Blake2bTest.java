@@ -0,0 +1,63 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * BLAKE2b-256 względem wektorów referencyjnych (RFC 7693, bez klucza)
+ */
+class Blake2bTest {
+
+    private static String hex(byte[] digest) {
+        return String.format("%064x", new BigInteger(1, digest));
+    }
+
+    private static byte[] repeat(char c, int count) {
+        byte[] data = new byte[count];
+        Arrays.fill(data, (byte) c);
+        return data;
+    }
+
+    @Test
+    void knownVectors() {
+        assertEquals("0e5751c026e543b2e8ab2eb06099daa1d1e5df47778f7787faab45cdf12fe3a8",
+                hex(new Blake2b().digest(new byte[0])));
+        assertEquals("bddd813c634239723171ef3fee98579b94964e3bb1cb3e427262c8c068d52319",
+                hex(new Blake2b().digest("abc".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals("ae2aa48507885c4c950fb809b2076f959cde9f8ea6da260d9a3587df33dac450",
+                hex(new Blake2b().digest(repeat('a', 128))));
+        assertEquals("2f64744a6de0d2c0b56e64cf6e29a5aaa255010d415d51c75ccc82f73dccd865",
+                hex(new Blake2b().digest(repeat('a', 129))));
+        byte[] data = new byte[1280];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertEquals("82628cbfc9689e234b0923a531f4578fe2e7138a03e2f81ed6cde97517336650",
+                hex(new Blake2b().digest(data)));
+    }
+
+    @Test
+    void splitUpdatesAndCloneAgree() throws CloneNotSupportedException {
+        byte[] data = new byte[777];
+        new Random(43).nextBytes(data);
+        byte[] expected = new Blake2b().digest(data);
+        for (int split : new int[]{0, 1, 127, 128, 129, 256, 777}) {
+            Blake2b md = new Blake2b();
+            md.update(data, 0, split);
+            Blake2b copy = (Blake2b) md.clone();
+            md.update(data, split, data.length - split);
+            assertArrayEquals(expected, md.digest());
+            for (int i = split; i < data.length; i++) {
+                copy.update(data[i]);
+            }
+            assertArrayEquals(expected, copy.digest());
+            assertArrayEquals(expected, copy.digest(data));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Magazyn kuponów: każdy kupon wydawany jest co najwyżej raz, również między instancjami i wątkami
+ */
+class CouponStoreTest {
+
+    private static final Random RANDOM = new Random(36);
+
+    private static final BigInteger P = BigInteger.probablePrime(256, RANDOM), G = BigInteger.valueOf(4);
+
+    /**
+     * Część r klucza proxy, do którego należy magazyn
+     */
+    private static final BigInteger R = G.modPow(new BigInteger(200, RANDOM), P);
+
+    private static List<BigInteger[]> coupons(int count) {
+        List<BigInteger[]> coupons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BigInteger l = new BigInteger(200, RANDOM);
+            coupons.add(new BigInteger[]{l, G.modPow(l, P)});
+        }
+        return coupons;
+    }
+
+    private static Path newStore() throws IOException {
+        return Files.createTempDirectory("coupons").resolve("proxy.coupons");
+    }
+
+    @Test
+    void everyCouponIsTakenOnceInOrder() throws IOException {
+        Path file = newStore();
+        List<BigInteger[]> coupons = coupons(5);
+        CouponStore.append(file, P, G, R, coupons.subList(0, 3));
+        CouponStore.append(file, P, G, R, coupons.subList(3, 5));
+        CouponStore store = CouponStore.open(file, P, G, R);
+        assertNotNull(store);
+        assertEquals(5, store.remaining());
+        for (int i = 0; i < 3; i++) {
+            BigInteger[] coupon = store.take();
+            assertEquals(coupons.get(i)[0], coupon[0]);
+            assertEquals(coupons.get(i)[1], coupon[1]);
+        }
+        // nowa instancja (np. kolejne uruchomienie) kontynuuje za zużytymi kuponami
+        CouponStore reopened = CouponStore.open(file, P, G, R);
+        assertEquals(2, reopened.remaining());
+        assertEquals(coupons.get(3)[0], reopened.take()[0]);
+        assertEquals(coupons.get(4)[0], store.take()[0]);
+        assertNull(store.take());
+        assertNull(reopened.take());
+        assertEquals(0, store.remaining());
+    }
+
+    @Test
+    void concurrentTakesNeverShareCoupon() throws Exception {
+        Path file = newStore();
+        CouponStore.append(file, P, G, R, coupons(200));
+        CouponStore store = CouponStore.open(file, P, G, R);
+        Set<BigInteger> taken = Collections.synchronizedSet(new HashSet<BigInteger>());
+        List<Thread> threads = new ArrayList<>();
+        final int[] duplicates = {0};
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (BigInteger[] coupon = store.take(); coupon != null; coupon = store.take()) {
+                        if (!taken.add(coupon[0])) {
+                            synchronized (duplicates) {
+                                duplicates[0]++;
+                            }
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, duplicates[0]);
+        assertEquals(200, taken.size());
+    }
+
+    @Test
+    void instancesOfOneFileShareLock() throws Exception {
+        Path file = newStore();
+        CouponStore.append(file, P, G, R, coupons(100));
+        Set<BigInteger> taken = Collections.synchronizedSet(new HashSet<BigInteger>());
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            // każdy wątek z własną instancją magazynu, jak kilka obiektów Signer dla tego samego klucza
+            CouponStore store = CouponStore.open(file, P, G, R);
+            Thread thread = new Thread(() -> {
+                try {
+                    for (BigInteger[] coupon = store.take(); coupon != null; coupon = store.take()) {
+                        if (!taken.add(coupon[0])) {
+                            errors.add(new AssertionError("coupon taken twice"));
+                        }
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    errors.add(ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(100, taken.size());
+    }
+
+    @Test
+    void takenCouponIsWipedFromFile() throws IOException {
+        Path file = newStore();
+        List<BigInteger[]> coupons = coupons(3);
+        CouponStore.append(file, P, G, R, coupons);
+        CouponStore store = CouponStore.open(file, P, G, R);
+        assertEquals(coupons.get(0)[0], store.take()[0]);
+        String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+        assertFalse(content.contains(coupons.get(0)[0].toString(16)));
+        assertFalse(content.contains(coupons.get(0)[1].toString(16)));
+        assertTrue(content.contains(coupons.get(1)[0].toString(16)));
+        // zamazany rekord nie zmienia układu pliku ani kolejności pozostałych kuponów
+        assertEquals(2, CouponStore.open(file, P, G, R).remaining());
+        assertEquals(coupons.get(1)[0], store.take()[0]);
+        CouponStore.append(file, P, G, R, coupons(1));
+        assertEquals(coupons.get(2)[0], store.take()[0]);
+        assertEquals(1, store.remaining());
+    }
+
+    @Test
+    void tornRecordIsDroppedOnAppend() throws IOException {
+        Path file = newStore();
+        List<BigInteger[]> coupons = coupons(2);
+        CouponStore.append(file, P, G, R, coupons.subList(0, 1));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap("0123abc".getBytes(StandardCharsets.US_ASCII)));
+        }
+        CouponStore.append(file, P, G, R, coupons.subList(1, 2));
+        CouponStore store = CouponStore.open(file, P, G, R);
+        assertEquals(2, store.remaining());
+        assertEquals(coupons.get(0)[0], store.take()[0]);
+        assertEquals(coupons.get(1)[0], store.take()[0]);
+    }
+
+    @Test
+    void storeOfAnotherKeyIsNotUsed() throws IOException {
+        Path file = newStore();
+        assertNull(CouponStore.open(file, P, G, R));
+        CouponStore.append(file, P, G, R, coupons(1));
+        assertNull(CouponStore.open(file, P, G.add(BigInteger.ONE), R));
+        assertThrows(IOException.class, () -> CouponStore.append(file, P, BigInteger.valueOf(9), R, coupons(1)));
+        // magazyn innego klucza proxy tego samego właściciela
+        assertNull(CouponStore.open(file, P, G, R.add(BigInteger.ONE)));
+        assertThrows(IOException.class, () -> CouponStore.append(file, P, G, R.add(BigInteger.ONE), coupons(1)));
+        assertEquals(Paths.get("keys/proxy.coupons"), CouponStore.storePath("keys/proxy.key"));
+        assertEquals(1, CouponStore.open(file, P, G, R).remaining());
+    }
+
+    @Test
+    void storeIsReadableOnlyByOwner() throws IOException {
+        Path file = newStore();
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        CouponStore.append(file, P, G, R, coupons(1));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+        // prawa istniejącego pliku są zawężane przy kolejnym dopisaniu
+        Set<PosixFilePermission> open = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, open);
+        CouponStore.append(file, P, G, R, coupons(1));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+        assertEquals(2, CouponStore.open(file, P, G, R).remaining());
+    }
+}
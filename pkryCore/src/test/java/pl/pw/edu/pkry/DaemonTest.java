@@ -0,0 +1,198 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Protokół demona: żądanie z poprawnym żetonem trafia do obsługi, błędny żeton jest odrzucany,
+ * a komunikat wyjątku obsługi wraca do klienta; połączenia ponad pulę są odrzucane, a obiekty
+ * pamięci demona wczytywane raz na wersję pliku
+ */
+class DaemonTest {
+
+    static {
+        try {
+            System.setProperty("pkry.home", Files.createTempDirectory("pkry").toString());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Daemon start(String name) throws IOException {
+        return start(name, request -> {
+            if (request.length > 0 && request[0].equals("fail")) {
+                throw new IOException("Handler failed!");
+            }
+            return String.join("|", request);
+        });
+    }
+
+    private static Daemon start(String name, Daemon.Handler handler) throws IOException {
+        Daemon daemon = new Daemon(name, 0, handler);
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException ex) {
+                // koniec nasłuchu
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return daemon;
+    }
+
+    private static String raw(int port, String line) throws IOException {
+        try (Socket socket = send(port, line)) {
+            return response(socket);
+        }
+    }
+
+    private static Socket send(int port, String line) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(line + "\n");
+        out.flush();
+        return socket;
+    }
+
+    private static String response(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+    }
+
+    private static String token(String name, int port) throws IOException {
+        return new String(Files.readAllBytes(tokenFile(name, port)), StandardCharsets.UTF_8).trim();
+    }
+
+    private static Path tokenFile(String name, int port) {
+        return new File(KeyValidator.home(), name + "-" + port + ".token").toPath();
+    }
+
+    @Test
+    void requestWithTokenReachesHandler() throws IOException {
+        Daemon daemon = start("echo");
+        assertEquals("sign|a.txt|proxy.key", Daemon.request("echo", daemon.getPort(), "sign", "a.txt", "proxy.key"));
+        assertEquals("", Daemon.request("echo", daemon.getPort()));
+    }
+
+    @Test
+    void wrongTokenIsRejected() throws IOException {
+        Daemon daemon = start("guarded");
+        int port = daemon.getPort();
+        String token = token("guarded", port);
+        assertEquals("OK\tverify", raw(port, token + "\tverify"));
+        assertEquals("ERR\tAccess denied!", raw(port, "0" + token + "\tverify"));
+        assertEquals("ERR\tAccess denied!", raw(port, "\tverify"));
+        assertEquals("ERR\tAccess denied!", raw(port, token.substring(1)));
+
+        Files.write(tokenFile("guarded", port), "1234".getBytes(StandardCharsets.UTF_8));
+        IOException ex = assertThrows(IOException.class, () -> Daemon.request("guarded", port, "verify"));
+        assertEquals("Access denied!", ex.getMessage());
+    }
+
+    @Test
+    void handlerErrorsAndBadFieldsAreReported() throws IOException {
+        Daemon daemon = start("errors");
+        IOException ex = assertThrows(IOException.class, () -> Daemon.request("errors", daemon.getPort(), "fail"));
+        assertEquals("Handler failed!", ex.getMessage());
+        ex = assertThrows(IOException.class, () -> Daemon.request("errors", daemon.getPort(), "a\tb"));
+        assertTrue(ex.getMessage().contains("unsupported characters"));
+        // demon nadal obsługuje kolejne żądania
+        assertEquals("ok", Daemon.request("errors", daemon.getPort(), "ok"));
+    }
+
+    @Test
+    void missingDaemonIsReported() {
+        IOException ex = assertThrows(IOException.class, () -> Daemon.request("absent", 1, "verify"));
+        assertTrue(ex.getMessage().startsWith("Daemon is not running"));
+    }
+
+    @Test
+    void connectionsBeyondPoolAreRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Daemon daemon = start("busy", request -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return "done";
+        });
+        int port = daemon.getPort();
+        String token = token("busy", port);
+        List<Socket> waiting = new ArrayList<>();
+        try {
+            // wszystkie wątki puli czekają w obsłudze, a kolejka jest pełna
+            for (int i = 0; i < Daemon.WORKERS + Daemon.QUEUE; i++) {
+                waiting.add(send(port, token + "\tjob"));
+            }
+            assertEquals("ERR\tDaemon is busy! Try again!", raw(port, token + "\tjob"));
+            release.countDown();
+            for (Socket socket : waiting) {
+                assertEquals("OK\tdone", response(socket));
+            }
+        } finally {
+            release.countDown();
+            for (Socket socket : waiting) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void loadedObjectIsReadOncePerFileVersion() throws Exception {
+        Path file = Files.createTempFile("daemon", ".key");
+        Files.write(file, "first".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger loads = new AtomicInteger();
+        Daemon.Loaded<String> loaded = new Daemon.Loaded<>(paths -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(50);
+                return new String(Files.readAllBytes(Paths.get(paths[0])), StandardCharsets.UTF_8);
+            } catch (IOException | InterruptedException ex) {
+                throw new MalformedKeyException(BinaryFormat.PUBLIC_KEY);
+            }
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> loaded.get(file.toString())));
+            }
+            for (Future<String> result : results) {
+                assertEquals("first", result.get());
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdown();
+        }
+        // zmiana pliku (tu jego rozmiaru) wymusza ponowne wczytanie
+        Files.write(file, "second version".getBytes(StandardCharsets.UTF_8));
+        assertEquals("second version", loaded.get(file.toString()));
+        assertEquals(2, loads.get());
+        Files.delete(file);
+        IOException ex = assertThrows(IOException.class, () -> loaded.get(file.toString()));
+        assertEquals(new MalformedKeyException(BinaryFormat.PUBLIC_KEY).getMessage(), ex.getMessage());
+    }
+}
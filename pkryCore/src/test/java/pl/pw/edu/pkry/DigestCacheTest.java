@@ -0,0 +1,104 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Zapamiętany stan skrótu dokumentu: zgodność z pełnym skrótem, niezależność kopii
+ * oraz unieważnienie po zmianie pliku
+ */
+class DigestCacheTest {
+
+    private static final Random RANDOM = new Random(34);
+
+    static {
+        try {
+            System.setProperty("pkry.home", Files.createTempDirectory("pkry").toString());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] sha256(byte[] data, byte[] suffix) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(data);
+        md.update(suffix);
+        return md.digest();
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        RANDOM.nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void cachedStateContinuesWithSuffix() throws IOException, NoSuchAlgorithmException {
+        for (boolean persistent : new boolean[] {false, true}) {
+            byte[] data = bytes(10000), rp = "1f3a".getBytes(StandardCharsets.UTF_8);
+            Path file = Files.createTempFile("digestcache", ".txt");
+            try {
+                Files.write(file, data);
+                MessageDigest first = DigestCache.get(file, persistent);
+                first.update(rp);
+                assertArrayEquals(sha256(data, rp), first.digest());
+                // kolejne pobranie zwraca nową kopię, nienaruszoną przez poprzednie dopisanie
+                MessageDigest second = DigestCache.get(file, persistent);
+                second.update(rp);
+                assertArrayEquals(sha256(data, rp), second.digest());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void modifiedFileIsHashedAgain() throws IOException, NoSuchAlgorithmException {
+        byte[] before = bytes(4000), after = bytes(4000), none = new byte[0];
+        Path file = Files.createTempFile("digestcache", ".txt");
+        try {
+            Files.write(file, before);
+            assertArrayEquals(sha256(before, none), DigestCache.get(file, true).digest());
+            Files.write(file, after);
+            assertTrue(file.toFile().setLastModified(file.toFile().lastModified() + 2000));
+            assertArrayEquals(sha256(after, none), DigestCache.get(file, true).digest());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void persistentStateIsStoredUnderHome() throws IOException {
+        Path file = Files.createTempFile("digestcache", ".txt");
+        try {
+            Files.write(file, bytes(100));
+            DigestCache.get(file, true);
+            String key = file.toFile().getCanonicalPath() + "|100|" + file.toFile().lastModified();
+            boolean found = false;
+            for (File entry : new File(KeyValidator.home(), "digests").listFiles()) {
+                List<String> lines = Files.readAllLines(entry.toPath(), StandardCharsets.UTF_8);
+                found |= lines.get(0).equals(key) && lines.get(1).equals("64");
+            }
+            assertTrue(found);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void missingFileIsAnError() {
+        assertThrows(IOException.class, () -> DigestCache.get(new File(KeyValidator.home(), "missing").toPath(), false));
+    }
+}
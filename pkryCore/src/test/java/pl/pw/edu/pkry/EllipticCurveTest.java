@@ -0,0 +1,103 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPoint;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Działania na krzywej P-256 względem znanych punktów i dostawcy EC z JDK
+ */
+class EllipticCurveTest {
+
+    private static final EllipticCurve CURVE = EllipticCurve.P256;
+
+    private final Random random = new Random(42);
+
+    private BigInteger scalar() {
+        return new BigInteger(256, random).mod(CURVE.getOrder());
+    }
+
+    @Test
+    void doubledGeneratorMatchesKnownPoint() {
+        BigInteger x = new BigInteger("7CF27B188D034F7E8A52380304B51AC3C08969E277F21B35A60B48FC47669978", 16);
+        BigInteger y = new BigInteger("07775510DB8ED040293D9AC69F7430DBBA7DADE63CE982299E04B79D227873D1", 16);
+        BigInteger twoG = CURVE.encode(x, y);
+        assertEquals(twoG, CURVE.multiplyBase(BigInteger.valueOf(2)));
+        assertEquals(twoG, CURVE.add(CURVE.getGenerator(), CURVE.getGenerator()));
+        assertEquals(twoG, CURVE.multiply(CURVE.getGenerator(), BigInteger.valueOf(2)));
+        assertEquals(CURVE.getGenerator(), CURVE.multiplyBase(BigInteger.ONE));
+    }
+
+    @Test
+    void multiplyBaseMatchesJdkKeys() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        for (int i = 0; i < 5; i++) {
+            KeyPair pair = generator.generateKeyPair();
+            BigInteger s = ((ECPrivateKey) pair.getPrivate()).getS();
+            ECPoint w = ((ECPublicKey) pair.getPublic()).getW();
+            assertEquals(CURVE.encode(w.getAffineX(), w.getAffineY()), CURVE.multiplyBase(s));
+        }
+    }
+
+    @Test
+    void orderAnnihilatesGenerator() {
+        assertEquals(BigInteger.ZERO, CURVE.multiplyBase(CURVE.getOrder()));
+        assertEquals(BigInteger.ZERO, CURVE.multiplyBase(BigInteger.ZERO));
+        BigInteger k = scalar();
+        assertEquals(BigInteger.ZERO, CURVE.add(CURVE.multiplyBase(k), CURVE.multiplyBase(CURVE.getOrder().subtract(k))));
+    }
+
+    @Test
+    void multiplyAddMatchesSeparateOperations() {
+        for (int i = 0; i < 10; i++) {
+            BigInteger point = CURVE.multiplyBase(scalar());
+            BigInteger a = scalar(), b = scalar();
+            EllipticCurve.PointTable table = CURVE.table(point);
+            assertEquals(CURVE.add(CURVE.multiplyBase(a), CURVE.multiply(point, b)), CURVE.multiplyAdd(a, b, table));
+            assertEquals(CURVE.multiplyBase(a.multiply(b)), CURVE.multiply(CURVE.multiplyBase(a), b));
+        }
+    }
+
+    @Test
+    void decodeEncodeRoundTrip() {
+        for (int i = 0; i < 10; i++) {
+            BigInteger point = CURVE.multiplyBase(scalar());
+            assertTrue(CURVE.isPoint(point));
+            BigInteger[] xy = CURVE.decode(point);
+            assertEquals(point, CURVE.encode(xy[0], xy[1]));
+            BigInteger[] negated = CURVE.decode(CURVE.encode(xy[0], CURVE.getPrime().subtract(xy[1])));
+            assertEquals(xy[0], negated[0]);
+            assertEquals(CURVE.getPrime().subtract(xy[1]), negated[1]);
+        }
+    }
+
+    @Test
+    void invalidPointsAreRejected() {
+        BigInteger x = CURVE.decode(CURVE.getGenerator())[0];
+        assertFalse(CURVE.isPoint(BigInteger.ZERO));
+        assertFalse(CURVE.isPoint(BigInteger.ONE.negate()));
+        assertFalse(CURVE.isPoint(BigInteger.valueOf(4).shiftLeft(256).or(x)));
+        assertFalse(CURVE.isPoint(BigInteger.valueOf(2).shiftLeft(256).or(CURVE.getPrime())));
+        BigInteger offCurve = x;
+        while (CURVE.isPoint(BigInteger.valueOf(2).shiftLeft(256).or(offCurve))) {
+            offCurve = offCurve.add(BigInteger.ONE);
+        }
+        BigInteger invalid = BigInteger.valueOf(2).shiftLeft(256).or(offCurve);
+        assertThrows(IllegalArgumentException.class, () -> CURVE.add(invalid, CURVE.getGenerator()));
+        assertThrows(IllegalArgumentException.class, () -> CURVE.table(invalid));
+        assertThrows(IllegalArgumentException.class, () -> EllipticCurve.forName("P-384"));
+    }
+}
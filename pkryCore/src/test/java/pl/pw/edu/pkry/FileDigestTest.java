@@ -0,0 +1,90 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Skrót liczony strumieniowo z pliku porównywany ze skrótem zawartości w pamięci
+ */
+class FileDigestTest {
+
+    private static final Random RANDOM = new Random(33);
+
+    private static MessageDigest sha256() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256");
+    }
+
+    private static void check(byte[] data) throws IOException, NoSuchAlgorithmException {
+        Path file = Files.createTempFile("filedigest", ".bin");
+        try {
+            Files.write(file, data);
+            assertArrayEquals(sha256().digest(data), FileDigest.update(file, sha256()).digest(), "size " + data.length);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void smallAndBufferedFiles() throws IOException, NoSuchAlgorithmException {
+        for (int size : new int[] {0, 1, 1000, (1 << 20) - 1, 1 << 20, 3 * (1 << 20) + 17}) {
+            byte[] data = new byte[size];
+            RANDOM.nextBytes(data);
+            check(data);
+        }
+    }
+
+    @Test
+    void contentIsAppendedToExistingDigest() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[5000];
+        RANDOM.nextBytes(data);
+        Path file = Files.createTempFile("filedigest", ".bin");
+        try {
+            Files.write(file, data);
+            MessageDigest md = sha256();
+            md.update((byte) 7);
+            MessageDigest expected = sha256();
+            expected.update((byte) 7);
+            expected.update(data);
+            assertArrayEquals(expected.digest(), FileDigest.update(file, md).digest());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void largeFileIsMappedInRegions() throws IOException, NoSuchAlgorithmException {
+        long size = (64L << 20) + 12345;
+        byte[] tail = new byte[4096];
+        RANDOM.nextBytes(tail);
+        Path file = Files.createTempFile("filedigest", ".bin");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(size);
+                raf.seek(size - tail.length);
+                raf.write(tail);
+            }
+            assertEquals(size, Files.size(file));
+            MessageDigest expected = sha256();
+            byte[] zeros = new byte[1 << 16];
+            long left = size - tail.length;
+            while (left > 0) {
+                int n = (int) Math.min(zeros.length, left);
+                expected.update(zeros, 0, n);
+                left -= n;
+            }
+            expected.update(tail);
+            assertArrayEquals(expected.digest(), FileDigest.update(file, sha256()).digest());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
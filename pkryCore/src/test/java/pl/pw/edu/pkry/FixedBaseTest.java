@@ -0,0 +1,105 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Potęgowanie tablicowe o stałej podstawie porównywane z BigInteger.modPow oraz zapis i odczyt tablicy
+ */
+class FixedBaseTest {
+
+    private static final Random RANDOM = new Random(29);
+
+    private static final BigInteger P = BigInteger.probablePrime(512, RANDOM);
+
+    private static final BigInteger G = new BigInteger(510, RANDOM).add(BigInteger.valueOf(2));
+
+    @Test
+    void powMatchesModPow() {
+        FixedBase fb = FixedBase.forBase(G, P, 256);
+        assertEquals(BigInteger.ONE, fb.pow(BigInteger.ZERO));
+        assertEquals(G, fb.pow(BigInteger.ONE));
+        for (int i = 0; i < 50; i++) {
+            BigInteger e = new BigInteger(1 + RANDOM.nextInt(256), RANDOM);
+            assertEquals(G.modPow(e, P), fb.pow(e), "e = " + e);
+        }
+        assertSame(fb, FixedBase.forBase(G, P, 128));
+    }
+
+    @Test
+    void powBeyondTableLengthAndNegativeExponent() {
+        BigInteger g = G.add(BigInteger.ONE);
+        FixedBase fb = FixedBase.forBase(g, P, 64);
+        BigInteger e = new BigInteger(300, RANDOM);
+        assertEquals(g.modPow(e, P), fb.pow(e));
+        assertEquals(g.modPow(e.negate(), P), fb.pow(e.negate()));
+    }
+
+    @Test
+    void createBypassesProcessCache() {
+        FixedBase fb = FixedBase.create(G, P, 160);
+        assertNotSame(fb, FixedBase.create(G, P, 160));
+        assertNotSame(fb, FixedBase.forBase(G, P, 160));
+        BigInteger e = new BigInteger(160, RANDOM);
+        assertEquals(G.modPow(e, P), fb.pow(e));
+    }
+
+    @Test
+    void saveAndLoadRoundTrip() throws IOException {
+        FixedBase fb = FixedBase.forBase(G, P, 160);
+        Path file = Files.createTempFile("fixedbase", ".table");
+        try {
+            fb.save(file);
+            FixedBase loaded = FixedBase.load(file, G, P);
+            assertNotNull(loaded);
+            for (int i = 0; i < 10; i++) {
+                BigInteger e = new BigInteger(160, RANDOM);
+                assertEquals(G.modPow(e, P), loaded.pow(e));
+            }
+            assertNull(FixedBase.load(file, G.add(BigInteger.ONE), P));
+            assertNull(FixedBase.load(file.resolveSibling("missing.table"), G, P));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void loadRejectsTamperedTable() throws IOException {
+        FixedBase fb = FixedBase.create(G, P, 64);
+        Path file = Files.createTempFile("fixedbase", ".table");
+        try {
+            fb.save(file);
+            List<String> lines = Files.readAllLines(file);
+            // po nagłówku kolejno elementy tablicy: zmieniany jest zarówno element wiersza, jak i iloczyn
+            for (int line : new int[]{2, 3, 4, lines.size() - 1}) {
+                List<String> tampered = new ArrayList<>(lines);
+                tampered.set(line, G.modPow(BigInteger.valueOf(line + 7), P).toString(16));
+                Files.write(file, tampered);
+                assertNull(FixedBase.load(file, G, P), "line " + line);
+            }
+            Files.write(file, lines);
+            assertNotNull(FixedBase.load(file, G, P));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void tableLivesNextToPublicKey() {
+        assertEquals(Paths.get("keys/public.table"), FixedBase.tablePath("keys/public.key"));
+        assertEquals(Paths.get("public.pem.table"), FixedBase.tablePath("public.pem"));
+    }
+}
@@ -0,0 +1,41 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rozkład na czynniki pierwsze z pamięcią wyników: oba warianty (z duplikatami i bez) dla tej samej liczby
+ */
+class KeyGeneratorTest {
+
+    private static List<BigInteger> list(long... values) {
+        BigInteger[] result = new BigInteger[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = BigInteger.valueOf(values[i]);
+        }
+        return Arrays.asList(result);
+    }
+
+    @Test
+    void bothVariantsAreRemembered() {
+        BigInteger n = BigInteger.valueOf(2 * 2 * 2 * 3 * 3 * 1009);
+        assertEquals(list(2, 2, 2, 3, 3, 1009), KeyGenerator.factors(n, true));
+        assertEquals(list(2, 3, 1009), KeyGenerator.factors(n, false));
+        assertEquals(list(2, 2, 2, 3, 3, 1009), KeyGenerator.factors(n, true));
+        BigInteger m = BigInteger.valueOf(5 * 5 * 7);
+        assertEquals(list(5, 7), KeyGenerator.factors(m, false));
+        assertEquals(list(5, 5, 7), KeyGenerator.factors(m, true));
+    }
+
+    @Test
+    void rememberedListsAreReadOnly() {
+        List<BigInteger> factors = KeyGenerator.factors(BigInteger.valueOf(90), false);
+        assertThrows(UnsupportedOperationException.class, () -> factors.add(BigInteger.TEN));
+        assertEquals(list(2, 3, 5), KeyGenerator.factors(BigInteger.valueOf(90), false));
+    }
+}
@@ -0,0 +1,146 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Magazyn kluczy: dopisywanie i wyszukiwanie (także współbieżne) oraz odwołania magazyn#ID
+ */
+class KeyStoreTest {
+
+    private final Random random = new Random(45);
+
+    private KeyStore.Entry proxyKey(long owner) {
+        BigInteger r = new BigInteger(256, random).setBit(255);
+        BigInteger s = new BigInteger(160, random).setBit(159);
+        long id = KeyStore.id(BinaryFormat.PROXY_KEY, "", r);
+        return new KeyStore.Entry(BinaryFormat.PROXY_KEY, id, owner, BinaryFormat.encode(BinaryFormat.PROXY_KEY, "", r, s));
+    }
+
+    private static Path file() throws IOException {
+        Path file = Files.createTempFile("keystore", ".pkks");
+        Files.delete(file);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    @Test
+    void addedKeysAreFound() throws IOException, MalformedKeyException {
+        Path file = file();
+        KeyStore store = KeyStore.open(file);
+        assertEquals(0, store.size());
+        BigInteger[] values = {BigInteger.valueOf(23), BigInteger.valueOf(4), BigInteger.valueOf(11), BigInteger.valueOf(9)};
+        long owner = KeyStore.id(BinaryFormat.PUBLIC_KEY, "", values);
+        KeyStore.Entry publicKey = new KeyStore.Entry(BinaryFormat.PUBLIC_KEY, owner, owner,
+                BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "", values));
+        KeyStore.Entry proxy = proxyKey(owner);
+        assertEquals(2, store.add(publicKey, proxy));
+        assertEquals(0, store.add(proxy));
+        assertEquals(2, store.size());
+        assertSame(store, KeyStore.open(file));
+
+        KeyStore.Entry found = store.get(BinaryFormat.PROXY_KEY, proxy.getId());
+        assertNotNull(found);
+        assertEquals(owner, found.getOwner());
+        assertEquals(proxy.getKey().get(0), found.getKey().get(0));
+        assertEquals(proxy.getKey().get(1), found.getKey().get(1));
+        assertNull(store.get(BinaryFormat.PUBLIC_KEY, proxy.getId()));
+        assertNull(store.get(BinaryFormat.PROXY_KEY, proxy.getId() + 1));
+
+        BinaryFormat.Record key = KeyStore.read(KeyStore.reference(file, owner), BinaryFormat.PUBLIC_KEY);
+        assertNotNull(key);
+        assertEquals(BigInteger.valueOf(9), key.get(3));
+        assertNull(KeyStore.read(KeyStore.reference(file, owner + 1), BinaryFormat.PUBLIC_KEY));
+        assertEquals(BigInteger.valueOf(9), KeyStore.readKey(KeyStore.reference(file, owner), BinaryFormat.PUBLIC_KEY).get(3));
+        assertThrows(MalformedKeyException.class, () -> KeyStore.readKey(KeyStore.reference(file, owner + 1), BinaryFormat.PUBLIC_KEY));
+        assertThrows(MalformedKeyException.class, () -> KeyStore.readKey(file + "#zz", BinaryFormat.PUBLIC_KEY));
+    }
+
+    @Test
+    void idFormatRoundTrip() {
+        for (long id : new long[]{0, 1, -1, 0x00000000000000abL, 0x8000000000000000L}) {
+            String text = KeyStore.format(id);
+            assertEquals(16, text.length());
+            assertEquals(id, KeyStore.parseId(text));
+        }
+        assertThrows(IllegalArgumentException.class, () -> KeyStore.parseId("ab"));
+        assertThrows(IllegalArgumentException.class, () -> KeyStore.parseId("zz00000000000000"));
+    }
+
+    @Test
+    void concurrentAddAndLookup() throws Exception {
+        Path file = file();
+        KeyStore store = KeyStore.open(file);
+        int threads = 4, perThread = 900;
+        List<List<KeyStore.Entry>> batches = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<KeyStore.Entry> batch = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                batch.add(proxyKey(t));
+            }
+            batches.add(batch);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads * 2);
+        try {
+            List<Future<Integer>> writers = new ArrayList<>();
+            List<Future<?>> readers = new ArrayList<>();
+            for (List<KeyStore.Entry> batch : batches) {
+                // dopisywanie pojedynczo, a równolegle wyszukiwanie kluczy dopisywanych przez inne wątki
+                writers.add(pool.submit(() -> {
+                    int added = 0;
+                    for (KeyStore.Entry entry : batch) {
+                        added += store.add(entry);
+                        assertNotNull(store.get(BinaryFormat.PROXY_KEY, entry.getId()));
+                    }
+                    return added;
+                }));
+                readers.add(pool.submit((Callable<Void>) () -> {
+                    for (List<KeyStore.Entry> other : batches) {
+                        for (KeyStore.Entry entry : other) {
+                            KeyStore.Entry hit = store.get(BinaryFormat.PROXY_KEY, entry.getId());
+                            if (hit != null) {
+                                assertEquals(entry.getOwner(), hit.getOwner());
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            int added = 0;
+            for (Future<Integer> writer : writers) {
+                added += writer.get();
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+            assertEquals(threads * perThread, added);
+        } finally {
+            pool.shutdown();
+        }
+        // indeks urósł ponad początkowe 4096 pozycji
+        assertEquals(threads * perThread, store.size());
+        for (List<KeyStore.Entry> batch : batches) {
+            for (KeyStore.Entry entry : batch) {
+                KeyStore.Entry found = store.get(BinaryFormat.PROXY_KEY, entry.getId());
+                assertNotNull(found);
+                assertEquals(entry.getOwner(), found.getOwner());
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Walidacja parametrów klucza publicznego w grupie p = 23, q = 11, g = 2
+ */
+class KeyValidatorTest {
+
+    private static final BigInteger P = BigInteger.valueOf(23), Q = BigInteger.valueOf(11), G = BigInteger.valueOf(2);
+
+    /**
+     * y = g^3 mod p
+     */
+    private static final BigInteger Y = BigInteger.valueOf(8);
+
+    static {
+        try {
+            System.setProperty("pkry.home", Files.createTempDirectory("pkry").toString());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Test
+    void validParametersPass() {
+        assertTrue(KeyValidator.check(P, G, Q, Y));
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        // p złożone
+        assertFalse(KeyValidator.check(BigInteger.valueOf(33), G, Q, Y));
+        // q nie dzieli p - 1
+        assertFalse(KeyValidator.check(P, G, BigInteger.valueOf(7), Y));
+        // 5 jest generatorem całej grupy Z*23, rzędu 22
+        assertFalse(KeyValidator.check(P, BigInteger.valueOf(5), Q, Y));
+        // y = 1 oraz y spoza zakresu
+        assertFalse(KeyValidator.check(P, G, Q, BigInteger.ONE));
+        assertFalse(KeyValidator.check(P, G, Q, Y.add(P)));
+        assertFalse(KeyValidator.validate(P, G, Q, BigInteger.ONE));
+    }
+
+    @Test
+    void provenPrimesSkipPrimalityTests() {
+        assertTrue(KeyValidator.check(P, G, Q, Y, true));
+        // q = 9 jest złożone, a pozostałe warunki są spełnione (4 ma rząd 9 w Z*19) - przechodzi tylko,
+        // gdy pierwszość została już udowodniona certyfikatem
+        BigInteger p = BigInteger.valueOf(19), g = BigInteger.valueOf(4), q = BigInteger.valueOf(9), y = BigInteger.valueOf(16);
+        assertFalse(KeyValidator.check(p, g, q, y));
+        assertTrue(KeyValidator.check(p, g, q, y, true));
+        // warunki podgrupy sprawdzane są zawsze
+        assertFalse(KeyValidator.check(P, BigInteger.valueOf(5), Q, Y, true));
+    }
+
+    @Test
+    void validatedKeyIsStoredByFingerprint() throws IOException {
+        assertTrue(KeyValidator.validate(P, G, Q, Y));
+        String fingerprint = KeyValidator.fingerprint(P, G, Q, Y);
+        List<String> lines = Files.readAllLines(new File(KeyValidator.home(), "validated.keys").toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.contains(fingerprint));
+        assertFalse(lines.contains(KeyValidator.fingerprint(P, G, Q, BigInteger.ONE)));
+        // ponowna walidacja korzysta z pamięci podręcznej i nie dopisuje kolejnego wpisu
+        assertTrue(KeyValidator.validate(P, G, Q, Y));
+        assertEquals(lines.size(), Files.readAllLines(new File(KeyValidator.home(), "validated.keys").toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void fingerprintDependsOnEveryParameter() {
+        String fingerprint = KeyValidator.fingerprint(P, G, Q, Y);
+        assertEquals(fingerprint, KeyValidator.fingerprint(P, G, Q, Y));
+        assertNotEquals(fingerprint, KeyValidator.fingerprint(P, G, Q, BigInteger.valueOf(4)));
+        assertNotEquals(fingerprint, KeyValidator.fingerprint(P, BigInteger.valueOf(4), Q, Y));
+    }
+}
@@ -0,0 +1,76 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Percentyle histogramu mieszczą się w błędzie względnym 1/8, a zapis z wielu wątków nie gubi pomiarów
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    void percentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(50);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // od nanosekund do sekund
+            values[i] = (long) Math.pow(10, 9 * random.nextDouble());
+            histogram.record(values[i]);
+        }
+        histogram.record(-5);
+        long[] sorted = Arrays.copyOf(values, values.length + 1);
+        Arrays.sort(sorted);
+        assertEquals(values.length + 1, histogram.getCount());
+        assertEquals(sorted[sorted.length - 1], histogram.getMax());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long exact = sorted[(int) Math.ceil(sorted.length * percentile / 100) - 1];
+            long reported = histogram.getPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact + exact / 8, percentile + ": " + reported + " vs " + exact);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+        assertEquals(7, histogram.getPercentile(50));
+        assertEquals(15, histogram.getPercentile(100));
+        assertEquals(7, histogram.getMean());
+    }
+
+    @Test
+    void concurrentRecordingKeepsEveryMeasurement() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 1; i <= 100000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(400000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000, histogram.getMean());
+    }
+}
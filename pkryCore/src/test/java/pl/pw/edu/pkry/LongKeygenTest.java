@@ -0,0 +1,82 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Zgodność wariantu long z arytmetyką BigInteger
+ */
+class LongKeygenTest {
+
+    private final Random rand = new Random(28);
+
+    @Test
+    void primalityMatchesBigInteger() {
+        for (long n = 0; n < 5000; n++) {
+            assertEquals(BigInteger.valueOf(n).isProbablePrime(50), LongKeygen.isPrime(n), "n = " + n);
+        }
+        // liczby silnie pseudopierwsze przy podstawie 2 oraz duża liczba Carmichaela
+        assertFalse(LongKeygen.isPrime(2047));
+        assertFalse(LongKeygen.isPrime(3215031751L));
+        assertFalse(LongKeygen.isPrime(3825123056546413051L));
+        assertTrue(LongKeygen.isPrime((1L << 61) - 1));
+    }
+
+    @Test
+    void modularArithmeticMatchesBigInteger() {
+        for (int i = 0; i < 200; i++) {
+            long m = (rand.nextLong() >>> 2) | 1;
+            long a = (rand.nextLong() >>> 1) % m, b = (rand.nextLong() >>> 1) % m, e = rand.nextLong() >>> 1;
+            BigInteger bm = BigInteger.valueOf(m);
+            assertEquals(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(bm).longValue(), LongKeygen.mulMod(a, b, m));
+            assertEquals(BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), bm).longValue(), LongKeygen.modPow(a, e, m));
+        }
+        assertEquals(0, LongKeygen.modPow(5, 0, 1));
+    }
+
+    @Test
+    void generatedParametersFormValidGroup() {
+        for (int length : new int[] {8, 20, 40, LongKeygen.MAX_BITS}) {
+            long p = LongKeygen.genP(length, rand);
+            assertEquals(length, 64 - Long.numberOfLeadingZeros(p));
+            assertTrue(BigInteger.valueOf(p).isProbablePrime(50));
+
+            long q = LongKeygen.genQ(p);
+            assertTrue(BigInteger.valueOf(q).isProbablePrime(50));
+            assertEquals(0, (p - 1) % q);
+            long rest = (p - 1) / q;
+            for (long f = 2; f <= Math.min(rest, 1 << 16); f++) {
+                if (rest % f == 0 && LongKeygen.isPrime(f)) {
+                    assertTrue(f <= q, "q is not the largest prime factor of p - 1");
+                }
+            }
+
+            long g = LongKeygen.genG(p, q);
+            assertNotEquals(1, g);
+            assertEquals(1, LongKeygen.modPow(g, q, p));
+
+            long x = LongKeygen.genX(p, rand);
+            assertTrue(x >= 2 && x <= p - 1);
+            assertEquals(BigInteger.valueOf(g).modPow(BigInteger.valueOf(x), BigInteger.valueOf(p)).longValue(), LongKeygen.genY(g, x, p));
+            // g nie musi być najmniejszym elementem rzędu q jak w KeyGenerator.genG, ale klucz jest poprawny
+            assertTrue(KeyValidator.check(BigInteger.valueOf(p), BigInteger.valueOf(g), BigInteger.valueOf(q),
+                    BigInteger.valueOf(LongKeygen.genY(g, x, p))));
+        }
+    }
+
+    @Test
+    void largestFactorOutsideSieve() {
+        // 2 * 65537 * 65539: oba czynniki poza zakresem sita
+        assertEquals(65539, LongKeygen.genQ(2L * 65537 * 65539 + 1));
+        assertEquals(11, LongKeygen.genQ(23));
+        assertTrue(LongKeygen.fits(20));
+        assertFalse(LongKeygen.fits(63));
+        assertFalse(LongKeygen.fits(1));
+    }
+}
@@ -0,0 +1,175 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Liście i korzeń drzewa Merkle, podpisywana wiadomość wersji 2 oraz zapis liści
+ */
+class MerkleTreeTest {
+
+    private static final int CHUNK = MerkleTree.MIN_CHUNK;
+
+    private final Random random = new Random(38);
+
+    private byte[] data(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static byte[] hash(byte prefix, byte[]... parts) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(prefix);
+        for (byte[] part : parts) {
+            md.update(part);
+        }
+        return md.digest();
+    }
+
+    @Test
+    void leavesHashChunksWithPrefix() throws IOException, NoSuchAlgorithmException {
+        Path file = Files.createTempFile("merkle", ".bin");
+        try {
+            for (int length : new int[]{1, CHUNK - 1, CHUNK, CHUNK + 1, 5 * CHUNK + 17}) {
+                byte[] data = data(length);
+                Files.write(file, data);
+                byte[][] leaves = MerkleTree.leaves(file, CHUNK);
+                assertEquals(MerkleTree.count(length, CHUNK), leaves.length);
+                for (int i = 0; i < leaves.length; i++) {
+                    byte[] chunk = Arrays.copyOfRange(data, i * CHUNK, Math.min(length, (i + 1) * CHUNK));
+                    assertArrayEquals(hash((byte) 0, chunk), leaves[i]);
+                    assertArrayEquals(leaves[i], MerkleTree.leaf(file, CHUNK, i));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void leavesAndRootUseSelectedDigest() throws IOException {
+        Path file = Files.createTempFile("merkle", ".bin");
+        try {
+            Files.write(file, data(3 * CHUNK + 1));
+            for (String algorithm : new String[]{DigestAlgorithms.SHA512_256, DigestAlgorithms.BLAKE2B_256}) {
+                byte[][] leaves = MerkleTree.leaves(file, CHUNK, algorithm);
+                assertEquals(4, leaves.length);
+                MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+                md.update((byte) 0);
+                md.update(Arrays.copyOfRange(Files.readAllBytes(file), 3 * CHUNK, 3 * CHUNK + 1));
+                assertArrayEquals(md.digest(), leaves[3]);
+                assertArrayEquals(leaves[2], MerkleTree.leaf(file, CHUNK, 2, algorithm));
+                md.update((byte) 1);
+                md.update(leaves[0]);
+                md.update(leaves[1]);
+                byte[] left = md.digest();
+                md.update((byte) 1);
+                md.update(leaves[2]);
+                md.update(leaves[3]);
+                byte[] right = md.digest();
+                md.update((byte) 1);
+                md.update(left);
+                md.update(right);
+                assertArrayEquals(md.digest(), MerkleTree.root(leaves, algorithm));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void fileAndStreamLeavesAgree() throws IOException {
+        Path file = Files.createTempFile("merkle", ".bin");
+        try {
+            for (int length : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 5 * CHUNK + 17}) {
+                byte[] content = data(length);
+                Files.write(file, content);
+                for (String algorithm : new String[]{DigestAlgorithms.SHA256, DigestAlgorithms.BLAKE2B_256}) {
+                    assertTrue(Arrays.deepEquals(MerkleTree.leaves(file, CHUNK, algorithm),
+                            MerkleTree.leaves(new ByteArrayInputStream(content), CHUNK, algorithm)), length + " " + algorithm);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void emptyFileHasOneLeaf() throws IOException, NoSuchAlgorithmException {
+        Path file = Files.createTempFile("merkle", ".bin");
+        try {
+            byte[][] leaves = MerkleTree.leaves(file, CHUNK);
+            assertEquals(1, leaves.length);
+            assertArrayEquals(hash((byte) 0), leaves[0]);
+            assertArrayEquals(leaves[0], MerkleTree.root(leaves));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rootPromotesUnpairedNode() throws IOException, NoSuchAlgorithmException {
+        Path file = Files.createTempFile("merkle", ".bin");
+        try {
+            Files.write(file, data(3 * CHUNK));
+            byte[][] leaves = MerkleTree.leaves(file, CHUNK);
+            byte[] expected = hash((byte) 1, hash((byte) 1, leaves[0], leaves[1]), leaves[2]);
+            assertArrayEquals(expected, MerkleTree.root(leaves));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void messageBindsChunkSize() throws NoSuchAlgorithmException {
+        byte[] root = data(32);
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        expected.update(("pkry-merkle#" + CHUNK + "#").getBytes(StandardCharsets.US_ASCII));
+        expected.update(root);
+        byte[] message = MerkleTree.message(root, CHUNK, MessageDigest.getInstance("SHA-256")).digest();
+        assertArrayEquals(expected.digest(), message);
+        byte[] other = MerkleTree.message(root, 2 * CHUNK, MessageDigest.getInstance("SHA-256")).digest();
+        assertEquals(false, Arrays.equals(message, other));
+    }
+
+    @Test
+    void leavesFileRoundTrip() throws IOException {
+        Path data = Files.createTempFile("merkle", ".bin");
+        Path file = Files.createTempFile("merkle", MerkleTree.LEAVES_EXTENSION);
+        try {
+            Files.write(data, data(7 * CHUNK));
+            byte[][] leaves = MerkleTree.leaves(data, CHUNK);
+            MerkleTree.writeLeaves(file, leaves);
+            byte[][] read = MerkleTree.readLeaves(file);
+            assertEquals(leaves.length, read.length);
+            for (int i = 0; i < leaves.length; i++) {
+                assertArrayEquals(leaves[i], read[i]);
+            }
+            Files.write(file, new byte[33]);
+            assertThrows(IOException.class, () -> MerkleTree.readLeaves(file));
+        } finally {
+            Files.delete(file);
+            Files.delete(data);
+        }
+    }
+
+    @Test
+    void chunkBelowMinimumIsRejected() {
+        assertEquals(CHUNK, MerkleTree.checkChunk(CHUNK));
+        assertThrows(IllegalArgumentException.class, () -> MerkleTree.checkChunk(CHUNK - 1));
+    }
+}
@@ -0,0 +1,50 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rejestr metryk: bez włączenia nic nie jest zapisywane; po włączeniu liczniki i etapy trafiają
+ * do podsumowania JSON i atrybutów JMX
+ */
+class MetricsTest {
+
+    @Test
+    void metricsAreRecordedOnlyWhenEnabled() throws Exception {
+        // pomiary włącza tylko narzędzie (--stats, demon, tryb wsadowy) - testy biblioteki tego nie robią
+        assertFalse(Metrics.isEnabled());
+        assertEquals(0, Metrics.start());
+        Metrics.count("test.disabled");
+        Metrics.record("test-disabled", System.nanoTime());
+        assertFalse(Metrics.counters().containsKey("test.disabled"));
+        assertFalse(Metrics.stages().containsKey("test-disabled"));
+
+        Metrics.registerMBean();
+        Metrics.registerMBean();
+        assertTrue(Metrics.isEnabled());
+        Metrics.count("test.counter");
+        Metrics.add("test.counter", 4);
+        long start = Metrics.start();
+        assertTrue(start != 0);
+        Metrics.record("test-stage", start);
+        assertEquals(Long.valueOf(5), Metrics.counters().get("test.counter"));
+        assertEquals(1, Metrics.histogram("test-stage").getCount());
+
+        String json = Metrics.toJson();
+        assertTrue(json.startsWith("{\"counters\":{"), json);
+        assertTrue(json.contains("\"test.counter\":5"), json);
+        assertTrue(json.contains("\"test-stage\":{\"count\":1,\"meanMicros\":"), json);
+        assertTrue(json.contains("\"p99_9Micros\":"), json);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertEquals(5L, server.getAttribute(name, "test.counter"));
+        assertEquals(1L, server.getAttribute(name, "test-stage.count"));
+    }
+}
@@ -0,0 +1,100 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Arytmetyka Montgomery'ego względem BigInteger
+ */
+class MontgomeryTest {
+
+    private final Random random = new Random(41);
+
+    private BigInteger[] moduli() {
+        return new BigInteger[]{
+                BigInteger.valueOf(3),
+                BigInteger.valueOf(0xFFFFFFFBL),
+                BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19)),
+                new BigInteger(512, random).setBit(511).setBit(0),
+                BigInteger.probablePrime(1024, random)
+        };
+    }
+
+    private BigInteger below(BigInteger modulus) {
+        return new BigInteger(modulus.bitLength() + 8, random).mod(modulus);
+    }
+
+    @Test
+    void modPowAndMultiplyMatchBigInteger() {
+        for (BigInteger modulus : moduli()) {
+            Montgomery ctx = Montgomery.forModulus(modulus);
+            for (int i = 0; i < 20; i++) {
+                BigInteger a = below(modulus), b = below(modulus);
+                BigInteger e = new BigInteger(1 + random.nextInt(300), random);
+                assertEquals(a.modPow(e, modulus), ctx.modPow(a, e));
+                assertEquals(a.multiply(b).mod(modulus), ctx.multiply(a, b));
+            }
+            assertEquals(BigInteger.ONE.mod(modulus), ctx.modPow(below(modulus), BigInteger.ZERO));
+        }
+    }
+
+    @Test
+    void inputsOutsideRangeAreReduced() {
+        BigInteger modulus = BigInteger.probablePrime(256, random);
+        Montgomery ctx = Montgomery.forModulus(modulus);
+        BigInteger a = modulus.multiply(BigInteger.valueOf(5)).add(BigInteger.TEN);
+        BigInteger b = BigInteger.valueOf(-7);
+        assertEquals(a.multiply(b).mod(modulus), ctx.multiply(a, b));
+    }
+
+    @Test
+    void addAndSubtractMatchBigInteger() {
+        for (BigInteger modulus : moduli()) {
+            Montgomery ctx = Montgomery.forModulus(modulus);
+            for (int i = 0; i < 20; i++) {
+                BigInteger a = below(modulus), b = below(modulus);
+                int[] x = ctx.element(), y = ctx.element(), out = ctx.element();
+                ctx.toMontgomery(a, x);
+                ctx.toMontgomery(b, y);
+                ctx.add(x, y, out);
+                assertEquals(a.add(b).mod(modulus), ctx.fromMontgomery(out));
+                ctx.subtract(x, y, out);
+                assertEquals(a.subtract(b).mod(modulus), ctx.fromMontgomery(out));
+                ctx.subtract(x, x, out);
+                assertEquals(BigInteger.ZERO, ctx.fromMontgomery(out));
+            }
+        }
+    }
+
+    @Test
+    void mulAddHandlesOddAndEvenModuli() {
+        BigInteger[] moduli = {BigInteger.probablePrime(160, random), BigInteger.ONE.shiftLeft(160),
+                new BigInteger(160, random).setBit(159).clearBit(0)};
+        for (BigInteger modulus : moduli) {
+            for (int i = 0; i < 20; i++) {
+                BigInteger a = below(modulus), b = below(modulus), c = below(modulus);
+                assertEquals(a.multiply(b).add(c).mod(modulus), Montgomery.mulAdd(a, b, c, modulus));
+            }
+        }
+    }
+
+    @Test
+    void contextIsCachedPerModulus() {
+        BigInteger modulus = BigInteger.probablePrime(128, random);
+        assertSame(Montgomery.forModulus(modulus), Montgomery.forModulus(new BigInteger(modulus.toByteArray())));
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Montgomery.forModulus(BigInteger.valueOf(1024)));
+        assertThrows(IllegalArgumentException.class, () -> Montgomery.forModulus(BigInteger.ONE));
+        Montgomery ctx = Montgomery.forModulus(BigInteger.valueOf(101));
+        assertThrows(IllegalArgumentException.class, () -> ctx.modPow(BigInteger.TEN, BigInteger.valueOf(-1)));
+    }
+}
@@ -0,0 +1,47 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Jednoczesne potęgowanie wielu podstaw porównywane z iloczynem wyników BigInteger.modPow
+ */
+class MultiExpTest {
+
+    private static final Random RANDOM = new Random(30);
+
+    private static final BigInteger P = BigInteger.probablePrime(512, RANDOM);
+
+    @Test
+    void powMatchesProductOfModPow() {
+        for (int n = 1; n <= 5; n++) {
+            BigInteger[] bases = new BigInteger[n];
+            BigInteger[] exps = new BigInteger[n];
+            BigInteger expected = BigInteger.ONE;
+            for (int i = 0; i < n; i++) {
+                bases[i] = new BigInteger(511, RANDOM);
+                exps[i] = new BigInteger(1 + RANDOM.nextInt(512), RANDOM);
+                expected = expected.multiply(bases[i].modPow(exps[i], P)).mod(P);
+            }
+            assertEquals(expected, MultiExp.pow(bases, exps, P), "n = " + n);
+        }
+    }
+
+    @Test
+    void zeroExponentsAndBasesAboveModulus() {
+        BigInteger a = new BigInteger(700, RANDOM), b = new BigInteger(300, RANDOM);
+        BigInteger e = new BigInteger(160, RANDOM);
+        assertEquals(BigInteger.ONE, MultiExp.pow(new BigInteger[]{a, b}, new BigInteger[]{BigInteger.ZERO, BigInteger.ZERO}, P));
+        assertEquals(a.modPow(e, P), MultiExp.pow(new BigInteger[]{a, b}, new BigInteger[]{e, BigInteger.ZERO}, P));
+    }
+
+    @Test
+    void negativeExponentIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MultiExp.pow(new BigInteger[]{BigInteger.TEN}, new BigInteger[]{BigInteger.ONE.negate()}, P));
+    }
+}
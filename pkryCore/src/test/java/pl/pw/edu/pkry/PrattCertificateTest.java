@@ -0,0 +1,46 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Certyfikat zbudowany przez PrattCertificate jest przyjmowany przez PrattVerifier
+ */
+class PrattCertificateTest {
+
+    private final Random random = new Random(26);
+
+    @Test
+    void certificateRoundTrip() {
+        for (int bits : new int[]{16, 24, 32}) {
+            BigInteger q = BigInteger.probablePrime(bits, random), p;
+            BigInteger k = BigInteger.valueOf(2);
+            while (!(p = k.multiply(q).add(BigInteger.ONE)).isProbablePrime(50)) {
+                k = k.add(BigInteger.valueOf(2));
+            }
+            String certificate = PrattCertificate.build(p, q);
+            assertTrue(PrattVerifier.verify(certificate, p, q), certificate);
+            // q (i jego czynniki) certyfikowane są przed p
+            String lines[] = certificate.split("\n");
+            assertEquals(p.toString(16), lines[lines.length - 1].split("#")[0]);
+            assertFalse(PrattVerifier.verify(certificate, p, q.add(BigInteger.valueOf(2))));
+        }
+    }
+
+    @Test
+    void smallCertificateIsExact() {
+        assertEquals("5#2#2\nb#2#2,5\n17#5#2,b\n", PrattCertificate.build(BigInteger.valueOf(23), BigInteger.valueOf(11)));
+        assertEquals("", PrattCertificate.build(BigInteger.valueOf(2)));
+    }
+
+    @Test
+    void compositeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PrattCertificate.build(BigInteger.valueOf(91)));
+    }
+}
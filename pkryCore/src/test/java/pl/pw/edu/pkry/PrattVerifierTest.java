@@ -0,0 +1,75 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sprawdzanie certyfikatu pierwszości Pratta dla p = 23 i q = 11
+ */
+class PrattVerifierTest {
+
+    private static final BigInteger P = BigInteger.valueOf(23), Q = BigInteger.valueOf(11);
+
+    /**
+     * 5 (świadek 2), 11 (świadek 2, 10 = 2 * 5), 23 (świadek 5, 22 = 2 * 11)
+     */
+    private static final String CERTIFICATE = "5#2#2\nb#2#2,5\n17#5#2,b\n";
+
+    @Test
+    void validCertificateProvesBothPrimes() {
+        assertTrue(PrattVerifier.verify(CERTIFICATE, P, Q));
+        assertTrue(PrattVerifier.verify("\n" + CERTIFICATE.replace("\n", " \n"), P));
+    }
+
+    @Test
+    void primeOutsideCertificateIsNotProven() {
+        assertFalse(PrattVerifier.verify(CERTIFICATE, P, BigInteger.valueOf(13)));
+        assertFalse(PrattVerifier.verify("", P));
+    }
+
+    @Test
+    void invalidLinesAreRejected() {
+        // 2^11 = 1 (mod 23), więc 2 nie jest świadkiem dla 23
+        assertFalse(PrattVerifier.verify("5#2#2\nb#2#2,5\n17#2#2,b\n", P));
+        // czynnik 5 użyty przed udowodnieniem jego pierwszości
+        assertFalse(PrattVerifier.verify("b#2#2,5\n5#2#2\n17#5#2,b\n", P));
+        // niepełny rozkład 22
+        assertFalse(PrattVerifier.verify("5#2#2\nb#2#2,5\n17#5#2\n", P));
+        // liczba złożona
+        assertFalse(PrattVerifier.verify("9#2#2\n", BigInteger.valueOf(9)));
+        assertFalse(PrattVerifier.verify("5#2#2\nb#2\n", Q));
+        assertFalse(PrattVerifier.verify("5#2#2\nzz#2#2,5\n", Q));
+    }
+
+    @Test
+    void certificateIsReadNextToPublicKey() throws IOException, MalformedKeyException {
+        assertEquals(Paths.get("keys", "public.cert"), PrattVerifier.certificatePath(Paths.get("keys", "public.key").toString()));
+        Path key = Files.createTempFile("pratt", ".key");
+        Path certificate = PrattVerifier.certificatePath(key.toString());
+        try {
+            assertNull(PrattVerifier.read(certificate));
+            assertNull(PrattVerifier.readCertificate(key.toString()));
+            Files.write(certificate, CERTIFICATE.getBytes(StandardCharsets.UTF_8));
+            assertEquals(CERTIFICATE, PrattVerifier.read(certificate));
+            assertEquals(CERTIFICATE, PrattVerifier.readCertificate(key.toString()));
+            // nieczytelny certyfikat (tu katalog) zgłaszany jest jako błąd klucza publicznego
+            Files.delete(certificate);
+            Files.createDirectory(certificate);
+            assertThrows(MalformedKeyException.class, () -> PrattVerifier.readCertificate(key.toString()));
+        } finally {
+            Files.deleteIfExists(certificate);
+            Files.delete(key);
+        }
+    }
+}
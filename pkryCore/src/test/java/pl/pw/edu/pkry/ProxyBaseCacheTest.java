@@ -0,0 +1,64 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Wartość publiczna pełnomocnika Y = y * r^r oraz potęgowanie g^sp * Y^(-e) w podgrupie rzędu q
+ */
+class ProxyBaseCacheTest {
+
+    private static final Random RANDOM = new Random(31);
+
+    private static final BigInteger Q = BigInteger.probablePrime(160, RANDOM);
+
+    private static final BigInteger P, G;
+
+    static {
+        BigInteger k, p;
+        do {
+            k = new BigInteger(352, RANDOM).setBit(351).clearBit(0);
+            p = k.multiply(Q).add(BigInteger.ONE);
+        } while (!p.isProbablePrime(50));
+        P = p;
+        G = BigInteger.valueOf(2).modPow(k, P);
+    }
+
+    private static BigInteger element() {
+        return G.modPow(new BigInteger(159, RANDOM).add(BigInteger.ONE), P);
+    }
+
+    @Test
+    void valueCombinesOwnerAndProxyKey() {
+        BigInteger y = element(), r = element();
+        ProxyBaseCache.ProxyBase base = ProxyBaseCache.get(P, G, Q, y, r);
+        assertNotNull(base);
+        assertEquals(y.multiply(r.modPow(r, P)).mod(P), base.getValue());
+        assertSame(base, ProxyBaseCache.get(P, G, Q, y, r));
+    }
+
+    @Test
+    void proxyKeyOutsideSubgroupIsRejected() {
+        BigInteger y = element();
+        assertNull(ProxyBaseCache.get(P, G, Q, y, BigInteger.ONE));
+        assertNull(ProxyBaseCache.get(P, G, Q, y, P.subtract(BigInteger.ONE)));
+        assertNull(ProxyBaseCache.get(P, G, Q, y, element().add(P)));
+    }
+
+    @Test
+    void powMatchesModPowBeforeAndAfterTableIsBuilt() {
+        BigInteger y = element(), r = element();
+        ProxyBaseCache.ProxyBase base = ProxyBaseCache.get(P, G, Q, y, r);
+        for (int i = 0; i < 4; i++) {
+            BigInteger sp = new BigInteger(160, RANDOM).mod(Q), eneg = new BigInteger(160, RANDOM).mod(Q);
+            BigInteger expected = G.modPow(sp, P).multiply(base.getValue().modPow(eneg, P)).mod(P);
+            assertEquals(expected, base.pow(sp, eneg), "use " + i);
+        }
+    }
+}
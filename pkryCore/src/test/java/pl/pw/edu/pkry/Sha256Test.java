@@ -0,0 +1,67 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sha256 względem implementacji JDK oraz eksport i import stanu pośredniego
+ */
+class Sha256Test {
+
+    private final Random random = new Random(34);
+
+    private static byte[] jdk(byte[] data) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+
+    @Test
+    void digestMatchesJdk() throws NoSuchAlgorithmException {
+        for (int length = 0; length < 300; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertArrayEquals(jdk(data), new Sha256().digest(data));
+        }
+    }
+
+    @Test
+    void singleByteUpdatesMatchJdk() throws NoSuchAlgorithmException {
+        byte[] data = new byte[131];
+        random.nextBytes(data);
+        Sha256 md = new Sha256();
+        for (byte b : data) {
+            md.update(b);
+        }
+        assertArrayEquals(jdk(data), md.digest());
+    }
+
+    @Test
+    void exportedStateContinuesDigest() throws NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        for (int split : new int[]{0, 1, 63, 64, 65, 500, 1000}) {
+            Sha256 md = new Sha256();
+            md.update(data, 0, split);
+            Sha256.State state = md.exportState();
+            Sha256 copy = Sha256.importState(new Sha256.State(state.getH(), state.getCount(), state.getTail()));
+            copy.update(data, split, data.length - split);
+            assertArrayEquals(jdk(data), copy.digest());
+        }
+    }
+
+    @Test
+    void importRejectsCorruptedState() {
+        Sha256 md = new Sha256();
+        md.update(new byte[70]);
+        Sha256.State state = md.exportState();
+        assertThrows(IllegalArgumentException.class, () -> Sha256.importState(
+                new Sha256.State(state.getH(), state.getCount(), Arrays.copyOf(state.getTail(), 5))));
+        assertThrows(IllegalArgumentException.class, () -> Sha256.importState(
+                new Sha256.State(Arrays.copyOf(state.getH(), 7), state.getCount(), state.getTail())));
+    }
+}
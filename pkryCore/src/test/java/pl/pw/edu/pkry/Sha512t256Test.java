@@ -0,0 +1,47 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sha512t256 względem implementacji SHA-512/256 z JDK
+ */
+class Sha512t256Test {
+
+    private final Random random = new Random(43);
+
+    private static byte[] jdk(byte[] data) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-512/256").digest(data);
+    }
+
+    @Test
+    void digestMatchesJdk() throws NoSuchAlgorithmException {
+        for (int length = 0; length < 400; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertArrayEquals(jdk(data), new Sha512t256().digest(data));
+        }
+    }
+
+    @Test
+    void splitUpdatesAndCloneAgree() throws NoSuchAlgorithmException, CloneNotSupportedException {
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        byte[] expected = jdk(data);
+        for (int split : new int[]{0, 1, 111, 112, 127, 128, 129, 1000}) {
+            Sha512t256 md = new Sha512t256();
+            md.update(data, 0, split);
+            Sha512t256 copy = (Sha512t256) md.clone();
+            md.update(data, split, data.length - split);
+            assertArrayEquals(expected, md.digest());
+            for (int i = split; i < data.length; i++) {
+                copy.update(data[i]);
+            }
+            assertArrayEquals(expected, copy.digest());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Zapis i odczyt podpisów w formacie pierwotnym (sp#e#r) i wersji 2 (2#opcje#sp#e#r)
+ */
+class SignatureTest {
+
+    private static final BigInteger SP = new BigInteger("1a2b3c", 16), E = new BigInteger("-4d5e6f", 16), R = new BigInteger("778899", 16);
+
+    @Test
+    void versionOneRoundTrip() {
+        Signature signature = new Signature(Collections.<String, String>emptyMap(), SP, E, R);
+        assertEquals(SP.toString(16) + "#" + E.toString(16) + "#" + R.toString(16), signature.format());
+        Signature parsed = Signature.parse(signature.format() + "\n");
+        assertTrue(parsed.getOptions().isEmpty());
+        assertEquals(0, parsed.getChunk());
+        assertEquals(SP, parsed.getSp());
+        assertEquals(E, parsed.getE());
+        assertEquals(R, parsed.getR());
+    }
+
+    @Test
+    void versionTwoRoundTrip() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put(Signature.CHUNK, Integer.toString(MerkleTree.DEFAULT_CHUNK));
+        options.put("extra", "x");
+        Signature signature = new Signature(options, SP, E, R);
+        String text = signature.format();
+        assertTrue(text.startsWith("2#chunk=" + MerkleTree.DEFAULT_CHUNK + ";extra=x#"));
+        Signature parsed = Signature.parse(text);
+        assertEquals(options, parsed.getOptions());
+        assertEquals(MerkleTree.DEFAULT_CHUNK, parsed.getChunk());
+        assertEquals(E, parsed.getE());
+        assertEquals(text, parsed.format());
+    }
+
+    @Test
+    void curveOptionMarksEllipticCurveSignature() {
+        assertEquals(null, Signature.parse("1#2#3").getCurve());
+        Signature parsed = Signature.parse("2#curve=P-256#1#2#3");
+        assertEquals("P-256", parsed.getCurve());
+        assertEquals(0, parsed.getChunk());
+        assertEquals("P-256", Signature.parse("2#chunk=4096;curve=P-256#1#2#3").getCurve());
+    }
+
+    @Test
+    void digestAlgorithmDefaultsToSha256() {
+        assertEquals(DigestAlgorithms.SHA256, Signature.parse("1#2#3").getAlgorithm());
+        assertEquals(DigestAlgorithms.BLAKE2B_256, Signature.parse("2#alg=BLAKE2b-256#1#2#3").getAlgorithm());
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("2#alg=MD5#1#2#3").getAlgorithm());
+    }
+
+    @Test
+    void badlyFormattedSignaturesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("1#2"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("1#2#3#4"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("3#chunk=4096#1#2#3"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("2#chunk#1#2#3"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("1#zz#3"));
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("2#chunk=abc#1#2#3").getChunk());
+        assertThrows(IllegalArgumentException.class, () -> Signature.parse("2#chunk=16#1#2#3").getChunk());
+    }
+}
@@ -0,0 +1,125 @@
+package pl.pw.edu.pkry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Usługi biblioteki: klucze właściciela, wydanie klucza proxy, podpis i weryfikacja w obu wariantach
+ */
+class SignerVerifierTest {
+
+    private static final byte[] DOCUMENT = "document signed by proxy".getBytes(StandardCharsets.UTF_8);
+
+    SignerVerifierTest() throws IOException {
+        System.setProperty("pkry.home", Files.createTempDirectory("services").toString());
+    }
+
+    private static void roundTrip(KeyGenerator generator) throws Exception {
+        OwnerKeys owner = generator.generate();
+        ProxyKeyIssuer issuer = new ProxyKeyIssuer(owner.privateKey(false), owner.publicKey(true));
+        ProxyKey proxy = issuer.issue();
+        assertEquals(owner.getId(), proxy.getOwnerId());
+        Signer signer = new Signer(proxy.encode(true), owner.publicKey(false));
+        Verifier verifier = new Verifier(owner.publicKey(false));
+        assertEquals(owner.getId(), verifier.getId());
+
+        Signature plain = signer.sign(DOCUMENT);
+        assertNull(plain.getOwnerId());
+        assertTrue(verifier.verify(plain.encode(), DOCUMENT));
+        assertEquals(plain.getE(), verifier.eprim(plain, FileDigest.message(new ByteArrayInputStream(DOCUMENT), 0, DigestAlgorithms.DEFAULT)));
+
+        Signature signature = signer.sign(FileDigest.message(new ByteArrayInputStream(DOCUMENT), 0, DigestAlgorithms.DEFAULT),
+                signer.options(0, DigestAlgorithms.DEFAULT, true));
+        assertEquals(Long.valueOf(owner.getId()), signature.getOwnerId());
+        assertTrue(verifier.matches(signature));
+        assertTrue(verifier.verify(signature.format().getBytes(StandardCharsets.UTF_8), DOCUMENT));
+        assertTrue(verifier.verify(signature.encode(), new ByteArrayInputStream(DOCUMENT)));
+        assertFalse(verifier.verify(signature.encode(), "another document".getBytes(StandardCharsets.UTF_8)));
+
+        // podpis z ID klucza innego właściciela odrzucany jest bez obliczeń
+        Verifier other = new Verifier(generator.generate().publicKey(false));
+        assertFalse(other.matches(signature));
+        assertFalse(other.verify(signature.encode(), DOCUMENT));
+    }
+
+    @Test
+    void ellipticCurveRoundTrip() throws Exception {
+        roundTrip(new KeyGenerator(EllipticCurve.forName(EllipticCurve.P256_NAME)));
+    }
+
+    @Test
+    void multiplicativeGroupRoundTrip() throws Exception {
+        roundTrip(new KeyGenerator(40));
+    }
+
+    @Test
+    void sharedSignerIsThreadSafe() throws Exception {
+        OwnerKeys owner = new KeyGenerator(EllipticCurve.forName(EllipticCurve.P256_NAME)).generate();
+        ProxyKey proxy = new ProxyKeyIssuer(owner.privateKey(true), owner.publicKey(true)).issue();
+        Signer signer = new Signer(proxy.encode(false), owner.publicKey(false));
+        Verifier verifier = new Verifier(owner.publicKey(true));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                byte[] document = ("document " + i).getBytes(StandardCharsets.UTF_8);
+                results.add(pool.submit(() -> verifier.verify(signer.sign(document).encode(), document)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void errorsAreTyped() throws Exception {
+        OwnerKeys owner = new KeyGenerator(EllipticCurve.forName(EllipticCurve.P256_NAME)).generate();
+        byte[] garbage = "zz#1".getBytes(StandardCharsets.UTF_8);
+        assertThrows(MalformedKeyException.class, () -> new Verifier(garbage));
+        assertThrows(MalformedKeyException.class, () -> new ProxyKeyIssuer(garbage, owner.publicKey(false)));
+        // klucz proxy wydany dla innego klucza publicznego
+        OwnerKeys other = new KeyGenerator(EllipticCurve.forName(EllipticCurve.P256_NAME)).generate();
+        ProxyKey proxy = new ProxyKeyIssuer(other.privateKey(false), other.publicKey(false)).issue();
+        assertThrows(KeyValidationException.class, () -> new Signer(proxy.encode(false), owner.publicKey(false)));
+        // klucz proxy Z*p niespełniający g^s = y * r^r (mod p)
+        OwnerKeys group = new KeyGenerator(40).generate();
+        ProxyKey issued = new ProxyKeyIssuer(group.privateKey(false), group.publicKey(false)).issue();
+        new Signer(issued.encode(false), group.publicKey(false));
+        ProxyKey forged = new ProxyKey("", issued.getR(), issued.getS().add(BigInteger.ONE), issued.getOwnerId());
+        assertThrows(KeyValidationException.class, () -> new Signer(forged.encode(false), group.publicKey(false)));
+        ProxyKey outside = new ProxyKey("", group.getP().add(issued.getR()), issued.getS(), issued.getOwnerId());
+        assertThrows(KeyValidationException.class, () -> new Signer(outside.encode(false), group.publicKey(false)));
+        Verifier verifier = new Verifier(owner.publicKey(false));
+        assertThrows(MalformedSignatureException.class, () -> verifier.verify(garbage, DOCUMENT));
+    }
+
+    @Test
+    void staleLeavesAreRemovedWithoutChunks() throws IOException {
+        Path dir = Files.createTempDirectory("leaves");
+        Path file = Files.write(dir.resolve("document"), DOCUMENT);
+        Path leaves = dir.resolve("document.sig" + MerkleTree.LEAVES_EXTENSION);
+        Signer.document(file, false, MerkleTree.MIN_CHUNK, DigestAlgorithms.SHA256, leaves);
+        assertTrue(Files.exists(leaves));
+        // ponowny podpis bez podziału na fragmenty nie może zostawić liści poprzedniego podpisu
+        Signer.document(file, false, 0, DigestAlgorithms.SHA256, leaves);
+        assertFalse(Files.exists(leaves));
+    }
+}
@@ -0,0 +1,93 @@
+package pl.pw.edu.pkrylauncher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Klasa uruchamiająca aplikację
+ * pkry - wspólny punkt wejścia narzędzi: pkry keygen|proxy-keygen|sign|verify [opcje narzędzia].
+ * Jedna maszyna wirtualna z jednym plikiem JAR pozwala zapisać wczytane klasy wszystkich narzędzi
+ * w jednym archiwum CDS (przebieg treningowy pkry train) lub zbudować jeden obraz statyczny.
+ */
+public final class Main {
+
+    /**
+     * Plik podpisywany w przebiegu treningowym
+     */
+    private static final String TRAINING_FILE = "training.bin";
+
+    /**
+     * Rozmiar pliku podpisywanego w przebiegu treningowym
+     */
+    private static final int TRAINING_SIZE = 1 << 20;
+
+    private Main() {
+    }
+
+    /**
+     * Przebieg treningowy dla archiwum CDS: typowe wywołania wszystkich narzędzi w bieżącym
+     * katalogu (klucze schematu nad Z*p i EC, podpis tekstowy i binarny, skrót całej treści
+     * i drzewo Merkle) - w jednym procesie, aby archiwum objęło klasy każdego z nich
+     * @throws IOException gdy nie da się zapisać pliku treningowego
+     */
+    private static void train() throws IOException {
+        byte[] content = new byte[TRAINING_SIZE];
+        new Random(0).nextBytes(content);
+        Files.write(Paths.get(TRAINING_FILE), content);
+        for (String variant : new String[]{"", "-e"}) {
+            pl.pw.edu.keygen.Main.main(variant.isEmpty() ? new String[0] : new String[]{variant});
+            pl.pw.edu.proxykeygen.Main.main(new String[]{"private.key", "public.key"});
+            pl.pw.edu.proxysigner.Main.main(new String[]{"proxy.key", "public.key", TRAINING_FILE});
+            pl.pw.edu.proxyverifier.Main.main(new String[]{"public.key", "message.sign", TRAINING_FILE});
+            pl.pw.edu.proxysigner.Main.main(new String[]{"-m", "-x", "proxy.key", "public.key", TRAINING_FILE});
+            pl.pw.edu.proxyverifier.Main.main(new String[]{"public.key", "message.sign", TRAINING_FILE});
+        }
+    }
+
+    /**
+     * Metoda zwracająca poprawne użycie aplikacji
+     */
+    private static void syntaxError() {
+        System.out.println("Correct syntax: pkry command [options]");
+        System.out.println("   command: keygen, proxy-keygen, sign or verify (options as for keygen.jar, proxyKeygen.jar, proxySigner.jar or proxyVerifier.jar)");
+        System.out.println("   or (CDS training run in the current directory): pkry train");
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            syntaxError();
+        }
+        String[] options = Arrays.copyOfRange(args, 1, args.length);
+        switch (args[0]) {
+            case "keygen":
+                pl.pw.edu.keygen.Main.main(options);
+                break;
+            case "proxy-keygen":
+                pl.pw.edu.proxykeygen.Main.main(options);
+                break;
+            case "sign":
+                pl.pw.edu.proxysigner.Main.main(options);
+                break;
+            case "verify":
+                pl.pw.edu.proxyverifier.Main.main(options);
+                break;
+            case "train":
+                if (options.length != 0) {
+                    syntaxError();
+                }
+                try {
+                    train();
+                } catch (IOException ex) {
+                    System.out.println("Training file save failed! Try again!");
+                    System.exit(1);
+                }
+                break;
+            default:
+                syntaxError();
+        }
+    }
+}
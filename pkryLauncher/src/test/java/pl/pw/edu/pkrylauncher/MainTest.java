@@ -0,0 +1,84 @@
+package pl.pw.edu.pkrylauncher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Polecenia pkry trafiają do właściwych narzędzi (każde wywołanie w osobnym procesie, bo narzędzia
+ * zapisują pliki w katalogu bieżącym i kończą się przez System.exit)
+ */
+class MainTest {
+
+    private final Path dir;
+
+    MainTest() throws IOException {
+        dir = Files.createTempDirectory("pkry");
+    }
+
+    /**
+     * Uruchomienie pkry z podanymi argumentami w katalogu testu
+     * @return kod wyjścia i wypisany tekst
+     */
+    private String[] pkry(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dpkry.home=" + dir.resolve("home"),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName()));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = process.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+        return new String[]{String.valueOf(process.exitValue()), new String(out.toByteArray(), StandardCharsets.UTF_8)};
+    }
+
+    @Test
+    void commandsReachTheirTools() throws Exception {
+        Files.write(dir.resolve("doc.txt"), "document".getBytes(StandardCharsets.UTF_8));
+        String[] result = pkry("keygen", "-e");
+        assertEquals("0", result[0], result[1]);
+        assertTrue(result[1].contains("Public key file has been generated successfully!"), result[1]);
+        result = pkry("proxy-keygen", "private.key", "public.key");
+        assertTrue(result[1].contains("Proxy key has been generated successfully!"), result[1]);
+        result = pkry("sign", "proxy.key", "public.key", "doc.txt");
+        assertTrue(new File(dir.toFile(), "message.sign").isFile(), result[1]);
+        result = pkry("verify", "public.key", "message.sign", "doc.txt");
+        assertEquals("0", result[0], result[1]);
+        assertTrue(result[1].contains("File signature is correct and successfully verified!"), result[1]);
+
+        Files.write(dir.resolve("doc.txt"), "changed".getBytes(StandardCharsets.UTF_8));
+        result = pkry("verify", "public.key", "message.sign", "doc.txt");
+        assertEquals("1", result[0], result[1]);
+        assertTrue(result[1].contains("Signature verification FAILED!"), result[1]);
+    }
+
+    @Test
+    void unknownCommandPrintsSyntax() throws Exception {
+        for (String[] args : new String[][]{{}, {"bogus"}, {"train", "extra"}}) {
+            String[] result = pkry(args);
+            assertEquals("255", result[0]);
+            assertTrue(result[1].startsWith("Correct syntax: pkry command [options]"), result[1]);
+        }
+    }
+}
@@ -2,111 +2,222 @@ package pl.pw.edu.proxykeygen;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Random;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.FixedBase;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.KeyValidationException;
+import pl.pw.edu.pkry.MalformedKeyException;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.PrattVerifier;
+import pl.pw.edu.pkry.ProxyKey;
+import pl.pw.edu.pkry.ProxyKeyIssuer;
 
 /**
  * Klasa uruchamiająca aplikację
  * proxyKeygen - służy do generacji klucza prywatnego Proxy dla zastępcy.
+ * Obliczenia wykonuje ProxyKeyIssuer (pkryCore); klasa wczytuje klucze mocodawcy i zapisuje
+ * klucze proxy do plików lub magazynu kluczy.
  */
 public final class Main {
 
     /**
-     * Wartości pobrane od mocodawcy
+     * Wydawca kluczy proxy dla kluczy mocodawcy
      */
-    private final BigInteger q, x, p, g, y;
+    private final ProxyKeyIssuer issuer;
 
     /**
-     * Losowa liczba z przedziału (1, g)
+     * Czy zapisywać klucze proxy w postaci binarnej (BinaryFormat)
      */
-    private final BigInteger k;
+    private boolean binary;
 
     /**
-     * r = g^k mod p
+     * Magazyn kluczy, do którego dopisywane są klucze proxy zamiast zapisu plików, lub null
      */
-    private final BigInteger r;
+    private Path keyStore;
+
+    public Main(boolean debug, String privateKey_, String publicKey_) {
+        this(debug, privateKey_, publicKey_, 1);
+    }
 
     /**
-     * s = (x + kr) mod q
+     * @param debug czy wypisywać wartości pośrednie
+     * @param privateKey_ ścieżka klucza prywatnego mocodawcy
+     * @param publicKey_ ścieżka klucza publicznego mocodawcy
+     * @param count liczba kluczy proxy do wygenerowania (dla count > 1 tryb wsadowy)
      */
-    private final BigInteger s;
+    public Main(boolean debug, String privateKey_, String publicKey_, int count) {
+        this(debug, privateKey_, publicKey_, count, false);
+    }
 
     /**
-     * Klucz prywatny mocodawcy
+     * @param debug czy wypisywać wartości pośrednie
+     * @param privateKey_ ścieżka klucza prywatnego mocodawcy (w postaci tekstowej lub binarnej)
+     * @param publicKey_ ścieżka klucza publicznego mocodawcy (w postaci tekstowej lub binarnej)
+     * @param count liczba kluczy proxy do wygenerowania (dla count > 1 tryb wsadowy)
+     * @param binary czy zapisać klucze proxy w postaci binarnej (BinaryFormat)
      */
-    private String bossPrivateKey = null;
-    
+    public Main(boolean debug, String privateKey_, String publicKey_, int count, boolean binary) {
+        this(debug, privateKey_, publicKey_, count, binary, null);
+    }
+
     /**
-     * Klucz publiczny mocodawcy
+     * @param debug czy wypisywać wartości pośrednie
+     * @param privateKey_ ścieżka klucza prywatnego mocodawcy lub odwołanie magazyn#ID
+     * @param publicKey_ ścieżka klucza publicznego mocodawcy lub odwołanie magazyn#ID
+     * @param count liczba kluczy proxy do wygenerowania (dla count > 1 tryb wsadowy)
+     * @param binary czy zapisać klucze proxy w postaci binarnej (BinaryFormat)
+     * @param keyStore magazyn kluczy, do którego dopisywane są klucze proxy zamiast zapisu plików, lub null
      */
-    private String bossPublicKey = null;
+    public Main(boolean debug, String privateKey_, String publicKey_, int count, boolean binary, Path keyStore) {
+        this.binary = binary;
+        this.keyStore = keyStore;
+        BinaryFormat.Record bossPrivateKey = readKey(privateKey_, BinaryFormat.PRIVATE_KEY);
+        BinaryFormat.Record bossPublicKey = readKey(publicKey_, BinaryFormat.PUBLIC_KEY);
+        String certificate = bossPublicKey.getLabel().isEmpty() ? readCertificate(publicKey_, debug) : null;
 
-    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
+        ProxyKeyIssuer created = null;
+        try {
+            created = new ProxyKeyIssuer(bossPrivateKey, bossPublicKey, certificate);
+        } catch (MalformedKeyException ex) {
+            System.out.println(ex.getMessage());
+            syntaxError();
+        } catch (KeyValidationException ex) {
+            System.out.println(ex.getMessage());
+            System.exit(1);
+        }
+        issuer = created;
+        if (certificate != null && debug) {
+            System.out.println("Primality certificate of p and q verified successfully.");
+        }
+        issuer.loadTable(FixedBase.tablePath(publicKey_));
 
-    public Main(boolean debug, String privateKey_, String publicKey_) {
-        
+        if (debug) {
+            if (issuer.getCurve() != null) {
+                System.out.println("curve = " + issuer.getLabel());
+                System.out.println("n = " + issuer.getQ());
+                System.out.println("Y = " + issuer.getY().toString(16));
+            } else {
+                System.out.println("p = " + issuer.getP());
+                System.out.println("g = " + issuer.getG());
+                System.out.println("q = " + issuer.getQ());
+                System.out.println("y = " + issuer.getY());
+            }
+            System.out.println("x = " + bossPrivateKey.get(0));
+            System.out.println("");
+        }
+
+        if (count > 1 || issuer.getCurve() != null) {
+            issue(count, debug);
+            return;
+        }
+
+        ProxyKey key = null;
         try {
-            bossPrivateKey = getFile(privateKey_);
-        } catch (IOException ex) {
-            System.out.println("Private key file is wrong! Try again!");
+            key = issuer.issue();
+        } catch (KeyValidationException ex) {
+            System.out.println(ex.getMessage());
             syntaxError();
         }
-        
+        if(debug) {
+            System.out.println("r = " + key.getR());
+            System.out.println("s = " + key.getS());
+            System.out.println("");
+        }
         try {
-            bossPublicKey = getFile(publicKey_);
+            if (createKey(key, "proxy.key")) {
+                System.out.println("Proxy key has been generated successfully! Name of a file: proxy.key");
+            }
         } catch (IOException ex) {
-            System.out.println("Public key file is wrong! Try again!");
+            System.out.println("Proxy key has NOT been saved to file! Try again!");
+            System.exit(1);
+        } 
+    }
+    
+    /**
+     * Odczyt certyfikatu pierwszości parametrów p i q (o ile keygen go wygenerował)
+     * @param publicKeyPath ścieżka klucza publicznego, obok którego leży certyfikat
+     * @param debug czy wypisywać informacje diagnostyczne
+     * @return treść certyfikatu lub null, gdy go brak
+     */
+    private String readCertificate(String publicKeyPath, boolean debug) {
+        String certificate = null;
+        try {
+            certificate = PrattVerifier.readCertificate(publicKeyPath);
+        } catch (MalformedKeyException ex) {
+            System.out.println(ex.getMessage());
             syntaxError();
         }
-        
-        x = new BigInteger(bossPrivateKey, 16);
+        if (certificate == null && debug) {
+            System.out.println("Primality certificate was not found - check skipped.");
+        }
+        return certificate;
+    }
 
-        String tmp[] = bossPublicKey.split("#");
-        
-        p = new BigInteger(tmp[0], 16);
-        g = new BigInteger(tmp[1], 16);
-        q = new BigInteger(tmp[2], 16);
-        y = new BigInteger(tmp[3], 16);
-        k = genK(q);
-        r = genR(g, k, p);
-        s = genS(x, k, r, q);
+    /**
+     * Wsadowe wydanie kluczy proxy dla wielu zastępców (pliki proxy-1.key, proxy-2.key, ...);
+     * w wariancie EC również pojedynczego klucza (plik proxy.key).
+     * Klucze generowane są równolegle, a w schemacie nad Z*p sprawdzane wspólnie testem wsadowym.
+     * @param count liczba kluczy proxy
+     * @param debug czy wypisywać wartości pośrednie
+     */
+    private void issue(int count, boolean debug) {
+        ProxyKey[] keys = issuer.issue(count);
+        String name = issuer.getCurve() == null ? "r" : "R";
 
-        if(debug) {
-            System.out.println("p = " + p);
-            System.out.println("g = " + g);
-            System.out.println("q = " + q);
-            System.out.println("y = " + y);
-            System.out.println("x = " + x);
-            System.out.println("");
-            System.out.println("k = " + k);
-            System.out.println("r = " + r);
-            System.out.println("s = " + s);
+        if (debug) {
+            for (int i = 0; i < count; i++) {
+                if (keys[i] != null) {
+                    String r = issuer.getCurve() == null ? keys[i].getR().toString() : keys[i].getR().toString(16);
+                    System.out.println(name + (i + 1) + " = " + r + ", s" + (i + 1) + " = " + keys[i].getS());
+                }
+            }
             System.out.println("");
         }
-        
-        BigInteger L = g.modPow(s, p);
-        BigInteger R = y.mod(p).multiply(r.modPow(r, p)).mod(p);
 
-        if(!L.equals(R)) {
-            System.out.println("Generated proxy Key verification failed! Try again!");
-            syntaxError();
-        } else {
-            StringBuilder sb = new StringBuilder();
-            sb.append(r.toString(16)).append("#").append(s.toString(16));
+        int saved = 0;
+        for (int i = 0; i < count; i++) {
+            String fileName = count == 1 ? "proxy.key" : "proxy-" + (i + 1) + ".key";
+            if (keys[i] == null) {
+                System.out.println("Generated proxy Key verification failed! Name of a file: " + fileName);
+                continue;
+            }
             try {
-                createFile(sb.toString(), "proxy.key");
-                System.out.println("Proxy key has been generated successfully! Name of a file: proxy.key");
+                createKey(keys[i], fileName);
+                saved++;
             } catch (IOException ex) {
-                System.out.println("Proxy key has NOT been saved to file! Try again!");
-                System.exit(1);
-            } 
+                System.out.println("Proxy key has NOT been saved to file " + fileName + "! Try again!");
+            }
+        }
+        if (count == 1 && saved == 1) {
+            if (keyStore == null) {
+                System.out.println("Proxy key has been generated successfully! Name of a file: proxy.key");
+            }
+        } else if (count > 1) {
+            summary(saved, count);
+        }
+        if (saved != count) {
+            System.exit(1);
         }
     }
-    
+
+    /**
+     * Podsumowanie wsadowego wydania kluczy; kończy działanie, gdy nie wszystkie klucze zapisano
+     */
+    private void summary(int saved, int count) {
+        if (keyStore == null) {
+            System.out.println(saved + " of " + count + " proxy keys have been generated successfully! Names of files: proxy-1.key ... proxy-" + count + ".key");
+        } else {
+            System.out.println(saved + " of " + count + " proxy keys have been added to keystore " + keyStore + "!");
+        }
+        if (saved != count) {
+            System.exit(1);
+        }
+    }
+
     /**
      * Metoda pobierająca zawartość bajtową pliku wskazanego ścieżką
      * @param filePath ścieżka do pliku
@@ -123,6 +234,23 @@ public final class Main {
         }
     }
     
+    /**
+     * Wczytanie klucza mocodawcy z pliku (w postaci tekstowej lub binarnej) lub z magazynu kluczy; przy błędzie wypisuje komunikat
+     * i kończy działanie
+     * @param filePath ścieżka pliku klucza lub odwołanie magazyn#ID
+     * @param type rodzaj klucza (BinaryFormat)
+     * @return odczytany klucz
+     */
+    private BinaryFormat.Record readKey(String filePath, byte type) {
+        try {
+            return KeyStore.readKey(filePath, type);
+        } catch (MalformedKeyException ex) {
+            System.out.println(ex.getMessage());
+            syntaxError();
+            return null;
+        }
+    }
+
     /**
      * Metoda zapisująca zawartość tekstową do pliku o określonej ścieżce
      * @param data zawartość
@@ -130,60 +258,77 @@ public final class Main {
      * @throws IOException 
      */
     public void createFile(String data, String fileName) throws IOException {
+        long start = Metrics.start();
         File file = new File(fileName);
         Files.write(file.toPath(), data.getBytes());
+        Metrics.record(Metrics.WRITE, start);
     }
 
     /**
-     * Generacja r
-     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
-     * @param k tajna liczba losowa z przedziału (1,q)
-     * @param p duża losowa liczba pierwsza
-     * @return BigInteger r
-     */
-    public BigInteger genR(BigInteger g, BigInteger k, BigInteger p) {
-        return g.modPow(k, p);
-    }
-
-    /**
-     * Generacja s
-     * @param x klucz prywatny mocodawcy
-     * @param k tajna liczba losowa z przedziału (1,q)
-     * @param r g^k modp
-     * @param q czynnik pierwszy (p-1)
-     * @return BigInteger s
-     */
-    public BigInteger genS(BigInteger x, BigInteger k, BigInteger r, BigInteger q) {
-        return x.add(k.multiply(r)).mod(q);
-    }
-
-    /**
-     * Generacja k
-     * @param n liczba domykająca przedział
-     * @return liczba losowa z przedziału (1,n)
+     * Zapis klucza proxy w postaci binarnej lub tekstowej (r#s, dla wariantu EC ec1#krzywa#R#s)
+     * albo dopisanie go do magazynu kluczy (ID klucza proxy i ID klucza publicznego mocodawcy)
+     * @param key klucz proxy
+     * @param fileName ścieżka pliku
+     * @return true, gdy klucz zapisano do pliku fileName (false - do magazynu)
+     * @throws IOException
      */
-    public BigInteger genK(BigInteger n) {
-        Random rand = new Random();
-        BigInteger result = new BigInteger(n.bitLength(), rand);
-        while (result.compareTo(n.subtract(BigInteger.ONE)) == 1 || result.compareTo(TWO) == -1) {
-                result = new BigInteger(n.bitLength(), rand);
+    private boolean createKey(ProxyKey key, String fileName) throws IOException {
+        long start = Metrics.start();
+        if (keyStore != null) {
+            KeyStore.open(keyStore).add(key.entry());
+            Metrics.record(Metrics.WRITE, start);
+            System.out.println("Proxy key has been added to keystore! Reference: " + KeyStore.reference(keyStore, key.getId()));
+            return false;
         }
-        return result;
+        Files.write(Paths.get(fileName), key.encode(binary));
+        Metrics.record(Metrics.WRITE, start);
+        return true;
     }
-    
+
     /**
      * Metoda zwracająca poprawne użycie aplikacji
      */
     private static void syntaxError() {
-        System.out.println("Correct syntax: java -jar proxyKeygen.jar [-d] privateKey publicKey");
+        System.out.println("Correct syntax: java -jar proxyKeygen.jar [-d] [-n count] [-x | -k keystore] [--stats] privateKey publicKey");
+        System.out.println("   -x: write the proxy key files in the compact binary format");
+        System.out.println("   -k: add the proxy keys to a keystore file instead of writing key files");
+        System.out.println("   privateKey and publicKey are key files or keystore references keystore#keyId");
+        System.out.println("   --stats: print a JSON summary of stage timings and counters to standard error at exit");
         System.exit(-1);
     }
 
     public static void main(String[] args) {
-        if((args.length == 3 && args[0].equals("-d"))) {   
-            Main main = new Main(true, args[1], args[2]);
-        } else if((args.length == 2 && !args[0].equals("-d"))) {
-            Main main = new Main(false, args[0], args[1]);
+        boolean debug = false;
+        int count = 1;
+        boolean binary = false;
+        Path keyStore = null;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            if (args[i].equals("-d")) {
+                debug = true;
+                i++;
+            } else if (args[i].equals("-x")) {
+                binary = true;
+                i++;
+            } else if (args[i].equals("--stats")) {
+                Metrics.printAtExit(System.err);
+                i++;
+            } else if (args[i].equals("-k") && i + 1 < args.length) {
+                keyStore = Paths.get(args[i + 1]);
+                i += 2;
+            } else if (args[i].equals("-n") && i + 1 < args.length) {
+                try {
+                    count = Integer.parseInt(args[i + 1]);
+                } catch (NumberFormatException ex) {
+                    syntaxError();
+                }
+                i += 2;
+            } else {
+                syntaxError();
+            }
+        }
+        if (args.length - i == 2 && count > 0) {
+            Main main = new Main(debug, args[i], args[i + 1], count, binary, keyStore);
         } else {
             syntaxError();
         }
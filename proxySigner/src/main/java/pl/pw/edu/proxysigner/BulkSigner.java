@@ -0,0 +1,237 @@
+package pl.pw.edu.proxysigner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import pl.pw.edu.pkry.MerkleTree;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Signer;
+
+/**
+ * Wsadowe podpisywanie wielu plików w jednym procesie.
+ * Przetwarzanie podzielone jest na etapy: odczyt listy plików - skrót - podpis - zapis, połączone
+ * kolejkami o ograniczonej pojemności (szybszy etap czeka na wolniejszy, więc zużycie pamięci
+ * nie zależy od liczby plików). Klucze wczytywane są raz, a podpis pliku X zapisywany jest w X.sign.
+ */
+public final class BulkSigner {
+
+    /**
+     * Rozszerzenie plików podpisów
+     */
+    public static final String SIGNATURE_EXTENSION = ".sign";
+
+    /**
+     * Pojemność kolejki między etapami (na wątek)
+     */
+    private static final int QUEUE_PER_THREAD = 4;
+
+    private final Signer signer;
+
+    private final boolean cache;
+
+    /**
+     * Rozmiar fragmentu drzewa Merkle lub 0 (skrót całej treści)
+     */
+    private final int chunk;
+
+    /**
+     * Nazwa funkcji skrótu
+     */
+    private final String algorithm;
+
+    /**
+     * Czy zapisywać podpisy w postaci binarnej
+     */
+    private final boolean binary;
+
+    /**
+     * Czy zapisywać w podpisach ID kluczy
+     */
+    private final boolean ids;
+
+    private final int threads;
+
+    private final AtomicInteger signed = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param signer podpisujący z wczytanym kluczem proxy i kluczem publicznym
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param threads liczba wątków etapów skrótu i podpisu
+     */
+    public BulkSigner(Signer signer, boolean cache, int chunk, String algorithm, int threads) {
+        this(signer, cache, chunk, algorithm, false, threads);
+    }
+
+    /**
+     * @param signer podpisujący z wczytanym kluczem proxy i kluczem publicznym
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param binary czy zapisywać podpisy w postaci binarnej (BinaryFormat)
+     * @param threads liczba wątków etapów skrótu i podpisu
+     */
+    public BulkSigner(Signer signer, boolean cache, int chunk, String algorithm, boolean binary, int threads) {
+        this(signer, cache, chunk, algorithm, binary, false, threads);
+    }
+
+    /**
+     * @param signer podpisujący z wczytanym kluczem proxy i kluczem publicznym
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param binary czy zapisywać podpisy w postaci binarnej (BinaryFormat)
+     * @param ids czy zapisywać w podpisach ID kluczy (format w wersji 2)
+     * @param threads liczba wątków etapów skrótu i podpisu
+     */
+    public BulkSigner(Signer signer, boolean cache, int chunk, String algorithm, boolean binary, boolean ids, int threads) {
+        this.signer = signer;
+        this.cache = cache;
+        this.chunk = chunk;
+        this.algorithm = algorithm;
+        this.binary = binary;
+        this.ids = ids;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Podpisanie wszystkich plików wskazanych przez input
+     * @param input katalog (podpisywane są wszystkie pliki w drzewie poza plikami .sign)
+     * lub plik z listą ścieżek (po jednej w linii)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void run(Path input) throws IOException, InterruptedException {
+        final BlockingQueue<Item> toHash = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        final BlockingQueue<Item> toSign = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        final BlockingQueue<Item> toWrite = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+
+        List<Thread> workers = new ArrayList<>();
+        workers.addAll(stage("hash", threads, toHash, toSign, threads, item -> {
+            item.digest = Signer.document(item.file, cache, chunk, algorithm, Paths.get(item.file.toString() + SIGNATURE_EXTENSION + MerkleTree.LEAVES_EXTENSION));
+        }));
+        workers.addAll(stage("sign", threads, toSign, toWrite, 1, item -> {
+            Signature signature = signer.sign(item.digest, signer.options(chunk, algorithm, ids));
+            item.signature = binary ? signature.encode() : signature.format().getBytes(StandardCharsets.UTF_8);
+            item.digest = null;
+        }));
+        workers.addAll(stage("write", 1, toWrite, null, 0, item -> {
+            long start = Metrics.start();
+            Files.write(Paths.get(item.file.toString() + SIGNATURE_EXTENSION), item.signature);
+            Metrics.record(Metrics.WRITE, start);
+            signed.incrementAndGet();
+        }));
+
+        try (Stream<Path> files = list(input)) {
+            Iterator<Path> it = files.iterator();
+            while (it.hasNext()) {
+                toHash.put(new Item(it.next()));
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                toHash.put(Item.END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+    }
+
+    /**
+     * @return liczba poprawnie podpisanych plików
+     */
+    public int getSigned() {
+        return signed.get();
+    }
+
+    /**
+     * @return liczba plików, których nie udało się podpisać
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    private static Stream<Path> list(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            return Files.walk(input).filter(Files::isRegularFile).filter(f -> !f.toString().endsWith(SIGNATURE_EXTENSION) && !f.toString().endsWith(SIGNATURE_EXTENSION + MerkleTree.LEAVES_EXTENSION));
+        }
+        return Files.lines(input, StandardCharsets.UTF_8).map(String::trim).filter(line -> !line.isEmpty()).map(Paths::get);
+    }
+
+    /**
+     * Uruchomienie etapu: count wątków pobiera elementy z in, wykonuje task i przekazuje je do out.
+     * Ostatni kończący wątek przekazuje znaczniki końca do nextCount wątków kolejnego etapu.
+     */
+    private List<Thread> stage(String name, int count, BlockingQueue<Item> in, BlockingQueue<Item> out, int nextCount, Task task) {
+        final int downstream = out == null ? 0 : nextCount;
+        final AtomicInteger running = new AtomicInteger(count);
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    for (Item item = in.take(); item != Item.END; item = in.take()) {
+                        try {
+                            task.run(item);
+                            if (out != null) {
+                                out.put(item);
+                            }
+                        } catch (IOException | RuntimeException ex) {
+                            failed.incrementAndGet();
+                            Metrics.count(Metrics.SIGN_FAILURES);
+                            System.out.println("Signing of file " + item.file + " failed! " + ex.getMessage());
+                        }
+                    }
+                    if (running.decrementAndGet() == 0) {
+                        for (int j = 0; j < downstream; j++) {
+                            out.put(Item.END);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "bulk-" + name + "-" + i);
+            t.start();
+            started.add(t);
+        }
+        return started;
+    }
+
+    private interface Task {
+        void run(Item item) throws IOException;
+    }
+
+    /**
+     * Plik przechodzący przez kolejne etapy
+     */
+    private static final class Item {
+
+        static final Item END = new Item(null);
+
+        final Path file;
+
+        MessageDigest digest;
+
+        /**
+         * Treść pliku podpisu
+         */
+        byte[] signature;
+
+        Item(Path file) {
+            this.file = file;
+        }
+    }
+}
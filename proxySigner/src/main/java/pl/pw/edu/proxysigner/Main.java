@@ -1,111 +1,123 @@
 package pl.pw.edu.proxysigner;
 
-import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Random;
+import pl.pw.edu.pkry.CouponStore;
+import pl.pw.edu.pkry.Daemon;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.DigestCache;
+import pl.pw.edu.pkry.KeyValidationException;
+import pl.pw.edu.pkry.MalformedKeyException;
+import pl.pw.edu.pkry.MerkleTree;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Signer;
 
 /**
  * Klasa uruchamiająca aplikację
  * proxySigner - służy do generowania podpisu cyfrowego zadanego pliku
+ * Obliczenia wykonuje Signer (pkryCore); klasa odczytuje argumenty i zapisuje podpis.
  */
 public final class Main {
 
     /**
-     * Zawartość bajtowa pliku wejściowego, który podpisujemy
+     * Nazwa usługi demona podpisującego
      */
-    private byte[] fileData;
+    private static final String DAEMON = "proxySigner";
 
     /**
-     * Zawartość tekstowa klucza proxy
+     * Żądanie podpisu wysyłane do demona
      */
-    private String proxyKey;
-    
+    private static final String SIGN = "SIGN";
+
     /**
-     * Zawartość tekstowa klucza publicznego
+     * Klucze wczytane przez demona
      */
-    private String publicKey;
-    
+    private static final Daemon.Loaded<Signer> LOADED = new Daemon.Loaded<>(paths -> Signer.open(paths[0], paths[1]));
+
+    public Main(boolean debug, String proxyKey_, String publicKey_, String fileToSign_) {
+        this(debug, false, proxyKey_, publicKey_, fileToSign_);
+    }
+
     /**
-     * Klucz publiczny
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
      */
-    private final BigInteger q, p, g;
+    public Main(boolean debug, boolean cache, String proxyKey_, String publicKey_, String fileToSign_) {
+        this(debug, cache, 0, proxyKey_, publicKey_, fileToSign_);
+    }
 
     /**
-     * Parametry klucza proxy
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0 - skrót całej treści
      */
-    private final BigInteger s, r;
-    
+    public Main(boolean debug, boolean cache, int chunk, String proxyKey_, String publicKey_, String fileToSign_) {
+        this(debug, cache, chunk, DigestAlgorithms.DEFAULT, proxyKey_, publicKey_, fileToSign_);
+    }
+
     /**
-     * Parametry poboczne niezbędne do wygenerowania sygnatury
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0 - skrót całej treści
+     * @param algorithm nazwa funkcji skrótu (zapisywana w podpisie, gdy inna niż SHA-256)
      */
-    private final BigInteger l, rp, sp, e;
-    private static final BigInteger TWO = BigInteger.ONE.add(BigInteger.ONE);
-
-    public Main(boolean debug, String proxyKey_, String publicKey_, String fileToSign_) {
-
-        try {
-            fileData = getFile(fileToSign_);
-        } catch (IOException ex) {
-            System.out.println("File to sign is wrong! Try again!");
-            syntaxError();
-        }
+    public Main(boolean debug, boolean cache, int chunk, String algorithm, String proxyKey_, String publicKey_, String fileToSign_) {
+        this(debug, cache, chunk, algorithm, false, proxyKey_, publicKey_, fileToSign_);
+    }
 
-        try {
-            proxyKey = new String(getFile(proxyKey_), StandardCharsets.UTF_8);
-        } catch (IOException ex) {
-            System.out.println("Proxy key file is wrong! Try again!");
-            syntaxError();
-        }
+    /**
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0 - skrót całej treści
+     * @param algorithm nazwa funkcji skrótu (zapisywana w podpisie, gdy inna niż SHA-256)
+     * @param binary czy zapisać podpis w postaci binarnej (BinaryFormat)
+     */
+    public Main(boolean debug, boolean cache, int chunk, String algorithm, boolean binary, String proxyKey_, String publicKey_, String fileToSign_) {
+        this(debug, cache, chunk, algorithm, binary, false, proxyKey_, publicKey_, fileToSign_);
+    }
 
-        String tmp[] = proxyKey.split("#");
-        r = new BigInteger(tmp[0], 16);
-        s = new BigInteger(tmp[1], 16);
+    /**
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
+     * @param chunk rozmiar fragmentu drzewa Merkle (format podpisu w wersji 2) lub 0 - skrót całej treści
+     * @param algorithm nazwa funkcji skrótu (zapisywana w podpisie, gdy inna niż SHA-256)
+     * @param binary czy zapisać podpis w postaci binarnej (BinaryFormat)
+     * @param ids czy zapisać w podpisie ID kluczy (format podpisu w wersji 2)
+     */
+    public Main(boolean debug, boolean cache, int chunk, String algorithm, boolean binary, boolean ids, String proxyKey_, String publicKey_, String fileToSign_) {
+        Signer signer = open(proxyKey_, publicKey_);
 
+        MessageDigest fileDigest = null;
         try {
-            publicKey = new String(getFile(publicKey_), StandardCharsets.UTF_8);
+            fileDigest = Signer.document(Paths.get(fileToSign_), cache, chunk, algorithm, Paths.get("message.sign" + MerkleTree.LEAVES_EXTENSION));
         } catch (IOException ex) {
-            System.out.println("Public key file is wrong! Try again!");
+            System.out.println("File to sign is wrong! Try again!");
             syntaxError();
         }
 
-        String tmp2[] = publicKey.split("#");
-        p = new BigInteger(tmp2[0], 16);
-        g = new BigInteger(tmp2[1], 16);
-        q = new BigInteger(tmp2[2], 16);
-        l = genL(q);
-        rp = genRP(g, l, p);
-        e = genE(fileData, rp);
-        sp = genSP(s, e, l, q);
+        Signature signature = signer.sign(fileDigest, signer.options(chunk, algorithm, ids));
         
         if(debug) {
-            System.out.println("r = " + r);
-            System.out.println("s = " + s);
+            System.out.println("r = " + signer.getR());
             System.out.println("");
-            System.out.println("p = " + p);
-            System.out.println("g = " + g);
-            System.out.println("q = " + q);
-            System.out.println("l = " + l);
+            System.out.println("p = " + signer.getP());
+            System.out.println("g = " + signer.getG());
+            System.out.println("q = " + signer.getQ());
             System.out.println("");
-            System.out.println("rp = " + rp);
-            System.out.println("e = " + e);
-            System.out.println("e(hex) = " + e.toString(16));
+            System.out.println("e = " + signature.getE());
+            System.out.println("e(hex) = " + signature.getE().toString(16));
             System.out.println("");
-            System.out.println("sp = " + sp);
-            System.out.println("sp(hex) = " + sp.toString(16));
+            System.out.println("sp = " + signature.getSp());
+            System.out.println("sp(hex) = " + signature.getSp().toString(16));
             System.out.println("");
         }
         
-        StringBuilder sb = new StringBuilder();
-        sb.append(sp.toString(16)).append("#").append(e.toString(16)).append("#").append(r.toString(16));
         try {
-            createFile(sb.toString(), "message.sign");
+            signature.write(Paths.get("message.sign"), binary);
             System.out.println("File signature has beed generated successfully! Name of a file: message.sign");
         } catch (IOException ex) {
             System.out.println("Signature file save failed! Try again!");
@@ -114,116 +126,213 @@ public final class Main {
     }
 
     /**
-     * Geneacja r_p
-     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
-     * @param l losowa liczba z przedziału (1, q-1)
-     * @param p duża losowa liczba pierwsza
-     * @return BigInteger r_p
-     */
-    public BigInteger genRP(BigInteger g, BigInteger l, BigInteger p) {
-        return g.modPow(l, p);
-    }
-
-    /**
-     * Generacja s_p
-     * @param s fragment klucza proxy
-     * @param e skrót (SHA-256) dokumentu i konkatenacji z parametrem r_p
-     * @param l losowa liczba z przedziału (1, q-1)
-     * @param q element z*p rzędu q
-     * @return BigInteger s_p
+     * Metoda zwracająca poprawne użycie aplikacji
      */
-    public BigInteger genSP(BigInteger s, BigInteger e, BigInteger l, BigInteger q) {
-        return l.add(s.multiply(e)).mod(q);
+    private static void syntaxError() {
+        System.out.println("Correct syntax: java -jar proxySigner.jar [-d] [-c | -m] [-h digest] [-x] [-i] proxyKey publicKey fileToSign");
+        System.out.println("   or (bulk mode): java -jar proxySigner.jar [-c | -m] [-h digest] [-x] [-i] -b directoryOrFileList proxyKey publicKey");
+        System.out.println("   or (precompute coupons): java -jar proxySigner.jar -p count proxyKey publicKey");
+        System.out.println("   or (daemon): java -jar proxySigner.jar -s port");
+        System.out.println("   or (daemon client): java -jar proxySigner.jar [-c | -m] [-h digest] [-x] [-i] -r port proxyKey publicKey fileToSign");
+        System.out.println("   digest: " + DigestAlgorithms.SHA256 + " (default), " + DigestAlgorithms.SHA512_256 + " or " + DigestAlgorithms.BLAKE2B_256);
+        System.out.println("   -x: write the signature file in the compact binary format");
+        System.out.println("   -i: write the public and proxy key IDs into the signature (needed by proxyVerifier -i keyIndex;");
+        System.out.println("       such signatures use format version 2, which verifiers older than key IDs do not read)");
+        System.out.println("   proxyKey and publicKey are key files or keystore references keystore#keyId");
+        System.out.println("   -p: coupons are saved next to proxyKey (proxy.key - proxy.coupons); the coupon file holds secret");
+        System.out.println("       signing nonces and is as sensitive as proxyKey - keep it private (it is created rw-------)");
+        System.out.println("   --stats: print a JSON summary of stage timings and counters to standard error at exit");
+        System.out.println("   daemon and bulk modes also publish these metrics over JMX (" + Metrics.OBJECT_NAME + ")");
+        System.exit(-1);
     }
 
     /**
-     * Generacja e
-     * @param m treść pliku na którym naliczana jest sygnatura
-     * @param rp parametr r_p
-     * @return skrót (SHA-256) konkatenacji m i rp
+     * Wczytanie kluczy (Signer.open); przy błędzie wypisuje komunikat i kończy działanie
+     * @param proxyKey_ ścieżka klucza proxy lub odwołanie magazyn#ID
+     * @param publicKey_ ścieżka klucza publicznego lub odwołanie magazyn#ID
+     * @return podpisujący z wczytanymi kluczami
      */
-    public BigInteger genE(byte[] m, BigInteger rp) {
-        byte[] rpByte = rp.toByteArray();
-        byte[] c = new byte[m.length + rpByte.length];
-        System.arraycopy(m, 0, c, 0, m.length);
-        System.arraycopy(rpByte, 0, c, m.length, rpByte.length);
-        MessageDigest mda = null;
+    private static Signer open(String proxyKey_, String publicKey_) {
         try {
-            mda = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException ex) {
-            System.out.println("Algorithm SHA-256 was not found!");
+            return Signer.open(proxyKey_, publicKey_);
+        } catch (MalformedKeyException ex) {
+            System.out.println(ex.getMessage());
+            syntaxError();
+        } catch (KeyValidationException ex) {
+            System.out.println(ex.getMessage());
             System.exit(1);
         }
-        byte[] coded = mda.digest(c);
-        return new BigInteger(coded);
+        return null;
     }
-    
+
     /**
-     * Metoda konwertująca tablicę bajtów na wartość tekstową (String)
-     * @param _bytes
-     * @return String
+     * Tryb demona - obsługa żądań podpisu od klientów (-r) z kluczami i skrótami przechowywanymi w pamięci
+     * @param port numer portu na interfejsie pętli zwrotnej
      */
-    public String bytesToString(byte[] _bytes) {
-        String file_string = "";
-        for (int i = 0; i < _bytes.length; i++) { 
-            file_string += String.format("%8s", Integer.toBinaryString(_bytes[i] & 0xFF)).replace(' ', '0');
+    private static void serve(int port) {
+        try {
+            Metrics.registerMBean();
+            Daemon daemon = new Daemon(DAEMON, port, Main::handle);
+            System.out.println("Signing daemon is listening on port " + daemon.getPort() + ".");
+            daemon.serve();
+        } catch (IOException ex) {
+            System.out.println("Signing daemon failed! " + ex.getMessage());
+            System.exit(1);
         }
-        return file_string;
     }
 
     /**
-     * Generacja L
-     * @param n liczba będąca krańcem przedziału losowości
-     * @return liczba losowa z przedziału (1, n-1)
+     * Obsługa żądania demona: SIGN, klucz proxy, klucz publiczny, plik, plik podpisu, cache, rozmiar fragmentu,
+     * funkcja skrótu, postać binarna, ID kluczy
+     * @param request pola żądania (ścieżki bezwzględne)
+     * @return ścieżka zapisanego pliku podpisu
+     * @throws IOException
      */
-    public BigInteger genL(BigInteger n) {
-        Random rand = new Random();
-        BigInteger result = new BigInteger(n.bitLength(), rand);
-        while (result.compareTo(n.subtract(TWO)) == 1 || result.compareTo(TWO) == -1) {
-            result = new BigInteger(n.bitLength(), rand);
+    private static String handle(String[] request) throws IOException {
+        if (request.length != 10 || !request[0].equals(SIGN)) {
+            throw new IOException("Unknown request!");
+        }
+        Signer signer = LOADED.get(request[1], request[2]);
+        int chunk = Integer.parseInt(request[6]);
+        String algorithm = DigestAlgorithms.check(request[7]);
+        MessageDigest document;
+        Path leaves = Paths.get(request[4] + MerkleTree.LEAVES_EXTENSION);
+        try {
+            if (chunk > 0) {
+                document = Signer.document(Paths.get(request[3]), false, chunk, algorithm, leaves);
+            } else {
+                Files.deleteIfExists(leaves);
+                document = DigestCache.get(Paths.get(request[3]), algorithm, Boolean.parseBoolean(request[5]));
+            }
+        } catch (IOException ex) {
+            throw new IOException("File to sign is wrong! Try again!");
+        }
+        try {
+            signer.sign(document, signer.options(chunk, algorithm, Boolean.parseBoolean(request[9]))).write(Paths.get(request[4]), Boolean.parseBoolean(request[8]));
+        } catch (IOException ex) {
+            throw new IOException("Signature file save failed! Try again!");
         }
-        return result;
+        return request[4];
     }
 
     /**
-     * Metoda pobierająca zawartość bajtową pliku wskazanego ścieżką
-     * @param filePath ścieżka do pliku
-     * @return zawartość bajtowa pliku
-     * @throws IOException 
+     * Podpis przez demona; komunikaty jak przy podpisie w bieżącym procesie
      */
-    public byte[] getFile(String filePath) throws IOException {
-        Path file = Paths.get(filePath);
-        if (file.toFile().exists()) {
-            return Files.readAllBytes(file);
-        } else {
-            return null;
+    private static void remote(int port, boolean cache, int chunk, String algorithm, boolean binary, boolean ids, String proxyKey_, String publicKey_, String fileToSign_) {
+        try {
+            Daemon.request(DAEMON, port, SIGN, Daemon.absolute(proxyKey_), Daemon.absolute(publicKey_), Daemon.absolute(fileToSign_),
+                    Daemon.absolute("message.sign"), String.valueOf(cache), String.valueOf(chunk), algorithm,
+                    String.valueOf(binary), String.valueOf(ids));
+            System.out.println("File signature has beed generated successfully! Name of a file: message.sign");
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            System.exit(1);
         }
     }
 
     /**
-     * Metoda zapisująca zawartość tekstową do pliku o określonej ścieżce
-     * @param data zawartość
-     * @param fileName ścieżka pliku
-     * @throws IOException 
-     */
-    public void createFile(String data, String fileName) throws IOException {
-        File file = new File(fileName);
-        Files.write(file.toPath(), data.getBytes());
-    }
-    
-    /**
-     * Metoda zwracająca poprawne użycie aplikacji
+     * Tryb wsadowy - podpisanie wszystkich plików z katalogu lub listy (podpis pliku X w pliku X.sign)
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param chunk rozmiar fragmentu drzewa Merkle lub 0
+     * @param algorithm nazwa funkcji skrótu
+     * @param binary czy zapisywać podpisy w postaci binarnej
+     * @param ids czy zapisywać w podpisach ID kluczy
+     * @param input katalog lub plik z listą ścieżek
+     * @param proxyKey_ ścieżka klucza proxy
+     * @param publicKey_ ścieżka klucza publicznego
      */
-    private static void syntaxError() {
-        System.out.println("Correct syntax: java -jar proxySigner.jar [-d] proxyKey publicKey fileToSign");
-        System.exit(-1);
+    private static void bulk(boolean cache, int chunk, String algorithm, boolean binary, boolean ids, String input, String proxyKey_, String publicKey_) {
+        Metrics.registerMBean();
+        BulkSigner bulk = new BulkSigner(open(proxyKey_, publicKey_), cache, chunk, algorithm, binary, ids, Runtime.getRuntime().availableProcessors());
+        try {
+            bulk.run(Paths.get(input));
+        } catch (IOException ex) {
+            System.out.println("Bulk input " + input + " is wrong! Try again!");
+            syntaxError();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(bulk.getSigned() + " file signatures have been generated successfully, " + bulk.getFailed() + " failed.");
+        if (bulk.getFailed() != 0) {
+            System.exit(1);
+        }
     }
 
     public static void main(String[] args) {
-        if((args.length == 4 && args[0].equals("-d"))) {   
-            Main main = new Main(true, args[1], args[2], args[3]);
-        } else if((args.length == 3 && !args[0].equals("-d"))) {
-            Main main = new Main(false, args[0], args[1], args[2]);
+        boolean debug = false;
+        boolean cache = false;
+        String bulkInput = null;
+        int precompute = 0;
+        int serve = -1;
+        int remote = -1;
+        int chunk = 0;
+        String algorithm = DigestAlgorithms.DEFAULT;
+        boolean binary = false;
+        boolean ids = false;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            if (args[i].equals("-d")) {
+                debug = true;
+            } else if (args[i].equals("-c")) {
+                cache = true;
+            } else if (args[i].equals("-m")) {
+                chunk = MerkleTree.DEFAULT_CHUNK;
+            } else if (args[i].equals("-x")) {
+                binary = true;
+            } else if (args[i].equals("-i")) {
+                ids = true;
+            } else if (args[i].equals("--stats")) {
+                Metrics.printAtExit(System.err);
+            } else if (args[i].equals("-h") && i + 1 < args.length) {
+                try {
+                    algorithm = DigestAlgorithms.check(args[++i]);
+                } catch (IllegalArgumentException ex) {
+                    System.out.println(ex.getMessage());
+                    syntaxError();
+                }
+            } else if (args[i].equals("-b") && i + 1 < args.length) {
+                bulkInput = args[++i];
+            } else if (args[i].equals("-p") && i + 1 < args.length) {
+                try {
+                    precompute = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    syntaxError();
+                }
+            } else if ((args[i].equals("-s") || args[i].equals("-r")) && i + 1 < args.length) {
+                try {
+                    if (args[i].equals("-s")) {
+                        serve = Integer.parseInt(args[++i]);
+                    } else {
+                        remote = Integer.parseInt(args[++i]);
+                    }
+                } catch (NumberFormatException ex) {
+                    syntaxError();
+                }
+            } else {
+                syntaxError();
+            }
+            i++;
+        }
+        if (serve >= 0 && args.length == i) {
+            serve(serve);
+        } else if (remote >= 0 && !debug && bulkInput == null && precompute == 0 && args.length - i == 3) {
+            remote(remote, cache, chunk, algorithm, binary, ids, args[i], args[i + 1], args[i + 2]);
+        } else if (serve >= 0 || remote >= 0) {
+            syntaxError();
+        } else if (precompute > 0 && bulkInput == null && args.length - i == 2) {
+            Signer signer = open(args[i], args[i + 1]);
+            try {
+                signer.precompute(precompute, CouponStore.storePath(args[i]));
+                System.out.println(precompute + " signing coupons have been precomputed successfully! Name of a file: " + CouponStore.storePath(args[i]));
+                System.out.println("Unused coupons available: " + signer.getCoupons().remaining());
+            } catch (IOException ex) {
+                System.out.println("Signing coupons have NOT been saved to file! Try again!");
+                System.exit(1);
+            }
+        } else if (bulkInput != null && args.length - i == 2) {
+            bulk(cache, chunk, algorithm, binary, ids, bulkInput, args[i], args[i + 1]);
+        } else if (bulkInput == null && args.length - i == 3) {
+            Main main = new Main(debug, cache, chunk, algorithm, binary, ids, args[i], args[i + 1], args[i + 2]);
         } else {
             syntaxError();
         }
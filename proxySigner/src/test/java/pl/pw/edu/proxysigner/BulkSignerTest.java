@@ -0,0 +1,175 @@
+package pl.pw.edu.proxysigner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.MerkleTree;
+import pl.pw.edu.pkry.PkryException;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Signer;
+
+/**
+ * Wsadowe podpisywanie katalogu i listy plików; każdy zapisany podpis jest sprawdzany
+ * równaniem weryfikacji g^sp * (y * r^r)^(-e) = r_p
+ */
+class BulkSignerTest {
+
+    private static final Random RANDOM = new Random(35);
+
+    private static final BigInteger Q = BigInteger.probablePrime(160, RANDOM);
+
+    private static final BigInteger P, G, X, Y, R, S;
+
+    static {
+        BigInteger k, p;
+        do {
+            k = new BigInteger(352, RANDOM).setBit(351).clearBit(0);
+            p = k.multiply(Q).add(BigInteger.ONE);
+        } while (!p.isProbablePrime(50));
+        P = p;
+        G = BigInteger.valueOf(2).modPow(k, P);
+        X = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+        Y = G.modPow(X, P);
+        BigInteger l = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+        R = G.modPow(l, P);
+        S = X.add(l.multiply(R)).mod(Q);
+    }
+
+    private final Path dir;
+
+    private final Signer signer;
+
+    BulkSignerTest() throws IOException, PkryException {
+        dir = Files.createTempDirectory("bulksigner");
+        System.setProperty("pkry.home", dir.resolve("home").toString());
+        Path publicKey = dir.resolve("public.key"), proxyKey = dir.resolve("proxy.key");
+        write(publicKey, P.toString(16) + "#" + G.toString(16) + "#" + Q.toString(16) + "#" + Y.toString(16));
+        write(proxyKey, R.toString(16) + "#" + S.toString(16));
+        signer = new Signer(Files.readAllBytes(proxyKey), Files.readAllBytes(publicKey));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Signature signature(Path file) throws IOException {
+        Path sign = file.resolveSibling(file.getFileName() + BulkSigner.SIGNATURE_EXTENSION);
+        return Signature.parse(new String(Files.readAllBytes(sign), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sprawdzenie podpisu pliku (treść albo - w wersji 2 - korzeń drzewa Merkle zapisanych liści)
+     */
+    private static boolean verifies(Path file) throws IOException, NoSuchAlgorithmException {
+        Path sign = file.resolveSibling(file.getFileName() + BulkSigner.SIGNATURE_EXTENSION);
+        Signature signature = signature(file);
+        BigInteger sp = signature.getSp(), e = signature.getE(), r = signature.getR();
+        BigInteger base = Y.multiply(r.modPow(r, P)).mod(P);
+        BigInteger rp = G.modPow(sp, P).multiply(base.modPow(e.negate().mod(Q), P)).mod(P);
+        String algorithm = signature.getAlgorithm();
+        MessageDigest md = DigestAlgorithms.newDigest(algorithm);
+        int chunk = signature.getChunk();
+        if (chunk > 0) {
+            byte[][] leaves = MerkleTree.readLeaves(sign.resolveSibling(sign.getFileName() + MerkleTree.LEAVES_EXTENSION));
+            if (!Arrays.deepEquals(leaves, MerkleTree.leaves(file, chunk, algorithm))) {
+                return false;
+            }
+            MerkleTree.message(MerkleTree.root(leaves, algorithm), chunk, md);
+        } else {
+            md.update(Files.readAllBytes(file));
+        }
+        md.update(rp.toByteArray());
+        return new BigInteger(md.digest()).equals(e) && r.equals(R);
+    }
+
+    @Test
+    void directoryTreeIsSignedFileByFile() throws Exception {
+        Path docs = dir.resolve("docs");
+        Path[] files = {docs.resolve("a.txt"), docs.resolve("b.txt"), docs.resolve("sub/c.txt"), docs.resolve("sub/deeper/d.txt")};
+        for (Path file : files) {
+            write(file, "document " + file.getFileName() + " " + RANDOM.nextLong());
+        }
+        write(docs.resolve("old.txt.sign"), "not a document");
+        BulkSigner bulk = new BulkSigner(signer, false, 0, DigestAlgorithms.SHA256, false, true, 3);
+        bulk.run(docs);
+        assertEquals(files.length, bulk.getSigned());
+        assertEquals(0, bulk.getFailed());
+        long owner = KeyStore.id(BinaryFormat.PUBLIC_KEY, "", P, G, Q, Y), proxy = KeyStore.id(BinaryFormat.PROXY_KEY, "", R);
+        for (Path file : files) {
+            assertTrue(verifies(file), file.toString());
+            assertEquals(Long.valueOf(owner), signature(file).getOwnerId());
+            assertEquals(Long.valueOf(proxy), signature(file).getProxyId());
+        }
+        assertFalse(Files.exists(docs.resolve("old.txt.sign.sign")));
+    }
+
+    @Test
+    void fileListReportsMissingFiles() throws Exception {
+        Path a = dir.resolve("list/a.bin"), b = dir.resolve("list/b.bin"), list = dir.resolve("files.txt");
+        write(a, "first");
+        write(b, "second");
+        Files.write(list, Arrays.asList(a.toString(), "", dir.resolve("list/missing.bin").toString(), "  " + b + "  "), StandardCharsets.UTF_8);
+        BulkSigner bulk = new BulkSigner(signer, true, 0, DigestAlgorithms.SHA256, 2);
+        bulk.run(list);
+        assertEquals(2, bulk.getSigned());
+        assertEquals(1, bulk.getFailed());
+        assertTrue(verifies(a));
+        assertTrue(verifies(b));
+        // bez ID kluczy podpis ma pierwotny format sp#e#r
+        assertEquals(3, new String(Files.readAllBytes(dir.resolve("list/a.bin.sign")), StandardCharsets.UTF_8).split("#").length);
+        assertNull(signature(a).getOwnerId());
+    }
+
+    @Test
+    void chunkedSignaturesUseVersionTwo() throws Exception {
+        Path docs = dir.resolve("chunked");
+        byte[] data = new byte[3 * MerkleTree.MIN_CHUNK + 5];
+        RANDOM.nextBytes(data);
+        Files.createDirectories(docs);
+        Files.write(docs.resolve("big.bin"), data);
+        BulkSigner bulk = new BulkSigner(signer, false, MerkleTree.MIN_CHUNK, DigestAlgorithms.SHA256, 2);
+        bulk.run(docs);
+        assertEquals(1, bulk.getSigned());
+        String text = new String(Files.readAllBytes(docs.resolve("big.bin.sign")), StandardCharsets.UTF_8);
+        assertTrue(text.startsWith(Signature.VERSION + "#"));
+        assertEquals(MerkleTree.MIN_CHUNK, signature(docs.resolve("big.bin")).getChunk());
+        assertTrue(verifies(docs.resolve("big.bin")));
+        // ponowne uruchomienie nie podpisuje plików podpisów ani liści
+        bulk = new BulkSigner(signer, false, MerkleTree.MIN_CHUNK, DigestAlgorithms.SHA256, 2);
+        bulk.run(docs);
+        assertEquals(1, bulk.getSigned());
+    }
+
+    @Test
+    void selectedDigestIsRecordedInSignature() throws Exception {
+        Path whole = dir.resolve("blake"), chunked = dir.resolve("sha512");
+        write(whole.resolve("doc.txt"), "signed with BLAKE2b");
+        write(chunked.resolve("doc.txt"), "chunked with SHA-512/256");
+        new BulkSigner(signer, false, 0, DigestAlgorithms.BLAKE2B_256, 1).run(whole);
+        new BulkSigner(signer, false, MerkleTree.MIN_CHUNK, DigestAlgorithms.SHA512_256, 1).run(chunked);
+        Signature signature = signature(whole.resolve("doc.txt"));
+        assertEquals(DigestAlgorithms.BLAKE2B_256, signature.getAlgorithm());
+        assertEquals(0, signature.getChunk());
+        signature = signature(chunked.resolve("doc.txt"));
+        assertEquals(DigestAlgorithms.SHA512_256, signature.getAlgorithm());
+        assertEquals(MerkleTree.MIN_CHUNK, signature.getChunk());
+        assertTrue(verifies(whole.resolve("doc.txt")));
+        assertTrue(verifies(chunked.resolve("doc.txt")));
+    }
+}
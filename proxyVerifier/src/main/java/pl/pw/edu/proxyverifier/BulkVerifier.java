@@ -0,0 +1,284 @@
+package pl.pw.edu.proxyverifier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import pl.pw.edu.pkry.MalformedSignatureException;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.PkryException;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Verifier;
+
+/**
+ * Wsadowa weryfikacja wielu podpisów w jednym procesie.
+ * Trójki (klucz publiczny, podpis, plik) pochodzą z manifestu lub z przeszukania katalogu (plik X
+ * z podpisem X.sign); klucz publiczny może też zostać odnaleziony po ID zapisanym w podpisie
+ * (KeyIndex). Każdy klucz publiczny wczytywany i sprawdzany jest raz, a trójki weryfikowane są
+ * w puli z podkradaniem zadań (ForkJoinPool) przy ograniczonej liczbie zadań oczekujących.
+ * Wynik każdej weryfikacji zapisywany jest w raporcie (TSV): werdykt, czas w mikrosekundach,
+ * plik, podpis, klucz publiczny i ewentualny komunikat błędu.
+ */
+public final class BulkVerifier {
+
+    /**
+     * Rozszerzenie plików podpisów
+     */
+    public static final String SIGNATURE_EXTENSION = ".sign";
+
+    /**
+     * Werdykty zapisywane w raporcie
+     */
+    public static final String VALID = "VALID", INVALID = "INVALID", ERROR = "ERROR";
+
+    /**
+     * Liczba zadań oczekujących (na wątek)
+     */
+    private static final int QUEUE_PER_THREAD = 4;
+
+    private final boolean cache;
+
+    /**
+     * Czy korzystać z zapamiętanych wyników weryfikacji niezmienionych plików
+     */
+    private final boolean remember;
+
+    private final int threads;
+
+    /**
+     * Indeks kluczy publicznych dla podpisów bez wskazanego klucza lub null
+     */
+    private final KeyIndex index;
+
+    /**
+     * Wczytane klucze publiczne - weryfikujący lub komunikat błędu wczytania
+     */
+    private final Map<Path, Object> keys = new ConcurrentHashMap<>();
+
+    private final AtomicInteger valid = new AtomicInteger();
+
+    private final AtomicInteger invalid = new AtomicInteger();
+
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /**
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param remember czy korzystać z zapamiętanych wyników weryfikacji niezmienionych plików
+     * @param threads liczba wątków weryfikujących
+     */
+    public BulkVerifier(boolean cache, boolean remember, int threads) {
+        this(cache, remember, threads, null);
+    }
+
+    /**
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param remember czy korzystać z zapamiętanych wyników weryfikacji niezmienionych plików
+     * @param threads liczba wątków weryfikujących
+     * @param index indeks kluczy publicznych (klucz wyszukiwany po ID z podpisu, gdy manifest lub
+     * tryb katalogu go nie wskazuje) lub null
+     */
+    public BulkVerifier(boolean cache, boolean remember, int threads, KeyIndex index) {
+        this.cache = cache;
+        this.remember = remember;
+        this.threads = Math.max(1, threads);
+        this.index = index;
+    }
+
+    /**
+     * Weryfikacja wszystkich trójek wskazanych przez input
+     * @param input manifest (w każdej linii: klucz publiczny, plik podpisu i podpisany plik rozdzielone
+     * tabulatorem, a przy indeksie kluczy także sam plik podpisu i podpisany plik; ścieżki względne
+     * liczone od katalogu manifestu) lub katalog z plikami i podpisami X.sign
+     * @param publicKey klucz publiczny dla trybu katalogu (dla manifestu lub przy indeksie kluczy - null)
+     * @param report ścieżka raportu
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void run(Path input, Path publicKey, Path report) throws IOException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Semaphore pending = new Semaphore(threads * QUEUE_PER_THREAD);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        try (BufferedWriter out = Files.newBufferedWriter(report, StandardCharsets.UTF_8);
+                Stream<Item> items = list(input, publicKey)) {
+            out.write("verdict\tmicros\tfile\tsignature\tpublicKey\tmessage\n");
+            try {
+                Iterator<Item> it = items.iterator();
+                while (it.hasNext()) {
+                    Item item = it.next();
+                    pending.acquire();
+                    pool.execute(() -> {
+                        try {
+                            String line = verify(item);
+                            synchronized (out) {
+                                out.write(line);
+                            }
+                        } catch (IOException ex) {
+                            failure.compareAndSet(null, ex);
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                }
+            } finally {
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * @return liczba poprawnych podpisów
+     */
+    public int getValid() {
+        return valid.get();
+    }
+
+    /**
+     * @return liczba niepoprawnych podpisów
+     */
+    public int getInvalid() {
+        return invalid.get();
+    }
+
+    /**
+     * @return liczba trójek, których nie udało się zweryfikować (błędy odczytu lub formatu)
+     */
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Weryfikacja pojedynczej trójki
+     * @return linia raportu
+     */
+    private String verify(Item item) {
+        long start = System.nanoTime();
+        String verdict, message = "";
+        Path publicKey = item.publicKey;
+        try {
+            if (item.error != null) {
+                throw new IOException(item.error);
+            }
+            Signature signature;
+            try {
+                signature = Verifier.parse(Files.readAllBytes(item.signature));
+            } catch (IOException | MalformedSignatureException ex) {
+                throw new IOException("File signature is badly formatted!");
+            }
+            if (publicKey == null) {
+                if (index == null) {
+                    throw new IOException("Public key is missing!");
+                }
+                publicKey = Paths.get(index.find(signature));
+            }
+            Verifier verifier = key(publicKey);
+            boolean ok;
+            try {
+                ok = VerificationCache.verify(verifier, signature, item.file, cache, remember);
+            } catch (IOException ex) {
+                throw new IOException("Signed file is wrong!");
+            }
+            if (ok) {
+                verdict = VALID;
+                valid.incrementAndGet();
+            } else {
+                verdict = INVALID;
+                invalid.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException ex) {
+            verdict = ERROR;
+            message = ex.getMessage() == null ? ex.toString() : ex.getMessage();
+            errors.incrementAndGet();
+            Metrics.count(Metrics.VERIFY_ERRORS);
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        return verdict + "\t" + micros + "\t" + field(item.file) + "\t" + field(item.signature) + "\t" + field(publicKey == null ? "" : publicKey) + "\t" + field(message) + "\n";
+    }
+
+    /**
+     * Klucz publiczny wczytany jednokrotnie (również gdy wczytanie się nie powiodło)
+     */
+    private Verifier key(Path publicKey) throws IOException {
+        Object loaded = keys.computeIfAbsent(publicKey, path -> {
+            try {
+                return Verifier.open(path.toString());
+            } catch (PkryException | IllegalArgumentException ex) {
+                return ex.getMessage();
+            }
+        });
+        if (loaded instanceof Verifier) {
+            return (Verifier) loaded;
+        }
+        throw new IOException((String) loaded);
+    }
+
+    private static Stream<Item> list(Path input, Path publicKey) throws IOException {
+        if (Files.isDirectory(input)) {
+            Path key = publicKey == null ? null : publicKey.toAbsolutePath().normalize();
+            return Files.walk(input).filter(Files::isRegularFile).filter(f -> f.toString().endsWith(SIGNATURE_EXTENSION)).map(sig -> {
+                String name = sig.toString();
+                Path file = Paths.get(name.substring(0, name.length() - SIGNATURE_EXTENSION.length()));
+                return new Item(key, sig, file, Files.isRegularFile(file) ? null : "Signed file is missing!");
+            });
+        }
+        Path base = input.toAbsolutePath().getParent();
+        return Files.lines(input, StandardCharsets.UTF_8).filter(line -> !line.trim().isEmpty()).map(line -> {
+            String tmp[] = line.split("\t");
+            if (tmp.length == 2) {
+                return new Item(null, resolve(base, tmp[0]), resolve(base, tmp[1]), null);
+            }
+            if (tmp.length != 3) {
+                Path bad = Paths.get(line.replace('\t', ' ').trim());
+                return new Item(bad, bad, bad, "Manifest line is badly formatted!");
+            }
+            return new Item(resolve(base, tmp[0]), resolve(base, tmp[1]), resolve(base, tmp[2]), null);
+        });
+    }
+
+    private static Path resolve(Path base, String path) {
+        return base.resolve(path.trim()).normalize();
+    }
+
+    private static String field(Object value) {
+        return value.toString().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Trójka do weryfikacji
+     */
+    private static final class Item {
+
+        /**
+         * Klucz publiczny lub null - wyszukiwany w indeksie kluczy
+         */
+        final Path publicKey;
+
+        final Path signature, file;
+
+        /**
+         * Błąd wykryty przy budowie listy (np. brak podpisanego pliku) lub null
+         */
+        final String error;
+
+        Item(Path publicKey, Path signature, Path file, String error) {
+            this.publicKey = publicKey;
+            this.signature = signature;
+            this.file = file;
+            this.error = error;
+        }
+    }
+}
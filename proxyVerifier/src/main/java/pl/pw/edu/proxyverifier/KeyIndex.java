@@ -0,0 +1,100 @@
+package pl.pw.edu.proxyverifier;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.Signature;
+
+/**
+ * Wyszukiwanie klucza publicznego właściciela po ID zapisanym w podpisie (opcja key).
+ * Źródłem kluczy jest magazyn kluczy (KeyStore - wyszukanie w jego indeksie) lub katalog z plikami
+ * kluczy publicznych *.key, z których przy otwarciu budowany jest indeks w pamięci (ID - ścieżka
+ * pliku); pliki, których nie da się odczytać jako klucz publiczny, są pomijane. Wynikiem jest ścieżka
+ * lub odwołanie magazyn#ID, przyjmowane wszędzie tam, gdzie ścieżka klucza publicznego.
+ */
+public final class KeyIndex {
+
+    /**
+     * Rozszerzenie plików kluczy w katalogu
+     */
+    public static final String KEY_EXTENSION = ".key";
+
+    /**
+     * Ścieżka magazynu kluczy lub null dla katalogu
+     */
+    private final Path store;
+
+    /**
+     * Indeks plików kluczy w katalogu lub null dla magazynu
+     */
+    private final Map<Long, String> keys;
+
+    private KeyIndex(Path store, Map<Long, String> keys) {
+        this.store = store;
+        this.keys = keys;
+    }
+
+    /**
+     * Otwarcie indeksu
+     * @param source katalog z plikami kluczy publicznych lub plik magazynu kluczy
+     * @return indeks
+     * @throws IOException gdy katalogu lub magazynu nie da się odczytać
+     */
+    public static KeyIndex open(Path source) throws IOException {
+        if (!Files.isDirectory(source)) {
+            KeyStore.open(source).size();
+            return new KeyIndex(source, null);
+        }
+        Map<Long, String> keys = new HashMap<>();
+        try (Stream<Path> files = Files.walk(source)) {
+            files.filter(Files::isRegularFile).filter(f -> f.toString().endsWith(KEY_EXTENSION)).forEach(file -> {
+                try {
+                    BinaryFormat.Record key = BinaryFormat.read(Files.readAllBytes(file), BinaryFormat.PUBLIC_KEY);
+                    BigInteger values[] = new BigInteger[key.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = key.get(i);
+                    }
+                    keys.put(KeyStore.id(BinaryFormat.PUBLIC_KEY, key.getLabel(), values), file.toString());
+                } catch (IOException | IllegalArgumentException ex) {
+                    // plik innego rodzaju (klucz prywatny, klucz proxy) - pomijany
+                }
+            });
+        }
+        return new KeyIndex(null, keys);
+    }
+
+    /**
+     * @param id ID klucza publicznego właściciela
+     * @return ścieżka pliku klucza lub odwołanie magazyn#ID albo null, gdy klucza nie ma w indeksie
+     * @throws IOException gdy magazynu nie da się odczytać
+     */
+    public String find(long id) throws IOException {
+        if (keys != null) {
+            return keys.get(id);
+        }
+        return KeyStore.open(store).get(BinaryFormat.PUBLIC_KEY, id) == null ? null : KeyStore.reference(store, id);
+    }
+
+    /**
+     * @param signature podpis
+     * @return klucz publiczny podpisu (jak w find)
+     * @throws IOException gdy podpis nie zawiera ID klucza, klucza nie ma w indeksie lub magazynu nie da się odczytać
+     */
+    public String find(Signature signature) throws IOException {
+        Long id = signature.getOwnerId();
+        if (id == null) {
+            throw new IOException("File signature does not identify its public key!");
+        }
+        String key = find(id);
+        if (key == null) {
+            throw new IOException("Public key " + KeyStore.format(id) + " was not found in the key index!");
+        }
+        return key;
+    }
+}
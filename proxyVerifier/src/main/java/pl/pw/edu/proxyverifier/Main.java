@@ -2,165 +2,390 @@ package pl.pw.edu.proxyverifier;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import pl.pw.edu.pkry.Daemon;
+import pl.pw.edu.pkry.DigestAlgorithms;
+import pl.pw.edu.pkry.KeyValidationException;
+import pl.pw.edu.pkry.MalformedKeyException;
+import pl.pw.edu.pkry.MalformedSignatureException;
+import pl.pw.edu.pkry.MerkleTree;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Verifier;
 
 /**
  * Klasa uruchamiająca aplikację
  * proxyVerifier - służy do weryfikacji poprawności podpisu dokumentu względem przekazywanego dokumentu.
+ * Obliczenia wykonuje Verifier (pkryCore); klasa odczytuje argumenty i wypisuje wynik weryfikacji.
  */
 public final class Main {
 
     /**
-     * Zawartość bajtowa pliku wejściowego, który podpisujemy
+     * Nazwa usługi demona weryfikującego
      */
-    private byte[] fileData;
-    
+    private static final String DAEMON = "proxyVerifier";
+
+    /**
+     * Żądanie weryfikacji wysyłane do demona
+     */
+    private static final String VERIFY = "VERIFY";
+
     /**
-     * Zawartość tekstowa pliku sygnatury
+     * Klucze publiczne wczytane przez demona
      */
-    private String signatureFile;
-    
+    private static final Daemon.Loaded<Verifier> LOADED = new Daemon.Loaded<>(paths -> Verifier.open(paths[0]));
+
+    public Main(boolean debug, String publicKey_, String fileSignature_, String signedFile_) {
+        this(debug, false, publicKey_, fileSignature_, signedFile_);
+    }
+
     /**
-     * Zawartość tekstowa klucza publicznego
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
      */
-    private String publicKey;
-    
+    public Main(boolean debug, boolean cache, String publicKey_, String fileSignature_, String signedFile_) {
+        this(debug, cache, false, -1, publicKey_, fileSignature_, signedFile_);
+    }
+
     /**
-     * Parametry algorytmu MUO delegowanego podpisu cyfrowego - parametry sygnatury i klucza publicznego
+     * @param debug czy wypisywać wartości pośrednie
+     * @param cache czy korzystać z zapamiętanego (również na dysku) stanu skrótu dokumentu
+     * @param remember czy korzystać z zapamiętanych wyników weryfikacji niezmienionych plików
+     * @param chunkIndex numer sprawdzanego fragmentu pliku (podpis w wersji 2) lub -1 - cały plik
      */
-    private final BigInteger p, g, y, sp, r, e, eprim;
+    public Main(boolean debug, boolean cache, boolean remember, int chunkIndex, String publicKey_, String fileSignature_, String signedFile_) {
 
-    public Main(boolean debug, String publicKey_, String fileSignature_, String signedFile_) {
-        
+        Signature signature = null;
         try {
-            fileData = getFile(signedFile_);
+            signature = Verifier.parse(Files.readAllBytes(Paths.get(fileSignature_)));
+        } catch (IOException | MalformedSignatureException ex) {
+            System.out.println("File signature is badly formatted! Try again!");
+            syntaxError();
+        }
+        if (chunkIndex >= 0 && signature.getChunk() == 0) {
+            System.out.println("File signature does not cover separate chunks! Try again!");
+            syntaxError();
+        }
+
+        Verifier verifier = open(publicKey_, debug);
+        if (debug) {
+            if (!verifier.matches(signature)) {
+                System.out.println("File signature was made with a different key.");
+            }
+            System.out.println("e   = " + signature.getE());
+            System.out.println("e'  = " + eprim(verifier, signature, chunkIndex >= 0, fileSignature_, signedFile_));
+            System.out.println("");
+        }
+
+        if (chunkIndex >= 0) {
+            verifyChunk(verifier, signature, chunkIndex, fileSignature_, signedFile_);
+            return;
+        }
+        boolean valid = false;
+        try {
+            valid = VerificationCache.verify(verifier, signature, Paths.get(signedFile_), cache, remember);
         } catch (IOException ex) {
             System.out.println("Signed file is wrong! Try again!");
             syntaxError();
         }
+        if (!valid) {
+            System.out.println("Signature verification FAILED!");
+            System.exit(1);
+        }
+        System.out.println("File signature is correct and successfully verified!");
+    }
 
+    /**
+     * Parametr e' do wypisania w trybie debug, wyznaczany przez Verifier jak przy weryfikacji - z pliku
+     * albo (dla pojedynczego fragmentu) z zapisanych liści drzewa Merkle
+     * @return e' lub null, gdy podpis nie pasuje do klucza lub pliku nie da się odczytać (błąd zgłosi weryfikacja)
+     */
+    private static BigInteger eprim(Verifier verifier, Signature signature, boolean chunk, String fileSignature_, String signedFile_) {
         try {
-            signatureFile = new String(getFile(fileSignature_), StandardCharsets.UTF_8);
+            MessageDigest document;
+            if (chunk) {
+                byte[][] leaves = MerkleTree.readLeaves(Paths.get(fileSignature_ + MerkleTree.LEAVES_EXTENSION));
+                document = MerkleTree.message(MerkleTree.root(leaves, signature.getAlgorithm()), signature.getChunk(),
+                        DigestAlgorithms.newDigest(signature.getAlgorithm()));
+            } else {
+                document = Verifier.document(signature, Paths.get(signedFile_), false);
+            }
+            return verifier.eprim(signature, document);
         } catch (IOException ex) {
-            System.out.println("File signature is badly formatted! Try again!");
-            syntaxError();
+            return null;
         }
+    }
 
+    /**
+     * Sprawdzenie podpisu zapisanych liści drzewa Merkle i pojedynczego fragmentu pliku względem nich
+     * (czytany jest wyłącznie wskazany fragment)
+     */
+    private static void verifyChunk(Verifier verifier, Signature signature, int index, String fileSignature_, String signedFile_) {
+        byte[][] leaves = null;
         try {
-            publicKey = new String(getFile(publicKey_), StandardCharsets.UTF_8);
+            leaves = MerkleTree.readLeaves(Paths.get(fileSignature_ + MerkleTree.LEAVES_EXTENSION));
         } catch (IOException ex) {
-            System.out.println("Public key file is wrong! Try again!");
+            System.out.println("Chunk hashes file is wrong! Try again!");
             syntaxError();
         }
-        String tmp[] = publicKey.split("#");
-        p = new BigInteger(tmp[0], 16);
-        g = new BigInteger(tmp[1], 16);
-        y = new BigInteger(tmp[3], 16);
-
-        String tmp2[] = signatureFile.split("#");
-        sp = new BigInteger(tmp2[0], 16);
-        e = new BigInteger(tmp2[1], 16);
-        r = new BigInteger(tmp2[2], 16);
-
-        eprim = genEprim(fileData, genValue(g, sp, y, r, e, p));
-        
-        if(debug) {
-            System.out.println("e   = " + e);
-            System.out.println("e'  = " + eprim);
-            System.out.println("");
-        }
-        
-        if(!e.equals(eprim)) {
+        if (!verifier.verify(signature, leaves)) {
             System.out.println("Signature verification FAILED!");
-        } else {
-            System.out.println("File signature is correct and successfully verified!");
+            System.exit(1);
+        }
+        try {
+            if (!Verifier.verifyChunk(signature, leaves, Paths.get(signedFile_), index)) {
+                System.out.println("Chunk " + index + " verification FAILED!");
+                System.exit(1);
+            }
+        } catch (IOException ex) {
+            System.out.println("Signed file is wrong! Try again!");
+            syntaxError();
+        }
+        System.out.println("Chunk " + index + " of file is correct and successfully verified!");
+    }
+
+    /**
+     * Wczytanie i sprawdzenie klucza publicznego (Verifier.open); przy błędzie wypisuje komunikat i kończy działanie
+     * @param publicKey_ ścieżka klucza publicznego lub odwołanie magazyn#ID
+     * @param debug czy wypisywać informacje o certyfikacie pierwszości
+     * @return weryfikujący
+     */
+    private static Verifier open(String publicKey_, boolean debug) {
+        Verifier verifier = null;
+        try {
+            verifier = Verifier.open(publicKey_);
+        } catch (MalformedKeyException ex) {
+            System.out.println(ex.getMessage());
+            syntaxError();
+        } catch (KeyValidationException ex) {
+            System.out.println(ex.getMessage());
+            System.exit(1);
+        }
+        if (debug && verifier.getCurve() == null) {
+            System.out.println(verifier.isCertified() ? "Primality certificate of p and q verified successfully."
+                    : "Primality certificate was not found - check skipped.");
         }
+        return verifier;
+    }
 
+    /**
+     * Metoda zwracająca poprawne użycie aplikacji
+     */
+    private static void syntaxError() {
+        System.out.println("Correct syntax: java -jar proxyVerifier.jar [-d] [-c] [-v] publicKey fileSignature signedFile");
+        System.out.println("   or (single chunk of a chunked signature): java -jar proxyVerifier.jar [-d] -k chunkIndex publicKey fileSignature signedFile");
+        System.out.println("   or (bulk mode): java -jar proxyVerifier.jar [-c] [-v] -b manifest [-o report]");
+        System.out.println("   or (bulk mode): java -jar proxyVerifier.jar [-c] [-v] -b directory [-o report] publicKey");
+        System.out.println("   or (daemon): java -jar proxyVerifier.jar -s port");
+        System.out.println("   or (daemon client): java -jar proxyVerifier.jar [-c] [-v] -r port publicKey fileSignature signedFile");
+        System.out.println("   or (key lookup): java -jar proxyVerifier.jar [-d] [-c] [-v] [-r port] -i keyIndex fileSignature signedFile");
+        System.out.println("   or (bulk mode with key lookup): java -jar proxyVerifier.jar [-c] [-v] -b manifestOrDirectory -i keyIndex [-o report]");
+        System.out.println("   publicKey is a key file or a keystore reference keystore#keyId");
+        System.out.println("   keyIndex is a directory of public key files or a keystore; the key is found by the ID in the signature");
+        System.out.println("       (written by proxySigner -i)");
+        System.out.println("   --stats (any mode): print a JSON summary of stage timings and counters to standard error at exit");
+        System.out.println("   daemon and bulk modes also publish these metrics over JMX (" + Metrics.OBJECT_NAME + ")");
+        System.exit(-1);
     }
 
     /**
-     * Metoda generująca wartość pomocniczą do utworzenia wartości e',
-     * która niezbędna jest do przeprowadzenia weryfikacji sygnatury
-     * @param g element Z*p rzędu q (q jak najmniejsza i dodatnia)
-     * @param sp część podpisu pełnomocnika
-     * @param y klucz publiczny właściciela
-     * @param r część klucza proxy pełnomocnika
-     * @param e skrót binarnej zawartości pliku i jego konkatenacji z parametrem rp
-     * @param p duża liczba pierwsza
-     * @return BigInteger value
+     * Tryb demona - obsługa żądań weryfikacji od klientów (-r) z kluczami i skrótami przechowywanymi w pamięci
+     * @param port numer portu na interfejsie pętli zwrotnej
      */
-    public BigInteger genValue(BigInteger g, BigInteger sp, BigInteger y, BigInteger r, BigInteger e, BigInteger p) {
-        return g.modPow(sp, p).multiply(y.modPow(e.negate(), p)).multiply(r.modPow(r.multiply(e.negate()), p)).mod(p);
+    private static void serve(int port) {
+        try {
+            Metrics.registerMBean();
+            Daemon daemon = new Daemon(DAEMON, port, Main::handle);
+            System.out.println("Verification daemon is listening on port " + daemon.getPort() + ".");
+            daemon.serve();
+        } catch (IOException ex) {
+            System.out.println("Verification daemon failed! " + ex.getMessage());
+            System.exit(1);
+        }
     }
 
     /**
-     * Metoda konwertująca tablicę bajtów na wartość tekstową (String)
-     * @param _bytes
-     * @return String
+     * Obsługa żądania demona: VERIFY, klucz publiczny, plik podpisu, podpisany plik, cache skrótów, cache wyników
+     * @param request pola żądania (ścieżki bezwzględne)
+     * @return true lub false - wynik weryfikacji
+     * @throws IOException
      */
-    public String bytesToString(byte[] _bytes) {
-        String file_string = "";
-        for (int i = 0; i < _bytes.length; i++) {
-            file_string += String.format("%8s", Integer.toBinaryString(_bytes[i] & 0xFF)).replace(' ', '0');
+    private static String handle(String[] request) throws IOException {
+        if (request.length != 6 || !request[0].equals(VERIFY)) {
+            throw new IOException("Unknown request!");
+        }
+        Verifier verifier = LOADED.get(request[1]);
+        Signature signature;
+        try {
+            signature = Verifier.parse(Files.readAllBytes(Paths.get(request[2])));
+        } catch (IOException | MalformedSignatureException ex) {
+            throw new IOException("File signature is badly formatted! Try again!");
+        }
+        try {
+            return String.valueOf(VerificationCache.verify(verifier, signature, Paths.get(request[3]), Boolean.parseBoolean(request[4]), Boolean.parseBoolean(request[5])));
+        } catch (IOException ex) {
+            throw new IOException("Signed file is wrong! Try again!");
         }
-        return file_string;
     }
 
     /**
-     * Generator parametru e'
-     * @param m zawartość binarna pliku podpisywanego
-     * @param value pomocnicza wartość, którą dopisujemy przez konkatenacje do m.
-     * @return BigInteger e'
+     * Weryfikacja przez demona; komunikaty jak przy weryfikacji w bieżącym procesie
      */
-    public BigInteger genEprim(byte[] m, BigInteger value) {
-        byte[] bytes = value.toByteArray();
-        byte[] c = new byte[m.length + bytes.length];
-        System.arraycopy(m, 0, c, 0, m.length);
-        System.arraycopy(bytes, 0, c, m.length, bytes.length);
-        MessageDigest mda = null;
+    private static void remote(int port, boolean cache, boolean remember, String publicKey_, String fileSignature_, String signedFile_) {
         try {
-            mda = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException ex) {
-            System.out.println("Algorithm SHA-256 was not found!");
+            String result = Daemon.request(DAEMON, port, VERIFY, Daemon.absolute(publicKey_), Daemon.absolute(fileSignature_), Daemon.absolute(signedFile_),
+                    String.valueOf(cache), String.valueOf(remember));
+            if (Boolean.parseBoolean(result)) {
+                System.out.println("File signature is correct and successfully verified!");
+            } else {
+                System.out.println("Signature verification FAILED!");
+                System.exit(1);
+            }
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
             System.exit(1);
         }
-        byte[] coded = mda.digest(c);
-        return new BigInteger(coded);
     }
 
     /**
-     * Metoda pobierająca zawartość bajtową pliku wskazanego ścieżką
-     * @param filePath ścieżka do pliku
-     * @return zawartość bajtowa pliku
-     * @throws IOException 
+     * Tryb wsadowy - weryfikacja trójek z manifestu lub katalogu z raportem wyników
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentów
+     * @param remember czy korzystać z zapamiętanych wyników weryfikacji
+     * @param input manifest lub katalog
+     * @param publicKey_ klucz publiczny (wymagany dla katalogu bez indeksu kluczy)
+     * @param index katalog kluczy publicznych lub magazyn kluczy albo null
+     * @param report ścieżka raportu
      */
-    public byte[] getFile(String filePath) throws IOException {
-        Path file = Paths.get(filePath);
-        if (file.toFile().exists()) {
-            return Files.readAllBytes(file);
-        } else {
-            return null;
+    private static void bulk(boolean cache, boolean remember, String input, String publicKey_, String index, String report) {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path) && publicKey_ == null && index == null) {
+            syntaxError();
+        }
+        KeyIndex keys = null;
+        if (index != null) {
+            try {
+                keys = KeyIndex.open(Paths.get(index));
+            } catch (IOException | IllegalArgumentException ex) {
+                System.out.println("Key index " + index + " is wrong! Try again!");
+                syntaxError();
+            }
+        }
+        Metrics.registerMBean();
+        BulkVerifier bulk = new BulkVerifier(cache, remember, Runtime.getRuntime().availableProcessors(), keys);
+        try {
+            bulk.run(path, publicKey_ == null ? null : Paths.get(publicKey_), Paths.get(report));
+        } catch (IOException ex) {
+            System.out.println("Bulk input " + input + " or report " + report + " is wrong! Try again!");
+            syntaxError();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(bulk.getValid() + " file signatures are correct, " + bulk.getInvalid() + " FAILED, " + bulk.getErrors() + " could not be verified. Report: " + report);
+        if (bulk.getInvalid() != 0 || bulk.getErrors() != 0) {
+            System.exit(1);
         }
     }
-    
+
     /**
-     * Metoda zwracająca poprawne użycie aplikacji
+     * Klucz publiczny podpisu odnaleziony w indeksie kluczy po ID zapisanym w podpisie
+     * @param index katalog kluczy publicznych lub magazyn kluczy
+     * @param fileSignature_ ścieżka pliku podpisu
+     * @return ścieżka klucza publicznego lub odwołanie magazyn#ID
      */
-    private static void syntaxError() {
-        System.out.println("Correct syntax: java -jar proxyVerifier.jar [-d] publicKey fileSignature signedFile");
-        System.exit(-1);
+    private static String resolve(String index, String fileSignature_) {
+        Signature signature;
+        try {
+            signature = Verifier.parse(Files.readAllBytes(Paths.get(fileSignature_)));
+        } catch (IOException | MalformedSignatureException ex) {
+            System.out.println("File signature is badly formatted! Try again!");
+            System.exit(1);
+            return null;
+        }
+        try {
+            return KeyIndex.open(Paths.get(index)).find(signature);
+        } catch (IOException | IllegalArgumentException ex) {
+            System.out.println(ex.getMessage() == null ? "Key index " + index + " is wrong! Try again!" : ex.getMessage());
+            System.exit(1);
+            return null;
+        }
     }
 
     public static void main(String[] args) {
-        if((args.length == 4 && args[0].equals("-d"))) {   
-            Main main = new Main(true, args[1], args[2], args[3]);
-        } else if((args.length == 3 && !args[0].equals("-d"))) {
-            Main main = new Main(false, args[0], args[1], args[2]);
+        boolean debug = false;
+        boolean cache = false;
+        boolean remember = false;
+        int serve = -1;
+        int remote = -1;
+        int chunkIndex = -1;
+        String bulkInput = null;
+        String index = null;
+        String report = "verification.tsv";
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            if (args[i].equals("-d")) {
+                debug = true;
+            } else if (args[i].equals("-c")) {
+                cache = true;
+            } else if (args[i].equals("-v")) {
+                remember = true;
+            } else if (args[i].equals("--stats")) {
+                Metrics.printAtExit(System.err);
+            } else if (args[i].equals("-b") && i + 1 < args.length) {
+                bulkInput = args[++i];
+            } else if (args[i].equals("-i") && i + 1 < args.length) {
+                index = args[++i];
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                report = args[++i];
+            } else if (args[i].equals("-k") && i + 1 < args.length) {
+                try {
+                    chunkIndex = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    syntaxError();
+                }
+                if (chunkIndex < 0) {
+                    syntaxError();
+                }
+            } else if ((args[i].equals("-s") || args[i].equals("-r")) && i + 1 < args.length) {
+                try {
+                    if (args[i].equals("-s")) {
+                        serve = Integer.parseInt(args[++i]);
+                    } else {
+                        remote = Integer.parseInt(args[++i]);
+                    }
+                } catch (NumberFormatException ex) {
+                    syntaxError();
+                }
+            } else {
+                syntaxError();
+            }
+            i++;
+        }
+        if (bulkInput != null) {
+            if (serve >= 0 || remote >= 0 || chunkIndex >= 0 || args.length - i > 1) {
+                syntaxError();
+            }
+            bulk(cache, remember, bulkInput, args.length - i == 1 ? args[i] : null, index, report);
+        } else if (index != null) {
+            if (serve >= 0 || args.length - i != 2) {
+                syntaxError();
+            }
+            String publicKey_ = resolve(index, args[i]);
+            if (remote >= 0 && !debug && chunkIndex < 0) {
+                remote(remote, cache, remember, publicKey_, args[i], args[i + 1]);
+            } else if (remote < 0) {
+                Main main = new Main(debug, cache, remember, chunkIndex, publicKey_, args[i], args[i + 1]);
+            } else {
+                syntaxError();
+            }
+        } else if (serve >= 0 && args.length == i) {
+            serve(serve);
+        } else if (remote >= 0 && !debug && chunkIndex < 0 && args.length - i == 3) {
+            remote(remote, cache, remember, args[i], args[i + 1], args[i + 2]);
+        } else if (serve < 0 && remote < 0 && args.length - i == 3) {
+            Main main = new Main(debug, cache, remember, chunkIndex, args[i], args[i + 1], args[i + 2]);
         } else {
             syntaxError();
         }
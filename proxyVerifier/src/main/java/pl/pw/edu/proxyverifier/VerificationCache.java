@@ -0,0 +1,177 @@
+package pl.pw.edu.proxyverifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import pl.pw.edu.pkry.KeyValidator;
+import pl.pw.edu.pkry.Metrics;
+import pl.pw.edu.pkry.Signature;
+import pl.pw.edu.pkry.Verifier;
+
+/**
+ * Pamięć podręczna wyników weryfikacji niezmienionych plików.
+ * Wynik zapamiętywany jest pod kluczem złożonym z tekstowej postaci podpisu, odcisku klucza publicznego oraz
+ * ścieżki, rozmiaru, czasu modyfikacji i identyfikatora pliku w systemie plików (urządzenie i i-węzeł).
+ * Zmiana któregokolwiek z nich oznacza pełną weryfikację. Wyniki przechowywane są w pamięci (LRU)
+ * oraz w pliku verified.index w katalogu ~/.pkry (linie: skrót klucza i wynik, dopisywane na końcu;
+ * plik jest przepisywany, gdy urośnie ponad dwukrotność pojemności).
+ */
+public final class VerificationCache {
+
+    private static final String INDEX_FILE = "verified.index";
+
+    /**
+     * Maksymalna liczba pamiętanych wyników
+     */
+    private static final int CAPACITY = 1 << 16;
+
+    private static final Map<String, Boolean> CACHE = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private static boolean loaded;
+
+    private VerificationCache() {
+    }
+
+    /**
+     * Klucz wyniku weryfikacji
+     * @param signature tekstowa postać podpisu (niezależna od formatu pliku)
+     * @param fingerprint odcisk klucza publicznego
+     * @param file podpisany plik
+     * @return klucz (szesnastkowy skrót SHA-256)
+     * @throws IOException gdy pliku nie da się odczytać
+     */
+    public static String key(String signature, String fingerprint, Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        StringBuilder sb = new StringBuilder();
+        sb.append(signature.trim()).append("|").append(fingerprint).append("|").append(file.toFile().getCanonicalPath())
+                .append("|").append(attributes.size()).append("|").append(attributes.lastModifiedTime())
+                .append("|").append(attributes.fileKey());
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, md.digest(sb.toString().getBytes(StandardCharsets.UTF_8))).toString(16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Algorithm SHA-256 was not found!", ex);
+        }
+    }
+
+    /**
+     * Weryfikacja podpisu pliku z użyciem zapamiętanych wyników weryfikacji niezmienionych plików
+     * @param verifier weryfikujący z wczytanym kluczem publicznym
+     * @param signature podpis
+     * @param file podpisany plik
+     * @param cache czy korzystać z zapamiętanego stanu skrótu dokumentu
+     * @param remember czy korzystać z zapamiętanych wyników (false - zawsze pełna weryfikacja)
+     * @return true, gdy podpis jest poprawny
+     * @throws IOException gdy podpisanego pliku nie da się odczytać
+     */
+    public static boolean verify(Verifier verifier, Signature signature, Path file, boolean cache, boolean remember) throws IOException {
+        if (!remember || !verifier.matches(signature)) {
+            return verifier.verify(signature, file, cache);
+        }
+        String text = signature.format();
+        String key = key(text, verifier.fingerprint(), file);
+        Boolean known = get(key);
+        if (known != null) {
+            Metrics.count(known ? Metrics.VERIFY_VALID : Metrics.VERIFY_INVALID);
+            return known;
+        }
+        boolean valid = verifier.verify(signature, file, cache);
+        try {
+            // wynik zapamiętywany tylko wtedy, gdy plik nie zmienił się w trakcie weryfikacji
+            if (key.equals(key(text, verifier.fingerprint(), file))) {
+                put(key, valid);
+            }
+        } catch (IOException ex) {
+            // plik zniknął w trakcie weryfikacji - wyniku nie zapamiętujemy
+        }
+        return valid;
+    }
+
+    /**
+     * @param key klucz wyniku
+     * @return zapamiętany wynik weryfikacji lub null
+     */
+    public static synchronized Boolean get(String key) {
+        load();
+        Boolean valid = CACHE.get(key);
+        if (valid != null) {
+            Metrics.count(Metrics.VERIFICATION_CACHE_HITS);
+        }
+        return valid;
+    }
+
+    /**
+     * Zapamiętanie wyniku weryfikacji
+     * @param key klucz wyniku
+     * @param valid wynik weryfikacji
+     */
+    public static synchronized void put(String key, boolean valid) {
+        load();
+        if (Boolean.valueOf(valid).equals(CACHE.put(key, valid))) {
+            return;
+        }
+        File dir = KeyValidator.home();
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                return;
+            }
+            try (OutputStream out = new FileOutputStream(new File(dir, INDEX_FILE), true)) {
+                out.write((key + " " + (valid ? 1 : 0) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException ex) {
+            // brak zapisu oznacza jedynie ponowną weryfikację przy kolejnym uruchomieniu
+        }
+    }
+
+    private static void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File file = new File(KeyValidator.home(), INDEX_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String tmp[] = line.trim().split(" ");
+                if (tmp.length == 2) {
+                    CACHE.put(tmp[0], tmp[1].equals("1"));
+                }
+            }
+            if (lines.size() > 2 * CAPACITY) {
+                compact(file);
+            }
+        } catch (IOException ex) {
+            // nieczytelny indeks traktujemy jak pusty
+        }
+    }
+
+    private static void compact(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Boolean> entry : CACHE.entrySet()) {
+            sb.append(entry.getKey()).append(" ").append(entry.getValue() ? 1 : 0).append("\n");
+        }
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(tmp.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,202 @@
+package pl.pw.edu.proxyverifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.Signature;
+
+/**
+ * Werdykty raportu weryfikacji wsadowej dla manifestu i katalogu
+ */
+class BulkVerifierTest {
+
+    private static final Random RANDOM = new Random(39);
+
+    private static final BigInteger Q = BigInteger.probablePrime(160, RANDOM);
+
+    private static final BigInteger P, G, X, Y, R, S;
+
+    static {
+        BigInteger k, p;
+        do {
+            k = new BigInteger(352, RANDOM).setBit(351).clearBit(0);
+            p = k.multiply(Q).add(BigInteger.ONE);
+        } while (!p.isProbablePrime(50));
+        P = p;
+        G = BigInteger.valueOf(2).modPow(k, P);
+        X = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+        Y = G.modPow(X, P);
+        BigInteger l = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+        R = G.modPow(l, P);
+        S = X.add(l.multiply(R)).mod(Q);
+    }
+
+    private final Path dir;
+
+    BulkVerifierTest() throws IOException {
+        dir = Files.createTempDirectory("bulkverifier");
+        System.setProperty("pkry.home", dir.resolve("home").toString());
+        write(dir.resolve("public.key"), P.toString(16) + "#" + G.toString(16) + "#" + Q.toString(16) + "#" + Y.toString(16));
+        write(dir.resolve("broken.key"), "zz#1");
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sign(Path file, Path signature) throws IOException, NoSuchAlgorithmException {
+        sign(file, signature, "");
+    }
+
+    /**
+     * Podpis [2#opcje#]sp#e#r treści pliku (l losowe, r_p = g^l, e = H(m || r_p), s_p = l + s*e mod q)
+     */
+    private static void sign(Path file, Path signature, String options) throws IOException, NoSuchAlgorithmException {
+        BigInteger l = new BigInteger(159, RANDOM).add(BigInteger.ONE);
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(Files.readAllBytes(file));
+        md.update(G.modPow(l, P).toByteArray());
+        BigInteger e = new BigInteger(md.digest());
+        BigInteger sp = l.add(S.multiply(e)).mod(Q);
+        write(signature, (options.isEmpty() ? "" : Signature.VERSION + "#" + options + "#") + sp.toString(16) + "#" + e.toString(16) + "#" + R.toString(16));
+    }
+
+    /**
+     * Werdykty z raportu według nazwy podpisanego pliku
+     */
+    private static Map<String, String> verdicts(Path report) throws IOException {
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals("verdict\tmicros\tfile\tsignature\tpublicKey\tmessage", lines.get(0));
+        Map<String, String> verdicts = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String tmp[] = line.split("\t", -1);
+            assertEquals(6, tmp.length);
+            assertTrue(Long.parseLong(tmp[1]) >= 0);
+            verdicts.put(tmp[2].substring(tmp[2].lastIndexOf('/') + 1), tmp[0] + (tmp[5].isEmpty() ? "" : ":" + tmp[5]));
+        }
+        return verdicts;
+    }
+
+    @Test
+    void manifestReportsEveryVerdict() throws Exception {
+        Path docs = dir.resolve("docs");
+        for (String name : new String[] {"good.txt", "tampered.txt", "other.txt", "unsigned.txt"}) {
+            write(docs.resolve(name), "content of " + name);
+        }
+        sign(docs.resolve("good.txt"), docs.resolve("good.sig"));
+        sign(docs.resolve("tampered.txt"), docs.resolve("tampered.sig"));
+        write(docs.resolve("tampered.txt"), "changed after signing");
+        sign(docs.resolve("other.txt"), docs.resolve("other.sig"));
+        Path manifest = dir.resolve("manifest.tsv");
+        Files.write(manifest, Arrays.asList(
+                "public.key\tdocs/good.sig\tdocs/good.txt",
+                "public.key\tdocs/tampered.sig\tdocs/tampered.txt",
+                "broken.key\tdocs/other.sig\tdocs/other.txt",
+                "public.key\tdocs/missing.sig\tdocs/unsigned.txt",
+                "",
+                "public.key docs/bad.txt"), StandardCharsets.UTF_8);
+
+        BulkVerifier bulk = new BulkVerifier(false, false, 3);
+        Path report = dir.resolve("report.tsv");
+        bulk.run(manifest, null, report);
+        assertEquals(1, bulk.getValid());
+        assertEquals(1, bulk.getInvalid());
+        assertEquals(3, bulk.getErrors());
+
+        Map<String, String> verdicts = verdicts(report);
+        assertEquals(5, verdicts.size());
+        assertEquals(BulkVerifier.VALID, verdicts.get("good.txt"));
+        assertEquals(BulkVerifier.INVALID, verdicts.get("tampered.txt"));
+        assertTrue(verdicts.get("other.txt").startsWith(BulkVerifier.ERROR + ":"));
+        assertEquals(BulkVerifier.ERROR + ":File signature is badly formatted!", verdicts.get("unsigned.txt"));
+        assertEquals(BulkVerifier.ERROR + ":Manifest line is badly formatted!", verdicts.get("bad.txt"));
+    }
+
+    @Test
+    void directoryPairsFilesWithSignatures() throws Exception {
+        Path docs = dir.resolve("tree");
+        write(docs.resolve("a.txt"), "first");
+        write(docs.resolve("sub/b.txt"), "second");
+        write(docs.resolve("c.txt"), "third");
+        sign(docs.resolve("a.txt"), docs.resolve("a.txt.sign"));
+        sign(docs.resolve("sub/b.txt"), docs.resolve("sub/b.txt.sign"));
+        sign(docs.resolve("c.txt"), docs.resolve("gone.txt.sign"));
+
+        BulkVerifier bulk = new BulkVerifier(true, false, 2);
+        Path report = dir.resolve("tree.tsv");
+        bulk.run(docs, dir.resolve("public.key"), report);
+        assertEquals(2, bulk.getValid());
+        assertEquals(0, bulk.getInvalid());
+        assertEquals(1, bulk.getErrors());
+
+        Map<String, String> verdicts = verdicts(report);
+        assertEquals(BulkVerifier.VALID, verdicts.get("a.txt"));
+        assertEquals(BulkVerifier.VALID, verdicts.get("b.txt"));
+        assertEquals(BulkVerifier.ERROR + ":Signed file is missing!", verdicts.get("gone.txt"));
+    }
+
+    @Test
+    void rememberedVerdictIsDroppedWhenFileChanges() throws Exception {
+        Path docs = dir.resolve("remembered");
+        write(docs.resolve("doc.txt"), "original");
+        sign(docs.resolve("doc.txt"), docs.resolve("doc.txt.sign"));
+        Path report = dir.resolve("remembered.tsv");
+
+        BulkVerifier first = new BulkVerifier(false, true, 1);
+        first.run(docs, dir.resolve("public.key"), report);
+        assertEquals(1, first.getValid());
+
+        write(docs.resolve("doc.txt"), "modified");
+        assertTrue(docs.resolve("doc.txt").toFile().setLastModified(docs.resolve("doc.txt").toFile().lastModified() + 2000));
+        BulkVerifier second = new BulkVerifier(false, true, 1);
+        second.run(docs, dir.resolve("public.key"), report);
+        assertEquals(0, second.getValid());
+        assertEquals(1, second.getInvalid());
+        assertEquals(BulkVerifier.INVALID, verdicts(report).get("doc.txt"));
+    }
+
+    @Test
+    void keyIdSelectsPublicKeyFromIndex() throws Exception {
+        Path keys = dir.resolve("keys"), docs = dir.resolve("indexed");
+        Files.createDirectories(keys);
+        Files.copy(dir.resolve("public.key"), keys.resolve("owner.key"));
+        write(keys.resolve("notes.txt"), "not a key");
+        String owner = KeyStore.format(KeyStore.id(BinaryFormat.PUBLIC_KEY, "", P, G, Q, Y));
+        String other = KeyStore.format(KeyStore.id(BinaryFormat.PUBLIC_KEY, "", BigInteger.ONE));
+        for (String name : new String[] {"found.txt", "unknown.txt"}) {
+            write(docs.resolve(name), "content of " + name);
+        }
+        sign(docs.resolve("found.txt"), docs.resolve("found.txt.sign"), Signature.KEY + "=" + owner);
+        sign(docs.resolve("unknown.txt"), docs.resolve("unknown.txt.sign"), Signature.KEY + "=" + other);
+
+        BulkVerifier bulk = new BulkVerifier(false, false, 2, KeyIndex.open(keys));
+        Path report = dir.resolve("indexed.tsv");
+        bulk.run(docs, null, report);
+        Map<String, String> verdicts = verdicts(report);
+        assertEquals(BulkVerifier.VALID, verdicts.get("found.txt"));
+        assertEquals(BulkVerifier.ERROR + ":Public key " + other + " was not found in the key index!", verdicts.get("unknown.txt"));
+
+        // podpis wskazujący inny klucz jest odrzucany bez obliczeń
+        bulk = new BulkVerifier(false, false, 1);
+        bulk.run(docs, dir.resolve("public.key"), report);
+        verdicts = verdicts(report);
+        assertEquals(BulkVerifier.VALID, verdicts.get("found.txt"));
+        assertEquals(BulkVerifier.INVALID, verdicts.get("unknown.txt"));
+    }
+}
@@ -0,0 +1,68 @@
+package pl.pw.edu.proxyverifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.pkry.BinaryFormat;
+import pl.pw.edu.pkry.KeyStore;
+import pl.pw.edu.pkry.Signature;
+
+/**
+ * Wyszukiwanie klucza publicznego po ID z podpisu w katalogu kluczy i w magazynie
+ */
+class KeyIndexTest {
+
+    private static final BigInteger[] KEY = {BigInteger.valueOf(23), BigInteger.valueOf(4), BigInteger.valueOf(11), BigInteger.valueOf(9)};
+
+    private static final long ID = KeyStore.id(BinaryFormat.PUBLIC_KEY, "", KEY);
+
+    private final Path dir;
+
+    KeyIndexTest() throws IOException {
+        dir = Files.createTempDirectory("keyindex");
+    }
+
+    private static Signature signature(Long owner) {
+        Map<String, String> options = new LinkedHashMap<>();
+        if (owner != null) {
+            options.put(Signature.KEY, KeyStore.format(owner));
+        }
+        return new Signature(options, BigInteger.ONE, BigInteger.TEN, BigInteger.valueOf(3));
+    }
+
+    @Test
+    void directoryIndexSkipsOtherFiles() throws IOException {
+        Path keys = Files.createDirectories(dir.resolve("keys/sub"));
+        Path owner = keys.resolve("owner.key");
+        Files.write(owner, BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "", KEY));
+        Files.write(keys.resolve("proxy.key"), BinaryFormat.encode(BinaryFormat.PROXY_KEY, "", BigInteger.ONE, BigInteger.TEN));
+        Files.write(keys.resolve("owner.txt"), Collections.singletonList("17#4#b#9"), StandardCharsets.UTF_8);
+        KeyIndex index = KeyIndex.open(dir.resolve("keys"));
+        assertEquals(owner.toString(), index.find(ID));
+        assertEquals(owner.toString(), index.find(signature(ID)));
+        assertNull(index.find(ID + 1));
+        assertThrows(IOException.class, () -> index.find(signature(ID + 1)));
+        assertThrows(IOException.class, () -> index.find(signature(null)));
+    }
+
+    @Test
+    void storeIndexReturnsReference() throws IOException {
+        Path store = dir.resolve("keys.pkks");
+        KeyStore.open(store).add(new KeyStore.Entry(BinaryFormat.PUBLIC_KEY, ID, ID, BinaryFormat.encode(BinaryFormat.PUBLIC_KEY, "", KEY)));
+        KeyIndex index = KeyIndex.open(store);
+        String reference = index.find(signature(ID));
+        assertEquals(KeyStore.reference(store, ID), reference);
+        assertEquals(BigInteger.valueOf(9), KeyStore.read(reference, BinaryFormat.PUBLIC_KEY).get(3));
+        assertNull(index.find(ID + 1));
+    }
+}
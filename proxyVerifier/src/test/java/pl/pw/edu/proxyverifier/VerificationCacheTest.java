@@ -0,0 +1,76 @@
+package pl.pw.edu.proxyverifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.pkry.KeyValidator;
+
+/**
+ * Klucz wyniku weryfikacji zależy od podpisu, klucza publicznego i stanu pliku;
+ * zmiana pliku unieważnia zapamiętany wynik
+ */
+class VerificationCacheTest {
+
+    private static final String SIGNATURE = "1a#2b#3c", FINGERPRINT = "abcdef";
+
+    private final Path file;
+
+    VerificationCacheTest() throws IOException {
+        Path dir = Files.createTempDirectory("verificationcache");
+        System.setProperty("pkry.home", dir.resolve("home").toString());
+        file = dir.resolve("doc.txt");
+        Files.write(file, "document".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keyIsStableForUnchangedInputs() throws IOException {
+        String key = VerificationCache.key(SIGNATURE, FINGERPRINT, file);
+        assertEquals(key, VerificationCache.key(SIGNATURE + "\n", FINGERPRINT, file));
+        assertNotEquals(key, VerificationCache.key("1a#2b#3d", FINGERPRINT, file));
+        assertNotEquals(key, VerificationCache.key(SIGNATURE, "abcdee", file));
+    }
+
+    @Test
+    void modifiedFileInvalidatesResult() throws IOException {
+        String key = VerificationCache.key(SIGNATURE, FINGERPRINT, file);
+        VerificationCache.put(key, true);
+        assertEquals(Boolean.TRUE, VerificationCache.get(key));
+
+        // ta sama długość treści, inny czas modyfikacji
+        Files.write(file, "DOCUMENT".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.toFile().setLastModified(file.toFile().lastModified() + 2000));
+        String changed = VerificationCache.key(SIGNATURE, FINGERPRINT, file);
+        assertNotEquals(key, changed);
+        assertNull(VerificationCache.get(changed));
+
+        // inny rozmiar przy tym samym czasie modyfikacji
+        long mtime = file.toFile().lastModified();
+        Files.write(file, "document, longer".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.toFile().setLastModified(mtime));
+        assertNotEquals(changed, VerificationCache.key(SIGNATURE, FINGERPRINT, file));
+    }
+
+    @Test
+    void resultsAreAppendedToIndex() throws IOException {
+        String key = VerificationCache.key("9#9#9", FINGERPRINT, file);
+        VerificationCache.put(key, false);
+        assertEquals(Boolean.FALSE, VerificationCache.get(key));
+        List<String> lines = Files.readAllLines(new File(KeyValidator.home(), "verified.index").toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.contains(key + " 0"));
+    }
+
+    @Test
+    void missingFileHasNoKey() {
+        assertThrows(IOException.class, () -> VerificationCache.key(SIGNATURE, FINGERPRINT, file.resolveSibling("missing.txt")));
+    }
+}